@@ -11,6 +11,7 @@ import java.util.Random;
 import org.data2semantics.mustard.experiments.utils.Result;
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
 import org.data2semantics.mustard.kernels.Kernel;
+import org.data2semantics.mustard.kernels.KernelUtils;
 import org.data2semantics.mustard.kernels.data.GraphData;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
 import org.data2semantics.mustard.learners.Prediction;
@@ -23,34 +24,45 @@ import org.data2semantics.mustard.learners.liblinear.LibLINEARParameters;
 public class GraphFeatureVectorKernelComputationTimeExperiment<D extends GraphData> extends KernelExperiment<FeatureVectorKernel<D>> {
 	private D data;
 	private Result compR;
+	private Result cpuR;
 
 	public GraphFeatureVectorKernelComputationTimeExperiment(List<? extends FeatureVectorKernel<D>> kernels, D data, long[] seeds) {
 		super(kernels, seeds);
 		this.data = data;
 		compR = new Result();
 		results.add(compR);
+		cpuR = new Result();
+		cpuR.setLabel("CPU time");
+		results.add(cpuR);
 	}
 
 	@Override
 	public void run() {
-		long tic, toc;
+		long tic, toc, cpuTic, cpuToc;
 		long compTime = 0;
+		long cpuTime = 0;
 	
 		System.out.println("Computing FVs...");	
 		for (FeatureVectorKernel<D> kernel : kernels) {
 			tic = System.currentTimeMillis();
+			cpuTic = KernelUtils.getCPUTime();
 			kernel.computeFeatureVectors(data);
 			toc = System.currentTimeMillis();
+			cpuToc = KernelUtils.getCPUTime();
 			
 			if (kernel instanceof ComputationTimeTracker) {
 				compTime += ((ComputationTimeTracker) kernel).getComputationTime();
+				cpuTime += ((ComputationTimeTracker) kernel).getCPUTime();
 			} else {
 				compTime += toc - tic;
+				cpuTime += cpuToc - cpuTic;
 			}
 		}
 
 	double[] comp = {compTime};	
 	compR.setScores(comp);	
+	double[] cpu = {cpuTime};
+	cpuR.setScores(cpu);
 }
 
 }
\ No newline at end of file
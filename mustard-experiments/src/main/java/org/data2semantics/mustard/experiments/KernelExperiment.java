@@ -4,6 +4,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.data2semantics.mustard.experiments.utils.Result;
 import org.data2semantics.mustard.kernels.Kernel;
@@ -13,6 +18,7 @@ public abstract class KernelExperiment<K extends Kernel> implements Runnable {
 	protected long[] seeds;
 	protected List<Result> results;
 	protected Map<Kernel, Double> usedKernels;
+	protected int parallelism;
 	
 	public KernelExperiment(List<? extends K> kernels, long[] seeds) {
 		super();
@@ -20,6 +26,53 @@ public abstract class KernelExperiment<K extends Kernel> implements Runnable {
 		this.seeds = seeds;
 		results = new ArrayList<Result>();
 		usedKernels = new HashMap<Kernel, Double>();
+		parallelism = 1;
+	}
+
+	/**
+	 * Set the number of repetitions of the experiment (i.e. seeds) that are run at the same time, default is 1.
+	 * Not all experiments support this, see {@link SimpleGraphKernelExperiment}, which divides the threads of the learner over the seeds that run at the same time.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Call the tasks (e.g. one per seed) with at most parallelism of them at the same time.
+	 * 
+	 * @param tasks
+	 * @return the results, in the order of the tasks
+	 */
+	protected <T> List<T> invokeAll(List<Callable<T>> tasks) {
+		List<T> res = new ArrayList<T>(tasks.size());
+		if (parallelism <= 1 || tasks.size() <= 1) {
+			for (Callable<T> task : tasks) {
+				try {
+					res.add(task.call());
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return res;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+		try {
+			for (Future<T> future : executor.invokeAll(tasks)) {
+				res.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return res;
 	}
 
 	public abstract void run();
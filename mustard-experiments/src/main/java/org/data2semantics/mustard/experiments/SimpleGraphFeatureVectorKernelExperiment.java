@@ -1,16 +1,14 @@
 package org.data2semantics.mustard.experiments;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 import org.data2semantics.mustard.experiments.utils.Result;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.Kernel;
+import org.data2semantics.mustard.kernels.KernelUtils;
 import org.data2semantics.mustard.kernels.data.GraphData;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
 import org.data2semantics.mustard.learners.Prediction;
@@ -54,41 +52,54 @@ public class SimpleGraphFeatureVectorKernelExperiment<D extends GraphData> exten
 	public void run() {
 		long tic, toc;
 
-		List<Double> tempLabels = new ArrayList<Double>();
-		tempLabels.addAll(labels);
-
 		Map<Kernel, SparseVector[]> fvs = new HashMap<Kernel, SparseVector[]>();
 
 		tic = System.currentTimeMillis();
 		System.out.println("Computing FVs...");
 		for (FeatureVectorKernel<D> kernel : kernels) {
-			SparseVector[] fv = kernel.computeFeatureVectors(data);
-			fvs.put(kernel, fv);
+			fvs.put(kernel, KernelUtils.freeze(kernel.computeFeatureVectors(data)));
 		}
 		toc = System.currentTimeMillis();
 
 		compR.setLabel("kernel comp time");
 
 		System.out.println("Performing CV...");
+		// The shuffles of the seeds are cumulative, each seed shuffles the order of the previous one.
+		// The seeds are run sequentially, since LibLINEAR uses one static random number generator
+		List<Prediction[]> preds = new ArrayList<Prediction[]>();
+		double[][] targets = new double[seeds.length][];
+		int[] permutation = null;
 		for (int j = 0; j < seeds.length; j++) {
-			for (Kernel k : fvs.keySet()) {
-				List<SparseVector> tempFV = Arrays.asList(fvs.get(k));
-				Collections.shuffle(tempFV, new Random(seeds[j]));
-				fvs.put(k, tempFV.toArray(new SparseVector[0]));
+			int[] seedPerm = KernelUtils.shufflePermutation(labels.size(), seeds[j]);
+			int[] nextPermutation = new int[seedPerm.length];
+			for (int i = 0; i < seedPerm.length; i++) {
+				nextPermutation[i] = (permutation == null) ? seedPerm[i] : permutation[seedPerm[i]];
 			}
-			Collections.shuffle(tempLabels, new Random(seeds[j]));
+			permutation = nextPermutation;
 
-			double[] target = new double[tempLabels.size()];
+			Map<Kernel, SparseVector[]> seedFVs = new HashMap<Kernel, SparseVector[]>();
+			for (Kernel k : fvs.keySet()) {
+				SparseVector[] fv = new SparseVector[permutation.length];
+				for (int i = 0; i < fv.length; i++) {
+					fv[i] = fvs.get(k)[permutation[i]];
+				}
+				seedFVs.put(k, fv);
+			}
+			double[] target = new double[permutation.length];
 			for (int i = 0; i < target.length; i++) {
-				target[i] = tempLabels.get(i);
+				target[i] = labels.get(permutation[i]);
 			}
+			targets[j] = target;
+
+			preds.add(LibLINEAR.crossValidateWithMultipleFeatureVectors(seedFVs, target, svmParms, svmParms.getNumFolds()));
+		}
 
-			Prediction[] pred = LibLINEAR.crossValidateWithMultipleFeatureVectors(fvs, target, svmParms,
-					svmParms.getNumFolds());
+		for (int j = 0; j < seeds.length; j++) {
+			Prediction[] pred = preds.get(j);
 
 			for (Result res : results) {
 				if (res.getEval() != null) {
-					res.getScores()[j] = res.getEval().computeScore(target, pred);
+					res.getScores()[j] = res.getEval().computeScore(targets[j], pred);
 				}
 			}
 			
@@ -1,17 +1,27 @@
 package org.data2semantics.mustard.experiments;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.Callable;
 
 import org.data2semantics.mustard.experiments.utils.Result;
 import org.data2semantics.mustard.kernels.Kernel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphData;
+import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
 import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
+import org.data2semantics.mustard.kernels.matrix.ArrayKernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.MappedKernelMatrix;
 import org.data2semantics.mustard.learners.Prediction;
 import org.data2semantics.mustard.learners.evaluation.EvaluationFunction;
 import org.data2semantics.mustard.learners.libsvm.LibSVM;
@@ -23,6 +33,8 @@ public class SimpleGraphKernelExperiment<D extends GraphData> extends KernelExpe
 	private List<Double> labels;
 	private LibSVMParameters svmParms;
 	private Result compR;
+	private File kernelCacheDir;
+	private String dataID;
 
 	public SimpleGraphKernelExperiment(List<? extends GraphKernel<D>> kernels, D data,
 			List<Double> labels, LibSVMParameters svmParms, long[] seeds,
@@ -43,19 +55,40 @@ public class SimpleGraphKernelExperiment<D extends GraphData> extends KernelExpe
 		results.add(compR);
 	}
 
+	/**
+	 * Store the computed kernel matrices in dir, as {@link MappedKernelMatrix} files named after the kernel label.
+	 * If the file for a kernel already exists, the matrix is read from disk instead of recomputed, so repeated runs (e.g. with other seeds) 
+	 * do not need to compute the kernels again. The cross-validation reads the kernel values directly from the files.
+	 * 
+	 * <p>
+	 * Each file stores a SHA-1 digest of dataID, the kernel label and the labels of the instances, a file is only reused if the digest matches.
+	 * The data itself cannot be compared, so dataID should identify it, e.g. the dataset file and the selection of the instances.
+	 * </p>
+	 * 
+	 * <p>
+	 * For a {@link FeatureVectorKernel} the kernel matrix is computed from the feature vectors directly into the file, so the matrix does not have to fit on the heap.
+	 * Other kernels only compute a double[][], which is written to the file afterwards, so for those the complete matrix still has to fit on the heap once.
+	 * Stored files are opened read only, so that runs in different processes can share them.
+	 * </p>
+	 * 
+	 * @param dir
+	 * @param dataID
+	 */
+	public void setKernelCacheDir(File dir, String dataID) {
+		this.kernelCacheDir = dir;
+		this.dataID = dataID;
+	}
+
 	@Override
 	public void run() {
 		long tic, toc;
 
-		List<Double> tempLabels = new ArrayList<Double>(); // Copy labels, since it is supplied to multiple experiments potentially
-		tempLabels.addAll(labels);
-
-		Map<Kernel, double[][]> matrices = new HashMap<Kernel, double[][]>();
+		final Map<Kernel, KernelMatrix> matrices = new HashMap<Kernel, KernelMatrix>();
 
 		tic = System.currentTimeMillis();	
 		System.out.print("Computing kernels");	
 		for (GraphKernel<D> kernel : kernels) {
-			double[][] matrix = kernel.compute(data);
+			KernelMatrix matrix = (kernelCacheDir == null) ? new ArrayKernelMatrix(kernel.compute(data), true) : computeCached(kernel);
 			matrices.put(kernel, matrix);
 			System.out.print(".");
 		}
@@ -65,22 +98,53 @@ public class SimpleGraphKernelExperiment<D extends GraphData> extends KernelExpe
 		compR.setLabel("kernel comp time");
 
 		System.out.println("Performing CV...");
+		// The shuffles of the seeds are cumulative, each seed shuffles the order of the previous one.
+		// Instead of shuffled copies of the matrices and labels, each seed gets the permutation of the instances, so the matrices are shared by all the seeds
+		int[][] permutations = new int[seeds.length][];
+		double[][] targets = new double[seeds.length][];
 		for (int j = 0; j < seeds.length; j++) {
-			for (Kernel k : matrices.keySet()) {
-				matrices.put(k, KernelUtils.shuffle(matrices.get(k), seeds[j]));
+			int[] seedPerm = KernelUtils.shufflePermutation(labels.size(), seeds[j]);
+			permutations[j] = new int[seedPerm.length];
+			targets[j] = new double[seedPerm.length];
+			for (int i = 0; i < seedPerm.length; i++) {
+				permutations[j][i] = (j == 0) ? seedPerm[i] : permutations[j-1][seedPerm[i]];
+				targets[j][i] = labels.get(permutations[j][i]);
 			}
-			Collections.shuffle(tempLabels, new Random(seeds[j]));		
+		}
 
-			double[] target = new double[tempLabels.size()];
-			for (int i = 0; i < target.length; i++) {
-				target[i] = tempLabels.get(i);
+		// The threads of the cross-validation are divided over the seeds that run at the same time
+		final LibSVMParameters seedParms = svmParms.divideParallelism(Math.min(parallelism, seeds.length));
+		List<Callable<Prediction[]>> tasks = new ArrayList<Callable<Prediction[]>>();
+		for (int j = 0; j < seeds.length; j++) {
+			final int[] permutation = permutations[j];
+			final double[] target = targets[j];
+			tasks.add(new Callable<Prediction[]>() {
+				public Prediction[] call() {
+					return LibSVM.crossValidateWithMultipleKernelMatrices(matrices, target, seedParms, seedParms.getNumFolds(), permutation);
+				}
+			});
+		}
+		List<Prediction[]> preds;
+		try {
+			preds = invokeAll(tasks);
+		} finally {
+			for (KernelMatrix matrix : matrices.values()) {
+				if (matrix instanceof MappedKernelMatrix) {
+					try {
+						((MappedKernelMatrix) matrix).close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
 			}
+		}
 
-			Prediction[] pred = LibSVM.crossValidateWithMultipleKernels(matrices, target, svmParms, svmParms.getNumFolds());
+		for (int j = 0; j < seeds.length; j++) {
+			Prediction[] pred = preds.get(j);
 
 			for (Result res : results) {
 				if (res.getEval() != null) {
-					res.getScores()[j] = res.getEval().computeScore(target, pred);	
+					res.getScores()[j] = res.getEval().computeScore(targets[j], pred);	
 				}
 			}
 			
@@ -99,4 +163,70 @@ public class SimpleGraphKernelExperiment<D extends GraphData> extends KernelExpe
 		double[] comp = {toc - tic};
 		compR.setScores(comp);		
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Open the stored matrix for kernel if it was computed for the same data, otherwise compute the kernel and store it.
+	 * The matrix is first written to a temporary file, so that an interrupted run does not leave an incomplete matrix behind.
+	 * The kernel matrix of a FeatureVectorKernel is computed with the parallelism of the experiment, since the seeds only start after the kernels are computed.
+	 */
+	private MappedKernelMatrix computeCached(GraphKernel<D> kernel) {
+		byte[] id = computeCacheID(kernel);
+		File file = new File(kernelCacheDir, kernel.getLabel().replaceAll("[^A-Za-z0-9_=.-]", "_") + ".kmat");
+
+		if (file.exists()) {
+			MappedKernelMatrix matrix = null;
+			try {
+				matrix = new MappedKernelMatrix(file, true);
+			} catch (RuntimeException e) { // not a kernel matrix file of the current version, it is overwritten below
+				System.out.println("Cannot read " + file + ", recomputing: " + e.getMessage());
+			}
+			if (matrix != null) {
+				if (Arrays.equals(matrix.getID(), id) && matrix.numRows() == labels.size() && matrix.isSymmetric()) {
+					return matrix;
+				}
+				close(matrix); // stored matrix is for other data
+			}
+		}
+
+		kernelCacheDir.mkdirs();
+		File tempFile = new File(kernelCacheDir, file.getName() + ".tmp");
+		MappedKernelMatrix matrix = new MappedKernelMatrix(tempFile, labels.size(), labels.size(), true, false, id);
+		try {
+			if (kernel instanceof FeatureVectorKernel) {
+				// The kernels normalize the feature vectors themselves (if set), so this gives the same matrix as kernel.compute(data)
+				@SuppressWarnings("unchecked")
+				SparseVector[] fvs = ((FeatureVectorKernel<D>) kernel).computeFeatureVectors(data);
+				KernelUtils.computeKernelMatrix(fvs, matrix, parallelism);
+			} else {
+				matrix.writeRows(0, kernel.compute(data));
+			}
+		} finally {
+			close(matrix);
+		}
+		if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+			throw new RuntimeException("Cannot store kernel matrix in " + file);
+		}
+		return new MappedKernelMatrix(file, true);
+	}
+
+	private byte[] computeCacheID(GraphKernel<D> kernel) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update((dataID + "\n" + kernel.getLabel() + "\n" + labels.size() + "\n").getBytes(StandardCharsets.UTF_8));
+			for (Double label : labels) {
+				digest.update((label + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void close(MappedKernelMatrix matrix) {
+		try {
+			matrix.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
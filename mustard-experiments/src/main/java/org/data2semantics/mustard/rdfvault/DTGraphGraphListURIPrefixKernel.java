@@ -2,6 +2,7 @@ package org.data2semantics.mustard.rdfvault;
 
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
@@ -14,6 +15,8 @@ import org.nodes.DTGraph;
 public class DTGraphGraphListURIPrefixKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker {
 	private int depth;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
 	private URIPrefixKernel kernel;
 
 	public DTGraphGraphListURIPrefixKernel(double lambda, int depth, boolean normalize) {
@@ -30,6 +33,10 @@ public class DTGraphGraphListURIPrefixKernel implements GraphKernel<SingleDTGrap
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public void setNormalize(boolean normalize) {
 		kernel.setNormalize(normalize);
 	}
@@ -46,8 +53,10 @@ public class DTGraphGraphListURIPrefixKernel implements GraphKernel<SingleDTGrap
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
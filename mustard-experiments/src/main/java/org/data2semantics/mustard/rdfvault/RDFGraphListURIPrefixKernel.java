@@ -58,4 +58,8 @@ public class RDFGraphListURIPrefixKernel implements GraphKernel<RDFData>, Featur
 	public long getComputationTime() {
 		return kernel.getComputationTime();
 	}
+
+	public long getCPUTime() {
+		return kernel.getCPUTime();
+	}
 }
@@ -3,6 +3,7 @@ package org.data2semantics.mustard.rdfvault;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -21,6 +22,8 @@ import org.nodes.DTNode;
 public class URIPrefixKernel implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker {
 	protected boolean normalize;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
 	private double lambda;
 	
 	public URIPrefixKernel(boolean normalize) {
@@ -44,6 +47,10 @@ public class URIPrefixKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(GraphList<DTGraph<String,String>> data) {
 		SparseVector[] featureVectors = new SparseVector[data.numInstances()];
 		for (int i = 0; i < featureVectors.length; i++) {
@@ -53,6 +60,7 @@ public class URIPrefixKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		StringTree st = new StringTree();
 		
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		for (DTGraph<String,String> graph : data.getGraphs()) {
 			for (DTNode<String,String> node : graph.nodes()) {
@@ -66,8 +74,9 @@ public class URIPrefixKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		StringTree.PrefixStatistics stat = st.getPrefixStatistics(true);
 		SparseVector norm = stat.getNormalization();
 		
-		for (int index : norm.getIndices()) {
-			norm.setValue(index, Math.pow(norm.getValue(index), lambda));
+		for (SparseVector.IndexIterator it = norm.getIndices(); it.hasNext();) {
+			it.next();
+			it.setValue(Math.pow(it.value(), lambda));
 		}
 		
 		int i = 0;
@@ -80,12 +89,14 @@ public class URIPrefixKernel implements GraphKernel<GraphList<DTGraph<String,Str
 			}
 			
 			// normalize
-			for (int index : featureVectors[i].getIndices()) {
-				featureVectors[i].setValue(index, featureVectors[i].getValue(index) / norm.getValue(index));
+			for (SparseVector.IndexIterator it = featureVectors[i].getIndices(); it.hasNext();) {
+				int index = it.next();
+				it.setValue(it.value() / norm.getValue(index));
 			}			
 			i++;
  		}	
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 	
 		if (normalize) {
 			featureVectors = KernelUtils.normalize(featureVectors);
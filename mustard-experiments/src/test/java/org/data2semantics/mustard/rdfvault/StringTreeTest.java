@@ -63,7 +63,7 @@ public class StringTreeTest {
 		for (int i=0; i<tst.length; i++) {
 			String s1 = tst[i];
 			SparseVector sv = ps.createSparseVector(s1);
-			int bits = sv.getIndices().size();
+			int bits = sv.size();
 			System.out.println(s1 + " has bitvector with "+bits+"/"+(sv.getLastIndex()+1)+" indices.");
 			for (int j=0; j<=i; j++) {
 				String s2 = tst[j];
@@ -9,9 +9,16 @@ package org.data2semantics.mustard.kernels;
  */
 public interface ComputationTimeTracker {
 	/**
-	 * returns the computation time of the kernel in milliseconds
+	 * returns the (wall-clock) computation time of the kernel in milliseconds
 	 *  
 	 * @return
 	 */
 	public long getComputationTime();
+
+	/**
+	 * returns the CPU time used for the computation of the kernel in milliseconds, including the CPU time of worker threads (if the computation is parallel).
+	 * 
+	 * @return
+	 */
+	public long getCPUTime();
 }
@@ -0,0 +1,19 @@
+package org.data2semantics.mustard.kernels;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a kernel that is not a parameter of the kernel, e.g. a time measurement or a setting that does not change the computed kernel.
+ * Such fields are left out of the label created by {@link KernelUtils#createLabel(Kernel)}.
+ * 
+ * @author Gerben
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ExcludeFromLabel {
+
+}
@@ -1,9 +1,18 @@
 package org.data2semantics.mustard.kernels;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.data2semantics.mustard.kernels.matrix.ArrayKernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
 
 
 
@@ -16,6 +25,17 @@ import java.util.Random;
 public class KernelUtils {
 	public static final String ROOTID = "ROOT1337"; // Special root label used in some kernels
 
+	private static final int TILE_SIZE = 64; // size of the (square) blocks of the kernel matrix that are computed as one task
+	private static final int POSTINGS_COST_FACTOR = 4; // a multiply-add via the inverted index is about this much more expensive than one step of a dot product
+
+	// CPU time (in nanoseconds) spent by worker threads on behalf of the current thread
+	private static final ThreadLocal<long[]> workerCPUTime = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
 	/**
 	 * extract a subset train (square) kernel matrix from a larger (square) kernel matrix
 	 * 
@@ -94,6 +114,28 @@ public class KernelUtils {
 		return convert2DoublePrimitives(kernelDouble);
 	}
 
+	/**
+	 * The permutation that {@link #shuffle(double[][], long)} applies to the rows and columns of a kernel matrix of the given size,
+	 * i.e. shuffle(kernel, seed)[i][j] == kernel[perm[i]][perm[j]]. This is also the permutation of Collections.shuffle() with new Random(seed) on a list of this size,
+	 * so it can be used instead of shuffled copies of the kernel matrix.
+	 * 
+	 * @param size
+	 * @param seed
+	 * @return perm
+	 */
+	public static int[] shufflePermutation(int size, long seed) {
+		Integer[] indices = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			indices[i] = i;
+		}
+		Collections.shuffle(Arrays.asList(indices), new Random(seed));
+		int[] perm = new int[size];
+		for (int i = 0; i < size; i++) {
+			perm[i] = indices[i];
+		}
+		return perm;
+	}
+
 	/**
 	 * Convert an array of SparseVectors to binary SparseVectors, i.e. only 0 or 1 values.
 	 * 
@@ -101,10 +143,12 @@ public class KernelUtils {
 	 * @return an array of binary SparseVectors (the array is not copied, so the original array is returned)
 	 */
 	public static SparseVector[] convert2BinaryFeatureVectors(SparseVector[] featureVectors) {
+		freeze(featureVectors);
 		for (SparseVector fv : featureVectors) {
-			for (int index : fv.getIndices()) {
-				if (fv.getValue(index) == 0.0) {
-					fv.setValue(index, 1);
+			for (SparseVector.IndexIterator it = fv.getIndices(); it.hasNext();) {
+				it.next();
+				if (it.value() == 0.0) {
+					it.setValue(1);
 				}
 			}
 		}
@@ -118,18 +162,34 @@ public class KernelUtils {
 	 * @return an array of normalized SparseVectors (the orignal array is returned, it is not copied)
 	 */
 	public static SparseVector[] normalize(SparseVector[] featureVectors) {
+		freeze(featureVectors);
 		double norm = 0;
 		for (int i = 0; i < featureVectors.length; i++) {
 			norm = Math.sqrt(featureVectors[i].dot(featureVectors[i]));
 			norm = (norm == 0) ? 1 : norm; // In case we have 0-vector
 
-			for (int index : featureVectors[i].getIndices()) {
-				featureVectors[i].setValue(index, featureVectors[i].getValue(index) / norm);
+			for (SparseVector.IndexIterator it = featureVectors[i].getIndices(); it.hasNext();) {
+				it.next();
+				it.setValue(it.value() / norm);
 			}
-			featureVectors[i].clearConversion();
 		}
 		return featureVectors;	
 	}
+
+	/**
+	 * Freeze all the feature vectors (see {@link SparseVector#freeze()}), this should be done once the vectors are built and before they are read,
+	 * in particular before they are shared between threads.
+	 * 
+	 * @param featureVectors
+	 * @return the original array
+	 */
+	public static SparseVector[] freeze(SparseVector[] featureVectors) {
+		for (SparseVector fv : featureVectors) {
+			fv.freeze();
+		}
+		return featureVectors;
+	}
+
 	/**
 	 * Sum two kernel matrices
 	 * 
@@ -170,6 +230,43 @@ public class KernelUtils {
 		return kernel;
 	}
 
+	/**
+	 * Normalize a symmetric {@link KernelMatrix} in place
+	 * 
+	 * @param kernel
+	 * @return normalized matrix, which is the same matrix, not copied
+	 */
+	public static KernelMatrix normalize(KernelMatrix kernel) {
+		double[] ss = new double[kernel.numRows()];
+
+		for (int i = 0; i < ss.length; i++) {
+			ss[i] = kernel.get(i, i);
+		}
+
+		for (int i = 0; i < ss.length; i++) {
+			for (int j = i; j < ss.length; j++) {
+				kernel.set(i, j, kernel.get(i, j) / Math.sqrt(ss[i] * ss[j]));
+			}
+		}
+		return kernel;
+	}
+
+	/**
+	 * Add kernel2 to kernel1, i.e. the sum is computed in place, so no extra matrix is allocated.
+	 * 
+	 * @param kernel1
+	 * @param kernel2
+	 * @return kernel1
+	 */
+	public static KernelMatrix sum(KernelMatrix kernel1, KernelMatrix kernel2) {
+		for (int i = 0; i < kernel1.numRows(); i++) {
+			for (int j = (kernel1.isSymmetric()) ? i : 0; j < kernel1.numColumns(); j++) {
+				kernel1.add(i, j, kernel2.get(i, j));
+			}
+		}
+		return kernel1;
+	}
+
 	/**
 	 * Normalize an asymmetric train-test kernel matrix
 	 * 
@@ -219,18 +316,406 @@ public class KernelUtils {
 	}
 
 	/**
-	 * Use the feature vectors to compute a kernel matrix in the provided kernel array
+	 * Use the feature vectors to compute a kernel matrix in the provided kernel array, sequentially in the current thread.
 	 * 
 	 */
 	public static double[][] computeKernelMatrix(SparseVector[] featureVectors, double[][] kernel) {
+		return computeKernelMatrix(featureVectors, kernel, 1);
+	}
+
+	/**
+	 * Use the feature vectors to compute a kernel matrix in the provided kernel array, using parallelism threads.
+	 * If the feature vectors are sparse enough (i.e. there are relatively few pairs of instances that share a feature), 
+	 * the matrix is computed via an inverted index (see {@link #computeKernelMatrixPostings(SparseVector[], double[][], int, int)}),
+	 * otherwise the upper triangle of the matrix is divided into square blocks of TILE_SIZE x TILE_SIZE, which are computed in parallel with fork/join.
+	 * In both cases each entry is computed in exactly the same way as in the sequential version, so the result is identical.
+	 * 
+	 * @param featureVectors
+	 * @param kernel
+	 * @param parallelism, the number of threads, with 1 the matrix is computed sequentially in the current thread
+	 * @return
+	 */
+	public static double[][] computeKernelMatrix(SparseVector[] featureVectors, double[][] kernel, int parallelism) {
+		computeKernelMatrix(featureVectors, new ArrayKernelMatrix(kernel, true), parallelism);
+		return kernel;
+	}
+
+	/**
+	 * Use the feature vectors to compute a kernel matrix in the provided {@link KernelMatrix}, sequentially in the current thread.
+	 * 
+	 */
+	public static KernelMatrix computeKernelMatrix(SparseVector[] featureVectors, KernelMatrix kernel) {
+		return computeKernelMatrix(featureVectors, kernel, 1);
+	}
+
+	/**
+	 * KernelMatrix version of {@link #computeKernelMatrix(SparseVector[], double[][], int)}, the kernel matrix should be symmetric.
+	 * The feature vectors are frozen first.
+	 * 
+	 * @param featureVectors
+	 * @param kernel
+	 * @param parallelism
+	 * @return
+	 */
+	public static KernelMatrix computeKernelMatrix(SparseVector[] featureVectors, KernelMatrix kernel, int parallelism) {
+		freeze(featureVectors);
+		int[] postingLengths = computePostingLengths(featureVectors);
+		
+		// The inverted index does one multiply-add per pair of instances per shared feature, a dot product has to walk over both feature vectors.
+		double postingsWork = 0;
+		double mergeWork = 0;
+		for (int length : postingLengths) {
+			postingsWork += ((double) length) * (length + 1) / 2.0;
+			mergeWork += length;
+		}
+		mergeWork *= featureVectors.length; // each vector is walked n times
+		
+		if (postingsWork * POSTINGS_COST_FACTOR < mergeWork) {
+			return computeKernelMatrixPostings(featureVectors, kernel, postingLengths, Integer.MAX_VALUE, parallelism);
+		}
+		
+		if (parallelism <= 1 || featureVectors.length <= TILE_SIZE) {
+			for (int i = 0; i < featureVectors.length; i++) {
+				for (int j = i; j < featureVectors.length; j++) {
+					kernel.add(i, j, featureVectors[i].dot(featureVectors[j]));
+				}
+			}
+			return kernel;
+		}
+
+		int numBlocks = (featureVectors.length + TILE_SIZE - 1) / TILE_SIZE;
+		int[] blockRows = new int[numBlocks * (numBlocks + 1) / 2];
+		int[] blockCols = new int[blockRows.length];
+		int b = 0;
+		for (int i = 0; i < numBlocks; i++) {
+			for (int j = i; j < numBlocks; j++) {
+				blockRows[b] = i;
+				blockCols[b] = j;
+				b++;
+			}
+		}
+
+		AtomicLong cpuTime = new AtomicLong();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new KernelMatrixTask(featureVectors, kernel, blockRows, blockCols, 0, blockRows.length, cpuTime));
+		} finally {
+			pool.shutdown();
+		}
+		workerCPUTime.get()[0] += cpuTime.get();
+		return kernel;
+	}
+
+	/**
+	 * Compute a test kernel matrix, i.e. each row represents a test instance, each column a train instance, as is expected by e.g. LibSVM.testSVMModel.
+	 * The test feature vectors should be in the same feature space as the train feature vectors,
+	 * see {@link org.data2semantics.mustard.kernels.graphkernels.TrainTestFeatureVectorKernel}.
+	 * 
+	 * @param trainFeatureVectors
+	 * @param testFeatureVectors
+	 * @return test kernel matrix of size: testFeatureVectors.length x trainFeatureVectors.length
+	 */
+	public static double[][] computeTestKernelMatrix(SparseVector[] trainFeatureVectors, SparseVector[] testFeatureVectors) {
+		freeze(trainFeatureVectors);
+		freeze(testFeatureVectors);
+		double[][] kernel = initMatrix(testFeatureVectors.length, trainFeatureVectors.length);
+		for (int i = 0; i < testFeatureVectors.length; i++) {
+			for (int j = 0; j < trainFeatureVectors.length; j++) {
+				kernel[i][j] = testFeatureVectors[i].dot(trainFeatureVectors[j]);
+			}
+		}
+		return kernel;
+	}
+
+	/**
+	 * Compute a kernel matrix in the provided kernel array using an inverted index, i.e. per feature a list of the instances (postings) that have that feature.
+	 * Only pairs of instances that share a feature are considered, like a sparse X*X^T multiplication, which is much faster than n^2 dot products for very sparse feature vectors.
+	 * For each pair, the products are summed in the same order as in {@link SparseVector#dot(SparseVector)}, so the result is identical to {@link #computeKernelMatrix(SparseVector[], double[][])}.
+	 * 
+	 * <p>
+	 * Features that occur in more than maxPostingLength instances (hubs) would generate many pairs. These features are not put into the index, 
+	 * instead they are stored in a dense array and their contribution is added afterwards with dense dot products. 
+	 * Since this changes the order of summation, the result can differ slightly from the other methods if there are hub features.
+	 * </p>
+	 * 
+	 * <p>
+	 * The kernel matrix is assumed to be symmetric, since only entries of instances that share a feature are written.
+	 * </p>
+	 * 
+	 * @param featureVectors
+	 * @param kernel
+	 * @param maxPostingLength, features with more postings than this are treated as hubs, use Integer.MAX_VALUE to disable this
+	 * @param parallelism, the number of threads
+	 * @return
+	 */
+	public static double[][] computeKernelMatrixPostings(SparseVector[] featureVectors, double[][] kernel, int maxPostingLength, int parallelism) {
+		computeKernelMatrixPostings(featureVectors, new ArrayKernelMatrix(kernel, true), maxPostingLength, parallelism);
+		return kernel;
+	}
+
+	/**
+	 * KernelMatrix version of {@link #computeKernelMatrixPostings(SparseVector[], double[][], int, int)}, the kernel matrix should be symmetric.
+	 * 
+	 * @param featureVectors
+	 * @param kernel
+	 * @param maxPostingLength
+	 * @param parallelism
+	 * @return
+	 */
+	public static KernelMatrix computeKernelMatrixPostings(SparseVector[] featureVectors, KernelMatrix kernel, int maxPostingLength, int parallelism) {
+		freeze(featureVectors);
+		return computeKernelMatrixPostings(featureVectors, kernel, computePostingLengths(featureVectors), maxPostingLength, parallelism);
+	}
+
+	private static KernelMatrix computeKernelMatrixPostings(SparseVector[] featureVectors, KernelMatrix kernel, int[] postingLengths, int maxPostingLength, int parallelism) {
+		int numFeatures = postingLengths.length;
+		
+		// Hubs get a column in a dense array, the other features get a posting list
+		int[] hubColumns = new int[numFeatures];
+		int numHubs = 0;
+		int[] starts = new int[numFeatures + 1];
+		for (int f = 0; f < numFeatures; f++) {
+			if (postingLengths[f] > maxPostingLength) {
+				hubColumns[f] = numHubs++;
+				starts[f + 1] = starts[f];
+			} else {
+				hubColumns[f] = -1;
+				starts[f + 1] = starts[f] + postingLengths[f];
+			}
+		}
+		
+		int[] docs = new int[starts[numFeatures]];
+		double[] vals = new double[docs.length];
+		double[][] hubValues = (numHubs > 0) ? new double[featureVectors.length][numHubs] : null;
+		int[] fill = Arrays.copyOf(starts, numFeatures);
+		
+		// Postings are added in instance order, so each posting list is sorted
 		for (int i = 0; i < featureVectors.length; i++) {
-			for (int j = i; j < featureVectors.length; j++) {
-				kernel[i][j] += featureVectors[i].dot(featureVectors[j]);
-				kernel[j][i] = kernel[i][j];
+			for (SparseVector.IndexIterator it = featureVectors[i].getIndices(); it.hasNext();) {
+				int f = it.next();
+				if (hubColumns[f] >= 0) {
+					hubValues[i][hubColumns[f]] = it.value();
+				} else {
+					docs[fill[f]] = i;
+					vals[fill[f]] = it.value();
+					fill[f]++;
+				}
 			}
 		}
+		
+		PostingsTask task = new PostingsTask(featureVectors, kernel, starts, docs, vals, hubValues, 0, featureVectors.length);
+		if (parallelism <= 1 || featureVectors.length <= TILE_SIZE) {
+			task.compute();
+		} else {
+			AtomicLong cpuTime = new AtomicLong();
+			task.cpuTime = cpuTime;
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pool.invoke(task);
+			} finally {
+				pool.shutdown();
+			}
+			workerCPUTime.get()[0] += cpuTime.get();
+		}
 		return kernel;
 	}
+	
+	/**
+	 * Count for each feature the number of feature vectors that contain it
+	 */
+	private static int[] computePostingLengths(SparseVector[] featureVectors) {
+		int numFeatures = 0;
+		for (SparseVector fv : featureVectors) {
+			for (SparseVector.IndexIterator it = fv.getIndices(); it.hasNext();) {
+				numFeatures = Math.max(numFeatures, it.next() + 1);
+			}
+		}
+		int[] lengths = new int[numFeatures];
+		for (SparseVector fv : featureVectors) {
+			for (SparseVector.IndexIterator it = fv.getIndices(); it.hasNext();) {
+				lengths[it.next()]++;
+			}
+		}
+		return lengths;
+	}
+
+	/**
+	 * Returns the CPU time in milliseconds used by the current thread, plus the CPU time used by worker threads on behalf of this thread
+	 * (e.g. in {@link #computeKernelMatrix(SparseVector[], double[][], int)}). If CPU time measurement is not supported, the wall-clock time is returned.
+	 * 
+	 * Like System.currentTimeMillis(), only the difference between two calls is meaningful.
+	 * 
+	 * @return
+	 */
+	public static long getCPUTime() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!bean.isCurrentThreadCpuTimeSupported()) {
+			return System.currentTimeMillis();
+		}
+		return (bean.getCurrentThreadCpuTime() + workerCPUTime.get()[0]) / 1000000;
+	}
+
+	/**
+	 * Computes the rows from-to (exclusive) of the kernel matrix using the posting lists, rows are split in halves until they are smaller than TILE_SIZE.
+	 * The scratch arrays of a row are taken from a queue shared by all the tasks and returned afterwards, so there is one set of them per running task instead of per TILE_SIZE rows.
+	 */
+	private static class PostingsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private SparseVector[] featureVectors;
+		private KernelMatrix kernel;
+		private int[] starts;
+		private int[] docs;
+		private double[] vals;
+		private double[][] hubValues;
+		private int from;
+		private int to;
+		private AtomicLong cpuTime;
+		private ConcurrentLinkedQueue<PostingsScratch> scratches;
+
+		public PostingsTask(SparseVector[] featureVectors, KernelMatrix kernel, int[] starts, int[] docs, double[] vals, double[][] hubValues, int from, int to) {
+			this(featureVectors, kernel, starts, docs, vals, hubValues, from, to, new ConcurrentLinkedQueue<PostingsScratch>());
+		}
+
+		private PostingsTask(SparseVector[] featureVectors, KernelMatrix kernel, int[] starts, int[] docs, double[] vals, double[][] hubValues, int from, int to,
+				ConcurrentLinkedQueue<PostingsScratch> scratches) {
+			this.featureVectors = featureVectors;
+			this.kernel = kernel;
+			this.starts = starts;
+			this.docs = docs;
+			this.vals = vals;
+			this.hubValues = hubValues;
+			this.from = from;
+			this.to = to;
+			this.scratches = scratches;
+		}
+
+		@Override
+		protected void compute() {
+			if (cpuTime != null && to - from > TILE_SIZE) {
+				int mid = (from + to) / 2;
+				PostingsTask t1 = new PostingsTask(featureVectors, kernel, starts, docs, vals, hubValues, from, mid, scratches);
+				PostingsTask t2 = new PostingsTask(featureVectors, kernel, starts, docs, vals, hubValues, mid, to, scratches);
+				t1.cpuTime = cpuTime;
+				t2.cpuTime = cpuTime;
+				invokeAll(t1, t2);
+				return;
+			}
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			boolean measure = cpuTime != null && bean.isCurrentThreadCpuTimeSupported();
+			long tic = measure ? bean.getCurrentThreadCpuTime() : 0;
+			
+			int n = featureVectors.length;
+			PostingsScratch scratch = scratches.poll();
+			if (scratch == null) {
+				scratch = new PostingsScratch(n);
+			}
+			double[] acc = scratch.acc;
+			boolean[] touched = scratch.touched;
+			int[] touchedList = scratch.touchedList;
+			
+			for (int i = from; i < to; i++) {
+				int numTouched = 0;
+				for (SparseVector.IndexIterator it = featureVectors[i].getIndices(); it.hasNext();) {
+					int f = it.next();
+					if (starts[f] == starts[f + 1]) { // an empty posting list means it is a hub, otherwise it contains at least i
+						continue;
+					}
+					double value = it.value();
+					// only the pairs (i,j) with j >= i, the list is sorted and contains i
+					for (int k = Arrays.binarySearch(docs, starts[f], starts[f + 1], i); k < starts[f + 1]; k++) {
+						int j = docs[k];
+						if (!touched[j]) {
+							touched[j] = true;
+							touchedList[numTouched++] = j;
+						}
+						acc[j] += value * vals[k];
+					}
+				}
+				for (int t = 0; t < numTouched; t++) {
+					int j = touchedList[t];
+					kernel.add(i, j, acc[j]);
+					acc[j] = 0;
+					touched[j] = false;
+				}
+				if (hubValues != null) {
+					for (int j = i; j < n; j++) {
+						double sum = dotProduct(hubValues[i], hubValues[j]);
+						if (sum != 0) {
+							kernel.add(i, j, sum);
+						}
+					}
+				}
+			}
+			scratches.add(scratch); // acc and touched are all reset again
+			if (measure) {
+				cpuTime.addAndGet(bean.getCurrentThreadCpuTime() - tic);
+			}
+		}
+	}
+
+	/**
+	 * The per row accumulator of a PostingsTask, with the list of the touched entries, so that only these have to be reset
+	 */
+	private static class PostingsScratch {
+		private double[] acc;
+		private boolean[] touched;
+		private int[] touchedList;
+
+		PostingsScratch(int n) {
+			acc = new double[n];
+			touched = new boolean[n];
+			touchedList = new int[n];
+		}
+	}
+
+	private static class KernelMatrixTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private SparseVector[] featureVectors;
+		private KernelMatrix kernel;
+		private int[] blockRows;
+		private int[] blockCols;
+		private int from;
+		private int to;
+		private AtomicLong cpuTime;
+
+		public KernelMatrixTask(SparseVector[] featureVectors, KernelMatrix kernel, int[] blockRows, int[] blockCols, int from, int to, AtomicLong cpuTime) {
+			this.featureVectors = featureVectors;
+			this.kernel = kernel;
+			this.blockRows = blockRows;
+			this.blockCols = blockCols;
+			this.from = from;
+			this.to = to;
+			this.cpuTime = cpuTime;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) / 2;
+				invokeAll(new KernelMatrixTask(featureVectors, kernel, blockRows, blockCols, from, mid, cpuTime),
+						new KernelMatrixTask(featureVectors, kernel, blockRows, blockCols, mid, to, cpuTime));
+				return;
+			}
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			boolean measure = bean.isCurrentThreadCpuTimeSupported();
+			long tic = measure ? bean.getCurrentThreadCpuTime() : 0;
+
+			int rowEnd = Math.min((blockRows[from] + 1) * TILE_SIZE, featureVectors.length);
+			int colStart = blockCols[from] * TILE_SIZE;
+			int colEnd = Math.min(colStart + TILE_SIZE, featureVectors.length);
+
+			for (int i = blockRows[from] * TILE_SIZE; i < rowEnd; i++) {
+				for (int j = Math.max(i, colStart); j < colEnd; j++) {
+					kernel.add(i, j, featureVectors[i].dot(featureVectors[j]));
+				}
+			}
+			if (measure) {
+				cpuTime.addAndGet(bean.getCurrentThreadCpuTime() - tic);
+			}
+		}
+	}
 
 
 	// Privates 	
@@ -258,7 +743,7 @@ public class KernelUtils {
 
 	
 	/**
-	 * Create a String label for a given Kernel by using the Class name and the primitive fields
+	 * Create a String label for a given Kernel by using the Class name and the primitive fields, fields annotated with {@link ExcludeFromLabel} are skipped
 	 * 
 	 * @param kernel
 	 * @return label
@@ -269,6 +754,9 @@ public class KernelUtils {
 		sb.append(kernel.getClass().getSimpleName());
 
 		for (Field field : kernel.getClass().getDeclaredFields()) {
+			if (field.isAnnotationPresent(ExcludeFromLabel.class)) { // not a parameter of the kernel
+				continue;
+			}
 			field.setAccessible(true);
 			try {
 				if (field.getType().isPrimitive() || field.get(kernel) instanceof int[] || field.get(kernel) instanceof double[]) { // we also want parameter arrays, for now int[] and double[]
@@ -0,0 +1,19 @@
+package org.data2semantics.mustard.kernels;
+
+
+/**
+ * Interface for kernels that can compute their kernel matrix with multiple threads, see {@link KernelUtils#computeKernelMatrix(SparseVector[], double[][], int)}.
+ * The computed kernel matrix does not depend on the number of threads.
+ * 
+ * @author Gerben
+ *
+ */
+public interface ParallelKernel {
+	
+	/**
+	 * Set the number of threads used to compute the kernel matrix, the default is 1, i.e. the matrix is computed in the calling thread.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism);
+}
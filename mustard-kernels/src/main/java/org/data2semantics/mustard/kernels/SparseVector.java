@@ -1,228 +1,460 @@
 package org.data2semantics.mustard.kernels;
 
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 
 /**
  * <p>
- * Class implementing a Sparse Vector using an internal TreeMap, for long sparse vectors this significantly improves the computation time of a dot-product over the naive approach
+ * Class implementing a Sparse Vector using primitive arrays. The vector has two states:
+ * <ul>
+ * <li>a mutable state, in which the values are stored in an open addressing int to double hash table, this is efficient for accumulating values, e.g. with {@link #addValue(int, double)}</li>
+ * <li>a frozen state, in which the values are stored in two arrays sorted on index, this is efficient for dot products and iterating over the indices</li>
+ * </ul>
+ * A vector is frozen explicitly with {@link #freeze()}, once it is built. Setting a new index in a frozen vector thaws it again.
+ * Reading methods, such as {@link #dot(SparseVector)} and {@link #getIndices()}, never change the state of a vector, so vectors can be read from multiple threads.
+ * On a vector that is not frozen they work on a sorted copy, which is created on every call, so vectors that are read often should be frozen first.
+ * Setting/getting the value of an index that is already present does not change the state.
  * </p>
  * <p>
- * Note that SparseVector's start at index 0. Therefore a newly created SparseVector has lastIndex == -1. 
+ * Note that SparseVector's start at index 0. Therefore a newly created SparseVector has lastIndex == -1.
  * The length of the SparseVector is lastIndex + 1 (if lastIndex is correctly set by the calling code).
  * </p>
- * 
- * 
+ *
+ *
  * @author Gerben
  */
 public class SparseVector {
-	private TreeMap<Integer, Double> vector;
+	private static final int INIT_CAPACITY = 8;
+
+	// mutable state, open addressing hash table
+	private int[] keys;
+	private double[] vals;
+	private boolean[] used;
+
+	// frozen state, sorted arrays
 	private int[] indices;
 	private double[] values;
+
+	private int size;
 	private int lastIndex;
-	
-	private boolean converted;
-	
+	private boolean frozen;
+
 	public SparseVector() {
-		vector = new TreeMap<Integer,Double>();
-		converted = false;
+		keys = new int[INIT_CAPACITY];
+		vals = new double[INIT_CAPACITY];
+		used = new boolean[INIT_CAPACITY];
+		size = 0;
+		frozen = false;
 		lastIndex = -1;
 	}
-	
+
+	/**
+	 * Create a frozen copy of v, v itself is not changed
+	 * 
+	 * @param v
+	 */
 	public SparseVector(SparseVector v) {
-		this();
-		for (int i : v.getIndices()) {
-			setValue(i, v.getValue(i));
+		if (v.frozen) {
+			this.indices = Arrays.copyOf(v.indices, v.size);
+			this.values = Arrays.copyOf(v.values, v.size);
+		} else {
+			this.indices = v.sortedKeys();
+			this.values = new double[v.size];
+			for (int i = 0; i < v.size; i++) {
+				this.values[i] = v.vals[v.find(this.indices[i])];
+			}
 		}
+		this.size = v.size;
+		this.frozen = true;
 		this.lastIndex = v.getLastIndex();
 	}
-	
-	
+
+
 	/**
 	 * Add the Sparsevector v to this vector in the form of a concatenation, i.e. the first index of v is the lastindex of this vector + 1.
-	 * 
+	 *
 	 * @param v
 	 */
 	public void addVector(SparseVector v) {
 		if (this.size() > 0 && lastIndex == -1) {
 			throw new RuntimeException("Vectors cannot be added. Vector is > 0, but lastIndex is not set.");
 		}
-				
-		for (int k : v.getIndices()) {
-			vector.put(k + lastIndex + 1, v.getValue(k));
+
+		for (IndexIterator it = v.getIndices(); it.hasNext();) {
+			int k = it.next();
+			setValue(k + lastIndex + 1, it.value());
 		}
 		this.lastIndex += v.getLastIndex();
-		converted = false;
 	}
-	
-	
+
+
 	/**
 	 * sum the two vectors, i.e. sum the values at the same index
-	 * 
+	 *
 	 * @param v
 	 */
 	public void sumVector(SparseVector v) {
-		for (int i : v.getIndices()) {
-			setValue(i, getValue(i) + v.getValue(i));
+		for (IndexIterator it = v.getIndices(); it.hasNext();) {
+			int i = it.next();
+			addValue(i, it.value());
 		}
 		this.lastIndex = Math.max(lastIndex, v.getLastIndex());
-		converted = false;
 	}
-	
+
 	/**
 	 * Multiply the vector with a scalar
-	 * 
+	 *
 	 * @param scalar
 	 */
 	public void multiplyScalar(double scalar) {
-		for (int i : vector.keySet()) {
-			vector.put(i, vector.get(i) * scalar);
+		if (frozen) {
+			for (int i = 0; i < size; i++) {
+				values[i] *= scalar;
+			}
+		} else {
+			for (int i = 0; i < keys.length; i++) {
+				if (used[i]) {
+					vals[i] *= scalar;
+				}
+			}
 		}
-		converted = false;
 	}
-	
+
 	/**
 	 * Set the value at int index to the given double value
-	 * 
+	 *
 	 * @param index
 	 * @param value
 	 */
 	public void setValue(int index, double value) {
-		vector.put(index, value);
-		converted = false;
+		if (frozen) {
+			int pos = Arrays.binarySearch(indices, 0, size, index);
+			if (pos >= 0) {
+				values[pos] = value;
+				return;
+			}
+			thaw();
+		}
+		int pos = insert(index); // not inlined, since insert() can replace the vals array
+		vals[pos] = value;
 	}
-	
+
+	/**
+	 * Add value to the value at int index, this is the preferred way to accumulate feature counts, since it requires only one lookup.
+	 *
+	 * @param index
+	 * @param value
+	 */
+	public void addValue(int index, double value) {
+		if (frozen) {
+			int pos = Arrays.binarySearch(indices, 0, size, index);
+			if (pos >= 0) {
+				values[pos] += value;
+				return;
+			}
+			thaw();
+		}
+		int pos = insert(index);
+		vals[pos] += value;
+	}
+
 	/**
 	 * Get the value at the given index
-	 * 
+	 *
 	 * @param index
 	 * @return
 	 */
 	public double getValue(int index) {
-		Double value = vector.get(index);
-		if (value != null) {
-			return value;
-		} else {
-			return 0;
+		if (frozen) {
+			int pos = Arrays.binarySearch(indices, 0, size, index);
+			return (pos >= 0) ? values[pos] : 0;
 		}
+		int pos = find(index);
+		return (pos >= 0) ? vals[pos] : 0;
 	}
-	
+
 	/**
-	 * Return all the indices that have non-zero values
-	 * 
+	 * Return an iterator over all the indices that are set (in increasing order). 
+	 * If the vector is not frozen, the iterator works on a sorted copy, values set via the iterator are also set in the vector.
+	 *
 	 * @return
 	 */
-	public Set<Integer> getIndices() {
-		return vector.keySet();
+	public IndexIterator getIndices() {
+		if (frozen) {
+			return new IndexIterator(indices, values, size, null);
+		}
+		SparseVector copy = new SparseVector(this);
+		return new IndexIterator(copy.indices, copy.values, size, this);
 	}
-	
-	
+
+
 	/**
-	 * returns the number of non-zero elements in the vector (i.e. the size of the internal Map)
-	 * 
+	 * returns the number of non-zero elements in the vector (i.e. the number of indices set)
+	 *
 	 * @return
 	 */
 	public int size() {
-		return vector.size();
+		return size;
 	}
-		
+
 	/**
 	 * Get the last index used for this vector. Note that the value at this index can be zero.
 	 * Also, since the implementation is sparse, the last index value has to be set by hand (by the setLastIndex() method).
-	 * 
+	 *
 	 * @return
 	 */
 	public int getLastIndex() {
 		return lastIndex;
 	}
 
-	
+
 	/**
-	 * Set the value of last index that is potentially used (can be 0 for this specific SparseVector). 
+	 * Set the value of last index that is potentially used (can be 0 for this specific SparseVector).
 	 * Note that the SparseVector does not do this itself, this is the responsibility of the user of the code
 	 * Needed when we want to use {@link addVector()}.
-	 * 
+	 *
 	 * @param lastIndex
 	 */
 	public void setLastIndex(int lastIndex) {
 		this.lastIndex = lastIndex;
 	}
 
-	
+
 	/**
-	 * compute the dot product with the SparseVector v2
-	 * 
+	 * compute the dot product with the SparseVector v2, neither vector is changed
+	 *
 	 * @param v2
 	 * @return
 	 */
 	public double dot(SparseVector v2) {
-		int i = 0, j = 0;
-		double ret = 0;
-		
-		if (!converted) {
-			convert2Arrays();
+		if (!frozen) {
+			return new SparseVector(this).dot(v2);
 		}
-		if (!v2.converted) {
-			v2.convert2Arrays();
+		if (!v2.frozen) {
+			return dot(new SparseVector(v2));
 		}
-		
-		while (i < indices.length && j < v2.indices.length) {
-			if (indices[i] > v2.indices[j]) {
+		int i = 0, j = 0;
+		double ret = 0;
+
+		int[] indices2 = v2.indices;
+		double[] values2 = v2.values;
+		int size2 = v2.size;
+
+		while (i < size && j < size2) {
+			if (indices[i] > indices2[j]) {
 				j++;
-			} else if (indices[i] < v2.indices[j]) {
+			} else if (indices[i] < indices2[j]) {
 				i++;
 			} else {
-				ret += values[i] * v2.values[j];
+				ret += values[i] * values2[j];
 				i++;
 				j++;
-			}		
+			}
 		}
 		return ret;
-	}	
-	
+	}
+
+	/**
+	 * Convert the vector to its frozen state, i.e. sorted index and value arrays, the hash table is released.
+	 * Does nothing if the vector is already frozen.
+	 */
+	public void freeze() {
+		if (frozen) {
+			return;
+		}
+		int[] sortedKeys = sortedKeys();
+		double[] sortedValues = new double[size];
+		for (int i = 0; i < size; i++) {
+			sortedValues[i] = vals[find(sortedKeys[i])];
+		}
+
+		indices = sortedKeys;
+		values = sortedValues;
+		keys = null;
+		vals = null;
+		used = null;
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Kept for compatibility, the frozen representation is always up to date, so this method has no effect.
+	 */
 	public void clearConversion() {
-		converted = false;
+	}
+
+	private int[] sortedKeys() {
+		int[] sortedKeys = new int[size];
+		int j = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (used[i]) {
+				sortedKeys[j++] = keys[i];
+			}
+		}
+		Arrays.sort(sortedKeys);
+		return sortedKeys;
+	}
+
+	private void thaw() {
+		int capacity = INIT_CAPACITY;
+		while (capacity < size * 2) {
+			capacity *= 2;
+		}
+		keys = new int[capacity];
+		vals = new double[capacity];
+		used = new boolean[capacity];
+
+		int oldSize = size;
+		size = 0;
+		for (int i = 0; i < oldSize; i++) {
+			int pos = insert(indices[i]);
+			vals[pos] = values[i];
+		}
 		indices = null;
 		values = null;
+		frozen = false;
 	}
-	
-	private void convert2Arrays() {
-		indices = new int[vector.size()];
-		values = new double[vector.size()];
-		
-		int i = 0;
-		for (int key : vector.keySet()) {
-			indices[i] = key;
-			values[i] = vector.get(key);
-			i++;
+
+	/**
+	 * Find the position of index in the hash table, returns -1 if it is not present.
+	 */
+	private int find(int index) {
+		int mask = keys.length - 1;
+		int pos = hash(index) & mask;
+		while (used[pos]) {
+			if (keys[pos] == index) {
+				return pos;
+			}
+			pos = (pos + 1) & mask;
 		}
-		converted = true;
+		return -1;
 	}
-	
+
+	/**
+	 * Find the position of index in the hash table, it is inserted with value 0 if it is not present.
+	 */
+	private int insert(int index) {
+		int mask = keys.length - 1;
+		int pos = hash(index) & mask;
+		while (used[pos]) {
+			if (keys[pos] == index) {
+				return pos;
+			}
+			pos = (pos + 1) & mask;
+		}
+		if ((size + 1) * 2 > keys.length) {
+			rehash();
+			return insert(index);
+		}
+		used[pos] = true;
+		keys[pos] = index;
+		vals[pos] = 0;
+		size++;
+		return pos;
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		double[] oldVals = vals;
+		boolean[] oldUsed = used;
+
+		keys = new int[oldKeys.length * 2];
+		vals = new double[oldKeys.length * 2];
+		used = new boolean[oldKeys.length * 2];
+		int mask = keys.length - 1;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int pos = hash(oldKeys[i]) & mask;
+				while (used[pos]) {
+					pos = (pos + 1) & mask;
+				}
+				used[pos] = true;
+				keys[pos] = oldKeys[i];
+				vals[pos] = oldVals[i];
+			}
+		}
+	}
+
+	private static int hash(int index) {
+		int h = index * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder res = new StringBuilder();
-		
-		for (int key : vector.keySet()) {
-			res.append(key +  ":" + vector.get(key) + ", ");
+
+		for (IndexIterator it = getIndices(); it.hasNext();) {
+			int key = it.next();
+			res.append(key +  ":" + it.value() + ", ");
 		}
 		return res.toString();
 	}
-	
-	
-	/*
-	svm_node[] convert2svmNodes() {
-		svm_node[] ret = new svm_node[vector.size()];
-		
-		int i = 0;
-		for (int key : vector.keySet()) {
-			ret[i] = new svm_node();
-			ret[i].index = key;
-			ret[i].value = vector.get(key);
-			i++;
+
+
+	/**
+	 * Iterator over the indices of a SparseVector in increasing order, without boxing.
+	 * The value belonging to the last returned index is available via {@link #value()}, so that no extra lookup is needed.
+	 *
+	 * <p>
+	 * Note that the iterator works on the arrays of the vector at the time of its creation. Setting the value of an existing index is seen by the iterator,
+	 * but adding a new index to the vector is not.
+	 * </p>
+	 *
+	 * @author Gerben
+	 *
+	 */
+	public static class IndexIterator {
+		private final int[] indices;
+		private final double[] values;
+		private final int size;
+		private final SparseVector unfrozen; // the vector, if the arrays are a sorted copy of a vector that is not frozen
+		private int current;
+
+		private IndexIterator(int[] indices, double[] values, int size, SparseVector unfrozen) {
+			this.indices = indices;
+			this.values = values;
+			this.size = size;
+			this.unfrozen = unfrozen;
+			this.current = -1;
+		}
+
+		public boolean hasNext() {
+			return current + 1 < size;
+		}
+
+		public int next() {
+			return indices[++current];
+		}
+
+		/**
+		 * @return the value belonging to the index last returned by {@link #next()}
+		 */
+		public double value() {
+			return values[current];
+		}
+
+		/**
+		 * Set the value belonging to the index last returned by {@link #next()}
+		 *
+		 * @param value
+		 */
+		public void setValue(double value) {
+			values[current] = value;
+			if (unfrozen != null) {
+				unfrozen.setValue(indices[current], value);
+			}
+		}
+
+		/**
+		 * @return the total number of indices of this iterator
+		 */
+		public int size() {
+			return size;
 		}
-		return ret;
 	}
-	*/
 }
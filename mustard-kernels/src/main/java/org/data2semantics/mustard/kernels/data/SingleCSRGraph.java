@@ -0,0 +1,53 @@
+package org.data2semantics.mustard.kernels.data;
+
+import org.data2semantics.mustard.simplegraph.CSRGraph;
+import org.nodes.DTNode;
+
+
+/**
+ * Class to represent graph data as one (RDF) graph in the compact {@link CSRGraph} format, with the ids of the instance nodes in that graph.
+ * This is the compact alternative to {@link SingleDTGraph}, for large graphs.
+ *
+ * @author Gerben
+ *
+ */
+public class SingleCSRGraph implements GraphData {
+	private CSRGraph graph;
+	private int[] instances;
+
+	public SingleCSRGraph(CSRGraph graph, int[] instances) {
+		super();
+		this.graph = graph;
+		this.instances = instances;
+	}
+
+	/**
+	 * Convert a SingleDTGraph, note that the DTGraph can be garbage collected afterwards.
+	 *
+	 * @param data
+	 */
+	public SingleCSRGraph(SingleDTGraph data) {
+		this.graph = CSRGraph.fromDTGraph(data.getGraph());
+		this.instances = new int[data.numInstances()];
+		int i = 0;
+		for (DTNode<String,String> instance : data.getInstances()) {
+			instances[i++] = instance.index();
+		}
+	}
+
+	public CSRGraph getGraph() {
+		return graph;
+	}
+
+	public int[] getInstances() {
+		return instances;
+	}
+
+	/**
+	 * returns the size of the instances array.
+	 *
+	 */
+	public int numInstances() {
+		return instances.length;
+	}
+}
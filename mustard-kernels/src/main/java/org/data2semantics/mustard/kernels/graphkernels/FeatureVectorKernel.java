@@ -8,7 +8,7 @@ import org.data2semantics.mustard.kernels.data.GraphData;
 /**
  * Interface describing a FeatureVectorKernel. Such kernel's should be able to compute SparseVector on the input data (instead of a kernel matrix).
  * 
- * TODO add computeFV method for train and test split
+ * For a train and test split, see {@link TrainTestFeatureVectorKernel}.
  * 
  * @author Gerben
  *
@@ -22,5 +22,4 @@ public interface FeatureVectorKernel<G extends GraphData> extends Kernel {
 	 * @return
 	 */
 	public SparseVector[] computeFeatureVectors(G data);
-	//public SparseVector[] computeFeatureVectors(List<G> trainGraphs, List<G> testGraphs);
 }
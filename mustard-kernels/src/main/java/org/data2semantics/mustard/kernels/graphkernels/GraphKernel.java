@@ -6,7 +6,7 @@ import org.data2semantics.mustard.kernels.data.GraphData;
 /**
  * GraphKernel interface
  * 
- * TODO add compute for train and test split
+ * For a train and test split, see {@link TrainTestGraphKernel}.
  * 
  */
 public interface GraphKernel<G extends GraphData> extends Kernel {
@@ -19,6 +19,5 @@ public interface GraphKernel<G extends GraphData> extends Kernel {
 	 * @return
 	 */
 	public double[][] compute(G data);
-	//public double[][] compute(List<G> trainGraphs, List<G> testGraphs);
 	
 }
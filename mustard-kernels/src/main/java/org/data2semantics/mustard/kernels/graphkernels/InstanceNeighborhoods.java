@@ -0,0 +1,421 @@
+package org.data2semantics.mustard.kernels.graphkernels;
+
+import java.util.Arrays;
+
+/**
+ * The neighborhoods up to a depth of the instances in a graph, computed with one multi-source breadth first search for all the instances together,
+ * instead of one search per instance. This class contains the search, the subclasses provide the graph, i.e. the vertices/links with int ids and the out links of a vertex,
+ * see {@link org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphNeighborhoods} and {@link org.data2semantics.mustard.kernels.graphkernels.csrgraph.CSRGraphNeighborhoods}.
+ *
+ * <p>
+ * The search propagates, one level at a time, a bit set of instances for each vertex in the frontier. Vertex v is in the frontier of level L for an instance,
+ * if v can be reached with a walk of length L from that instance. Since the bit sets are OR-ed, each vertex and link is processed once per level,
+ * regardless of how many instances share it, e.g. via hubs. The instances are searched in blocks of 64, so that a bit set is one long.
+ * </p>
+ *
+ * <p>
+ * The result is the same as with a per instance search: for each vertex/link the depths (depth = depth - L, the root is at depth = depth) at which it occurs are stored as a bit mask,
+ * and for each instance the (vertex, depth) and (link, depth) pairs of its neighborhood are stored in int arrays, with the first encounter (highest depth) per vertex/link,
+ * or the last (lowest depth) if lowestDepth is true.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public abstract class InstanceNeighborhoods {
+	public static final int MAX_DEPTH = 30; // depths are stored as bits in an int
+	private static final int BLOCK_SIZE = 64; // instances per search, i.e. the bits in a long
+
+	private int depth;
+	private boolean lowestDepth;
+
+	private int numVertices;
+	private int numLinks;
+	private int[] vertexDepths;
+	private int[] linkDepths;
+	private int[] firstInstance; // lowest instance index that has the vertex in its neighborhood
+	private int[] instanceRoots;
+
+	private int[] instanceVertexStarts;
+	private int[] instanceVertexIds;
+	private int[] instanceVertexDepths;
+	private int[] instanceLinkStarts;
+	private int[] instanceLinkIds;
+	private int[] instanceLinkDepths;
+
+	// state of the search
+	private int[] frontPos; // position of a vertex in the current frontier
+	private int[] frontStamp; // stamp of the frontier a vertex was last added to
+	private int stamp;
+	private int[] seen; // last instance for which a vertex/link was recorded, and the position of that record
+	private int[] seenPos;
+	private int[] seenLink;
+	private int[] seenLinkPos;
+
+	/**
+	 * @param depth
+	 * @param lowestDepth, if true the lowest depth encounter of a vertex/link is used for an instance, otherwise the highest
+	 */
+	protected InstanceNeighborhoods(int depth, boolean lowestDepth) {
+		if (depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("Depth should be <= " + MAX_DEPTH + ", but is: " + depth);
+		}
+		this.depth = depth;
+		this.lowestDepth = lowestDepth;
+
+		vertexDepths = new int[16];
+		firstInstance = new int[16];
+		frontPos = new int[16];
+		frontStamp = new int[16];
+		seen = new int[16];
+		seenPos = new int[16];
+		linkDepths = new int[16];
+		seenLink = new int[16];
+		seenLinkPos = new int[16];
+	}
+
+	/**
+	 * The first out link of vertex v is outLink(outStart(v)). This is called before the out links of v are used, so vertices/links can be added lazily here.
+	 */
+	protected abstract int outStart(int v);
+
+	protected abstract int outEnd(int v);
+
+	protected abstract int outLink(int k);
+
+	public abstract int linkFrom(int e);
+
+	public abstract int linkTo(int e);
+
+	/**
+	 * Add a vertex, the ids are consecutive, starting at 0.
+	 *
+	 * @return the id of the new vertex
+	 */
+	protected int addVertex() {
+		int v = numVertices++;
+		if (v == vertexDepths.length) {
+			vertexDepths = Arrays.copyOf(vertexDepths, v * 2);
+			firstInstance = Arrays.copyOf(firstInstance, v * 2);
+			frontPos = Arrays.copyOf(frontPos, v * 2);
+			frontStamp = Arrays.copyOf(frontStamp, v * 2);
+			seen = Arrays.copyOf(seen, v * 2);
+			seenPos = Arrays.copyOf(seenPos, v * 2);
+		}
+		firstInstance[v] = Integer.MAX_VALUE;
+		seen[v] = -1;
+		return v;
+	}
+
+	/**
+	 * Add a link, the ids are consecutive, starting at 0.
+	 *
+	 * @return the id of the new link
+	 */
+	protected int addLink() {
+		int e = numLinks++;
+		if (e == linkDepths.length) {
+			linkDepths = Arrays.copyOf(linkDepths, e * 2);
+			seenLink = Arrays.copyOf(seenLink, e * 2);
+			seenLinkPos = Arrays.copyOf(seenLinkPos, e * 2);
+		}
+		seenLink[e] = -1;
+		return e;
+	}
+
+	/**
+	 * Compute the neighborhoods of the instances, given by the ids of their root vertices.
+	 *
+	 * @param roots
+	 */
+	protected void search(int[] roots) {
+		instanceRoots = roots;
+		instanceVertexStarts = new int[roots.length + 1];
+		instanceVertexIds = new int[16];
+		instanceVertexDepths = new int[16];
+		instanceLinkStarts = new int[roots.length + 1];
+		instanceLinkIds = new int[16];
+		instanceLinkDepths = new int[16];
+
+		// The instances are searched in blocks, so that the bit set of instances of a vertex is one long
+		for (int start = 0; start < roots.length; start += BLOCK_SIZE) {
+			searchBlock(start, Math.min(start + BLOCK_SIZE, roots.length));
+		}
+
+		vertexDepths = Arrays.copyOf(vertexDepths, numVertices);
+		firstInstance = Arrays.copyOf(firstInstance, numVertices);
+		linkDepths = Arrays.copyOf(linkDepths, numLinks);
+		instanceVertexIds = Arrays.copyOf(instanceVertexIds, instanceVertexStarts[roots.length]);
+		instanceVertexDepths = Arrays.copyOf(instanceVertexDepths, instanceVertexStarts[roots.length]);
+		instanceLinkIds = Arrays.copyOf(instanceLinkIds, instanceLinkStarts[roots.length]);
+		instanceLinkDepths = Arrays.copyOf(instanceLinkDepths, instanceLinkStarts[roots.length]);
+
+		// the search state is not needed anymore
+		frontPos = null;
+		frontStamp = null;
+		seen = null;
+		seenPos = null;
+		seenLink = null;
+		seenLinkPos = null;
+	}
+
+	/**
+	 * Multi-source search for the instances [start, end), with bit i - start set in the bit set of a vertex/link for instance i.
+	 */
+	private void searchBlock(int start, int end) {
+		// Per level, the frontier vertices/links and their bit sets of instances
+		int[][] levelVertices = new int[depth + 1][];
+		long[][] levelVertexBits = new long[depth + 1][];
+		int[] levelVertexSizes = new int[depth + 1];
+		int[][] levelLinks = new int[depth + 1][];
+		long[][] levelLinkBits = new long[depth + 1][];
+		int[] levelLinkSizes = new int[depth + 1]; // level 0 has no links
+
+		// Level 0, the roots
+		stamp++;
+		levelVertices[0] = new int[end - start];
+		levelVertexBits[0] = new long[end - start];
+		for (int i = start; i < end; i++) {
+			int v = instanceRoots[i];
+			if (frontStamp[v] != stamp) {
+				frontStamp[v] = stamp;
+				frontPos[v] = levelVertexSizes[0]++;
+				levelVertices[0][frontPos[v]] = v;
+			}
+			levelVertexBits[0][frontPos[v]] |= 1L << (i - start);
+		}
+
+		// The other levels, the bit set of a vertex is the OR of the bit sets of the from vertices of its in links at the previous level
+		for (int level = 1; level <= depth; level++) {
+			int[] front = levelVertices[level - 1];
+			long[] frontBits = levelVertexBits[level - 1];
+			int[] newFront = new int[16];
+			long[] newFrontBits = new long[16];
+			int newFrontSize = 0;
+			int[] frontLinks = new int[16];
+			long[] frontLinkBits = new long[16];
+			int numFrontLinks = 0;
+			stamp++;
+
+			for (int f = 0; f < levelVertexSizes[level - 1]; f++) {
+				for (int k = outStart(front[f]); k < outEnd(front[f]); k++) {
+					int e = outLink(k);
+					if (numFrontLinks == frontLinks.length) {
+						frontLinks = Arrays.copyOf(frontLinks, numFrontLinks * 2);
+						frontLinkBits = Arrays.copyOf(frontLinkBits, numFrontLinks * 2);
+					}
+					frontLinks[numFrontLinks] = e;
+					frontLinkBits[numFrontLinks++] = frontBits[f];
+
+					int to = linkTo(e);
+					if (frontStamp[to] != stamp) {
+						frontStamp[to] = stamp;
+						if (newFrontSize == newFront.length) {
+							newFront = Arrays.copyOf(newFront, newFrontSize * 2);
+							newFrontBits = Arrays.copyOf(newFrontBits, newFrontSize * 2);
+						}
+						frontPos[to] = newFrontSize;
+						newFront[newFrontSize++] = to;
+					}
+					newFrontBits[frontPos[to]] |= frontBits[f];
+				}
+			}
+			levelVertices[level] = newFront;
+			levelVertexBits[level] = newFrontBits;
+			levelVertexSizes[level] = newFrontSize;
+			levelLinks[level] = frontLinks;
+			levelLinkBits[level] = frontLinkBits;
+			levelLinkSizes[level] = numFrontLinks;
+		}
+
+		// Depth bit masks and lowest instance index
+		for (int level = 0; level <= depth; level++) {
+			for (int f = 0; f < levelVertexSizes[level]; f++) {
+				int v = levelVertices[level][f];
+				vertexDepths[v] |= 1 << (depth - level);
+				firstInstance[v] = Math.min(firstInstance[v], start + Long.numberOfTrailingZeros(levelVertexBits[level][f]));
+			}
+			for (int k = 0; k < levelLinkSizes[level]; k++) {
+				linkDepths[levelLinks[level][k]] |= 1 << (depth - level);
+			}
+		}
+
+		// Collect the (vertex/link, level) records per instance, in level order, and keep one per vertex/link
+		int[] vertexCounts = new int[end - start + 1];
+		int[] linkCounts = new int[end - start + 1];
+		for (int level = 0; level <= depth; level++) {
+			countBits(levelVertexBits[level], levelVertexSizes[level], vertexCounts);
+			countBits(levelLinkBits[level], levelLinkSizes[level], linkCounts);
+		}
+		int[] recVertices = new int[prefixSum(vertexCounts)];
+		int[] recVertexLevels = new int[recVertices.length];
+		int[] recLinks = new int[prefixSum(linkCounts)];
+		int[] recLinkLevels = new int[recLinks.length];
+		for (int level = 0; level <= depth; level++) {
+			fill(levelVertices[level], levelVertexBits[level], levelVertexSizes[level], level, vertexCounts, recVertices, recVertexLevels);
+			fill(levelLinks[level], levelLinkBits[level], levelLinkSizes[level], level, linkCounts, recLinks, recLinkLevels);
+		}
+		// after fill, counts[i] is the end of the records of instance start + i, and the start of instance start + i + 1
+
+		for (int i = start; i < end; i++) {
+			int recStart = (i == start) ? 0 : vertexCounts[i - start - 1];
+			int size = instanceVertexStarts[i];
+			if (size + vertexCounts[i - start] - recStart > instanceVertexIds.length) {
+				instanceVertexIds = Arrays.copyOf(instanceVertexIds, Math.max(instanceVertexIds.length * 2, size + vertexCounts[i - start] - recStart));
+				instanceVertexDepths = Arrays.copyOf(instanceVertexDepths, instanceVertexIds.length);
+			}
+			instanceVertexStarts[i + 1] = dedup(i, recVertices, recVertexLevels, recStart, vertexCounts[i - start], seen, seenPos, instanceVertexIds, instanceVertexDepths, size);
+
+			recStart = (i == start) ? 0 : linkCounts[i - start - 1];
+			size = instanceLinkStarts[i];
+			if (size + linkCounts[i - start] - recStart > instanceLinkIds.length) {
+				instanceLinkIds = Arrays.copyOf(instanceLinkIds, Math.max(instanceLinkIds.length * 2, size + linkCounts[i - start] - recStart));
+				instanceLinkDepths = Arrays.copyOf(instanceLinkDepths, instanceLinkIds.length);
+			}
+			instanceLinkStarts[i + 1] = dedup(i, recLinks, recLinkLevels, recStart, linkCounts[i - start], seenLink, seenLinkPos, instanceLinkIds, instanceLinkDepths, size);
+		}
+	}
+
+	/**
+	 * Add the number of set bits per bit position to counts, which are offset by one, i.e. counts[b+1] is the count for bit b
+	 */
+	private static void countBits(long[] bits, int size, int[] counts) {
+		for (int f = 0; f < size; f++) {
+			for (long x = bits[f]; x != 0; x &= x - 1) {
+				counts[Long.numberOfTrailingZeros(x) + 1]++;
+			}
+		}
+	}
+
+	private static int prefixSum(int[] counts) {
+		for (int i = 1; i < counts.length; i++) {
+			counts[i] += counts[i - 1];
+		}
+		return counts[counts.length - 1];
+	}
+
+	/**
+	 * Add a record for each set bit, positions are the running fill positions per bit
+	 */
+	private static void fill(int[] ids, long[] bits, int size, int level, int[] positions, int[] recIds, int[] recLevels) {
+		for (int f = 0; f < size; f++) {
+			for (long x = bits[f]; x != 0; x &= x - 1) {
+				int b = Long.numberOfTrailingZeros(x);
+				recIds[positions[b]] = ids[f];
+				recLevels[positions[b]++] = level;
+			}
+		}
+	}
+
+	/**
+	 * Copy the records [recStart, recEnd) of instance i to out, keeping one record per id (the first, or the last if lowestDepth), with levels converted to depths.
+	 *
+	 * @return the new size of out
+	 */
+	private int dedup(int i, int[] recIds, int[] recLevels, int recStart, int recEnd, int[] seenIds, int[] seenIdPos, int[] outIds, int[] outDepths, int size) {
+		for (int k = recStart; k < recEnd; k++) {
+			int id = recIds[k];
+			if (seenIds[id] != i) {
+				seenIds[id] = i;
+				seenIdPos[id] = size;
+				outIds[size] = id;
+				outDepths[size++] = depth - recLevels[k];
+			} else if (lowestDepth) {
+				outDepths[seenIdPos[id]] = depth - recLevels[k];
+			}
+		}
+		return size;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public int numInstances() {
+		return instanceRoots.length;
+	}
+
+	/**
+	 * @return number of vertices
+	 */
+	public int numVertices() {
+		return numVertices;
+	}
+
+	/**
+	 * @return number of links
+	 */
+	public int numLinks() {
+		return numLinks;
+	}
+
+	/**
+	 * @param v
+	 * @return bit mask of the depths at which vertex v is included, 0 if it is in no neighborhood
+	 */
+	public int vertexDepths(int v) {
+		return vertexDepths[v];
+	}
+
+	/**
+	 * @param e
+	 * @return bit mask of the depths at which link e is included, 0 if it is in no neighborhood
+	 */
+	public int linkDepths(int e) {
+		return linkDepths[e];
+	}
+
+	/**
+	 * @param i
+	 * @return the vertex id of instance i
+	 */
+	public int instanceRoot(int i) {
+		return instanceRoots[i];
+	}
+
+	/**
+	 * @param v
+	 * @return the lowest index of the instances that have vertex v in their neighborhood (including as root), -1 if there is no such instance
+	 */
+	public int firstInstance(int v) {
+		return (vertexDepths[v] == 0) ? -1 : firstInstance[v];
+	}
+
+	/**
+	 * The (vertex, depth) pairs of instance i are (instanceVertex(k), instanceVertexDepth(k)) for k in [instanceVertexStart(i), instanceVertexEnd(i))
+	 */
+	public int instanceVertexStart(int i) {
+		return instanceVertexStarts[i];
+	}
+
+	public int instanceVertexEnd(int i) {
+		return instanceVertexStarts[i + 1];
+	}
+
+	public int instanceVertex(int k) {
+		return instanceVertexIds[k];
+	}
+
+	public int instanceVertexDepth(int k) {
+		return instanceVertexDepths[k];
+	}
+
+	/**
+	 * The (link, depth) pairs of instance i are (instanceLink(k), instanceLinkDepth(k)) for k in [instanceLinkStart(i), instanceLinkEnd(i))
+	 */
+	public int instanceLinkStart(int i) {
+		return instanceLinkStarts[i];
+	}
+
+	public int instanceLinkEnd(int i) {
+		return instanceLinkStarts[i + 1];
+	}
+
+	public int instanceLink(int k) {
+		return instanceLinkIds[k];
+	}
+
+	public int instanceLinkDepth(int k) {
+		return instanceLinkDepths[k];
+	}
+}
@@ -0,0 +1,35 @@
+package org.data2semantics.mustard.kernels.graphkernels;
+
+import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.data.GraphData;
+import org.data2semantics.mustard.utils.Pair;
+
+/**
+ * Interface for a {@link FeatureVectorKernel} that supports a train and test split. The feature space (i.e. the label/path dictionary) is built on the train data only, 
+ * after which it is frozen and test data is mapped into this feature space. Features of the test data that do not occur in the train data are dropped, 
+ * or hashed into a fixed number of extra features (which only affects the similarity between test instances).
+ * 
+ * This way, new instances can be featurized without recomputing the features of all the train instances.
+ * 
+ * @author Gerben
+ *
+ */
+public interface TrainTestFeatureVectorKernel<G extends GraphData> extends FeatureVectorKernel<G> {
+
+	/**
+	 * Compute the feature vectors for trainData, which fixes the feature space, and then compute the feature vectors for testData in that feature space.
+	 * 
+	 * @param trainData
+	 * @param testData
+	 * @return a pair of the train feature vectors and the test feature vectors
+	 */
+	public Pair<SparseVector[], SparseVector[]> computeFeatureVectors(G trainData, G testData);
+
+	/**
+	 * Compute the feature vectors for testData in the feature space of the last call to {@link #computeFeatureVectors(GraphData)} (or the train/test version).
+	 * 
+	 * @param testData
+	 * @return
+	 */
+	public SparseVector[] computeTestFeatureVectors(G testData);
+}
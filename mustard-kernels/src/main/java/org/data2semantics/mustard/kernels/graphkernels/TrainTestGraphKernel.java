@@ -0,0 +1,23 @@
+package org.data2semantics.mustard.kernels.graphkernels;
+
+import org.data2semantics.mustard.kernels.data.GraphData;
+import org.data2semantics.mustard.utils.Pair;
+
+/**
+ * Interface for a {@link GraphKernel} that supports a train and test split, see {@link TrainTestFeatureVectorKernel}.
+ * 
+ * @author Gerben
+ *
+ */
+public interface TrainTestGraphKernel<G extends GraphData> extends GraphKernel<G> {
+
+	/**
+	 * Compute the train kernel matrix on trainData and the test kernel matrix for testData, in which 
+	 * each row represents a test instance and each column a train instance.
+	 * 
+	 * @param trainData
+	 * @param testData
+	 * @return a pair of the train kernel matrix and the test kernel matrix
+	 */
+	public Pair<double[][], double[][]> compute(G trainData, G testData);
+}
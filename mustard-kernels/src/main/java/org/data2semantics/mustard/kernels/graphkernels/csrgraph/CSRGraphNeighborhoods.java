@@ -0,0 +1,140 @@
+package org.data2semantics.mustard.kernels.graphkernels.csrgraph;
+
+import org.data2semantics.mustard.kernels.data.SingleCSRGraph;
+import org.data2semantics.mustard.kernels.graphkernels.InstanceNeighborhoods;
+import org.data2semantics.mustard.simplegraph.CSRGraph;
+
+/**
+ * The neighborhoods of the instances in a {@link SingleCSRGraph}, computed with the multi-source search of {@link InstanceNeighborhoods}.
+ * The vertex/link ids are the node/link ids of the CSRGraph.
+ *
+ * <p>
+ * Like in the singledtgraph kernels, each node/link is included in the neighborhoods at one or more depths (the root is at depth = depth, the fringe at depth = 0).
+ * Each (node, depth) and (link, depth) pair is a slot, which has an int id. The slots of a node are numbered consecutively in increasing depth order.
+ * For each instance, the slots that belong to it are stored, i.e. for each node/link in its neighborhood, the slot of the first encounter (highest depth),
+ * or of the last encounter (lowest depth) if lowestDepth is true.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class CSRGraphNeighborhoods extends InstanceNeighborhoods {
+	private CSRGraph graph;
+
+	private int[] vertexSlotStarts;
+	private int[] linkSlotStarts;
+	private int[] instanceVertexSlots;
+	private int[] instanceLinkSlots;
+
+	/**
+	 * Compute the neighborhoods up to depth for all the instances in data.
+	 *
+	 * @param data
+	 * @param depth
+	 * @param lowestDepth, if true the lowest depth encounter of a node/link is used for an instance, otherwise the highest
+	 */
+	public CSRGraphNeighborhoods(SingleCSRGraph data, int depth, boolean lowestDepth) {
+		super(depth, lowestDepth);
+		this.graph = data.getGraph();
+
+		for (int v = 0; v < graph.numNodes(); v++) {
+			addVertex();
+		}
+		for (int e = 0; e < graph.numLinks(); e++) {
+			addLink();
+		}
+		search(data.getInstances());
+
+		// Number the slots
+		vertexSlotStarts = new int[graph.numNodes() + 1];
+		for (int v = 0; v < graph.numNodes(); v++) {
+			vertexSlotStarts[v + 1] = vertexSlotStarts[v] + Integer.bitCount(vertexDepths(v));
+		}
+		linkSlotStarts = new int[graph.numLinks() + 1];
+		for (int e = 0; e < graph.numLinks(); e++) {
+			linkSlotStarts[e + 1] = linkSlotStarts[e] + Integer.bitCount(linkDepths(e));
+		}
+
+		instanceVertexSlots = new int[instanceVertexStart(numInstances())];
+		for (int k = 0; k < instanceVertexSlots.length; k++) {
+			instanceVertexSlots[k] = vertexSlot(instanceVertex(k), instanceVertexDepth(k));
+		}
+		instanceLinkSlots = new int[instanceLinkStart(numInstances())];
+		for (int k = 0; k < instanceLinkSlots.length; k++) {
+			instanceLinkSlots[k] = linkSlot(instanceLink(k), instanceLinkDepth(k));
+		}
+	}
+
+	@Override
+	protected int outStart(int v) {
+		return graph.outStart(v);
+	}
+
+	@Override
+	protected int outEnd(int v) {
+		return graph.outEnd(v);
+	}
+
+	@Override
+	protected int outLink(int k) {
+		return graph.outLink(k);
+	}
+
+	@Override
+	public int linkFrom(int e) {
+		return graph.from(e);
+	}
+
+	@Override
+	public int linkTo(int e) {
+		return graph.to(e);
+	}
+
+	public CSRGraph getGraph() {
+		return graph;
+	}
+
+	public int numVertexSlots() {
+		return vertexSlotStarts[vertexSlotStarts.length - 1];
+	}
+
+	public int numLinkSlots() {
+		return linkSlotStarts[linkSlotStarts.length - 1];
+	}
+
+	public boolean hasVertexSlot(int vertex, int d) {
+		return d >= 0 && d <= getDepth() && (vertexDepths(vertex) & (1 << d)) != 0;
+	}
+
+	public boolean hasLinkSlot(int link, int d) {
+		return d >= 0 && d <= getDepth() && (linkDepths(link) & (1 << d)) != 0;
+	}
+
+	/**
+	 * Get the slot id of (vertex, d), assumes that this slot exists, see {@link #hasVertexSlot(int, int)}
+	 */
+	public int vertexSlot(int vertex, int d) {
+		return vertexSlotStarts[vertex] + Integer.bitCount(vertexDepths(vertex) & ((1 << d) - 1));
+	}
+
+	/**
+	 * Get the slot id of (link, d), assumes that this slot exists, see {@link #hasLinkSlot(int, int)}
+	 */
+	public int linkSlot(int link, int d) {
+		return linkSlotStarts[link] + Integer.bitCount(linkDepths(link) & ((1 << d) - 1));
+	}
+
+	/**
+	 * The vertex slots of instance i are instanceVertexSlot(k) for k in [instanceVertexStart(i), instanceVertexEnd(i))
+	 */
+	public int instanceVertexSlot(int k) {
+		return instanceVertexSlots[k];
+	}
+
+	/**
+	 * The link slots of instance i are instanceLinkSlot(k) for k in [instanceLinkStart(i), instanceLinkEnd(i))
+	 */
+	public int instanceLinkSlot(int k) {
+		return instanceLinkSlots[k];
+	}
+}
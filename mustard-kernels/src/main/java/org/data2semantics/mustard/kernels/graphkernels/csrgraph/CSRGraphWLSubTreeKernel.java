@@ -0,0 +1,288 @@
+package org.data2semantics.mustard.kernels.graphkernels.csrgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
+import org.data2semantics.mustard.kernels.FeatureInspector;
+import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
+import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.data.SingleCSRGraph;
+import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
+import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
+import org.data2semantics.mustard.simplegraph.CSRGraph;
+import org.data2semantics.mustard.weisfeilerlehman.IntLabelDictionary;
+import org.data2semantics.mustard.weisfeilerlehman.WLUtils;
+
+/**
+ * Version of {@link org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWLSubTreeKernel} on a {@link SingleCSRGraph}.
+ * The kernel computes the same kernel, but the graph, the neighborhoods of the instances (see {@link CSRGraphNeighborhoods}) and the labels 
+ * are all stored in primitive arrays, instead of objects per node/link and HashMaps, which makes it suitable for (very) large graphs.
+ * 
+ * - iterations, the number of iterations of the WL algorithm
+ * - depth, the depth of the neighborhoods of the instance nodes
+ * - reverse, which directions the labels travel (reverse=true is the natural direction)
+ * - noDuplicateSubtrees, if true, different labels describing the same subtree (in different iterations) will not occur
+ * - normalize, whether the kernel/featurevectors is/are normalized
+ * 
+ * @author Gerben
+ *
+ */
+public class CSRGraphWLSubTreeKernel implements GraphKernel<SingleCSRGraph>, FeatureVectorKernel<SingleCSRGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
+	private int depth;
+	private int iterations;
+	private boolean normalize;
+	private boolean reverse;
+	private boolean noDuplicateSubtrees;
+
+	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
+	private Map<String,String> dict;
+
+	// WL state
+	private IntLabelDictionary labelDict;
+	private int numLabels;
+	private int[] vertexLabels;
+	private int[] linkLabels;
+	private int[] vertexPrevNBH;
+	private int[] linkPrevNBH;
+	private boolean[] vertexSameAsPrev;
+	private boolean[] linkSameAsPrev;
+	private int[] nbBuffer;
+
+	public CSRGraphWLSubTreeKernel(int iterations, int depth, boolean reverse, boolean noDuplicateSubtrees, boolean normalize) {
+		this.reverse = reverse;
+		this.noDuplicateSubtrees = noDuplicateSubtrees;
+		this.normalize = normalize;
+		this.depth = depth;
+		this.iterations = iterations;
+	}
+
+	public CSRGraphWLSubTreeKernel(int iterations, int depth, boolean normalize) {
+		this(iterations, depth, true, true, normalize);
+	}
+
+	public String getLabel() {
+		return KernelUtils.createLabel(this);		
+	}
+
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public long getComputationTime() {
+		return compTime;
+	}
+
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
+	public SparseVector[] computeFeatureVectors(SingleCSRGraph data) {
+		SparseVector[] featureVectors = new SparseVector[data.numInstances()];
+		for (int i = 0; i < featureVectors.length; i++) {
+			featureVectors[i] = new SparseVector();
+		}	
+
+		CSRGraphNeighborhoods nbhs = new CSRGraphNeighborhoods(data, depth, !reverse); // if labels travel to the fringe vertices, we want to have the lowest depth encounter
+		CSRGraph graph = data.getGraph();
+
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+
+		// The initial labels are the label ids of the graph
+		labelDict = new IntLabelDictionary();
+		numLabels = graph.numLabels();
+		vertexLabels = new int[nbhs.numVertexSlots()];
+		linkLabels = new int[nbhs.numLinkSlots()];
+		vertexPrevNBH = new int[vertexLabels.length];
+		linkPrevNBH = new int[linkLabels.length];
+		vertexSameAsPrev = new boolean[vertexLabels.length];
+		linkSameAsPrev = new boolean[linkLabels.length];
+		nbBuffer = new int[16];
+
+		for (int v = 0; v < graph.numNodes(); v++) {
+			for (int d = 0; d <= depth; d++) {
+				if (nbhs.hasVertexSlot(v, d)) {
+					vertexLabels[nbhs.vertexSlot(v, d)] = graph.nodeLabel(v);
+				}
+			}
+		}
+		for (int e = 0; e < graph.numLinks(); e++) {
+			for (int d = 0; d <= depth; d++) {
+				if (nbhs.hasLinkSlot(e, d)) {
+					linkLabels[nbhs.linkSlot(e, d)] = graph.linkLabel(e);
+				}
+			}
+		}
+		Arrays.fill(vertexPrevNBH, IntLabelDictionary.EMPTY_NBH);
+		Arrays.fill(linkPrevNBH, IntLabelDictionary.EMPTY_NBH);
+
+		computeFVs(nbhs, featureVectors);
+
+		for (int i = 0; i < iterations; i++) {
+			wlIterate(nbhs);
+			computeFVs(nbhs, featureVectors);
+		}
+
+		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
+
+		// Set the reverse label dict, to reverse engineer the features
+		String[] labels = new String[numLabels];
+		for (int l = 0; l < graph.numLabels(); l++) {
+			labels[l] = graph.label(l);
+		}
+		labelDict.fillStringLabels(labels);
+		dict = new HashMap<String,String>();
+		for (int l = 0; l < labels.length; l++) {
+			dict.put(Integer.toString(l), labels[l]);
+		}
+
+		// the WL state is not needed anymore
+		vertexLabels = null;
+		linkLabels = null;
+		vertexPrevNBH = null;
+		linkPrevNBH = null;
+		vertexSameAsPrev = null;
+		linkSameAsPrev = null;
+		labelDict = null;
+
+		if (this.normalize) {
+			featureVectors = KernelUtils.normalize(featureVectors);
+		}
+		return featureVectors;
+	}
+
+	public double[][] compute(SingleCSRGraph data) {
+		SparseVector[] featureVectors = computeFeatureVectors(data);
+		double[][] kernel = KernelUtils.initMatrix(data.numInstances(), data.numInstances());
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
+		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
+		return kernel;
+	}
+
+	/**
+	 * One WL iteration, all the new labels are computed from the old labels. 
+	 * With reverse, a link at depth d gets the label of its to-node at depth d, and a node at depth d gets the labels of its out links at depth d-1.
+	 * Otherwise, a link at depth d gets the label of its from-node at depth d+1 and a node at depth d the labels of its in links at depth d.
+	 */
+	private void wlIterate(CSRGraphNeighborhoods nbhs) {
+		CSRGraph graph = nbhs.getGraph();
+		int[] newVertexLabels = new int[vertexLabels.length];
+		int[] newLinkLabels = new int[linkLabels.length];
+
+		for (int e = 0; e < graph.numLinks(); e++) {
+			for (int d = 0; d <= depth; d++) {
+				if (nbhs.hasLinkSlot(e, d)) {
+					int numNbs = 0;
+					int nb = reverse ? graph.to(e) : graph.from(e);
+					int nbDepth = reverse ? d : d + 1;
+					if (nbhs.hasVertexSlot(nb, nbDepth)) {
+						nbBuffer[numNbs++] = vertexLabels[nbhs.vertexSlot(nb, nbDepth)];
+					}
+					int slot = nbhs.linkSlot(e, d);
+					newLinkLabels[slot] = relabel(linkLabels[slot], numNbs, slot, linkPrevNBH, linkSameAsPrev);
+				}
+			}
+		}
+
+		for (int v = 0; v < graph.numNodes(); v++) {
+			for (int d = 0; d <= depth; d++) {
+				if (nbhs.hasVertexSlot(v, d)) {
+					int numNbs = 0;
+					int start = reverse ? graph.outStart(v) : graph.inStart(v);
+					int end = reverse ? graph.outEnd(v) : graph.inEnd(v);
+					int nbDepth = reverse ? d - 1 : d;
+					for (int k = start; k < end; k++) {
+						int link = reverse ? graph.outLink(k) : graph.inLink(k);
+						if (nbhs.hasLinkSlot(link, nbDepth)) {
+							if (numNbs == nbBuffer.length) {
+								nbBuffer = Arrays.copyOf(nbBuffer, numNbs * 2);
+							}
+							nbBuffer[numNbs++] = linkLabels[nbhs.linkSlot(link, nbDepth)];
+						}
+					}
+					Arrays.sort(nbBuffer, 0, numNbs);
+					int slot = nbhs.vertexSlot(v, d);
+					newVertexLabels[slot] = relabel(vertexLabels[slot], numNbs, slot, vertexPrevNBH, vertexSameAsPrev);
+				}
+			}
+		}
+		vertexLabels = newVertexLabels;
+		linkLabels = newLinkLabels;
+	}
+
+	/**
+	 * Compute the new label for a slot from its old label and the sorted neighbor labels in nbBuffer[0] to nbBuffer[numNbs] (exclusive)
+	 */
+	private int relabel(int label, int numNbs, int slot, int[] prevNBH, boolean[] sameAsPrev) {
+		int nbh = labelDict.getNeighborhood(nbBuffer, 0, numNbs);
+
+		if (noDuplicateSubtrees) {
+			if (nbh == prevNBH[slot]) {
+				sameAsPrev[slot] = true;
+			}
+			prevNBH[slot] = nbh;
+		}
+		if (sameAsPrev[slot]) { // retain old label
+			return label;
+		}
+		int newLabel = labelDict.getLabel(label, nbh);
+		if (newLabel == -1) {
+			newLabel = numLabels++;
+			labelDict.putLabel(label, nbh, newLabel);
+		}
+		return newLabel;
+	}
+
+	/**
+	 * Add the current labels of the slots of each instance to its feature vector, slots that have the same subtree as in the previous iteration are skipped.
+	 */
+	private void computeFVs(CSRGraphNeighborhoods nbhs, SparseVector[] featureVectors) {
+		for (int i = 0; i < featureVectors.length; i++) {
+			featureVectors[i].setLastIndex(numLabels - 1);
+
+			for (int k = nbhs.instanceVertexStart(i); k < nbhs.instanceVertexEnd(i); k++) {
+				int slot = nbhs.instanceVertexSlot(k);
+				if (!vertexSameAsPrev[slot]) {
+					featureVectors[i].addValue(vertexLabels[slot], 1.0);
+				}
+			}
+			for (int k = nbhs.instanceLinkStart(i); k < nbhs.instanceLinkEnd(i); k++) {
+				int slot = nbhs.instanceLinkSlot(k);
+				if (!linkSameAsPrev[slot]) {
+					featureVectors[i].addValue(linkLabels[slot], 1.0);
+				}
+			}
+		}
+	}
+
+	public List<String> getFeatureDescriptions(List<Integer> indices) {
+		if (dict == null) {
+			throw new RuntimeException("Should run computeFeatureVectors first");
+		} else {
+			List<String> desc = new ArrayList<String>();
+
+			for (int index : indices) {
+				desc.add(WLUtils.getFeatureDecription(dict, index));
+			}
+			return desc;
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package org.data2semantics.mustard.kernels.graphkernels.csrgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
+import org.data2semantics.mustard.kernels.FeatureInspector;
+import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
+import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.data.SingleCSRGraph;
+import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
+import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
+import org.data2semantics.mustard.simplegraph.CSRGraph;
+import org.data2semantics.mustard.utils.WalkCountUtils;
+import org.data2semantics.mustard.weisfeilerlehman.IntLabelDictionary;
+
+/**
+ * Version of {@link org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWalkCountKernel} on a {@link SingleCSRGraph}.
+ * Instead of Strings, each walk is represented by an int id, which is determined by the pair (first label, id of the rest of the walk).
+ * The walks of each (node, depth) and (link, depth) slot (see {@link CSRGraphNeighborhoods}) are stored as int arrays.
+ * 
+ * Like in DTGraphWalkCountKernel, an instance node has a separate (root) label, so that walks starting in an instance node are different from other walks,
+ * unless it is in the neighborhood of an instance before it. So both kernels compute the same feature vectors (up to the numbering of the features).
+ * 
+ * @author Gerben
+ *
+ */
+public class CSRGraphWalkCountKernel implements GraphKernel<SingleCSRGraph>, FeatureVectorKernel<SingleCSRGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
+	private static final int NO_WALK = -1;
+
+	private int depth;
+	private int pathLength;
+	private boolean normalize;
+	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
+
+	// walk dictionary, walk id -> (first token, rest of the walk)
+	private IntLabelDictionary walkDict;
+	private int numWalks;
+	private int[] walkTokens;
+	private int[] walkTails;
+	private CSRGraph graph;
+
+	private int[][] vertexWalks;
+	private int[][] linkWalks;
+
+	public CSRGraphWalkCountKernel(int pathLength, int depth, boolean normalize) {
+		this.normalize = normalize;
+		this.depth = depth;
+		this.pathLength = pathLength;
+	}
+
+	public String getLabel() {
+		return KernelUtils.createLabel(this);		
+	}
+
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public long getComputationTime() {
+		return compTime;
+	}
+
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
+	public SparseVector[] computeFeatureVectors(SingleCSRGraph data) {
+		SparseVector[] featureVectors = new SparseVector[data.numInstances()];
+		for (int i = 0; i < featureVectors.length; i++) {
+			featureVectors[i] = new SparseVector();
+		}
+
+		CSRGraphNeighborhoods nbhs = new CSRGraphNeighborhoods(data, depth, false);
+		graph = data.getGraph();
+
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+
+		walkDict = new IntLabelDictionary();
+		numWalks = 0;
+		walkTokens = new int[1024];
+		walkTails = new int[1024];
+
+		// instance nodes that are not in the neighborhood of an instance before them get a different token, tokens >= numLabels
+		boolean[] isRoot = new boolean[graph.numNodes()];
+		for (int v = 0; v < graph.numNodes(); v++) {
+			isRoot[v] = nbhs.firstInstance(v) != -1 && nbhs.instanceRoot(nbhs.firstInstance(v)) == v;
+		}
+
+		// initial walks, of length 0
+		vertexWalks = new int[nbhs.numVertexSlots()][];
+		linkWalks = new int[nbhs.numLinkSlots()][];
+		for (int v = 0; v < graph.numNodes(); v++) {
+			int token = isRoot[v] ? graph.numLabels() + graph.nodeLabel(v) : graph.nodeLabel(v);
+			for (int d = 0; d <= depth; d++) {
+				if (nbhs.hasVertexSlot(v, d)) {
+					vertexWalks[nbhs.vertexSlot(v, d)] = new int[] {getWalk(token, NO_WALK)};
+				}
+			}
+		}
+		for (int e = 0; e < graph.numLinks(); e++) {
+			for (int d = 0; d <= depth; d++) {
+				if (nbhs.hasLinkSlot(e, d)) {
+					linkWalks[nbhs.linkSlot(e, d)] = new int[] {getWalk(graph.linkLabel(e), NO_WALK)};
+				}
+			}
+		}
+		computeFVs(nbhs, featureVectors);
+
+		// loop to create longer and longer walks
+		for (int j = 0; j < pathLength; j++) {
+			extendWalks(nbhs, isRoot);
+			computeFVs(nbhs, featureVectors);
+		}
+
+		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
+
+		vertexWalks = null;
+		linkWalks = null;
+		walkDict = null;
+
+		if (this.normalize) {
+			featureVectors = KernelUtils.normalize(featureVectors);
+		}
+		return featureVectors;
+	}
+
+	public double[][] compute(SingleCSRGraph data) {
+		SparseVector[] featureVectors = computeFeatureVectors(data);
+		double[][] kernel = KernelUtils.initMatrix(data.numInstances(), data.numInstances());
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
+		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
+		return kernel;
+	}
+
+	/**
+	 * Extend all walks with one step, a node at depth d gets its own token in front of the walks of its out links at depth d-1,
+	 * a link at depth d gets its token in front of the walks of its to-node at depth d.
+	 */
+	private void extendWalks(CSRGraphNeighborhoods nbhs, boolean[] isRoot) {
+		int[][] newVertexWalks = new int[vertexWalks.length][];
+		int[][] newLinkWalks = new int[linkWalks.length][];
+
+		for (int v = 0; v < graph.numNodes(); v++) {
+			int token = isRoot[v] ? graph.numLabels() + graph.nodeLabel(v) : graph.nodeLabel(v);
+			for (int d = 0; d <= depth; d++) {
+				if (nbhs.hasVertexSlot(v, d)) {
+					int numWalks = 0;
+					for (int k = graph.outStart(v); k < graph.outEnd(v); k++) {
+						int link = graph.outLink(k);
+						if (nbhs.hasLinkSlot(link, d - 1)) {
+							numWalks += linkWalks[nbhs.linkSlot(link, d - 1)].length;
+						}
+					}
+					int[] walks = new int[numWalks];
+					int w = 0;
+					for (int k = graph.outStart(v); k < graph.outEnd(v); k++) {
+						int link = graph.outLink(k);
+						if (nbhs.hasLinkSlot(link, d - 1)) {
+							for (int tail : linkWalks[nbhs.linkSlot(link, d - 1)]) {
+								walks[w++] = getWalk(token, tail);
+							}
+						}
+					}
+					newVertexWalks[nbhs.vertexSlot(v, d)] = walks;
+				}
+			}
+		}
+		for (int e = 0; e < graph.numLinks(); e++) {
+			int to = graph.to(e);
+			for (int d = 0; d <= depth; d++) {
+				if (nbhs.hasLinkSlot(e, d)) {
+					int[] tails = nbhs.hasVertexSlot(to, d) ? vertexWalks[nbhs.vertexSlot(to, d)] : new int[0];
+					int[] walks = new int[tails.length];
+					for (int w = 0; w < tails.length; w++) {
+						walks[w] = getWalk(graph.linkLabel(e), tails[w]);
+					}
+					newLinkWalks[nbhs.linkSlot(e, d)] = walks;
+				}
+			}
+		}
+		vertexWalks = newVertexWalks;
+		linkWalks = newLinkWalks;
+	}
+
+	/**
+	 * Get the id of the walk that starts with token, followed by the walk tail (NO_WALK for a walk of one token)
+	 */
+	private int getWalk(int token, int tail) {
+		int walk = walkDict.getLabel(token, tail);
+		if (walk == -1) {
+			walk = numWalks++;
+			walkDict.putLabel(token, tail, walk);
+			if (walk == walkTokens.length) {
+				walkTokens = Arrays.copyOf(walkTokens, walk * 2);
+				walkTails = Arrays.copyOf(walkTails, walk * 2);
+			}
+			walkTokens[walk] = token;
+			walkTails[walk] = tail;
+		}
+		return walk;
+	}
+
+	private void computeFVs(CSRGraphNeighborhoods nbhs, SparseVector[] featureVectors) {
+		for (int i = 0; i < featureVectors.length; i++) {
+			featureVectors[i].setLastIndex(numWalks - 1);
+
+			for (int k = nbhs.instanceVertexStart(i); k < nbhs.instanceVertexEnd(i); k++) {
+				for (int walk : vertexWalks[nbhs.instanceVertexSlot(k)]) {
+					featureVectors[i].addValue(walk, 1.0);
+				}
+			}
+			for (int k = nbhs.instanceLinkStart(i); k < nbhs.instanceLinkEnd(i); k++) {
+				for (int walk : linkWalks[nbhs.instanceLinkSlot(k)]) {
+					featureVectors[i].addValue(walk, 1.0);
+				}
+			}
+		}
+	}
+
+	public List<String> getFeatureDescriptions(List<Integer> indicesSV) {
+		if (graph == null) {
+			throw new RuntimeException("Should run computeFeatureVectors first");
+		} else {
+			// build the dictionaries in the format of DTGraphWalkCountKernel, but only for the requested walks
+			Map<Integer, String> reverseLabelDict = new HashMap<Integer, String>();
+			for (int l = 0; l < graph.numLabels(); l++) {
+				reverseLabelDict.put(l, graph.label(l));
+			}
+			Map<Integer, String> reverseWalkDict = new HashMap<Integer, String>();
+			List<String> desc = new ArrayList<String>();
+
+			for (int index : indicesSV) {
+				StringBuilder walk = new StringBuilder();
+				for (int w = index; w != NO_WALK; w = walkTails[w]) { // root tokens are described by their label
+					walk.append("_");
+					walk.append(walkTokens[w] % graph.numLabels());
+				}
+				reverseWalkDict.put(index, walk.toString());
+				desc.add(WalkCountUtils.getFeatureDecription(reverseLabelDict, reverseWalkDict, index));
+			}
+			return desc;
+		}
+	}
+}
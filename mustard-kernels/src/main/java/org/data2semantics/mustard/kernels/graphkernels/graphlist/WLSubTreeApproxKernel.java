@@ -8,8 +8,10 @@ import java.util.Map;
 import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -39,7 +41,7 @@ import org.nodes.LightDTGraph;
  * 
  * @author Gerben 
  */
-public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<ApproxStringLabel,ApproxStringLabel>>>, FeatureVectorKernel<GraphList<DTGraph<ApproxStringLabel,ApproxStringLabel>>>, ComputationTimeTracker, FeatureInspector {
+public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<ApproxStringLabel,ApproxStringLabel>>>, FeatureVectorKernel<GraphList<DTGraph<ApproxStringLabel,ApproxStringLabel>>>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 	private int iterations;
 	protected boolean normalize;
 	private boolean reverse;
@@ -51,6 +53,10 @@ public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<Appr
 
 	private int maxDepth;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String,String> dict;
 	private Map<String, Integer> labelFreq;
@@ -74,10 +80,18 @@ public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<Appr
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(GraphList<DTGraph<ApproxStringLabel,ApproxStringLabel>> data) {
 		SparseVector[] featureVectors = new SparseVector[data.numInstances()];
 		for (int j = 0; j < featureVectors.length; j++) {
@@ -89,6 +103,7 @@ public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<Appr
 		double numK = (minFreqs.length) * (maxLabelCards.length) * (maxPrevNBHs.length); // number of different kernels that have to be computed computed	
 		
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 		
 		for (int minFreq : minFreqs) {
 			for (int maxCard : maxLabelCards) {
@@ -114,6 +129,7 @@ public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<Appr
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		// Set the reverse label dict, to reverse engineer the features
 		dict = new HashMap<String,String>();
@@ -129,7 +145,7 @@ public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<Appr
 
 	public double[][] compute(GraphList<DTGraph<ApproxStringLabel,ApproxStringLabel>> data) {
 		double[][] kernel = KernelUtils.initMatrix(data.getGraphs().size(), data.getGraphs().size());
-		kernel = KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel);				
+		kernel = KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel, parallelism);				
 		return kernel;
 	}
 
@@ -152,7 +168,7 @@ public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<Appr
 				String lab = vertex.label().toString();
 				if (!noDuplicateSubtrees || vertex.label().getSameAsPrev() == 0) {
 					index = Integer.parseInt(lab);
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 
@@ -160,7 +176,7 @@ public class WLSubTreeApproxKernel implements GraphKernel<GraphList<DTGraph<Appr
 				String lab = edge.tag().toString();
 				if (!noDuplicateSubtrees || edge.tag().getSameAsPrev() == 0) {
 					index = Integer.parseInt(lab);
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 		}
@@ -6,8 +6,10 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -35,12 +37,16 @@ import org.nodes.LightDTGraph;
  * 
  * @author Gerben 
  */
-public class WLSubTreeKernel implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker, FeatureInspector {
+public class WLSubTreeKernel implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 	private int iterations;
 	protected boolean normalize;
 	private boolean reverse;
 	private boolean noDuplicateSubtrees;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	
 	private Map<String,String> dict;
 
@@ -63,10 +69,18 @@ public class WLSubTreeKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(GraphList<DTGraph<String,String>> data) {
 		List<DTGraph<StringLabel,StringLabel>> graphs = copyGraphs(data.getGraphs());
 		SparseVector[] featureVectors = new SparseVector[graphs.size()];
@@ -77,6 +91,7 @@ public class WLSubTreeKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		WeisfeilerLehmanIterator<DTGraph<StringLabel,StringLabel>> wl = new WeisfeilerLehmanDTGraphIterator(reverse, noDuplicateSubtrees);
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 		
 		wl.wlInitialize(graphs);	
 		
@@ -88,6 +103,7 @@ public class WLSubTreeKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		// Set the reverse label dict, to reverse engineer the features
 		dict = new HashMap<String,String>();
@@ -103,7 +119,7 @@ public class WLSubTreeKernel implements GraphKernel<GraphList<DTGraph<String,Str
 
 	public double[][] compute(GraphList<DTGraph<String,String>> data) {
 		double[][] kernel = KernelUtils.initMatrix(data.getGraphs().size(), data.getGraphs().size());
-		kernel = KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel);				
+		kernel = KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel, parallelism);				
 		return kernel;
 	}
 
@@ -125,14 +141,14 @@ public class WLSubTreeKernel implements GraphKernel<GraphList<DTGraph<String,Str
 			for (DTNode<StringLabel,StringLabel> vertex : graphs.get(i).nodes()) {
 				if (!vertex.label().isSameAsPrev()) {
 					index = Integer.parseInt(vertex.label().toString());	
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 
 			for (DTLink<StringLabel,StringLabel> edge : graphs.get(i).links()) {
 				if (!edge.tag().isSameAsPrev()) {
 					index = Integer.parseInt(edge.tag().toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 		}
@@ -3,7 +3,9 @@ package org.data2semantics.mustard.kernels.graphkernels.graphlist;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -24,9 +26,11 @@ import org.nodes.UNode;
  * @author Gerben
  *
  */
-public class WLUSubTreeKernel implements GraphKernel<GraphList<UGraph<String>>>, FeatureVectorKernel<GraphList<UGraph<String>>> {
+public class WLUSubTreeKernel implements GraphKernel<GraphList<UGraph<String>>>, FeatureVectorKernel<GraphList<UGraph<String>>>, ParallelKernel {
 	private int iterations;
 	protected boolean normalize;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	/**
 	 * Construct a WLSubTreeKernel. 
@@ -51,6 +55,10 @@ public class WLUSubTreeKernel implements GraphKernel<GraphList<UGraph<String>>>,
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public SparseVector[] computeFeatureVectors(GraphList<UGraph<String>> data) {
 		// Have to use UGraph implementation for copying.
 		// List<UTGraph<StringLabel,?>> graphs = copyGraphs(trainGraphs);
@@ -81,7 +89,7 @@ public class WLUSubTreeKernel implements GraphKernel<GraphList<UGraph<String>>>,
 
 	public double[][] compute(GraphList<UGraph<String>> data) {
 		double[][] kernel = KernelUtils.initMatrix(data.getGraphs().size(), data.getGraphs().size());
-		kernel = KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel);				
+		kernel = KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel, parallelism);				
 		return kernel;
 	}
 
@@ -104,7 +112,7 @@ public class WLUSubTreeKernel implements GraphKernel<GraphList<UGraph<String>>>,
 			// for each vertex, use the label as index into the feature vector and do a + 1,
 			for (UNode<StringLabel> vertex : graphs.get(i).nodes()) {
 				index = Integer.parseInt(vertex.label().toString());	
-				featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+				featureVectors[i].addValue(index, weight);
 			}
 		}
 	}
@@ -125,4 +133,4 @@ public class WLUSubTreeKernel implements GraphKernel<GraphList<UGraph<String>>>,
 		return newGraphs;
 	}
 	
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -8,8 +8,10 @@ import java.util.Map;
 import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -28,11 +30,15 @@ import org.nodes.LightDTGraph;
  * 
  * @author Gerben 
  */
-public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker, FeatureInspector {
+public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 	private int depth;
 	protected boolean normalize;
 	private int minFreq;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
 
@@ -58,10 +64,18 @@ public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(GraphList<DTGraph<String,String>> data) {
 		pathDict  = new HashMap<String,Integer>();
 		labelDict = new HashMap<String,Integer>();
@@ -75,6 +89,7 @@ public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		Integer index = null;
 		
@@ -88,7 +103,7 @@ public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<
 						index = pathDict.size();
 						pathDict.put(path, index);
 					}
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1);
+					featureVectors[i].addValue(index, 1);
 				}
 
 			}
@@ -100,7 +115,7 @@ public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<
 						index = pathDict.size();
 						pathDict.put(path, index);
 					}
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1);
+					featureVectors[i].addValue(index, 1);
 				}
 			}
 		}
@@ -134,7 +149,7 @@ public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<
 							index = pathDict.size();
 							pathDict.put(path, index);
 						}
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1);
+						featureVectors[i].addValue(index, 1);
 					}
 				}
 
@@ -147,7 +162,7 @@ public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<
 							index = pathDict.size();
 							pathDict.put(path, index);
 						}
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1);
+						featureVectors[i].addValue(index, 1);
 					}
 				}
 			}
@@ -159,6 +174,7 @@ public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		reversePathDict = new HashMap<Integer,String>();	
 		for (String key : pathDict.keySet()) {
@@ -178,7 +194,7 @@ public class WalkCountApproxKernelMkII implements GraphKernel<GraphList<DTGraph<
 
 	public double[][] compute(GraphList<DTGraph<String,String>> data) {
 		double[][] kernel = KernelUtils.initMatrix(data.getGraphs().size(), data.getGraphs().size());
-		KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel);				
+		KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel, parallelism);				
 		return kernel;
 	}
 
@@ -6,8 +6,10 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -31,9 +33,13 @@ import org.nodes.LightDTGraph;
  * 
  * @author Gerben 
  */
-public class WalkCountKernel implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker, FeatureInspector {
+public class WalkCountKernel implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 	private int pathLength;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	protected boolean normalize;
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -58,10 +64,18 @@ public class WalkCountKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(GraphList<DTGraph<String,String>> data) {
 		pathDict  = new HashMap<String,Integer>();
 		labelDict = new HashMap<String,Integer>();
@@ -74,6 +88,7 @@ public class WalkCountKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		}
 		
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 		
 		for (int i = 0; i < featureVectors.length; i++) {
 			for (DTNode<String,String> v : graphs.get(i).nodes()) {
@@ -91,6 +106,7 @@ public class WalkCountKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		}
 		
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		reversePathDict = new HashMap<Integer,String>();	
 		for (String key : pathDict.keySet()) {
@@ -110,7 +126,7 @@ public class WalkCountKernel implements GraphKernel<GraphList<DTGraph<String,Str
 
 	public double[][] compute(GraphList<DTGraph<String,String>> data) {
 		double[][] kernel = KernelUtils.initMatrix(data.getGraphs().size(), data.getGraphs().size());
-		kernel = KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel);				
+		kernel = KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel, parallelism);				
 		return kernel;
 	}
 
@@ -121,7 +137,7 @@ public class WalkCountKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		if (!pathDict.containsKey(path)) {
 			pathDict.put(path, pathDict.size());
 		}
-		fv.setValue(pathDict.get(path), fv.getValue(pathDict.get(path)) + 1);
+		fv.addValue(pathDict.get(path), 1);
 
 		if (depth > 0) {
 			for (DTLink<String,String> edge : vertex.linksOut()) {
@@ -137,7 +153,7 @@ public class WalkCountKernel implements GraphKernel<GraphList<DTGraph<String,Str
 		if (!pathDict.containsKey(path)) {
 			pathDict.put(path, pathDict.size());
 		}
-		fv.setValue(pathDict.get(path), fv.getValue(pathDict.get(path)) + 1);
+		fv.addValue(pathDict.get(path), 1);
 
 		if (depth > 0) {
 			countPathRec(fv, edge.to(), path, depth-1);
@@ -6,7 +6,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -24,10 +26,14 @@ import org.nodes.LightDTGraph;
  * 
  * @author Gerben *
  */
-public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker {
+public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String,String>>>, FeatureVectorKernel<GraphList<DTGraph<String,String>>>, ComputationTimeTracker, ParallelKernel {
 	private int pathLength;
 	protected boolean normalize;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
 
@@ -49,10 +55,18 @@ public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(GraphList<DTGraph<String,String>> data) {
 		pathDict  = new HashMap<String,Integer>();
 		labelDict = new HashMap<String,Integer>();
@@ -66,6 +80,7 @@ public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		Integer index = null;
 		
@@ -79,7 +94,7 @@ public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String
 						index = pathDict.size();
 						pathDict.put(path, index);
 					}
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1);
+					featureVectors[i].addValue(index, 1);
 				}
 
 			}
@@ -91,7 +106,7 @@ public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String
 						index = pathDict.size();
 						pathDict.put(path, index);
 					}
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1);
+					featureVectors[i].addValue(index, 1);
 				}
 			}
 		}
@@ -122,7 +137,7 @@ public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String
 							index = pathDict.size();
 							pathDict.put(path, index);
 						}
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1);
+						featureVectors[i].addValue(index, 1);
 					}
 
 				}
@@ -136,7 +151,7 @@ public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String
 							index = pathDict.size();
 							pathDict.put(path, index);
 						}
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1);
+						featureVectors[i].addValue(index, 1);
 					}
 				}
 			}
@@ -148,6 +163,7 @@ public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		if (normalize) {
 			featureVectors = KernelUtils.normalize(featureVectors);
@@ -157,7 +173,7 @@ public class WalkCountKernelMkII implements GraphKernel<GraphList<DTGraph<String
 
 	public double[][] compute(GraphList<DTGraph<String,String>> data) {
 		double[][] kernel = KernelUtils.initMatrix(data.getGraphs().size(), data.getGraphs().size());
-		KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel);				
+		KernelUtils.computeKernelMatrix(computeFeatureVectors(data), kernel, parallelism);				
 		return kernel;
 	}
 
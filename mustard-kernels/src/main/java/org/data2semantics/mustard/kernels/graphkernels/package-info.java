@@ -30,6 +30,14 @@
  * Some WalkCount kernels are affixed 'MkII' this indicates that it is a second variant for the same kernel, with a different algorithm to compute it.
  * Similarly for the 'IDEQ' infix (in this case the kernels are not necessarily equal for the WL algorithm).
  * </p>
+ * <p>
+ * For large graphs, the {@link org.data2semantics.mustard.kernels.graphkernels.csrgraph} package contains versions of the
+ * {@link org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWLSubTreeKernel} and {@link org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWalkCountKernel}
+ * on the compact {@link org.data2semantics.mustard.kernels.data.SingleCSRGraph}, which uses int arrays instead of node/link objects and HashMaps.
+ * They compute the same kernels (up to the numbering of the features) and share the computation of the instance neighborhoods, see {@link org.data2semantics.mustard.kernels.graphkernels.InstanceNeighborhoods}.
+ * The rdfdata wrappers for these kernels are RDFCSRWLSubTreeKernel and RDFCSRWalkCountKernel.
+ * </p>
+ * 
  * 
  * 
  * @author Gerben
@@ -0,0 +1,82 @@
+package org.data2semantics.mustard.kernels.graphkernels.rdfdata;
+
+import java.util.List;
+
+import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.FeatureInspector;
+import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
+import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.data.RDFData;
+import org.data2semantics.mustard.kernels.data.SingleCSRGraph;
+import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
+import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
+import org.data2semantics.mustard.kernels.graphkernels.csrgraph.CSRGraphWLSubTreeKernel;
+import org.data2semantics.mustard.rdf.RDFBlackList;
+import org.data2semantics.mustard.rdf.RDFDataSet;
+import org.data2semantics.mustard.rdf.RDFUtils;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+
+/**
+ * Wrapper kernel for {@link org.data2semantics.mustard.kernels.graphkernels.csrgraph.CSRGraphWLSubTreeKernel}, the version of {@link RDFWLSubTreeKernel} for large graphs.
+ * The graph is built directly from the extracted statements with {@link RDFUtils#statements2CSRGraph(java.util.Set, int, List, boolean)}, it is not shared via the {@link org.data2semantics.mustard.rdf.RDFGraphCache}.
+ * 
+ * @author Gerben
+ */
+public class RDFCSRWLSubTreeKernel implements GraphKernel<RDFData>, FeatureVectorKernel<RDFData>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
+	private int depth;
+	private boolean inference;
+	private CSRGraphWLSubTreeKernel kernel;
+	private SingleCSRGraph graph;
+
+	public RDFCSRWLSubTreeKernel(int iterations, int depth, boolean inference, boolean normalize) {
+		this(iterations, depth, inference, true, true, normalize);
+	}
+
+	public RDFCSRWLSubTreeKernel(int iterations, int depth, boolean inference, boolean reverse, boolean noDuplicateSubtrees, boolean normalize) {
+		super();
+		this.depth = depth;
+		this.inference = inference;
+
+		kernel = new CSRGraphWLSubTreeKernel(iterations, depth, reverse, noDuplicateSubtrees, normalize);
+	}
+
+	public String getLabel() {
+		return KernelUtils.createLabel(this) + "_" + kernel.getLabel();			
+	}
+
+	public void setNormalize(boolean normalize) {
+		kernel.setNormalize(normalize);
+	}
+
+	public void setParallelism(int parallelism) {
+		kernel.setParallelism(parallelism);
+	}
+
+	public SparseVector[] computeFeatureVectors(RDFData data) {
+		init(data.getDataset(), data.getInstances(), data.getBlackList());
+		return kernel.computeFeatureVectors(graph);
+	}
+
+	public double[][] compute(RDFData data) {
+		init(data.getDataset(), data.getInstances(), data.getBlackList());
+		return kernel.compute(graph);
+	}
+
+	private void init(RDFDataSet dataset, List<Resource> instances, List<Statement> blackList) {
+		graph = RDFUtils.statements2CSRGraph(RDFUtils.getStatements4Depth(dataset, instances, depth, inference, new RDFBlackList(blackList)), RDFUtils.REGULAR_LITERALS, instances, true);
+	}
+
+	public long getComputationTime() {
+		return kernel.getComputationTime();
+	}
+
+	public long getCPUTime() {
+		return kernel.getCPUTime();
+	}
+
+	public List<String> getFeatureDescriptions(List<Integer> indicesSV) {
+		return kernel.getFeatureDescriptions(indicesSV);
+	}
+}
@@ -1,7 +1,6 @@
 package org.data2semantics.mustard.kernels.graphkernels.rdfdata;
 
 import java.util.List;
-import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
 import org.data2semantics.mustard.kernels.FeatureInspector;
@@ -13,6 +12,7 @@ import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
 import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
 import org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphGraphListWLSubTreeApproxKernel;
 import org.data2semantics.mustard.rdf.RDFDataSet;
+import org.data2semantics.mustard.rdf.RDFGraphCache;
 import org.data2semantics.mustard.rdf.RDFUtils;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
@@ -57,15 +57,17 @@ public class RDFGraphListWLSubTreeApproxKernel implements GraphKernel<RDFData>,
 	}
 
 	private void init(RDFDataSet dataset, List<Resource> instances, List<Statement> blackList) {
-		Set<Statement> stmts = RDFUtils.getStatements4Depth(dataset, instances, depth, inference);
-		stmts.removeAll(blackList);
-		graph = RDFUtils.statements2Graph(stmts, RDFUtils.REGULAR_LITERALS, instances, false);
+		graph = RDFGraphCache.getGraph(dataset, instances, blackList, depth, inference, RDFUtils.REGULAR_LITERALS, false);
 	}
 
 	public long getComputationTime() {
 		return kernel.getComputationTime();
 	}
 
+	public long getCPUTime() {
+		return kernel.getCPUTime();
+	}
+
 	public List<String> getFeatureDescriptions(List<Integer> indicesSV) {
 		return kernel.getFeatureDescriptions(indicesSV);
 	}
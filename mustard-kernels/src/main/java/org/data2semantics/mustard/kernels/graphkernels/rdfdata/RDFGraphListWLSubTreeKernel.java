@@ -1,11 +1,11 @@
 package org.data2semantics.mustard.kernels.graphkernels.rdfdata;
 
 import java.util.List;
-import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.RDFData;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
@@ -13,6 +13,7 @@ import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
 import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
 import org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphGraphListWLSubTreeKernel;
 import org.data2semantics.mustard.rdf.RDFDataSet;
+import org.data2semantics.mustard.rdf.RDFGraphCache;
 import org.data2semantics.mustard.rdf.RDFUtils;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
@@ -23,7 +24,7 @@ import org.openrdf.model.Statement;
  * @author Gerben
  *
  */
-public class RDFGraphListWLSubTreeKernel implements GraphKernel<RDFData>, FeatureVectorKernel<RDFData>, ComputationTimeTracker, FeatureInspector {
+public class RDFGraphListWLSubTreeKernel implements GraphKernel<RDFData>, FeatureVectorKernel<RDFData>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 	private int depth;
 	private boolean inference;
 	private DTGraphGraphListWLSubTreeKernel kernel;
@@ -49,6 +50,10 @@ public class RDFGraphListWLSubTreeKernel implements GraphKernel<RDFData>, Featur
 		kernel.setNormalize(normalize);
 	}
 
+	public void setParallelism(int parallelism) {
+		kernel.setParallelism(parallelism);
+	}
+
 	public SparseVector[] computeFeatureVectors(RDFData data) {
 		init(data.getDataset(), data.getInstances(), data.getBlackList());
 		return kernel.computeFeatureVectors(graph);
@@ -60,15 +65,17 @@ public class RDFGraphListWLSubTreeKernel implements GraphKernel<RDFData>, Featur
 	}
 
 	private void init(RDFDataSet dataset, List<Resource> instances, List<Statement> blackList) {
-		Set<Statement> stmts = RDFUtils.getStatements4Depth(dataset, instances, depth, inference);
-		stmts.removeAll(blackList);
-		graph = RDFUtils.statements2Graph(stmts, RDFUtils.REGULAR_LITERALS, instances, true);
+		graph = RDFGraphCache.getGraph(dataset, instances, blackList, depth, inference, RDFUtils.REGULAR_LITERALS, true);
 	}
 
 	public long getComputationTime() {
 		return kernel.getComputationTime();
 	}
 
+	public long getCPUTime() {
+		return kernel.getCPUTime();
+	}
+
 	public List<String> getFeatureDescriptions(List<Integer> indicesSV) {
 		return kernel.getFeatureDescriptions(indicesSV);
 	}
@@ -1,10 +1,10 @@
 package org.data2semantics.mustard.kernels.graphkernels.rdfdata;
 
 import java.util.List;
-import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.RDFData;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
@@ -12,6 +12,7 @@ import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
 import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
 import org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphGraphListWalkCountKernelMkII;
 import org.data2semantics.mustard.rdf.RDFDataSet;
+import org.data2semantics.mustard.rdf.RDFGraphCache;
 import org.data2semantics.mustard.rdf.RDFUtils;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
@@ -22,7 +23,7 @@ import org.openrdf.model.Statement;
  * @author Gerben
  *
  */
-public class RDFGraphListWalkCountKernelMkII implements GraphKernel<RDFData>, FeatureVectorKernel<RDFData>, ComputationTimeTracker {
+public class RDFGraphListWalkCountKernelMkII implements GraphKernel<RDFData>, FeatureVectorKernel<RDFData>, ComputationTimeTracker, ParallelKernel {
 	private int depth;
 	private boolean inference;
 	private DTGraphGraphListWalkCountKernelMkII kernel;
@@ -43,10 +44,18 @@ public class RDFGraphListWalkCountKernelMkII implements GraphKernel<RDFData>, Fe
 		kernel.setNormalize(normalize);
 	}
 
+	public void setParallelism(int parallelism) {
+		kernel.setParallelism(parallelism);
+	}
+
 	public long getComputationTime() {
 		return kernel.getComputationTime();
 	}
 
+	public long getCPUTime() {
+		return kernel.getCPUTime();
+	}
+
 	public SparseVector[] computeFeatureVectors(RDFData data) {
 		init(data.getDataset(), data.getInstances(), data.getBlackList());
 		return kernel.computeFeatureVectors(graph);
@@ -58,8 +67,6 @@ public class RDFGraphListWalkCountKernelMkII implements GraphKernel<RDFData>, Fe
 	}
 
 	private void init(RDFDataSet dataset, List<Resource> instances, List<Statement> blackList) {
-		Set<Statement> stmts = RDFUtils.getStatements4Depth(dataset, instances, depth, inference);
-		stmts.removeAll(blackList);
-		graph = RDFUtils.statements2Graph(stmts, RDFUtils.REGULAR_LITERALS, instances, true);
+		graph = RDFGraphCache.getGraph(dataset, instances, blackList, depth, inference, RDFUtils.REGULAR_LITERALS, true);
 	}	
 }
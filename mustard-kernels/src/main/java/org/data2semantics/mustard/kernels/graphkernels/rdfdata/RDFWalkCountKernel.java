@@ -1,19 +1,21 @@
 package org.data2semantics.mustard.kernels.graphkernels.rdfdata;
 
 import java.util.List;
-import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.RDFData;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
-import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
-import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
+import org.data2semantics.mustard.kernels.graphkernels.TrainTestFeatureVectorKernel;
+import org.data2semantics.mustard.kernels.graphkernels.TrainTestGraphKernel;
 import org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWalkCountKernel;
 import org.data2semantics.mustard.rdf.RDFDataSet;
+import org.data2semantics.mustard.rdf.RDFGraphCache;
 import org.data2semantics.mustard.rdf.RDFUtils;
+import org.data2semantics.mustard.utils.Pair;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 
@@ -22,7 +24,7 @@ import org.openrdf.model.Statement;
  * 
  * @author Gerben
  */
-public class RDFWalkCountKernel implements GraphKernel<RDFData>, FeatureVectorKernel<RDFData>, ComputationTimeTracker, FeatureInspector {
+public class RDFWalkCountKernel implements TrainTestGraphKernel<RDFData>, TrainTestFeatureVectorKernel<RDFData>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 	private int depth;
 	private boolean inference;
 	private DTGraphWalkCountKernel kernel;
@@ -43,10 +45,27 @@ public class RDFWalkCountKernel implements GraphKernel<RDFData>, FeatureVectorKe
 		kernel.setNormalize(normalize);
 	}
 
+	public void setParallelism(int parallelism) {
+		kernel.setParallelism(parallelism);
+	}
+
+	/**
+	 * See {@link DTGraphWalkCountKernel#setHashBuckets(int)}
+	 * 
+	 * @param hashBuckets
+	 */
+	public void setHashBuckets(int hashBuckets) {
+		kernel.setHashBuckets(hashBuckets);
+	}
+
 	public long getComputationTime() {
 		return kernel.getComputationTime();
 	}
 
+	public long getCPUTime() {
+		return kernel.getCPUTime();
+	}
+
 	public SparseVector[] computeFeatureVectors(RDFData data) {
 		init(data.getDataset(), data.getInstances(), data.getBlackList());
 		return kernel.computeFeatureVectors(graph);
@@ -57,10 +76,30 @@ public class RDFWalkCountKernel implements GraphKernel<RDFData>, FeatureVectorKe
 		return kernel.compute(graph);
 	}
 
+	/**
+	 * Note that only the subgraphs of the test instances are extracted, so this scales with the number of test instances.
+	 */
+	public SparseVector[] computeTestFeatureVectors(RDFData data) {
+		init(data.getDataset(), data.getInstances(), data.getBlackList());
+		return kernel.computeTestFeatureVectors(graph);
+	}
+
+	public Pair<SparseVector[], SparseVector[]> computeFeatureVectors(RDFData trainData, RDFData testData) {
+		init(trainData.getDataset(), trainData.getInstances(), trainData.getBlackList());
+		SingleDTGraph trainGraph = graph;
+		init(testData.getDataset(), testData.getInstances(), testData.getBlackList());
+		return kernel.computeFeatureVectors(trainGraph, graph);
+	}
+
+	public Pair<double[][], double[][]> compute(RDFData trainData, RDFData testData) {
+		init(trainData.getDataset(), trainData.getInstances(), trainData.getBlackList());
+		SingleDTGraph trainGraph = graph;
+		init(testData.getDataset(), testData.getInstances(), testData.getBlackList());
+		return kernel.compute(trainGraph, graph);
+	}
+
 	private void init(RDFDataSet dataset, List<Resource> instances, List<Statement> blackList) {
-		Set<Statement> stmts = RDFUtils.getStatements4Depth(dataset, instances, depth, inference);
-		stmts.removeAll(blackList);
-		graph = RDFUtils.statements2Graph(stmts, RDFUtils.REGULAR_LITERALS, instances, true);
+		graph = RDFGraphCache.getGraph(dataset, instances, blackList, depth, inference, RDFUtils.REGULAR_LITERALS, true);
 	}
 
 	public List<String> getFeatureDescriptions(List<Integer> indicesSV) {
@@ -43,6 +43,10 @@ public class DTGraphGraphListWLSubTreeApproxKernel implements GraphKernel<Single
 		return kernel.getComputationTime();
 	}
 
+	public long getCPUTime() {
+		return kernel.getCPUTime();
+	}
+
 	public org.data2semantics.mustard.kernels.SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		GraphList<DTGraph<ApproxStringLabel,ApproxStringLabel>> graphs = RDFUtils.getSubGraphsApproxStringLabel(data.getGraph(), data.getInstances(), depth);				
 		return kernel.computeFeatureVectors(graphs);
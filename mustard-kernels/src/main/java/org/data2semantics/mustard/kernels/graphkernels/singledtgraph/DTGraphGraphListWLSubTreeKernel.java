@@ -4,8 +4,10 @@ package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
 import java.util.List;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
@@ -21,9 +23,13 @@ import org.nodes.DTGraph;
  * @author Gerben
  *
  */
-public class DTGraphGraphListWLSubTreeKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphGraphListWLSubTreeKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 	private int depth;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	private WLSubTreeKernel kernel;
 
 	public DTGraphGraphListWLSubTreeKernel(int iterations, int depth, boolean reverse, boolean noDuplicateSubtrees, boolean normalize) {
@@ -40,10 +46,18 @@ public class DTGraphGraphListWLSubTreeKernel implements GraphKernel<SingleDTGrap
 		kernel.setNormalize(normalize);
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		GraphList<DTGraph<String,String>> graphs = RDFUtils.getSubGraphs(data.getGraph(), data.getInstances(), depth);				
 		SparseVector[] ret =  kernel.computeFeatureVectors(graphs);
@@ -55,8 +69,10 @@ public class DTGraphGraphListWLSubTreeKernel implements GraphKernel<SingleDTGrap
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -45,6 +45,10 @@ public class DTGraphGraphListWalkCountApproxKernelMkII implements GraphKernel<Si
 		return kernel.getComputationTime();
 	}
 
+	public long getCPUTime() {
+		return kernel.getCPUTime();
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		GraphList<DTGraph<String,String>> graphs = RDFUtils.getSubGraphs(data.getGraph(), data.getInstances(), depth);		
 		return kernel.computeFeatureVectors(graphs);
@@ -5,8 +5,10 @@ package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
 import java.util.List;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
@@ -22,10 +24,14 @@ import org.nodes.DTGraph;
  * @author Gerben
  *
  */
-public class DTGraphGraphListWalkCountKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphGraphListWalkCountKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
 	private int depth;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	private WalkCountKernel kernel;
 
 	public DTGraphGraphListWalkCountKernel(int pathLength, int depth, boolean normalize) {
@@ -41,10 +47,18 @@ public class DTGraphGraphListWalkCountKernel implements GraphKernel<SingleDTGrap
 		this.kernel.setNormalize(normalize);
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		GraphList<DTGraph<String,String>> graphs = RDFUtils.getSubGraphs(data.getGraph(), data.getInstances(), depth);		
 		SparseVector[] ret = kernel.computeFeatureVectors(graphs);
@@ -56,8 +70,10 @@ public class DTGraphGraphListWalkCountKernel implements GraphKernel<SingleDTGrap
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -3,7 +3,9 @@ package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
 
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.GraphList;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
@@ -19,12 +21,16 @@ import org.nodes.DTGraph;
  * @author Gerben
  *
  */
-public class DTGraphGraphListWalkCountKernelMkII implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker {
+public class DTGraphGraphListWalkCountKernelMkII implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, ParallelKernel {
 
 	private int depth;
 	private int pathLength;
 	private boolean normalize;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	public DTGraphGraphListWalkCountKernelMkII(int pathLength, int depth, boolean normalize) {
 		this.normalize = normalize;
@@ -40,12 +46,20 @@ public class DTGraphGraphListWalkCountKernelMkII implements GraphKernel<SingleDT
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 
 
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		GraphList<DTGraph<String,String>> graphs = RDFUtils.getSubGraphs(data.getGraph(), data.getInstances(), depth);		
 		WalkCountKernelMkII kernel = new WalkCountKernelMkII(pathLength, normalize);
@@ -58,8 +72,10 @@ public class DTGraphGraphListWalkCountKernelMkII implements GraphKernel<SingleDT
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 }
@@ -5,7 +5,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -21,8 +23,10 @@ import org.data2semantics.mustard.utils.LabelTagPair;
  *
  * @param <K>
  */
-public class DTGraphHubRemovalWrapperFeatureVectorKernel<K extends FeatureVectorKernel<SingleDTGraph>> implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph> {
+public class DTGraphHubRemovalWrapperFeatureVectorKernel<K extends FeatureVectorKernel<SingleDTGraph>> implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ParallelKernel {
 	private boolean normalize;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	private int[] minHubSizes;
 	private K kernel;
 	
@@ -48,6 +52,10 @@ public class DTGraphHubRemovalWrapperFeatureVectorKernel<K extends FeatureVector
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		SparseVector[] fvs = new SparseVector[data.numInstances()];
 		
@@ -80,7 +88,7 @@ public class DTGraphHubRemovalWrapperFeatureVectorKernel<K extends FeatureVector
 	public double[][] compute(SingleDTGraph data) {
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		return kernel;
 	}
 }
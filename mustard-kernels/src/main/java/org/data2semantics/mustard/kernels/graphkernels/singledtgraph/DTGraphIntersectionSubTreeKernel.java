@@ -9,6 +9,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
@@ -30,6 +31,8 @@ public class DTGraphIntersectionSubTreeKernel implements GraphKernel<SingleDTGra
 	private int depth;
 	private double discountFactor;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
 	protected boolean normalize;
 
 	public DTGraphIntersectionSubTreeKernel() {
@@ -54,6 +57,10 @@ public class DTGraphIntersectionSubTreeKernel implements GraphKernel<SingleDTGra
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public double[][] compute(SingleDTGraph data) {
 		List<DTNode<String,String>> iNodes = data.getInstances();
 		double[][] kernel = KernelUtils.initMatrix(iNodes.size(), iNodes.size());
@@ -62,6 +69,7 @@ public class DTGraphIntersectionSubTreeKernel implements GraphKernel<SingleDTGra
 		DTGraph<String,String> newG = toIntGraph(data.getGraph(),iNodes);
 			
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 		
 		for (int i = 0; i < iNodes.size(); i++) {
 			for (int j = i; j < iNodes.size(); j++) {
@@ -72,6 +80,7 @@ public class DTGraphIntersectionSubTreeKernel implements GraphKernel<SingleDTGra
 		}
 		
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		if (normalize) {
 			return KernelUtils.normalize(kernel);
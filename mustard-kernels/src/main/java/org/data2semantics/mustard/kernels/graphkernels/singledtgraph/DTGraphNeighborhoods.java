@@ -0,0 +1,153 @@
+package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.data2semantics.mustard.kernels.graphkernels.InstanceNeighborhoods;
+import org.nodes.DTLink;
+import org.nodes.DTNode;
+
+/**
+ * The neighborhoods up to a depth of the instances in a DTGraph, computed with the multi-source search of {@link InstanceNeighborhoods},
+ * instead of one search per instance (as in the init() methods of the singledtgraph kernels).
+ *
+ * <p>
+ * The vertices/links of the neighborhoods get local int ids, in order of discovery, so only the part of the graph that is in the neighborhoods is visited.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class DTGraphNeighborhoods extends InstanceNeighborhoods {
+	private Map<DTNode<String,String>, Integer> vertexIds;
+	private Map<DTLink<String,String>, Integer> linkIds;
+	private List<DTNode<String,String>> vertices;
+	private List<DTLink<String,String>> links;
+	private int[] linkFrom;
+	private int[] linkTo;
+
+	// out links of the vertices that are visited by the search, by local ids
+	private int[] outStarts;
+	private int[] outEnds;
+	private int[] outLinks;
+	private int numOutLinks;
+
+	/**
+	 * Compute the neighborhoods up to depth for the instances.
+	 *
+	 * @param instances
+	 * @param depth
+	 * @param lowestDepth, if true the lowest depth encounter of a vertex/link is used for an instance, otherwise the highest
+	 */
+	public DTGraphNeighborhoods(List<DTNode<String,String>> instances, int depth, boolean lowestDepth) {
+		super(depth, lowestDepth);
+
+		vertexIds = new HashMap<DTNode<String,String>, Integer>();
+		linkIds = new HashMap<DTLink<String,String>, Integer>();
+		vertices = new ArrayList<DTNode<String,String>>();
+		links = new ArrayList<DTLink<String,String>>();
+		linkFrom = new int[16];
+		linkTo = new int[16];
+		outStarts = new int[16];
+		outEnds = new int[16];
+		outLinks = new int[16];
+
+		int[] roots = new int[instances.size()];
+		for (int i = 0; i < instances.size(); i++) {
+			roots[i] = vertexId(instances.get(i));
+		}
+		search(roots);
+
+		linkFrom = Arrays.copyOf(linkFrom, numLinks());
+		linkTo = Arrays.copyOf(linkTo, numLinks());
+
+		// the maps and the out links are not needed anymore
+		vertexIds = null;
+		linkIds = null;
+		outStarts = null;
+		outEnds = null;
+		outLinks = null;
+	}
+
+	/**
+	 * The out links of a vertex get their ids when the vertex is first expanded by the search
+	 */
+	@Override
+	protected int outStart(int v) {
+		if (outStarts[v] == -1) {
+			outStarts[v] = numOutLinks;
+			for (DTLink<String,String> link : vertices.get(v).linksOut()) {
+				int e = linkId(link, v);
+				if (numOutLinks == outLinks.length) {
+					outLinks = Arrays.copyOf(outLinks, numOutLinks * 2);
+				}
+				outLinks[numOutLinks++] = e;
+			}
+			outEnds[v] = numOutLinks;
+		}
+		return outStarts[v];
+	}
+
+	@Override
+	protected int outEnd(int v) {
+		return outEnds[v];
+	}
+
+	@Override
+	protected int outLink(int k) {
+		return outLinks[k];
+	}
+
+	private int vertexId(DTNode<String,String> vertex) {
+		Integer v = vertexIds.get(vertex);
+		if (v == null) {
+			v = addVertex();
+			vertexIds.put(vertex, v);
+			vertices.add(vertex);
+			if (v == outStarts.length) {
+				outStarts = Arrays.copyOf(outStarts, v * 2);
+				outEnds = Arrays.copyOf(outEnds, v * 2);
+			}
+			outStarts[v] = -1;
+		}
+		return v;
+	}
+
+	private int linkId(DTLink<String,String> link, int from) {
+		Integer e = linkIds.get(link);
+		if (e == null) {
+			int to = vertexId(link.to());
+			e = addLink();
+			linkIds.put(link, e);
+			links.add(link);
+			if (e == linkFrom.length) {
+				linkFrom = Arrays.copyOf(linkFrom, e * 2);
+				linkTo = Arrays.copyOf(linkTo, e * 2);
+			}
+			linkFrom[e] = from;
+			linkTo[e] = to;
+		}
+		return e;
+	}
+
+	public DTNode<String,String> vertex(int v) {
+		return vertices.get(v);
+	}
+
+	public DTLink<String,String> link(int e) {
+		return links.get(e);
+	}
+
+	@Override
+	public int linkFrom(int e) {
+		return linkFrom[e];
+	}
+
+	@Override
+	public int linkTo(int e) {
+		return linkTo[e];
+	}
+}
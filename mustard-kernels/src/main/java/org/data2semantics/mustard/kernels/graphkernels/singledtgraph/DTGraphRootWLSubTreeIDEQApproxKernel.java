@@ -8,8 +8,10 @@ import java.util.Map;
 import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -30,7 +32,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphRootWLSubTreeIDEQApproxKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphRootWLSubTreeIDEQApproxKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
 	private Map<DTNode<ApproxStringLabel,ApproxStringLabel>, Map<DTNode<ApproxStringLabel,ApproxStringLabel>, Integer>> instanceVertexIndexMap;
 	private Map<DTNode<ApproxStringLabel,ApproxStringLabel>, Map<DTLink<ApproxStringLabel,ApproxStringLabel>, Integer>> instanceEdgeIndexMap;
@@ -51,6 +53,10 @@ public class DTGraphRootWLSubTreeIDEQApproxKernel implements GraphKernel<SingleD
 	private Map<String,Integer> labelFreq;
 
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	public DTGraphRootWLSubTreeIDEQApproxKernel(int iterations, int[] maxPrevNBHs, int[] maxLabelCards, int[] minFreqs, boolean normalize) {
 		this.normalize = normalize;
@@ -69,12 +75,20 @@ public class DTGraphRootWLSubTreeIDEQApproxKernel implements GraphKernel<SingleD
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 
 
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {		
 		SparseVector[] featureVectors = new SparseVector[data.numInstances()];
@@ -87,6 +101,7 @@ public class DTGraphRootWLSubTreeIDEQApproxKernel implements GraphKernel<SingleD
 		double numK = (minFreqs.length) * (maxLabelCards.length) * (maxPrevNBHs.length); // number of different kernels that have to be computed computed	
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		/*
 		init(data.getGraph(), data.getInstances());
@@ -137,6 +152,7 @@ public class DTGraphRootWLSubTreeIDEQApproxKernel implements GraphKernel<SingleD
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		// Set the reverse label dict, to reverse engineer the features
 		dict = new HashMap<String,String>();
@@ -155,8 +171,10 @@ public class DTGraphRootWLSubTreeIDEQApproxKernel implements GraphKernel<SingleD
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -307,7 +325,7 @@ public class DTGraphRootWLSubTreeIDEQApproxKernel implements GraphKernel<SingleD
 				depth = vertexIndexMap.get(vertex);
 				if (depth == this.depth && vertex.label().getSameAsPrev() == 0) {
 					index = Integer.parseInt(vertex.label().toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 		}
@@ -8,8 +8,10 @@ import java.util.Map;
 import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -27,7 +29,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphRootWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphRootWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
 	private Map<DTNode<PathStringLabel,PathStringLabel>, Map<DTNode<PathStringLabel,PathStringLabel>, Integer>> instanceVertexIndexMap;
 	private Map<DTNode<PathStringLabel,PathStringLabel>, Map<DTLink<PathStringLabel,PathStringLabel>, Integer>> instanceEdgeIndexMap;
@@ -40,6 +42,10 @@ public class DTGraphRootWalkCountIDEQApproxKernel implements GraphKernel<SingleD
 	private boolean normalize;
 	private int minFreq;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -65,10 +71,18 @@ public class DTGraphRootWalkCountIDEQApproxKernel implements GraphKernel<SingleD
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		instanceVertices = new ArrayList<DTNode<PathStringLabel,PathStringLabel>>();
 		this.instanceVertexIndexMap = new HashMap<DTNode<PathStringLabel,PathStringLabel>, Map<DTNode<PathStringLabel,PathStringLabel>, Integer>>();
@@ -85,6 +99,7 @@ public class DTGraphRootWalkCountIDEQApproxKernel implements GraphKernel<SingleD
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		// initial count
 		// Count paths
@@ -155,6 +170,7 @@ public class DTGraphRootWalkCountIDEQApproxKernel implements GraphKernel<SingleD
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		reversePathDict = new HashMap<Integer,String>();	
 		for (String key : pathDict.keySet()) {
@@ -178,8 +194,10 @@ public class DTGraphRootWalkCountIDEQApproxKernel implements GraphKernel<SingleD
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -294,7 +312,7 @@ public class DTGraphRootWalkCountIDEQApproxKernel implements GraphKernel<SingleD
 				if (depth == this.depth) {
 					for (String path : vertex.label().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 			}
@@ -6,8 +6,10 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -25,7 +27,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
 	private DTGraph<String,String> rdfGraph;
 	private List<DTNode<String,String>> instanceVertices;
@@ -33,6 +35,10 @@ public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, F
 	private int pathLength;
 	private boolean normalize;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -55,12 +61,20 @@ public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, F
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	
 
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		pathDict  = new HashMap<String, Integer>();
 		labelDict = new HashMap<String, Integer>();
@@ -73,6 +87,7 @@ public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, F
 		}
 		
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 		for (int i = 0; i < featureVectors.length; i++) {
 			countPathRec(featureVectors[i], instanceVertices.get(i), "", pathLength);
 		}
@@ -83,6 +98,7 @@ public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, F
 		}
 		
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		reversePathDict = new HashMap<Integer,String>();	
 		for (String key : pathDict.keySet()) {
@@ -106,8 +122,10 @@ public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, F
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -117,7 +135,7 @@ public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, F
 		if (!pathDict.containsKey(path)) {
 			pathDict.put(path, pathDict.size());
 		}
-		fv.setValue(pathDict.get(path), fv.getValue(pathDict.get(path)) + 1);
+		fv.addValue(pathDict.get(path), 1);
 		if (depth > 0) {
 			for (DTLink<String,String> edge : vertex.linksOut()) {
 				countPathRec(fv, edge, path, depth-1);
@@ -130,7 +148,7 @@ public class DTGraphRootWalkCountKernel implements GraphKernel<SingleDTGraph>, F
 		if (!pathDict.containsKey(path)) {
 			pathDict.put(path, pathDict.size());
 		}
-		fv.setValue(pathDict.get(path), fv.getValue(pathDict.get(path)) + 1);
+		fv.addValue(pathDict.get(path), 1);
 		if (depth > 0) {
 			countPathRec(fv, edge.to(), path, depth-1);
 		}	
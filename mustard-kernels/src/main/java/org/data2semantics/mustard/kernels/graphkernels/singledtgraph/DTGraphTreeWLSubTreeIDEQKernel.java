@@ -6,7 +6,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -27,7 +29,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker {
+public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, ParallelKernel {
 
 	private Map<DTNode<StringLabel,StringLabel>, List<Pair<DTNode<StringLabel,StringLabel>, Integer>>> instanceVertexIndexMap;
 	private Map<DTNode<StringLabel,StringLabel>, List<Pair<DTLink<StringLabel,StringLabel>, Integer>>> instanceEdgeIndexMap;
@@ -41,6 +43,10 @@ public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph
 	private boolean reverse;
 	private boolean noDuplicateSubtrees;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	public DTGraphTreeWLSubTreeIDEQKernel(int iterations, int depth, boolean reverse, boolean noDuplicateSubtrees, boolean normalize) {
 		this.reverse = reverse;
@@ -58,12 +64,20 @@ public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 
 
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		SparseVector[] featureVectors = new SparseVector[data.getInstances().size()];
@@ -79,6 +93,7 @@ public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph
 		gList.add(rdfGraph);
 		
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		wl.wlInitialize(gList);
 
@@ -92,6 +107,7 @@ public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph
 		}
 		
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		if (this.normalize) {
 			featureVectors = KernelUtils.normalize(featureVectors);
@@ -104,8 +120,10 @@ public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -210,7 +228,7 @@ public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph
 				depth = vertex.getSecond();
 				if ((!noDuplicateSubtrees || !vertex.getFirst().label().isSameAsPrev()) && ((depth * 2) >=  currentIt)) {
 					index = Integer.parseInt(vertex.getFirst().label().toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 			edgeIndexMap = instanceEdgeIndexMap.get(instances.get(i));
@@ -218,7 +236,7 @@ public class DTGraphTreeWLSubTreeIDEQKernel implements GraphKernel<SingleDTGraph
 				depth = edge.getSecond();
 				if ((!noDuplicateSubtrees || !edge.getFirst().tag().isSameAsPrev()) && (((depth * 2)+1) >=  currentIt)) {
 					index = Integer.parseInt(edge.getFirst().tag().toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 		}
@@ -6,16 +6,18 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
 import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
 import org.data2semantics.mustard.utils.Pair;
-import org.data2semantics.mustard.weisfeilerlehman.MapLabel;
+import org.data2semantics.mustard.weisfeilerlehman.IntMapLabel;
 import org.data2semantics.mustard.weisfeilerlehman.WLUtils;
-import org.data2semantics.mustard.weisfeilerlehman.WeisfeilerLehmanDTGraphMapLabelIterator;
+import org.data2semantics.mustard.weisfeilerlehman.WeisfeilerLehmanDTGraphIntMapLabelIterator;
 import org.data2semantics.mustard.weisfeilerlehman.WeisfeilerLehmanIterator;
 import org.nodes.DTGraph;
 import org.nodes.DTLink;
@@ -29,13 +31,13 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphTreeWLSubTreeKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphTreeWLSubTreeKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
-	private Map<DTNode<MapLabel,MapLabel>, List<Pair<DTNode<MapLabel,MapLabel>, Integer>>> instanceVertexIndexMap;
-	private Map<DTNode<MapLabel,MapLabel>, List<Pair<DTLink<MapLabel,MapLabel>, Integer>>> instanceEdgeIndexMap;
+	private Map<DTNode<IntMapLabel,IntMapLabel>, List<Pair<DTNode<IntMapLabel,IntMapLabel>, Integer>>> instanceVertexIndexMap;
+	private Map<DTNode<IntMapLabel,IntMapLabel>, List<Pair<DTLink<IntMapLabel,IntMapLabel>, Integer>>> instanceEdgeIndexMap;
 
-	private DTGraph<MapLabel,MapLabel> rdfGraph;
-	private List<DTNode<MapLabel,MapLabel>> instanceVertices;
+	private DTGraph<IntMapLabel,IntMapLabel> rdfGraph;
+	private List<DTNode<IntMapLabel,IntMapLabel>> instanceVertices;
 
 	private int depth;
 	private int iterations;
@@ -43,6 +45,10 @@ public class DTGraphTreeWLSubTreeKernel implements GraphKernel<SingleDTGraph>, F
 	private boolean reverse;
 	private boolean noDuplicateSubtrees;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	
 	private Map<String,String> dict;
 
@@ -66,12 +72,20 @@ public class DTGraphTreeWLSubTreeKernel implements GraphKernel<SingleDTGraph>, F
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 
 
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		SparseVector[] featureVectors = new SparseVector[data.getInstances().size()];
@@ -81,25 +95,27 @@ public class DTGraphTreeWLSubTreeKernel implements GraphKernel<SingleDTGraph>, F
 
 		init(data.getGraph(), data.getInstances());
 			
-		WeisfeilerLehmanIterator<DTGraph<MapLabel,MapLabel>> wl = new WeisfeilerLehmanDTGraphMapLabelIterator(reverse, noDuplicateSubtrees);
+		WeisfeilerLehmanIterator<DTGraph<IntMapLabel,IntMapLabel>> wl = new WeisfeilerLehmanDTGraphIntMapLabelIterator(reverse, noDuplicateSubtrees);
 
-		List<DTGraph<MapLabel,MapLabel>> gList = new ArrayList<DTGraph<MapLabel,MapLabel>>();
+		List<DTGraph<IntMapLabel,IntMapLabel>> gList = new ArrayList<DTGraph<IntMapLabel,IntMapLabel>>();
 		gList.add(rdfGraph);
 		
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		wl.wlInitialize(gList);
 
 		double weight = 1.0;
 		
-		computeFVs(rdfGraph, instanceVertices, weight, featureVectors, wl.getLabelDict().size()-1);
+		computeFVs(rdfGraph, instanceVertices, weight, featureVectors, wl.getLabelDictSize()-1);
 
 		for (int i = 0; i < iterations; i++) {
 			wl.wlIterate(gList);
-			computeFVs(rdfGraph, instanceVertices, weight, featureVectors, wl.getLabelDict().size()-1);
+			computeFVs(rdfGraph, instanceVertices, weight, featureVectors, wl.getLabelDictSize()-1);
 		}
 		
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		// Set the reverse label dict, to reverse engineer the features
 		dict = new HashMap<String,String>();
@@ -118,38 +134,40 @@ public class DTGraphTreeWLSubTreeKernel implements GraphKernel<SingleDTGraph>, F
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
 
 
 	private void init(DTGraph<String,String> graph, List<DTNode<String,String>> instances) {
-		DTNode<MapLabel,MapLabel> startV;
+		DTNode<IntMapLabel,IntMapLabel> startV;
 		List<DTNode<String,String>> frontV, newFrontV;
-		List<Pair<DTNode<MapLabel,MapLabel>, Integer>> vertexIndexMap;
-		List<Pair<DTLink<MapLabel,MapLabel>, Integer>> edgeIndexMap;
-		Map<DTNode<String,String>, DTNode<MapLabel,MapLabel>> vOldNewMap = new HashMap<DTNode<String,String>,DTNode<MapLabel,MapLabel>>();
-		Map<DTLink<String,String>, DTLink<MapLabel,MapLabel>> eOldNewMap = new HashMap<DTLink<String,String>,DTLink<MapLabel,MapLabel>>();
+		List<Pair<DTNode<IntMapLabel,IntMapLabel>, Integer>> vertexIndexMap;
+		List<Pair<DTLink<IntMapLabel,IntMapLabel>, Integer>> edgeIndexMap;
+		Map<DTNode<String,String>, DTNode<IntMapLabel,IntMapLabel>> vOldNewMap = new HashMap<DTNode<String,String>,DTNode<IntMapLabel,IntMapLabel>>();
+		Map<DTLink<String,String>, DTLink<IntMapLabel,IntMapLabel>> eOldNewMap = new HashMap<DTLink<String,String>,DTLink<IntMapLabel,IntMapLabel>>();
 
-		instanceVertices = new ArrayList<DTNode<MapLabel,MapLabel>>();
-		instanceVertexIndexMap = new HashMap<DTNode<MapLabel,MapLabel>, List<Pair<DTNode<MapLabel,MapLabel>, Integer>>>();
-		instanceEdgeIndexMap = new HashMap<DTNode<MapLabel,MapLabel>, List<Pair<DTLink<MapLabel,MapLabel>, Integer>>>();
-		rdfGraph = new LightDTGraph<MapLabel,MapLabel>();
+		instanceVertices = new ArrayList<DTNode<IntMapLabel,IntMapLabel>>();
+		instanceVertexIndexMap = new HashMap<DTNode<IntMapLabel,IntMapLabel>, List<Pair<DTNode<IntMapLabel,IntMapLabel>, Integer>>>();
+		instanceEdgeIndexMap = new HashMap<DTNode<IntMapLabel,IntMapLabel>, List<Pair<DTLink<IntMapLabel,IntMapLabel>, Integer>>>();
+		rdfGraph = new LightDTGraph<IntMapLabel,IntMapLabel>();
 
 		for (DTNode<String,String> oldStartV : instances) {				
-			vertexIndexMap = new ArrayList<Pair<DTNode<MapLabel,MapLabel>, Integer>>();
-			edgeIndexMap   = new ArrayList<Pair<DTLink<MapLabel,MapLabel>, Integer>>();
+			vertexIndexMap = new ArrayList<Pair<DTNode<IntMapLabel,IntMapLabel>, Integer>>();
+			edgeIndexMap   = new ArrayList<Pair<DTLink<IntMapLabel,IntMapLabel>, Integer>>();
 
 			// Get the start node
 			if (vOldNewMap.containsKey(oldStartV)) {
 				startV = vOldNewMap.get(oldStartV);
 			} else { 
-				startV = rdfGraph.add(new MapLabel());
+				startV = rdfGraph.add(new IntMapLabel());
 				vOldNewMap.put(oldStartV, startV);
 			}
-			startV.label().put(depth, new StringBuilder(oldStartV.label()));
+			startV.label().put(depth, oldStartV.label());
 			instanceVertices.add(startV);
 
 			instanceVertexIndexMap.put(startV, vertexIndexMap);
@@ -159,30 +177,30 @@ public class DTGraphTreeWLSubTreeKernel implements GraphKernel<SingleDTGraph>, F
 			frontV.add(oldStartV);
 
 			// Process the start node
-			vertexIndexMap.add(new Pair<DTNode<MapLabel,MapLabel>,Integer>(startV, depth));
+			vertexIndexMap.add(new Pair<DTNode<IntMapLabel,IntMapLabel>,Integer>(startV, depth));
 
 			for (int j = depth - 1; j >= 0; j--) {
 				newFrontV = new ArrayList<DTNode<String,String>>();
 				for (DTNode<String,String> qV : frontV) {
 					for (DTLink<String,String> edge : qV.linksOut()) {
 						if (vOldNewMap.containsKey(edge.to())) { // This vertex has been added to rdfGraph
-							vertexIndexMap.add(new Pair<DTNode<MapLabel,MapLabel>,Integer>(vOldNewMap.get(edge.to()), j));  
-							vOldNewMap.get(edge.to()).label().put(j, new StringBuilder(edge.to().label())); 
+							vertexIndexMap.add(new Pair<DTNode<IntMapLabel,IntMapLabel>,Integer>(vOldNewMap.get(edge.to()), j));  
+							vOldNewMap.get(edge.to()).label().put(j, edge.to().label()); 
 						} else {
-							DTNode<MapLabel,MapLabel> newN = rdfGraph.add(new MapLabel());
-							newN.label().put(j, new StringBuilder(edge.to().label()));
+							DTNode<IntMapLabel,IntMapLabel> newN = rdfGraph.add(new IntMapLabel());
+							newN.label().put(j, edge.to().label());
 							vOldNewMap.put(edge.to(), newN);
-							vertexIndexMap.add(new Pair<DTNode<MapLabel,MapLabel>,Integer>(newN, j)); 
+							vertexIndexMap.add(new Pair<DTNode<IntMapLabel,IntMapLabel>,Integer>(newN, j)); 
 						}
 
 						if (eOldNewMap.containsKey(edge)) {
-							edgeIndexMap.add(new Pair<DTLink<MapLabel,MapLabel>,Integer>(eOldNewMap.get(edge),j)); 		
-							eOldNewMap.get(edge).tag().put(j, new StringBuilder(edge.tag()));
+							edgeIndexMap.add(new Pair<DTLink<IntMapLabel,IntMapLabel>,Integer>(eOldNewMap.get(edge),j)); 		
+							eOldNewMap.get(edge).tag().put(j, edge.tag());
 						} else {
-							DTLink<MapLabel,MapLabel> newE = vOldNewMap.get(qV).connect(vOldNewMap.get(edge.to()), new MapLabel());
-							newE.tag().put(j, new StringBuilder(edge.tag()));
+							DTLink<IntMapLabel,IntMapLabel> newE = vOldNewMap.get(qV).connect(vOldNewMap.get(edge.to()), new IntMapLabel());
+							newE.tag().put(j, edge.tag());
 							eOldNewMap.put(edge, newE);
-							edgeIndexMap.add(new Pair<DTLink<MapLabel,MapLabel>,Integer>(newE, j));
+							edgeIndexMap.add(new Pair<DTLink<IntMapLabel,IntMapLabel>,Integer>(newE, j));
 						}
 
 						// Add the vertex to the new front, if we go into a new round
@@ -206,26 +224,26 @@ public class DTGraphTreeWLSubTreeKernel implements GraphKernel<SingleDTGraph>, F
 	 * @param weight
 	 * @param featureVectors
 	 */
-	private void computeFVs(DTGraph<MapLabel,MapLabel> graph, List<DTNode<MapLabel,MapLabel>> instances, double weight, SparseVector[] featureVectors, int lastIndex) {
+	private void computeFVs(DTGraph<IntMapLabel,IntMapLabel> graph, List<DTNode<IntMapLabel,IntMapLabel>> instances, double weight, SparseVector[] featureVectors, int lastIndex) {
 		int index;
-		List<Pair<DTNode<MapLabel,MapLabel>, Integer>> vertexIndexMap;
-		List<Pair<DTLink<MapLabel,MapLabel>, Integer>> edgeIndexMap;
+		List<Pair<DTNode<IntMapLabel,IntMapLabel>, Integer>> vertexIndexMap;
+		List<Pair<DTLink<IntMapLabel,IntMapLabel>, Integer>> edgeIndexMap;
 
 		for (int i = 0; i < instances.size(); i++) {
 			featureVectors[i].setLastIndex(lastIndex);
 
 			vertexIndexMap = instanceVertexIndexMap.get(instances.get(i));
-			for (Pair<DTNode<MapLabel,MapLabel>, Integer> vertex : vertexIndexMap) {
+			for (Pair<DTNode<IntMapLabel,IntMapLabel>, Integer> vertex : vertexIndexMap) {
 				if (!vertex.getFirst().label().getSameAsPrev(vertex.getSecond())) {
-					index = Integer.parseInt(vertex.getFirst().label().get(vertex.getSecond()).toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					index = vertex.getFirst().label().get(vertex.getSecond());
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 			edgeIndexMap = instanceEdgeIndexMap.get(instances.get(i));
-			for (Pair<DTLink<MapLabel,MapLabel>, Integer> edge : edgeIndexMap) {
+			for (Pair<DTLink<IntMapLabel,IntMapLabel>, Integer> edge : edgeIndexMap) {
 				if (!edge.getFirst().tag().getSameAsPrev(edge.getSecond())) {
-					index = Integer.parseInt(edge.getFirst().tag().get(edge.getSecond()).toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+					index = edge.getFirst().tag().get(edge.getSecond());
+					featureVectors[i].addValue(index, weight);
 				}
 			}
 		}
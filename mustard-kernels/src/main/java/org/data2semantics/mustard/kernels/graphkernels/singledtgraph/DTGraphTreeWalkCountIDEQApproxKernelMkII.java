@@ -8,8 +8,10 @@ import java.util.Map;
 import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -29,7 +31,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
 	private Map<DTNode<PathStringLabel,PathStringLabel>, List<Pair<DTNode<PathStringLabel,PathStringLabel>, Integer>>> instanceVertexIndexMap;
 	private Map<DTNode<PathStringLabel,PathStringLabel>, List<Pair<DTLink<PathStringLabel,PathStringLabel>, Integer>>> instanceEdgeIndexMap;
@@ -42,6 +44,10 @@ public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<Sin
 	private boolean normalize;
 	private int minFreq;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -68,10 +74,18 @@ public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<Sin
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		instanceVertices = new ArrayList<DTNode<PathStringLabel,PathStringLabel>>();
 		this.instanceVertexIndexMap = new HashMap<DTNode<PathStringLabel,PathStringLabel>, List<Pair<DTNode<PathStringLabel,PathStringLabel>, Integer>>>();
@@ -88,6 +102,7 @@ public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<Sin
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		// initial count
 		// Count paths
@@ -160,6 +175,7 @@ public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<Sin
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		reversePathDict = new HashMap<Integer,String>();	
 		for (String key : pathDict.keySet()) {
@@ -183,8 +199,10 @@ public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<Sin
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -295,7 +313,7 @@ public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<Sin
 				if ((depth * 2) >=  currentIt) {
 					for (String path : vertex.getFirst().label().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 			}
@@ -306,7 +324,7 @@ public class DTGraphTreeWalkCountIDEQApproxKernelMkII implements GraphKernel<Sin
 				if ((depth * 2)+1 >=  currentIt) {
 					for (String path : edge.getFirst().tag().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 			}
@@ -6,7 +6,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -24,7 +26,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker {
+public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, ParallelKernel {
 
 	private Map<DTNode<PathStringLabel,PathStringLabel>, List<Pair<DTNode<PathStringLabel,PathStringLabel>, Integer>>> instanceVertexIndexMap;
 	private Map<DTNode<PathStringLabel,PathStringLabel>, List<Pair<DTLink<PathStringLabel,PathStringLabel>, Integer>>> instanceEdgeIndexMap;
@@ -36,6 +38,10 @@ public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTG
 	private int pathLength;
 	private boolean normalize;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -56,10 +62,18 @@ public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTG
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		instanceVertices = new ArrayList<DTNode<PathStringLabel,PathStringLabel>>();
 		this.instanceVertexIndexMap = new HashMap<DTNode<PathStringLabel,PathStringLabel>, List<Pair<DTNode<PathStringLabel,PathStringLabel>, Integer>>>();
@@ -76,6 +90,7 @@ public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTG
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		// initial count
 		// Count paths
@@ -146,6 +161,7 @@ public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTG
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		if (this.normalize) {
 			featureVectors = KernelUtils.normalize(featureVectors);
@@ -159,8 +175,10 @@ public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTG
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -271,7 +289,7 @@ public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTG
 				if ((depth * 2) >=  currentIt) {
 					for (String path : vertex.getFirst().label().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 			}
@@ -282,7 +300,7 @@ public class DTGraphTreeWalkCountIDEQKernelMkII implements GraphKernel<SingleDTG
 				if ((depth * 2)+1 >=  currentIt) {
 					for (String path : edge.getFirst().tag().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 			}
@@ -6,7 +6,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -24,7 +26,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphTreeWalkCountKernelMkII implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker {
+public class DTGraphTreeWalkCountKernelMkII implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, ParallelKernel {
 
 	private Map<DTNode<PathStringMapLabel,PathStringMapLabel>, List<Pair<DTNode<PathStringMapLabel,PathStringMapLabel>, Integer>>> instanceVertexIndexMap;
 	private Map<DTNode<PathStringMapLabel,PathStringMapLabel>, List<Pair<DTLink<PathStringMapLabel,PathStringMapLabel>, Integer>>> instanceEdgeIndexMap;
@@ -36,6 +38,10 @@ public class DTGraphTreeWalkCountKernelMkII implements GraphKernel<SingleDTGraph
 	private int pathLength;
 	private boolean normalize;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -56,10 +62,18 @@ public class DTGraphTreeWalkCountKernelMkII implements GraphKernel<SingleDTGraph
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		instanceVertices = new ArrayList<DTNode<PathStringMapLabel,PathStringMapLabel>>();
 		this.instanceVertexIndexMap = new HashMap<DTNode<PathStringMapLabel,PathStringMapLabel>, List<Pair<DTNode<PathStringMapLabel,PathStringMapLabel>, Integer>>>();
@@ -76,6 +90,7 @@ public class DTGraphTreeWalkCountKernelMkII implements GraphKernel<SingleDTGraph
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		// initial count
 		// Count paths
@@ -159,6 +174,7 @@ public class DTGraphTreeWalkCountKernelMkII implements GraphKernel<SingleDTGraph
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		if (this.normalize) {
 			featureVectors = KernelUtils.normalize(featureVectors);
@@ -172,8 +188,10 @@ public class DTGraphTreeWalkCountKernelMkII implements GraphKernel<SingleDTGraph
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -282,14 +300,14 @@ public class DTGraphTreeWalkCountKernelMkII implements GraphKernel<SingleDTGraph
 			for (Pair<DTNode<PathStringMapLabel,PathStringMapLabel>, Integer> vertex : vertexIndexMap) {
 				for (String path : vertex.getFirst().label().getPathsMap().get(vertex.getSecond())) {
 					index = pathDict.get(path);
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+					featureVectors[i].addValue(index, 1.0);
 				}
 			}
 			edgeIndexMap = instanceEdgeIndexMap.get(instances.get(i));
 			for (Pair<DTLink<PathStringMapLabel,PathStringMapLabel>, Integer> edge : edgeIndexMap) {
 				for (String path : edge.getFirst().tag().getPathsMap().get(edge.getSecond())) {
 					index = pathDict.get(path);
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+					featureVectors[i].addValue(index, 1.0);
 				}
 			}
 		}
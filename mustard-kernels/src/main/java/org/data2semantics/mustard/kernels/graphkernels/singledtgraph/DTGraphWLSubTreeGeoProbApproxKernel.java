@@ -8,7 +8,9 @@ import java.util.Map;
 import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -32,7 +34,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphWLSubTreeGeoProbApproxKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker {
+public class DTGraphWLSubTreeGeoProbApproxKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, ParallelKernel {
 
 	private DTGraph<ApproxStringLabel,ApproxStringLabel> rdfGraph;
 	private List<DTNode<ApproxStringLabel,ApproxStringLabel>> instanceVertices;
@@ -52,6 +54,10 @@ public class DTGraphWLSubTreeGeoProbApproxKernel implements GraphKernel<SingleDT
 	private Map<String,Integer> labelFreq;
 
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	public DTGraphWLSubTreeGeoProbApproxKernel(int iterations, int depth, double mean, int[] maxPrevNBHs, int[] maxLabelCards, int[] minFreqs, boolean normalize) {
 		this.normalize = normalize;
@@ -71,10 +77,18 @@ public class DTGraphWLSubTreeGeoProbApproxKernel implements GraphKernel<SingleDT
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {		
 		SparseVector[] featureVectors = new SparseVector[data.numInstances()];
 		for (int i = 0; i < featureVectors.length; i++) {
@@ -87,6 +101,7 @@ public class DTGraphWLSubTreeGeoProbApproxKernel implements GraphKernel<SingleDT
 		WeisfeilerLehmanApproxIterator<DTGraph<ApproxStringLabel,ApproxStringLabel>,String> wl = new WeisfeilerLehmanApproxDTGraphIterator(true, 1, 1, 1);
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		for (int minFreq : minFreqs) {
 			for (int maxCard : maxLabelCards) {
@@ -114,6 +129,7 @@ public class DTGraphWLSubTreeGeoProbApproxKernel implements GraphKernel<SingleDT
 			}
 		}
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		if (this.normalize) {
 			featureVectors = KernelUtils.normalize(featureVectors);
@@ -125,8 +141,10 @@ public class DTGraphWLSubTreeGeoProbApproxKernel implements GraphKernel<SingleDT
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -284,7 +302,7 @@ public class DTGraphWLSubTreeGeoProbApproxKernel implements GraphKernel<SingleDT
 			if (!s.equals("") && !prev.contains(s)) { // check for previous NBH and if the label is empty, since empty means do nothing
 				int index = Integer.parseInt(s);	
 				double weight = getProb(veDepth + it);
-				fv.setValue(index, fv.getValue(index) + weight);
+				fv.addValue(index, weight);
 				prev.add(s);
 			}
 			it++;
@@ -6,8 +6,10 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -32,7 +34,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
 	private Map<DTNode<StringLabel,StringLabel>, Map<DTNode<StringLabel,StringLabel>, Integer>> instanceVertexIndexMap;
 	private Map<DTNode<StringLabel,StringLabel>, Map<DTLink<StringLabel,StringLabel>, Integer>> instanceEdgeIndexMap;
@@ -48,6 +50,10 @@ public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>
 	private boolean normalize;
 
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	private Map<String,String> dict;
 
 	private double p;
@@ -70,12 +76,20 @@ public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 
 
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {		
 		SparseVector[] featureVectors = new SparseVector[data.getInstances().size()];
@@ -100,8 +114,10 @@ public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>
 		gList.add(rdfGraph);
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 		wl.wlInitialize(gList);
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		double weight = 1.0;
 
@@ -109,8 +125,10 @@ public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>
 
 		for (int i = 0; i < iterations; i++) {
 			tic = System.currentTimeMillis();
+			cpuTic = KernelUtils.getCPUTime();
 			wl.wlIterate(gList);
 			compTime += System.currentTimeMillis() - tic;
+			cpuTime += KernelUtils.getCPUTime() - cpuTic;
 
 			computeFVs(rdfGraph, instanceVertices, weight, featureVectors, wl.getLabelDict().size()-1, i + 1);
 		}
@@ -135,8 +153,10 @@ public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -266,7 +286,7 @@ public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>
  
 				if (!vertex.label().isSameAsPrev() && (depth * 2) >= currentIt) { 
 					index = Integer.parseInt(vertex.label().toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + getProb(((this.depth - depth) * 2) + currentIt)); // depth counts only vertices, we want it combined vert + edges here
+					featureVectors[i].addValue(index, getProb(((this.depth - depth) * 2) + currentIt)); // depth counts only vertices, we want it combined vert + edges here
 				}
 			}
 
@@ -275,7 +295,7 @@ public class DTGraphWLSubTreeGeoProbKernel implements GraphKernel<SingleDTGraph>
 
 				if (!edge.tag().isSameAsPrev() && ((depth * 2)+1) >= currentIt) { 
 					index = Integer.parseInt(edge.tag().toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + getProb(((this.depth - depth) * 2) - 1 + currentIt)); // see above
+					featureVectors[i].addValue(index, getProb(((this.depth - depth) * 2) - 1 + currentIt)); // see above
 				}
 			}
 		}
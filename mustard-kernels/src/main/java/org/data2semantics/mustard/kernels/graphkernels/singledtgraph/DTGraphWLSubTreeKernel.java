@@ -2,20 +2,25 @@ package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
-import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
-import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
-import org.data2semantics.mustard.weisfeilerlehman.MapLabel;
+import org.data2semantics.mustard.kernels.graphkernels.TrainTestFeatureVectorKernel;
+import org.data2semantics.mustard.kernels.graphkernels.TrainTestGraphKernel;
+import org.data2semantics.mustard.utils.Pair;
+import org.data2semantics.mustard.weisfeilerlehman.IntMapLabel;
 import org.data2semantics.mustard.weisfeilerlehman.WLUtils;
-import org.data2semantics.mustard.weisfeilerlehman.WeisfeilerLehmanDTGraphMapLabelIterator;
-import org.data2semantics.mustard.weisfeilerlehman.WeisfeilerLehmanIterator;
+import org.data2semantics.mustard.weisfeilerlehman.WeisfeilerLehmanDTGraphIntMapLabelIterator;
 import org.nodes.DTGraph;
 import org.nodes.DTLink;
 import org.nodes.DTNode;
@@ -33,16 +38,22 @@ import org.nodes.LightDTGraph;
  * - noDuplicateSubtrees, if true, different labels describing the same subtree (in different iterations) will not occur
  * - normalize, whether the kernel/featurevectors is/are normalized
  * 
+ * For a train/test split, the WL label dictionary of the train data is frozen and the test instances are labeled with it, see {@link TrainTestFeatureVectorKernel}.
+ * Subtrees that do not occur in the train data are dropped, or hashed into a number of extra features (see {@link #setHashBuckets(int)}).
+ * 
+ * In incremental mode (see {@link #setIncremental(boolean)}) the kernel keeps its state after computing the feature vectors, so that 
+ * added statements and instances only require recomputing the instances that are affected, see {@link #addStatements(List)} and {@link #addInstances(List)}.
+ * 
  * @author Gerben
  *
  */
-public class DTGraphWLSubTreeKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphWLSubTreeKernel implements TrainTestGraphKernel<SingleDTGraph>, TrainTestFeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
-	private Map<DTNode<MapLabel,MapLabel>, Map<DTNode<MapLabel,MapLabel>, Integer>> instanceVertexIndexMap;
-	private Map<DTNode<MapLabel,MapLabel>, Map<DTLink<MapLabel,MapLabel>, Integer>> instanceEdgeIndexMap;
+	private DTGraphNeighborhoods nbhs;
+	private List<DTNode<IntMapLabel,IntMapLabel>> nbhVertices; // vertex of rdfGraph for each vertex of nbhs
+	private List<DTLink<IntMapLabel,IntMapLabel>> nbhLinks;
 
-	private DTGraph<MapLabel,MapLabel> rdfGraph;
-	private List<DTNode<MapLabel,MapLabel>> instanceVertices;
+	private DTGraph<IntMapLabel,IntMapLabel> rdfGraph;
 
 	private int depth;
 	private int iterations;
@@ -51,7 +62,21 @@ public class DTGraphWLSubTreeKernel implements GraphKernel<SingleDTGraph>, Featu
 	private boolean noDuplicateSubtrees;
 	
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 	private Map<String,String> dict;
+	private WeisfeilerLehmanDTGraphIntMapLabelIterator wl;
+	@ExcludeFromLabel
+	private int hashBuckets; // only influences the test feature vectors
+
+	// incremental state
+	@ExcludeFromLabel
+	private boolean incremental;
+	private DTGraph<String,String> incrementalGraph;
+	private List<DTNode<String,String>> incrementalInstances;
+	private SparseVector[] incrementalFVs; // not normalized
 	
 
 	public DTGraphWLSubTreeKernel(int iterations, int depth, boolean reverse, boolean noDuplicateSubtrees, boolean normalize) {
@@ -73,6 +98,29 @@ public class DTGraphWLSubTreeKernel implements GraphKernel<SingleDTGraph>, Featu
 	public void setNormalize(boolean normalize) {
 		this.normalize = normalize;
 	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Set the number of extra features into which unseen subtrees of test instances are hashed, with 0 (the default) unseen subtrees are dropped.
+	 * 
+	 * @param hashBuckets
+	 */
+	public void setHashBuckets(int hashBuckets) {
+		this.hashBuckets = hashBuckets;
+	}
+
+	/**
+	 * Set incremental mode. In incremental mode, the graph, instances and (unnormalized) feature vectors of the last call to {@link #computeFeatureVectors(SingleDTGraph)} are kept,
+	 * so that they can be updated with {@link #addStatements(List)} and {@link #addInstances(List)}.
+	 * 
+	 * @param incremental
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
 	
 	
 
@@ -80,42 +128,51 @@ public class DTGraphWLSubTreeKernel implements GraphKernel<SingleDTGraph>, Featu
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {		
-		this.instanceVertices = new ArrayList<DTNode<MapLabel,MapLabel>>();
-		this.instanceVertexIndexMap = new HashMap<DTNode<MapLabel,MapLabel>, Map<DTNode<MapLabel,MapLabel>, Integer>>();
-		this.instanceEdgeIndexMap = new HashMap<DTNode<MapLabel,MapLabel>, Map<DTLink<MapLabel,MapLabel>, Integer>>();
-		
 		SparseVector[] featureVectors = new SparseVector[data.getInstances().size()];
 		for (int i = 0; i < featureVectors.length; i++) {
 			featureVectors[i] = new SparseVector();
 		}	
 
 		init(data.getGraph(), data.getInstances());
-		WeisfeilerLehmanIterator<DTGraph<MapLabel,MapLabel>> wl = new WeisfeilerLehmanDTGraphMapLabelIterator(reverse, noDuplicateSubtrees);
+		wl = new WeisfeilerLehmanDTGraphIntMapLabelIterator(reverse, noDuplicateSubtrees);
 
-		List<DTGraph<MapLabel,MapLabel>> gList = new ArrayList<DTGraph<MapLabel,MapLabel>>();
+		List<DTGraph<IntMapLabel,IntMapLabel>> gList = new ArrayList<DTGraph<IntMapLabel,IntMapLabel>>();
 		gList.add(rdfGraph);
 		
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 		
 		wl.wlInitialize(gList);
 
 		double weight = 1.0;
 
-		computeFVs(rdfGraph, instanceVertices, weight, featureVectors, wl.getLabelDict().size()-1);
+		computeFVs(weight, featureVectors, wl.getLabelDictSize()-1);
 
 		for (int i = 0; i < iterations; i++) {
 			wl.wlIterate(gList);
-			computeFVs(rdfGraph, instanceVertices, weight, featureVectors, wl.getLabelDict().size()-1);
+			computeFVs(weight, featureVectors, wl.getLabelDictSize()-1);
 		}
 		
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		// Set the reverse label dict, to reverse engineer the features
-		dict = new HashMap<String,String>();
-		for (String key : wl.getLabelDict().keySet()) {
-			dict.put(wl.getLabelDict().get(key), key);
+		setReverseLabelDict();
+		wl.freeze(); // so that test instances can be labeled with the same dictionary
+
+		if (incremental) {
+			incrementalGraph = data.getGraph();
+			incrementalInstances = new ArrayList<DTNode<String,String>>(data.getInstances());
+			incrementalFVs = new SparseVector[featureVectors.length];
+			for (int i = 0; i < featureVectors.length; i++) {
+				incrementalFVs[i] = new SparseVector(featureVectors[i]);
+			}
 		}
 			
 		if (this.normalize) {
@@ -125,95 +182,109 @@ public class DTGraphWLSubTreeKernel implements GraphKernel<SingleDTGraph>, Featu
 		return featureVectors;
 	}
 
+	public SparseVector[] computeTestFeatureVectors(SingleDTGraph data) {
+		if (wl == null) {
+			throw new RuntimeException("Should run computeFeatureVectors first");
+		}
+		
+		SparseVector[] featureVectors = new SparseVector[data.getInstances().size()];
+		for (int i = 0; i < featureVectors.length; i++) {
+			featureVectors[i] = new SparseVector();
+		}	
+
+		init(data.getGraph(), data.getInstances());
+
+		List<DTGraph<IntMapLabel,IntMapLabel>> gList = new ArrayList<DTGraph<IntMapLabel,IntMapLabel>>();
+		gList.add(rdfGraph);
+		
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+
+		int lastIndex = wl.getFrozenSize() + hashBuckets - 1;
+		wl.wlInitialize(gList);
+		computeFVs(1.0, featureVectors, lastIndex);
+
+		for (int i = 0; i < iterations; i++) {
+			wl.wlIterate(gList);
+			computeFVs(1.0, featureVectors, lastIndex);
+		}
+		
+		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
+			
+		if (this.normalize) {
+			featureVectors = KernelUtils.normalize(featureVectors);
+		}
+		return featureVectors;
+	}
+
+	public Pair<SparseVector[], SparseVector[]> computeFeatureVectors(SingleDTGraph trainData, SingleDTGraph testData) {
+		SparseVector[] trainFVs = computeFeatureVectors(trainData);
+		long trainCompTime = compTime;
+		long trainCPUTime = cpuTime;
+		SparseVector[] testFVs = computeTestFeatureVectors(testData);
+		compTime += trainCompTime;
+		cpuTime += trainCPUTime;
+		return new Pair<SparseVector[], SparseVector[]>(trainFVs, testFVs);
+	}
+
 
 	public double[][] compute(SingleDTGraph data) {
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
+	public Pair<double[][], double[][]> compute(SingleDTGraph trainData, SingleDTGraph testData) {
+		Pair<SparseVector[], SparseVector[]> fvs = computeFeatureVectors(trainData, testData);
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+		double[][] trainKernel = KernelUtils.computeKernelMatrix(fvs.getFirst(), KernelUtils.initMatrix(trainData.numInstances(), trainData.numInstances()), parallelism);
+		double[][] testKernel = KernelUtils.computeTestKernelMatrix(fvs.getFirst(), fvs.getSecond());
+		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
+		return new Pair<double[][], double[][]>(trainKernel, testKernel);
+	}
+
 
 
+	/**
+	 * Create the graph of IntMapLabels from the neighborhoods of the instances, which are computed for all instances together with {@link DTGraphNeighborhoods}.
+	 * Labels travel to the fringe vertices if reverse == false, in which case the lowest depth encounter of a vertex/edge is used for an instance.
+	 */
 	private void init(DTGraph<String,String> graph, List<DTNode<String,String>> instances) {
-		DTNode<MapLabel,MapLabel> startV;
-		List<DTNode<String,String>> frontV, newFrontV;
-		Map<DTNode<MapLabel,MapLabel>, Integer> vertexIndexMap;
-		Map<DTLink<MapLabel,MapLabel>, Integer> edgeIndexMap;
-		Map<DTNode<String,String>, DTNode<MapLabel,MapLabel>> vOldNewMap = new HashMap<DTNode<String,String>,DTNode<MapLabel,MapLabel>>();
-		Map<DTLink<String,String>, DTLink<MapLabel,MapLabel>> eOldNewMap = new HashMap<DTLink<String,String>,DTLink<MapLabel,MapLabel>>();
-
-		rdfGraph = new LightDTGraph<MapLabel,MapLabel>();
-
-		for (DTNode<String,String> oldStartV : instances) {				
-			vertexIndexMap = new HashMap<DTNode<MapLabel,MapLabel>, Integer>();
-			edgeIndexMap   = new HashMap<DTLink<MapLabel,MapLabel>, Integer>();
-
-			// Get the start node
-			if (vOldNewMap.containsKey(oldStartV)) {
-				startV = vOldNewMap.get(oldStartV);
-			} else { 
-				startV = rdfGraph.add(new MapLabel());
-				vOldNewMap.put(oldStartV, startV);
+		nbhs = new DTGraphNeighborhoods(instances, depth, !reverse);
+		rdfGraph = new LightDTGraph<IntMapLabel,IntMapLabel>();
+		nbhVertices = new ArrayList<DTNode<IntMapLabel,IntMapLabel>>(nbhs.numVertices());
+		nbhLinks = new ArrayList<DTLink<IntMapLabel,IntMapLabel>>(nbhs.numLinks());
+
+		for (int v = 0; v < nbhs.numVertices(); v++) {
+			DTNode<IntMapLabel,IntMapLabel> newN = rdfGraph.add(new IntMapLabel());
+			for (int d = depth; d >= 0; d--) {
+				if ((nbhs.vertexDepths(v) & (1 << d)) != 0) {
+					newN.label().put(d, nbhs.vertex(v).label());
+				}
 			}
-			startV.label().put(depth, new StringBuilder(oldStartV.label()));
-			instanceVertices.add(startV);
-
-			instanceVertexIndexMap.put(startV, vertexIndexMap);
-			instanceEdgeIndexMap.put(startV, edgeIndexMap);
-
-			frontV = new ArrayList<DTNode<String,String>>();
-			frontV.add(oldStartV);
-
-			// Process the start node
-			vertexIndexMap.put(startV, depth);
-
-			for (int j = depth - 1; j >= 0; j--) {
-				newFrontV = new ArrayList<DTNode<String,String>>();
-				for (DTNode<String,String> qV : frontV) {
-					for (DTLink<String,String> edge : qV.linksOut()) {
-						if (vOldNewMap.containsKey(edge.to())) { // This vertex has been added to rdfGraph						
-							if (!vertexIndexMap.containsKey(vOldNewMap.get(edge.to())) || !reverse) { // we have not seen it for this instance or labels travel to the fringe vertices, in which case we want to have the lowest depth encounter
-								vertexIndexMap.put(vOldNewMap.get(edge.to()), j);
-							}
-							vOldNewMap.get(edge.to()).label().put(j, new StringBuilder(edge.to().label())); // However, we should always include it in the graph at depth j
-						} else {
-							DTNode<MapLabel,MapLabel> newN = rdfGraph.add(new MapLabel());
-							newN.label().put(j, new StringBuilder(edge.to().label()));
-							vOldNewMap.put(edge.to(), newN);
-							vertexIndexMap.put(newN, j);
-						}
-
-						if (eOldNewMap.containsKey(edge)) {
-							// Process the edge, if we haven't seen it before
-							if (!edgeIndexMap.containsKey(eOldNewMap.get(edge)) || !reverse) { // see comment for vertices
-								edgeIndexMap.put(eOldNewMap.get(edge), j);
-							}
-							eOldNewMap.get(edge).tag().put(j, new StringBuilder(edge.tag()));
-						} else {
-							DTLink<MapLabel,MapLabel> newE = vOldNewMap.get(qV).connect(vOldNewMap.get(edge.to()), new MapLabel());
-							newE.tag().put(j, new StringBuilder(edge.tag()));
-							eOldNewMap.put(edge, newE);
-							edgeIndexMap.put(newE, j);
-						}
-
-						// Add the vertex to the new front, if we go into a new round
-						if (j > 0) {
-							newFrontV.add(edge.to());
-						}
-					}
+			nbhVertices.add(newN);
+		}
+		for (int e = 0; e < nbhs.numLinks(); e++) {
+			DTLink<IntMapLabel,IntMapLabel> newE = nbhVertices.get(nbhs.linkFrom(e)).connect(nbhVertices.get(nbhs.linkTo(e)), new IntMapLabel());
+			for (int d = depth - 1; d >= 0; d--) {
+				if ((nbhs.linkDepths(e) & (1 << d)) != 0) {
+					newE.tag().put(d, nbhs.link(e).tag());
 				}
-				frontV = newFrontV;
 			}
-		}		
+			nbhLinks.add(newE);
+		}
 	}
 
 
 
-
-
 	/**
 	 * The computation of the feature vectors assumes that each edge and vertex is only processed once. We can encounter the same
 	 * vertex/edge on different depths during computation, this could lead to multiple counts of the same vertex, possibly of different
@@ -224,36 +295,239 @@ public class DTGraphWLSubTreeKernel implements GraphKernel<SingleDTGraph>, Featu
 	 * @param weight
 	 * @param featureVectors
 	 */
-	private void computeFVs(DTGraph<MapLabel,MapLabel> graph, List<DTNode<MapLabel,MapLabel>> instances, double weight, SparseVector[] featureVectors, int lastIndex) {
+	private void computeFVs(double weight, SparseVector[] featureVectors, int lastIndex) {
 		int index;
-		Map<DTNode<MapLabel,MapLabel>, Integer> vertexIndexMap;
-		Map<DTLink<MapLabel,MapLabel>, Integer> edgeIndexMap;
-
-		for (int i = 0; i < instances.size(); i++) {
+		for (int i = 0; i < featureVectors.length; i++) {
 			featureVectors[i].setLastIndex(lastIndex);
 
-			vertexIndexMap = instanceVertexIndexMap.get(instances.get(i));
-			for (DTNode<MapLabel,MapLabel> vertex : vertexIndexMap.keySet()) {
-				if (!vertex.label().getSameAsPrev(vertexIndexMap.get(vertex))) {
-					index = Integer.parseInt(vertex.label().get(vertexIndexMap.get(vertex)).toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+			for (int k = nbhs.instanceVertexStart(i); k < nbhs.instanceVertexEnd(i); k++) {
+				IntMapLabel label = nbhVertices.get(nbhs.instanceVertex(k)).label();
+				if (!label.getSameAsPrev(nbhs.instanceVertexDepth(k))) {
+					index = featureIndex(label.get(nbhs.instanceVertexDepth(k)));
+					if (index >= 0) {
+						featureVectors[i].addValue(index, weight);
+					}
 				}
 			}
-			edgeIndexMap = instanceEdgeIndexMap.get(instances.get(i));
-			for (DTLink<MapLabel,MapLabel> edge : edgeIndexMap.keySet()) {
-				if (!edge.tag().getSameAsPrev(edgeIndexMap.get(edge))) {
-					index = Integer.parseInt(edge.tag().get(edgeIndexMap.get(edge)).toString());
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + weight);
+			for (int k = nbhs.instanceLinkStart(i); k < nbhs.instanceLinkEnd(i); k++) {
+				IntMapLabel label = nbhLinks.get(nbhs.instanceLink(k)).tag();
+				if (!label.getSameAsPrev(nbhs.instanceLinkDepth(k))) {
+					index = featureIndex(label.get(nbhs.instanceLinkDepth(k)));
+					if (index >= 0) {
+						featureVectors[i].addValue(index, weight);
+					}
 				}
 			}
 		}
 	}
 
 
+	/**
+	 * Update the feature vectors for statements (i.e. links) that were added to the graph of the SingleDTGraph given to {@link #computeFeatureVectors(SingleDTGraph)}, in incremental mode.
+	 * The links (and new nodes) should already be added to that graph.
+	 * 
+	 * <p>
+	 * Only the instances that have the source of a new link within depth-1 steps are affected. With reverse == true (the default), the label of a vertex/edge only depends on the graph below it,
+	 * so only the affected instances are relabeled. Since the label dictionary is kept, subtrees that already existed keep their feature id and new subtrees get new ids.
+	 * With reverse == false, all instances are relabeled, since the labels also depend on the other instances.
+	 * </p>
+	 * 
+	 * @param links
+	 * @return the deltas of the (unnormalized) feature vectors, for each instance (index) that changed
+	 */
+	public Map<Integer, SparseVector> addStatements(List<DTLink<String,String>> links) {
+		checkIncremental();
+		if (depth == 0) { // only the instance vertices themselves are used
+			return update(new ArrayList<Integer>());
+		}
+
+		// reverse BFS from the sources of the new links, to find the instances that reach them within depth-1 steps
+		Set<DTNode<String,String>> region = new HashSet<DTNode<String,String>>();
+		List<DTNode<String,String>> frontV = new ArrayList<DTNode<String,String>>();
+		for (DTLink<String,String> link : links) {
+			if (region.add(link.from())) {
+				frontV.add(link.from());
+			}
+		}
+		for (int j = 0; j < depth - 1; j++) {
+			List<DTNode<String,String>> newFrontV = new ArrayList<DTNode<String,String>>();
+			for (DTNode<String,String> v : frontV) {
+				for (DTLink<String,String> link : v.linksIn()) {
+					if (region.add(link.from())) {
+						newFrontV.add(link.from());
+					}
+				}
+			}
+			frontV = newFrontV;
+		}
+
+		List<Integer> affected = new ArrayList<Integer>();
+		for (int i = 0; i < incrementalInstances.size(); i++) {
+			if (region.contains(incrementalInstances.get(i))) {
+				affected.add(i);
+			}
+		}
+		return update(affected);
+	}
+
+	/**
+	 * Add new instances to the feature vectors, in incremental mode. The instance nodes (and their neighborhoods) should be in the graph of the SingleDTGraph given to {@link #computeFeatureVectors(SingleDTGraph)}.
+	 * The new instances get the indices after the existing instances.
+	 * 
+	 * @param instances
+	 * @return the feature vectors of the new instances (unnormalized) as deltas, and the deltas for other instances that changed (only with reverse == false)
+	 */
+	public Map<Integer, SparseVector> addInstances(List<DTNode<String,String>> instances) {
+		checkIncremental();
+		List<Integer> affected = new ArrayList<Integer>();
+		for (DTNode<String,String> instance : instances) {
+			affected.add(incrementalInstances.size());
+			incrementalInstances.add(instance);
+		}
+		SparseVector[] newFVs = new SparseVector[incrementalInstances.size()];
+		for (int i = 0; i < newFVs.length; i++) {
+			newFVs[i] = (i < incrementalFVs.length) ? incrementalFVs[i] : new SparseVector();
+		}
+		incrementalFVs = newFVs;
+		return update(affected);
+	}
+
+	/**
+	 * Get the current feature vectors in incremental mode, i.e. including all the updates, these are normalized if normalize is true.
+	 * 
+	 * @return
+	 */
+	public SparseVector[] getFeatureVectors() {
+		checkIncremental();
+		SparseVector[] featureVectors = new SparseVector[incrementalFVs.length];
+		for (int i = 0; i < featureVectors.length; i++) {
+			featureVectors[i] = new SparseVector(incrementalFVs[i]);
+			featureVectors[i].setLastIndex(wl.getLabelDictSize() - 1);
+		}
+		if (this.normalize) {
+			featureVectors = KernelUtils.normalize(featureVectors);
+		}
+		return featureVectors;
+	}
+
+	private void checkIncremental() {
+		if (!incremental || incrementalFVs == null) {
+			throw new RuntimeException("Should run computeFeatureVectors first, in incremental mode");
+		}
+	}
+
+	/**
+	 * Relabel the affected instances (all instances if reverse == false) with the existing label dictionary and compute the deltas of their feature vectors.
+	 */
+	private Map<Integer, SparseVector> update(List<Integer> affected) {
+		if (!reverse) {
+			affected = new ArrayList<Integer>();
+			for (int i = 0; i < incrementalInstances.size(); i++) {
+				affected.add(i);
+			}
+		}
+		List<DTNode<String,String>> affectedInstances = new ArrayList<DTNode<String,String>>();
+		for (int i : affected) {
+			affectedInstances.add(incrementalInstances.get(i));
+		}
+
+		SparseVector[] featureVectors = new SparseVector[affected.size()];
+		for (int i = 0; i < featureVectors.length; i++) {
+			featureVectors[i] = new SparseVector();
+		}	
+
+		init(incrementalGraph, affectedInstances);
+
+		List<DTGraph<IntMapLabel,IntMapLabel>> gList = new ArrayList<DTGraph<IntMapLabel,IntMapLabel>>();
+		gList.add(rdfGraph);
+		
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+
+		wl.unfreeze();
+		wl.wlInitialize(gList);
+		computeFVs(1.0, featureVectors, wl.getLabelDictSize()-1);
+
+		for (int i = 0; i < iterations; i++) {
+			wl.wlIterate(gList);
+			computeFVs(1.0, featureVectors, wl.getLabelDictSize()-1);
+		}
+		wl.freeze();
+
+		Map<Integer, SparseVector> deltas = new TreeMap<Integer, SparseVector>();
+		for (int i = 0; i < featureVectors.length; i++) {
+			SparseVector delta = delta(featureVectors[i], incrementalFVs[affected.get(i)]);
+			if (delta.size() > 0) {
+				deltas.put(affected.get(i), delta);
+			}
+			incrementalFVs[affected.get(i)] = featureVectors[i];
+		}
+
+		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
+
+		dict = null; // there might be new labels, the reverse dictionary is rebuild when needed
+		return deltas;
+	}
+
+	/**
+	 * Compute newFV - oldFV, only the indices with a non-zero difference are set.
+	 */
+	private static SparseVector delta(SparseVector newFV, SparseVector oldFV) {
+		SparseVector delta = new SparseVector();
+		delta.setLastIndex(newFV.getLastIndex());
+		SparseVector.IndexIterator itN = newFV.getIndices();
+		SparseVector.IndexIterator itO = oldFV.getIndices();
+		int indexN = itN.hasNext() ? itN.next() : Integer.MAX_VALUE;
+		int indexO = itO.hasNext() ? itO.next() : Integer.MAX_VALUE;
+
+		while (indexN != Integer.MAX_VALUE || indexO != Integer.MAX_VALUE) {
+			if (indexN < indexO) {
+				delta.setValue(indexN, itN.value());
+				indexN = itN.hasNext() ? itN.next() : Integer.MAX_VALUE;
+			} else if (indexO < indexN) {
+				delta.setValue(indexO, -itO.value());
+				indexO = itO.hasNext() ? itO.next() : Integer.MAX_VALUE;
+			} else {
+				if (itN.value() != itO.value()) {
+					delta.setValue(indexN, itN.value() - itO.value());
+				}
+				indexN = itN.hasNext() ? itN.next() : Integer.MAX_VALUE;
+				indexO = itO.hasNext() ? itO.next() : Integer.MAX_VALUE;
+			}
+		}
+		return delta;
+	}
+
+	/**
+	 * Map a WL label to a feature index. Before the dictionary is frozen this is the label itself, 
+	 * afterwards unseen labels are hashed into the features after the train features, or dropped (-1) if hashBuckets is 0.
+	 */
+	private int featureIndex(int label) {
+		if (!wl.isFrozen() || label < wl.getFrozenSize()) {
+			return label;
+		}
+		if (hashBuckets > 0) {
+			return wl.getFrozenSize() + (((wl.getUnseenLabelHash(label) % hashBuckets) + hashBuckets) % hashBuckets);
+		}
+		return -1;
+	}
+
+	private void setReverseLabelDict() {
+		dict = new HashMap<String,String>();
+		Map<String,String> labelDict = wl.getLabelDict();
+		for (String key : labelDict.keySet()) {
+			dict.put(labelDict.get(key), key);
+		}
+	}
+
 	public List<String> getFeatureDescriptions(List<Integer> indices) {
-		if (dict == null) {
+		if (wl == null) {
 			throw new RuntimeException("Should run computeFeatureVectors first");
 		} else {
+			if (dict == null) {
+				setReverseLabelDict();
+			}
 			List<String> desc = new ArrayList<String>();
 			
 			for (int index : indices) {
@@ -8,8 +8,10 @@ import java.util.Map;
 import java.util.Set;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -28,7 +30,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
 	private Map<DTNode<PathStringLabel,PathStringLabel>, Map<DTNode<PathStringLabel,PathStringLabel>, Integer>> instanceVertexIndexMap;
 	private Map<DTNode<PathStringLabel,PathStringLabel>, Map<DTLink<PathStringLabel,PathStringLabel>, Integer>> instanceEdgeIndexMap;
@@ -41,6 +43,10 @@ public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGra
 	private boolean normalize;
 	private int minFreq;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -66,10 +72,18 @@ public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGra
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		instanceVertices = new ArrayList<DTNode<PathStringLabel,PathStringLabel>>();
 		this.instanceVertexIndexMap = new HashMap<DTNode<PathStringLabel,PathStringLabel>, Map<DTNode<PathStringLabel,PathStringLabel>, Integer>>();
@@ -86,6 +100,7 @@ public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGra
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		// initial count
 		// Count paths
@@ -156,6 +171,7 @@ public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGra
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		reversePathDict = new HashMap<Integer,String>();	
 		for (String key : pathDict.keySet()) {
@@ -179,8 +195,10 @@ public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGra
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -296,7 +314,7 @@ public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGra
 				if ((depth * 2) >=  currentIt) {
 					for (String path : vertex.label().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 
@@ -308,7 +326,7 @@ public class DTGraphWalkCountIDEQApproxKernel implements GraphKernel<SingleDTGra
 				if ((depth * 2)+1 >=  currentIt) {
 					for (String path : edge.tag().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 			}
@@ -6,8 +6,10 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
 import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
@@ -27,7 +29,7 @@ import org.nodes.LightDTGraph;
  * @author Gerben
  *
  */
-public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
 	private Map<DTNode<PathStringLabel,PathStringLabel>, Map<DTNode<PathStringLabel,PathStringLabel>, Integer>> instanceVertexIndexMap;
 	private Map<DTNode<PathStringLabel,PathStringLabel>, Map<DTLink<PathStringLabel,PathStringLabel>, Integer>> instanceEdgeIndexMap;
@@ -39,6 +41,10 @@ public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, F
 	private int pathLength;
 	private boolean normalize;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -60,10 +66,18 @@ public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, F
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
+	public long getCPUTime() {
+		return cpuTime;
+	}
+
 	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		instanceVertices = new ArrayList<DTNode<PathStringLabel,PathStringLabel>>();
 		this.instanceVertexIndexMap = new HashMap<DTNode<PathStringLabel,PathStringLabel>, Map<DTNode<PathStringLabel,PathStringLabel>, Integer>>();
@@ -80,6 +94,7 @@ public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, F
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		// initial count
 		// Count paths
@@ -148,6 +163,7 @@ public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, F
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 
 		reversePathDict = new HashMap<Integer,String>();	
 		for (String key : pathDict.keySet()) {
@@ -171,8 +187,10 @@ public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, F
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
@@ -288,7 +306,7 @@ public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, F
 				if ((depth * 2) >=  currentIt) {
 					for (String path : vertex.label().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 
@@ -300,7 +318,7 @@ public class DTGraphWalkCountIDEQKernel implements GraphKernel<SingleDTGraph>, F
 				if ((depth * 2)+1 >=  currentIt) {
 					for (String path : edge.tag().getPaths()) {
 						index = pathDict.get(path);
-						featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+						featureVectors[i].addValue(index, 1.0);
 					}
 				}
 			}
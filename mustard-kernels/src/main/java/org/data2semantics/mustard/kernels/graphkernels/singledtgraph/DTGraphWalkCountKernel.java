@@ -6,12 +6,15 @@ import java.util.List;
 import java.util.Map;
 
 import org.data2semantics.mustard.kernels.ComputationTimeTracker;
+import org.data2semantics.mustard.kernels.ExcludeFromLabel;
 import org.data2semantics.mustard.kernels.FeatureInspector;
 import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.ParallelKernel;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
-import org.data2semantics.mustard.kernels.graphkernels.FeatureVectorKernel;
-import org.data2semantics.mustard.kernels.graphkernels.GraphKernel;
+import org.data2semantics.mustard.kernels.graphkernels.TrainTestFeatureVectorKernel;
+import org.data2semantics.mustard.kernels.graphkernels.TrainTestGraphKernel;
+import org.data2semantics.mustard.utils.Pair;
 import org.data2semantics.mustard.utils.WalkCountUtils;
 import org.nodes.DTGraph;
 import org.nodes.DTLink;
@@ -23,21 +26,28 @@ import org.nodes.LightDTGraph;
  * Implementation of {@link org.data2semantics.mustard.kernels.graphkernels.graphlist.WalkCountKernel} directly on an RDF graph.
  * Instances are represented by views (in terms of HashMaps) on the one large RDF graph.
  * 
+ * For a train/test split, the path dictionary of the train data is frozen and the paths of the test instances are looked up in it, see {@link TrainTestFeatureVectorKernel}.
+ * Paths that do not occur in the train data are dropped, or hashed into a number of extra features (see {@link #setHashBuckets(int)}).
+ * 
  * @author Gerben
  *
  */
-public class DTGraphWalkCountKernel implements GraphKernel<SingleDTGraph>, FeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector {
+public class DTGraphWalkCountKernel implements TrainTestGraphKernel<SingleDTGraph>, TrainTestFeatureVectorKernel<SingleDTGraph>, ComputationTimeTracker, FeatureInspector, ParallelKernel {
 
-	private Map<DTNode<PathStringMapLabel,PathStringMapLabel>, Map<DTNode<PathStringMapLabel,PathStringMapLabel>, Integer>> instanceVertexIndexMap;
-	private Map<DTNode<PathStringMapLabel,PathStringMapLabel>, Map<DTLink<PathStringMapLabel,PathStringMapLabel>, Integer>> instanceEdgeIndexMap;
+	private DTGraphNeighborhoods nbhs;
+	private List<DTNode<PathStringMapLabel,PathStringMapLabel>> nbhVertices; // vertex of rdfGraph for each vertex of nbhs
+	private List<DTLink<PathStringMapLabel,PathStringMapLabel>> nbhLinks;
 
 	private DTGraph<PathStringMapLabel,PathStringMapLabel> rdfGraph;
-	private List<DTNode<PathStringMapLabel,PathStringMapLabel>> instanceVertices;
 
 	private int depth;
 	private int pathLength;
 	private boolean normalize;
 	private long compTime;
+	@ExcludeFromLabel
+	private long cpuTime;
+	@ExcludeFromLabel
+	private int parallelism = 1;
 
 	private Map<String, Integer> pathDict;
 	private Map<String, Integer> labelDict;
@@ -45,6 +55,11 @@ public class DTGraphWalkCountKernel implements GraphKernel<SingleDTGraph>, Featu
 	private Map<Integer, String> reversePathDict;
 	private Map<Integer, String> reverseLabelDict;
 
+	@ExcludeFromLabel
+	private boolean frozen;
+	@ExcludeFromLabel
+	private int hashBuckets; // only influences the test feature vectors
+
 	public DTGraphWalkCountKernel(int pathLength, int depth, boolean normalize) {
 		this.normalize = normalize;
 		this.depth = depth;
@@ -59,17 +74,31 @@ public class DTGraphWalkCountKernel implements GraphKernel<SingleDTGraph>, Featu
 		this.normalize = normalize;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Set the number of extra features into which unseen paths of test instances are hashed, with 0 (the default) unseen paths are dropped.
+	 * 
+	 * @param hashBuckets
+	 */
+	public void setHashBuckets(int hashBuckets) {
+		this.hashBuckets = hashBuckets;
+	}
+
 	public long getComputationTime() {
 		return compTime;
 	}
 
-	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
-		instanceVertices = new ArrayList<DTNode<PathStringMapLabel,PathStringMapLabel>>();
-		this.instanceVertexIndexMap = new HashMap<DTNode<PathStringMapLabel,PathStringMapLabel>, Map<DTNode<PathStringMapLabel,PathStringMapLabel>, Integer>>();
-		this.instanceEdgeIndexMap = new HashMap<DTNode<PathStringMapLabel,PathStringMapLabel>, Map<DTLink<PathStringMapLabel,PathStringMapLabel>, Integer>>();
+	public long getCPUTime() {
+		return cpuTime;
+	}
 
+	public SparseVector[] computeFeatureVectors(SingleDTGraph data) {
 		pathDict  = new HashMap<String, Integer>();
 		labelDict = new HashMap<String, Integer>();
+		frozen = false;
 		init(data.getGraph(), data.getInstances());
 
 		// Initialize and compute the featureVectors
@@ -79,89 +108,21 @@ public class DTGraphWalkCountKernel implements GraphKernel<SingleDTGraph>, Featu
 		}
 
 		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
 
 		// initial count
-		// Count paths
-		Integer index = null;
-		for (DTNode<PathStringMapLabel,PathStringMapLabel> v : rdfGraph.nodes()) {
-			for (int d : v.label().getPathsMap().keySet()) {
-				for (String path : v.label().getPathsMap().get(d)) {
-					index = pathDict.get(path);
-					if (index == null) {
-						index = pathDict.size();
-						pathDict.put(path, index);
-					}
-				}
-			}
-
-		}
-
-		for (DTLink<PathStringMapLabel,PathStringMapLabel> e : rdfGraph.links()) {	
-			for (int d : e.tag().getPathsMap().keySet()) {
-				for (String path : e.tag().getPathsMap().get(d)) {
-					index = pathDict.get(path);
-					if (index == null) {
-						index = pathDict.size();
-						pathDict.put(path, index);
-					}
-				}
-			}
-		}
-
-		computeFVs(rdfGraph, instanceVertices, featureVectors, pathDict.size()-1);
-
-
+		countPaths();
+		computeFVs(featureVectors, pathDict.size()-1);
 
 		// loop to create longer and longer paths
 		for (int j = 0; j < pathLength; j++) {
-
-			// Build new paths
-			for (DTNode<PathStringMapLabel,PathStringMapLabel> v : rdfGraph.nodes()) {
-				for (DTLink<PathStringMapLabel,PathStringMapLabel> e : v.linksOut()) {
-					for (int d : v.label().getPathsMap().keySet()) {
-						if (d > 0) {
-							v.label().addPaths(e.tag().getPathsMap().get(d-1),d);
-						}
-					}
-				}
-			}
-			for (DTLink<PathStringMapLabel,PathStringMapLabel> e : rdfGraph.links()) {	
-				for (int d : e.tag().getPathsMap().keySet()) {
-					e.tag().addPaths(e.to().label().getPathsMap().get(d),d);
-				}
-			}
-
-			// Count paths
-			for (DTNode<PathStringMapLabel,PathStringMapLabel> v : rdfGraph.nodes()) {
-				v.label().setNewPaths();
-
-				for (int d : v.label().getPathsMap().keySet()) {
-					for (String path : v.label().getPathsMap().get(d)) {
-						index = pathDict.get(path);
-						if (index == null) {
-							index = pathDict.size();
-							pathDict.put(path, index);
-						}
-					}
-				}
-			}
-			for (DTLink<PathStringMapLabel,PathStringMapLabel> e : rdfGraph.links()) {	
-				e.tag().setNewPaths();
-
-				for (int d : e.tag().getPathsMap().keySet()) {
-					for (String path : e.tag().getPathsMap().get(d)) {
-						index = pathDict.get(path);
-						if (index == null) {
-							index = pathDict.size();
-							pathDict.put(path, index);
-						}
-					}
-				}
-			}		
-			computeFVs(rdfGraph, instanceVertices, featureVectors, pathDict.size()-1);
+			buildPaths();
+			countPaths();
+			computeFVs(featureVectors, pathDict.size()-1);
 		}
 
 		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
 		
 		reversePathDict = new HashMap<Integer,String>();	
 		for (String key : pathDict.keySet()) {
@@ -173,6 +134,8 @@ public class DTGraphWalkCountKernel implements GraphKernel<SingleDTGraph>, Featu
 			reverseLabelDict.put(labelDict.get(key), key);
 		}
 
+		frozen = true; // so that test instances are mapped to the same paths
+
 		if (this.normalize) {
 			featureVectors = KernelUtils.normalize(featureVectors);
 		}
@@ -180,103 +143,171 @@ public class DTGraphWalkCountKernel implements GraphKernel<SingleDTGraph>, Featu
 		return featureVectors;
 	}
 
+	public SparseVector[] computeTestFeatureVectors(SingleDTGraph data) {
+		if (!frozen) {
+			throw new RuntimeException("Should run computeFeatureVectors first");
+		}
+		init(data.getGraph(), data.getInstances());
+
+		SparseVector[] featureVectors = new SparseVector[data.numInstances()];
+		for (int i = 0; i < featureVectors.length; i++) {
+			featureVectors[i] = new SparseVector();
+		}
+
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+
+		int lastIndex = pathDict.size() + hashBuckets - 1;
+		computeFVs(featureVectors, lastIndex);
+		for (int j = 0; j < pathLength; j++) {
+			buildPaths();
+			computeFVs(featureVectors, lastIndex);
+		}
+
+		compTime = System.currentTimeMillis() - tic;
+		cpuTime = KernelUtils.getCPUTime() - cpuTic;
+
+		if (this.normalize) {
+			featureVectors = KernelUtils.normalize(featureVectors);
+		}
+		return featureVectors;
+	}
+
+	public Pair<SparseVector[], SparseVector[]> computeFeatureVectors(SingleDTGraph trainData, SingleDTGraph testData) {
+		SparseVector[] trainFVs = computeFeatureVectors(trainData);
+		long trainCompTime = compTime;
+		long trainCPUTime = cpuTime;
+		SparseVector[] testFVs = computeTestFeatureVectors(testData);
+		compTime += trainCompTime;
+		cpuTime += trainCPUTime;
+		return new Pair<SparseVector[], SparseVector[]>(trainFVs, testFVs);
+	}
+
 
 	public double[][] compute(SingleDTGraph data) {
 		SparseVector[] featureVectors = computeFeatureVectors(data);
 		double[][] kernel = KernelUtils.initMatrix(data.getInstances().size(), data.getInstances().size());
 		long tic = System.currentTimeMillis();
-		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel);
+		long cpuTic = KernelUtils.getCPUTime();
+		kernel = KernelUtils.computeKernelMatrix(featureVectors, kernel, parallelism);
 		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
 		return kernel;
 	}
 
+	public Pair<double[][], double[][]> compute(SingleDTGraph trainData, SingleDTGraph testData) {
+		Pair<SparseVector[], SparseVector[]> fvs = computeFeatureVectors(trainData, testData);
+		long tic = System.currentTimeMillis();
+		long cpuTic = KernelUtils.getCPUTime();
+		double[][] trainKernel = KernelUtils.computeKernelMatrix(fvs.getFirst(), KernelUtils.initMatrix(trainData.numInstances(), trainData.numInstances()), parallelism);
+		double[][] testKernel = KernelUtils.computeTestKernelMatrix(fvs.getFirst(), fvs.getSecond());
+		compTime += System.currentTimeMillis() - tic;
+		cpuTime += KernelUtils.getCPUTime() - cpuTic;
+		return new Pair<double[][], double[][]>(trainKernel, testKernel);
+	}
 
+	/**
+	 * Extend the paths of all vertices and edges with one step
+	 */
+	private void buildPaths() {
+		for (DTNode<PathStringMapLabel,PathStringMapLabel> v : rdfGraph.nodes()) {
+			for (DTLink<PathStringMapLabel,PathStringMapLabel> e : v.linksOut()) {
+				for (int d : v.label().getPathsMap().keySet()) {
+					if (d > 0) {
+						v.label().addPaths(e.tag().getPathsMap().get(d-1),d);
+					}
+				}
+			}
+		}
+		for (DTLink<PathStringMapLabel,PathStringMapLabel> e : rdfGraph.links()) {	
+			for (int d : e.tag().getPathsMap().keySet()) {
+				e.tag().addPaths(e.to().label().getPathsMap().get(d),d);
+			}
+		}
+		for (DTNode<PathStringMapLabel,PathStringMapLabel> v : rdfGraph.nodes()) {
+			v.label().setNewPaths();
+		}
+		for (DTLink<PathStringMapLabel,PathStringMapLabel> e : rdfGraph.links()) {	
+			e.tag().setNewPaths();
+		}
+	}
 
-	private void init(DTGraph<String,String> graph, List<DTNode<String,String>> instances) {
-		DTNode<PathStringMapLabel,PathStringMapLabel> startV;
-		List<DTNode<String,String>> frontV, newFrontV;
-		Map<DTNode<PathStringMapLabel,PathStringMapLabel>, Integer> vertexIndexMap;
-		Map<DTLink<PathStringMapLabel,PathStringMapLabel>, Integer> edgeIndexMap;
-		Map<DTNode<String,String>, DTNode<PathStringMapLabel,PathStringMapLabel>> vOldNewMap = new HashMap<DTNode<String,String>,DTNode<PathStringMapLabel,PathStringMapLabel>>();
-		Map<DTLink<String,String>, DTLink<PathStringMapLabel,PathStringMapLabel>> eOldNewMap = new HashMap<DTLink<String,String>,DTLink<PathStringMapLabel,PathStringMapLabel>>();
-
-		rdfGraph = new LightDTGraph<PathStringMapLabel,PathStringMapLabel>();
-
-		for (DTNode<String,String> oldStartV : instances) {				
-			vertexIndexMap = new HashMap<DTNode<PathStringMapLabel,PathStringMapLabel>, Integer>();
-			edgeIndexMap   = new HashMap<DTLink<PathStringMapLabel,PathStringMapLabel>, Integer>();
-
-			// Get the start node
-			if (vOldNewMap.containsKey(oldStartV)) {
-				startV = vOldNewMap.get(oldStartV);
-			} else { 
-				if (!labelDict.containsKey(oldStartV.label())) {
-					labelDict.put(oldStartV.label(), labelDict.size());
-				}	
-				startV = rdfGraph.add(new PathStringMapLabel(Integer.toString(labelDict.get(oldStartV.label()))));
-				vOldNewMap.put(oldStartV, startV);
+	/**
+	 * Add the current paths of all vertices and edges to the path dictionary
+	 */
+	private void countPaths() {
+		for (DTNode<PathStringMapLabel,PathStringMapLabel> v : rdfGraph.nodes()) {
+			for (int d : v.label().getPathsMap().keySet()) {
+				for (String path : v.label().getPathsMap().get(d)) {
+					if (!pathDict.containsKey(path)) {
+						pathDict.put(path, pathDict.size());
+					}
+				}
 			}
-			startV.label().initDepth(depth);
-			instanceVertices.add(startV);
-
-			instanceVertexIndexMap.put(startV, vertexIndexMap);
-			instanceEdgeIndexMap.put(startV, edgeIndexMap);
-
-			frontV = new ArrayList<DTNode<String,String>>();
-			frontV.add(oldStartV);
-
-			// Process the start node
-			vertexIndexMap.put(startV, depth);
-
-			for (int j = depth - 1; j >= 0; j--) {
-				newFrontV = new ArrayList<DTNode<String,String>>();
-				for (DTNode<String,String> qV : frontV) {
-					for (DTLink<String,String> edge : qV.linksOut()) {
-						if (vOldNewMap.containsKey(edge.to())) { // This vertex has been added to rdfGraph
-							if (!vertexIndexMap.containsKey(vOldNewMap.get(edge.to()))) { // we have not seen it for this instance
-								vertexIndexMap.put(vOldNewMap.get(edge.to()), j);
-							}
-							vOldNewMap.get(edge.to()).label().initDepth(j); // However, we should always include it in the graph at depth j
-						} else {			
-							if (!labelDict.containsKey(edge.to().label())) {
-								labelDict.put(edge.to().label(), labelDict.size());
-							}										
-							DTNode<PathStringMapLabel,PathStringMapLabel> newN = rdfGraph.add(new PathStringMapLabel("_" + Integer.toString(labelDict.get(edge.to().label()))));
-							newN.label().initDepth(j);
-							vOldNewMap.put(edge.to(), newN);
-							vertexIndexMap.put(newN, j);
-						}
-
-						if (eOldNewMap.containsKey(edge)) {
-							// Process the edge, if we haven't seen it before
-							if (!edgeIndexMap.containsKey(eOldNewMap.get(edge))) {
-								edgeIndexMap.put(eOldNewMap.get(edge), j);
-							}
-							eOldNewMap.get(edge).tag().initDepth(j);
-						} else {
-							if (!labelDict.containsKey(edge.tag())) {
-								labelDict.put(edge.tag(), labelDict.size());
-							}
-							DTLink<PathStringMapLabel,PathStringMapLabel> newE = vOldNewMap.get(qV).connect(vOldNewMap.get(edge.to()), new PathStringMapLabel("_" + Integer.toString(labelDict.get(edge.tag()))));
-							newE.tag().initDepth(j);
-							eOldNewMap.put(edge, newE);
-							edgeIndexMap.put(newE, j);
-						}
-
-						// Add the vertex to the new front, if we go into a new round
-						if (j > 0) {
-							newFrontV.add(edge.to());
-						}
+		}
+		for (DTLink<PathStringMapLabel,PathStringMapLabel> e : rdfGraph.links()) {	
+			for (int d : e.tag().getPathsMap().keySet()) {
+				for (String path : e.tag().getPathsMap().get(d)) {
+					if (!pathDict.containsKey(path)) {
+						pathDict.put(path, pathDict.size());
 					}
 				}
-				frontV = newFrontV;
 			}
-		}		
+		}
 	}
 
+	/**
+	 * Get the id String for a vertex/edge label. If the label dictionary is frozen, unseen labels are represented by the label itself, 
+	 * with a '*' prefix, which never occurs in the paths of the dictionary.
+	 */
+	private String labelId(String label) {
+		Integer id = labelDict.get(label);
+		if (id == null) {
+			if (frozen) {
+				return "*" + label;
+			}
+			id = labelDict.size();
+			labelDict.put(label, id);
+		}
+		return Integer.toString(id);
+	}
 
 
 
+	/**
+	 * Create the graph of PathStringMapLabels from the neighborhoods of the instances, which are computed for all instances together with {@link DTGraphNeighborhoods}.
+	 * Like in a separate search per instance, an instance vertex gets the start label (without '_' prefix) if it is not in the neighborhood of an instance before it.
+	 */
+	private void init(DTGraph<String,String> graph, List<DTNode<String,String>> instances) {
+		nbhs = new DTGraphNeighborhoods(instances, depth, false);
+		rdfGraph = new LightDTGraph<PathStringMapLabel,PathStringMapLabel>();
+		nbhVertices = new ArrayList<DTNode<PathStringMapLabel,PathStringMapLabel>>(nbhs.numVertices());
+		nbhLinks = new ArrayList<DTLink<PathStringMapLabel,PathStringMapLabel>>(nbhs.numLinks());
+
+		for (int v = 0; v < nbhs.numVertices(); v++) {
+			DTNode<PathStringMapLabel,PathStringMapLabel> newN;
+			if (nbhs.instanceRoot(nbhs.firstInstance(v)) == v) {
+				newN = rdfGraph.add(new PathStringMapLabel(labelId(nbhs.vertex(v).label())));
+			} else {
+				newN = rdfGraph.add(new PathStringMapLabel("_" + labelId(nbhs.vertex(v).label())));
+			}
+			for (int d = depth; d >= 0; d--) {
+				if ((nbhs.vertexDepths(v) & (1 << d)) != 0) {
+					newN.label().initDepth(d);
+				}
+			}
+			nbhVertices.add(newN);
+		}
+		for (int e = 0; e < nbhs.numLinks(); e++) {
+			DTLink<PathStringMapLabel,PathStringMapLabel> newE = nbhVertices.get(nbhs.linkFrom(e)).connect(nbhVertices.get(nbhs.linkTo(e)), new PathStringMapLabel("_" + labelId(nbhs.link(e).tag())));
+			for (int d = depth - 1; d >= 0; d--) {
+				if ((nbhs.linkDepths(e) & (1 << d)) != 0) {
+					newE.tag().initDepth(d);
+				}
+			}
+			nbhLinks.add(newE);
+		}
+	}
 
 	/**
 	 * The computation of the feature vectors assumes that each edge and vertex is only processed once. We can encounter the same
@@ -288,31 +319,41 @@ public class DTGraphWalkCountKernel implements GraphKernel<SingleDTGraph>, Featu
 	 * @param weight
 	 * @param featureVectors
 	 */
-	private void computeFVs(DTGraph<PathStringMapLabel,PathStringMapLabel> graph, List<DTNode<PathStringMapLabel,PathStringMapLabel>> instances, SparseVector[] featureVectors, int lastIndex) {
-		int index;
-		Map<DTNode<PathStringMapLabel,PathStringMapLabel>, Integer> vertexIndexMap;
-		Map<DTLink<PathStringMapLabel,PathStringMapLabel>, Integer> edgeIndexMap;
-
-		for (int i = 0; i < instances.size(); i++) {
+	private void computeFVs(SparseVector[] featureVectors, int lastIndex) {
+		Integer index;
+		for (int i = 0; i < featureVectors.length; i++) {
 			featureVectors[i].setLastIndex(lastIndex);
 
-			vertexIndexMap = instanceVertexIndexMap.get(instances.get(i));
-			for (DTNode<PathStringMapLabel,PathStringMapLabel> vertex : vertexIndexMap.keySet()) {
-				for (String path : vertex.label().getPathsMap().get(vertexIndexMap.get(vertex))) {
-					index = pathDict.get(path);
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+			for (int k = nbhs.instanceVertexStart(i); k < nbhs.instanceVertexEnd(i); k++) {
+				for (String path : nbhVertices.get(nbhs.instanceVertex(k)).label().getPathsMap().get(nbhs.instanceVertexDepth(k))) {
+					index = pathIndex(path);
+					if (index != null) {
+						featureVectors[i].addValue(index, 1.0);
+					}
 				}
 			}
-			edgeIndexMap = instanceEdgeIndexMap.get(instances.get(i));
-			for (DTLink<PathStringMapLabel,PathStringMapLabel> edge : edgeIndexMap.keySet()) {
-				for (String path : edge.tag().getPathsMap().get(edgeIndexMap.get(edge))) {
-					index = pathDict.get(path);
-					featureVectors[i].setValue(index, featureVectors[i].getValue(index) + 1.0);
+			for (int k = nbhs.instanceLinkStart(i); k < nbhs.instanceLinkEnd(i); k++) {
+				for (String path : nbhLinks.get(nbhs.instanceLink(k)).tag().getPathsMap().get(nbhs.instanceLinkDepth(k))) {
+					index = pathIndex(path);
+					if (index != null) {
+						featureVectors[i].addValue(index, 1.0);
+					}
 				}
 			}
 		}
 	}
 
+	/**
+	 * Map a path to a feature index, unseen paths (only possible when the dictionary is frozen) are hashed or dropped (null).
+	 */
+	private Integer pathIndex(String path) {
+		Integer index = pathDict.get(path);
+		if (index == null && hashBuckets > 0) {
+			index = pathDict.size() + (((path.hashCode() % hashBuckets) + hashBuckets) % hashBuckets);
+		}
+		return index;
+	}
+
 	public List<String> getFeatureDescriptions(List<Integer> indicesSV) {
 		if (labelDict == null) {
 			throw new RuntimeException("Should run computeFeatureVectors first");
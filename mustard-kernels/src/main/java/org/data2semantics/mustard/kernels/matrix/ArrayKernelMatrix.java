@@ -0,0 +1,82 @@
+package org.data2semantics.mustard.kernels.matrix;
+
+/**
+ * {@link KernelMatrix} backed by a double[][], which is not copied. Used as an adapter for the code that uses double[][] kernel matrices.
+ * 
+ * @author Gerben
+ *
+ */
+public class ArrayKernelMatrix implements KernelMatrix {
+	private double[][] kernel;
+	private boolean symmetric;
+
+	/**
+	 * Wrap the kernel array, if symmetric is true, then set/add on (i,j) also set (j,i)
+	 * 
+	 * @param kernel
+	 * @param symmetric
+	 */
+	public ArrayKernelMatrix(double[][] kernel, boolean symmetric) {
+		this.kernel = kernel;
+		this.symmetric = symmetric;
+	}
+
+	/**
+	 * Create a new, non symmetric, matrix of numRows x numColumns
+	 * 
+	 * @param numRows
+	 * @param numColumns
+	 */
+	public ArrayKernelMatrix(int numRows, int numColumns) {
+		this(new double[numRows][numColumns], false);
+	}
+
+	public int numRows() {
+		return kernel.length;
+	}
+
+	public int numColumns() {
+		return (kernel.length == 0) ? 0 : kernel[0].length;
+	}
+
+	public boolean isSymmetric() {
+		return symmetric;
+	}
+
+	public boolean isInMemory() {
+		return true;
+	}
+
+	public double get(int i, int j) {
+		return kernel[i][j];
+	}
+
+	public void set(int i, int j, double value) {
+		kernel[i][j] = value;
+		if (symmetric) {
+			kernel[j][i] = value;
+		}
+	}
+
+	public void add(int i, int j, double value) {
+		kernel[i][j] += value;
+		if (symmetric) {
+			kernel[j][i] = kernel[i][j];
+		}
+	}
+
+	public KernelMatrixRow getRow(int i) {
+		return new KernelMatrixRow(this, i);
+	}
+
+	/**
+	 * Returns a copy of the wrapped array, so changes to it do not change the matrix
+	 */
+	public double[][] toArray() {
+		double[][] copy = new double[kernel.length][];
+		for (int i = 0; i < kernel.length; i++) {
+			copy[i] = kernel[i].clone();
+		}
+		return copy;
+	}
+}
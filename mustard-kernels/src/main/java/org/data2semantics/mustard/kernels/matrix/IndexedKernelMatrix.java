@@ -0,0 +1,126 @@
+package org.data2semantics.mustard.kernels.matrix;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only view on a {@link KernelMatrix}, where row i and column j of the view are row rowIndices[i] and column columnIndices[j] of the base matrix.
+ * Values are read directly from the base matrix, so a permuted matrix or a cross-validation fold only takes the memory of the index arrays.
+ *
+ * <p>
+ * A view on another IndexedKernelMatrix is created directly on its base matrix, so there is always just one level of indirection.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class IndexedKernelMatrix implements KernelMatrix {
+	private KernelMatrix base;
+	private int[] rowIndices;
+	private int[] columnIndices;
+	private boolean symmetric;
+
+	/**
+	 *
+	 * @param base
+	 * @param rowIndices, the rows of base that are the rows of the view, not copied
+	 * @param columnIndices, the columns of base that are the columns of the view, not copied
+	 */
+	public IndexedKernelMatrix(KernelMatrix base, int[] rowIndices, int[] columnIndices) {
+		if (base instanceof IndexedKernelMatrix) {
+			IndexedKernelMatrix view = (IndexedKernelMatrix) base;
+			this.base = view.base;
+			this.rowIndices = compose(view.rowIndices, rowIndices);
+			this.columnIndices = (rowIndices == columnIndices) ? this.rowIndices : compose(view.columnIndices, columnIndices);
+		} else {
+			this.base = base;
+			this.rowIndices = rowIndices;
+			this.columnIndices = columnIndices;
+		}
+		this.symmetric = base.isSymmetric() && Arrays.equals(rowIndices, columnIndices);
+	}
+
+	/**
+	 * Create a view with the same indices for the rows and the columns, e.g. a permutation of a symmetric matrix
+	 *
+	 * @param base
+	 * @param indices
+	 */
+	public IndexedKernelMatrix(KernelMatrix base, int[] indices) {
+		this(base, indices, indices);
+	}
+
+	/**
+	 * List version of {@link #IndexedKernelMatrix(KernelMatrix, int[])}, e.g. for the indices of a stratified shuffle
+	 *
+	 * @param base
+	 * @param indices
+	 */
+	public IndexedKernelMatrix(KernelMatrix base, List<Integer> indices) {
+		this(base, toArray(indices));
+	}
+
+	public int numRows() {
+		return rowIndices.length;
+	}
+
+	public int numColumns() {
+		return columnIndices.length;
+	}
+
+	public boolean isSymmetric() {
+		return symmetric;
+	}
+
+	public boolean isInMemory() {
+		return base.isInMemory();
+	}
+
+	public double get(int i, int j) {
+		return base.get(rowIndices[i], columnIndices[j]);
+	}
+
+	/**
+	 * Not supported, the view is read-only
+	 */
+	public void set(int i, int j, double value) {
+		throw new UnsupportedOperationException("IndexedKernelMatrix is read-only");
+	}
+
+	/**
+	 * Not supported, the view is read-only
+	 */
+	public void add(int i, int j, double value) {
+		throw new UnsupportedOperationException("IndexedKernelMatrix is read-only");
+	}
+
+	public KernelMatrixRow getRow(int i) {
+		return new KernelMatrixRow(this, i);
+	}
+
+	public double[][] toArray() {
+		double[][] kernel = new double[numRows()][numColumns()];
+		for (int i = 0; i < kernel.length; i++) {
+			for (int j = 0; j < kernel[i].length; j++) {
+				kernel[i][j] = get(i, j);
+			}
+		}
+		return kernel;
+	}
+
+	private static int[] compose(int[] outer, int[] inner) {
+		int[] indices = new int[inner.length];
+		for (int i = 0; i < inner.length; i++) {
+			indices[i] = outer[inner[i]];
+		}
+		return indices;
+	}
+
+	private static int[] toArray(List<Integer> indices) {
+		int[] array = new int[indices.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = indices.get(i);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,64 @@
+package org.data2semantics.mustard.kernels.matrix;
+
+/**
+ * Interface for kernel matrices, as an alternative for double[][]. This allows for more memory efficient representations of the kernel matrix, 
+ * such as the packed (upper triangular) {@link PackedKernelMatrix}. 
+ * 
+ * <p>
+ * For symmetric matrices, setting/adding a value at (i,j) also changes the value at (j,i). 
+ * For use with older code, the matrix can always be converted to a double[][] with {@link #toArray()}, and a double[][] can be wrapped with {@link ArrayKernelMatrix}.
+ * </p>
+ * 
+ * @author Gerben
+ *
+ */
+public interface KernelMatrix {
+
+	/**
+	 * @return the number of rows, for a train kernel this is the number of instances, for a test kernel it is the number of test instances
+	 */
+	public int numRows();
+
+	/**
+	 * @return the number of columns, i.e. the number of (train) instances
+	 */
+	public int numColumns();
+
+	/**
+	 * @return true if the matrix is square and k(i,j) == k(j,i) is guaranteed
+	 */
+	public boolean isSymmetric();
+
+	/**
+	 * @return true if the values are in memory (on the heap), so that reading a value is cheap, false if they are read from disk (e.g. {@link MappedKernelMatrix})
+	 */
+	public boolean isInMemory();
+
+	public double get(int i, int j);
+
+	public void set(int i, int j, double value);
+
+	/**
+	 * Add value to the value at (i,j)
+	 * 
+	 * @param i
+	 * @param j
+	 * @param value
+	 */
+	public void add(int i, int j, double value);
+
+	/**
+	 * Get a view on row i of the matrix, no values are copied.
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public KernelMatrixRow getRow(int i);
+
+	/**
+	 * Convert the matrix to a (new) double[][], for backwards compatibility
+	 * 
+	 * @return
+	 */
+	public double[][] toArray();
+}
@@ -0,0 +1,42 @@
+package org.data2semantics.mustard.kernels.matrix;
+
+/**
+ * View on one row of a {@link KernelMatrix}, values are read directly from the matrix.
+ * 
+ * @author Gerben
+ *
+ */
+public class KernelMatrixRow {
+	private KernelMatrix matrix;
+	private int row;
+
+	public KernelMatrixRow(KernelMatrix matrix, int row) {
+		this.matrix = matrix;
+		this.row = row;
+	}
+
+	public double get(int j) {
+		return matrix.get(row, j);
+	}
+
+	public int length() {
+		return matrix.numColumns();
+	}
+
+	public int getRowIndex() {
+		return row;
+	}
+
+	/**
+	 * Copy the row into the array row, which should have at least length() elements
+	 * 
+	 * @param row
+	 * @return the array row
+	 */
+	public double[] copyTo(double[] row) {
+		for (int j = 0; j < length(); j++) {
+			row[j] = get(j);
+		}
+		return row;
+	}
+}
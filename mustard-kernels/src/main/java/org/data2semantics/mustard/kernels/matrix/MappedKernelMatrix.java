@@ -0,0 +1,363 @@
+package org.data2semantics.mustard.kernels.matrix;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * {@link KernelMatrix} stored in a file, which is memory mapped, so that kernel matrices larger than the heap can be used.
+ *
+ * <p>
+ * The matrix is stored row by row, after a small header, in blocks of rows that are mapped separately (a single mapping is limited to 2GB).
+ * For a symmetric matrix only the upper triangle (including the diagonal) is stored, i.e. row i holds the values (i,i) to (i,n-1), like in {@link PackedKernelMatrix}.
+ * Rows can be read and written one at a time or a block of rows at a time. Because the file has a header with the dimensions of the matrix,
+ * it can be opened again later (with {@link #MappedKernelMatrix(File)}), e.g. to reuse a kernel matrix over different runs of an experiment.
+ * A matrix that is only read can be opened read only (with {@link #MappedKernelMatrix(File, boolean)}), so that different processes can share the file.
+ * The header can also hold a short id (e.g. a digest of the data and the kernel settings), so that the user of the file can check that it belongs to the right data.
+ * </p>
+ *
+ * <p>
+ * Note that writes are only guaranteed to be on disk after {@link #flush()} or {@link #close()}. Writing to different entries from different threads is safe.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class MappedKernelMatrix implements KernelMatrix, Closeable {
+	private static final int MAGIC = 0x4B4D4154; // "KMAT"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 64;
+	private static final int MAX_ID_LENGTH = 32;
+	private static final long MAX_BLOCK_SIZE = 1L << 30; // 1GB per mapped block
+
+	private File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private MappedByteBuffer[] blocks;
+	private int[] rowBlocks; // block of each row
+	private int[] rowOffsets; // byte offset of each row in its block
+
+	private int numRows;
+	private int numColumns;
+	private boolean symmetric;
+	private boolean singlePrecision;
+	private boolean readOnly;
+	private int valueSize;
+	private byte[] id;
+
+
+	/**
+	 * Create a new matrix in file, an existing file is overwritten. All values are initially 0.
+	 *
+	 * @param file
+	 * @param numRows
+	 * @param numColumns
+	 * @param symmetric, if true then only the upper triangle is stored and (i,j) is the same entry as (j,i), this requires numRows == numColumns
+	 * @param singlePrecision, if true values are stored as floats
+	 * @param id, stored in the header, at most 32 bytes, can be null
+	 */
+	public MappedKernelMatrix(File file, int numRows, int numColumns, boolean symmetric, boolean singlePrecision, byte[] id) {
+		if (symmetric && numRows != numColumns) {
+			throw new IllegalArgumentException("A symmetric matrix should be square: " + numRows + " x " + numColumns);
+		}
+		if (id != null && id.length > MAX_ID_LENGTH) {
+			throw new IllegalArgumentException("The id should be at most " + MAX_ID_LENGTH + " bytes");
+		}
+		this.file = file;
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		this.symmetric = symmetric;
+		this.singlePrecision = singlePrecision;
+		this.id = (id == null) ? new byte[0] : Arrays.copyOf(id, id.length);
+
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(0);
+			channel = raf.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(numRows);
+			header.putInt(numColumns);
+			header.putInt(symmetric ? 1 : 0);
+			header.putInt(singlePrecision ? 1 : 0);
+			header.putInt(this.id.length);
+			header.put(this.id);
+			header.clear();
+			channel.write(header, 0);
+
+			map();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Create a new matrix in file without an id, see {@link #MappedKernelMatrix(File, int, int, boolean, boolean, byte[])}.
+	 *
+	 * @param file
+	 * @param numRows
+	 * @param numColumns
+	 * @param symmetric
+	 * @param singlePrecision
+	 */
+	public MappedKernelMatrix(File file, int numRows, int numColumns, boolean symmetric, boolean singlePrecision) {
+		this(file, numRows, numColumns, symmetric, singlePrecision, null);
+	}
+
+	/**
+	 * Create a new symmetric matrix of size x size in file.
+	 *
+	 * @param file
+	 * @param size
+	 * @param singlePrecision
+	 */
+	public MappedKernelMatrix(File file, int size, boolean singlePrecision) {
+		this(file, size, size, true, singlePrecision, null);
+	}
+
+	/**
+	 * Open an existing matrix, previously created with one of the other constructors.
+	 *
+	 * @param file
+	 */
+	public MappedKernelMatrix(File file) {
+		this(file, false);
+	}
+
+	/**
+	 * Open an existing matrix, previously created with one of the other constructors.
+	 *
+	 * @param file
+	 * @param readOnly, if true the file is opened and mapped read only, setting a value then throws a {@link java.nio.ReadOnlyBufferException}
+	 */
+	public MappedKernelMatrix(File file, boolean readOnly) {
+		this.file = file;
+		this.readOnly = readOnly;
+		try {
+			raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+			channel = raf.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			channel.read(header, 0);
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+				raf.close();
+				throw new RuntimeException("Not a kernel matrix file: " + file);
+			}
+			numRows = header.getInt();
+			numColumns = header.getInt();
+			symmetric = header.getInt() == 1;
+			singlePrecision = header.getInt() == 1;
+			id = new byte[Math.max(0, Math.min(MAX_ID_LENGTH, header.getInt()))];
+			header.get(id);
+
+			map();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void map() throws IOException {
+		valueSize = singlePrecision ? 4 : 8;
+		rowBlocks = new int[numRows];
+		rowOffsets = new int[numRows];
+
+		// Rows are grouped into blocks of at most MAX_BLOCK_SIZE bytes (or one row, if a row is larger)
+		long[] blockStarts = new long[numRows + 1];
+		long[] blockSizes = new long[numRows + 1];
+		int numBlocks = 0;
+		long position = HEADER_SIZE;
+		for (int i = 0; i < numRows; i++) {
+			long rowSize = ((long) rowLength(i)) * valueSize;
+			if (numBlocks == 0 || blockSizes[numBlocks - 1] + rowSize > MAX_BLOCK_SIZE) {
+				blockStarts[numBlocks] = position;
+				numBlocks++;
+			}
+			rowBlocks[i] = numBlocks - 1;
+			rowOffsets[i] = (int) blockSizes[numBlocks - 1];
+			blockSizes[numBlocks - 1] += rowSize;
+			position += rowSize;
+		}
+
+		blocks = new MappedByteBuffer[numBlocks];
+		for (int b = 0; b < numBlocks; b++) {
+			blocks[b] = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, blockStarts[b], blockSizes[b]);
+		}
+	}
+
+	private int rowLength(int i) {
+		return symmetric ? numColumns - i : numColumns;
+	}
+
+	private int firstColumn(int i) {
+		return symmetric ? i : 0;
+	}
+
+	private int offset(int i, int j) {
+		return rowOffsets[i] + (j - firstColumn(i)) * valueSize;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the id stored in the header, an empty array if there is none
+	 */
+	public byte[] getID() {
+		return Arrays.copyOf(id, id.length);
+	}
+
+	public int numRows() {
+		return numRows;
+	}
+
+	public int numColumns() {
+		return numColumns;
+	}
+
+	public boolean isSymmetric() {
+		return symmetric;
+	}
+
+	/**
+	 * The values are in a memory mapped file, which may be (partly) paged out
+	 */
+	public boolean isInMemory() {
+		return false;
+	}
+
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	public double get(int i, int j) {
+		if (symmetric && i > j) {
+			int t = i;
+			i = j;
+			j = t;
+		}
+		ByteBuffer block = blocks[rowBlocks[i]];
+		int offset = offset(i, j);
+		return singlePrecision ? block.getFloat(offset) : block.getDouble(offset);
+	}
+
+	public void set(int i, int j, double value) {
+		if (symmetric && i > j) {
+			int t = i;
+			i = j;
+			j = t;
+		}
+		ByteBuffer block = blocks[rowBlocks[i]];
+		int offset = offset(i, j);
+		if (singlePrecision) {
+			block.putFloat(offset, (float) value);
+		} else {
+			block.putDouble(offset, value);
+		}
+	}
+
+	public void add(int i, int j, double value) {
+		set(i, j, get(i, j) + value);
+	}
+
+	public KernelMatrixRow getRow(int i) {
+		return new KernelMatrixRow(this, i);
+	}
+
+	/**
+	 * Read row i into the array row. For a symmetric matrix the part of the row below the diagonal is read from the columns of the previous rows.
+	 *
+	 * @param i
+	 * @param row
+	 * @return the array row
+	 */
+	public double[] readRow(int i, double[] row) {
+		for (int j = 0; j < firstColumn(i); j++) {
+			row[j] = get(j, i);
+		}
+		ByteBuffer block = blocks[rowBlocks[i]].duplicate();
+		block.position(rowOffsets[i]);
+		if (singlePrecision) {
+			for (int j = firstColumn(i); j < numColumns; j++) {
+				row[j] = block.getFloat();
+			}
+		} else {
+			block.asDoubleBuffer().get(row, firstColumn(i), rowLength(i));
+		}
+		return row;
+	}
+
+	/**
+	 * Write a block of rows, starting at row startRow. For a symmetric matrix only the part of each row from the diagonal on is written,
+	 * so the complete matrix should be written with this method.
+	 *
+	 * @param startRow
+	 * @param rows
+	 */
+	public void writeRows(int startRow, double[][] rows) {
+		for (int r = 0; r < rows.length; r++) {
+			int i = startRow + r;
+			ByteBuffer block = blocks[rowBlocks[i]].duplicate();
+			block.position(rowOffsets[i]);
+			if (singlePrecision) {
+				for (int j = firstColumn(i); j < numColumns; j++) {
+					block.putFloat((float) rows[r][j]);
+				}
+			} else {
+				block.asDoubleBuffer().put(rows[r], firstColumn(i), rowLength(i));
+			}
+		}
+	}
+
+	public double[][] toArray() {
+		double[][] kernel = new double[numRows][numColumns];
+		for (int i = 0; i < numRows; i++) {
+			ByteBuffer block = blocks[rowBlocks[i]].duplicate();
+			block.position(rowOffsets[i]);
+			for (int j = firstColumn(i); j < numColumns; j++) {
+				kernel[i][j] = singlePrecision ? block.getFloat() : block.getDouble();
+				if (symmetric) {
+					kernel[j][i] = kernel[i][j];
+				}
+			}
+		}
+		return kernel;
+	}
+
+	/**
+	 * Write all changes to disk
+	 */
+	public void flush() {
+		if (readOnly) {
+			return;
+		}
+		for (MappedByteBuffer block : blocks) {
+			block.force();
+		}
+	}
+
+	/**
+	 * Flush and close the file, the matrix cannot be used anymore afterwards.
+	 */
+	public void close() throws IOException {
+		if (blocks == null) { // already closed
+			return;
+		}
+		flush();
+		blocks = null;
+		channel.close();
+		raf.close();
+	}
+}
@@ -0,0 +1,128 @@
+package org.data2semantics.mustard.kernels.matrix;
+
+/**
+ * Symmetric {@link KernelMatrix} which only stores the upper triangle (including the diagonal), i.e. n*(n+1)/2 values instead of n^2.
+ * Row i stores the values (i,i) to (i,n-1) in one array, so the matrix can be larger than the maximum array size.
+ * 
+ * <p>
+ * Optionally the values can be stored in single precision (float), which halves the memory use again. 
+ * Note that values are then rounded to float precision when they are set, all computations are still done in double precision.
+ * </p>
+ * 
+ * @author Gerben
+ *
+ */
+public class PackedKernelMatrix implements KernelMatrix {
+	private int size;
+	private double[][] values;
+	private float[][] floatValues;
+
+	public PackedKernelMatrix(int size) {
+		this(size, false);
+	}
+
+	/**
+	 * 
+	 * @param size, the number of instances
+	 * @param singlePrecision, if true the values are stored as floats
+	 */
+	public PackedKernelMatrix(int size, boolean singlePrecision) {
+		this.size = size;
+		if (singlePrecision) {
+			floatValues = new float[size][];
+			for (int i = 0; i < size; i++) {
+				floatValues[i] = new float[size - i];
+			}
+		} else {
+			values = new double[size][];
+			for (int i = 0; i < size; i++) {
+				values[i] = new double[size - i];
+			}
+		}
+	}
+
+	/**
+	 * Create a packed copy of the symmetric kernel matrix kernel, only the upper triangle of kernel is read.
+	 * 
+	 * @param kernel
+	 * @param singlePrecision
+	 */
+	public PackedKernelMatrix(double[][] kernel, boolean singlePrecision) {
+		this(kernel.length, singlePrecision);
+		for (int i = 0; i < size; i++) {
+			for (int j = i; j < size; j++) {
+				set(i, j, kernel[i][j]);
+			}
+		}
+	}
+
+	public int numRows() {
+		return size;
+	}
+
+	public int numColumns() {
+		return size;
+	}
+
+	public boolean isSymmetric() {
+		return true;
+	}
+
+	public boolean isInMemory() {
+		return true;
+	}
+
+	public boolean isSinglePrecision() {
+		return floatValues != null;
+	}
+
+	public double get(int i, int j) {
+		if (i > j) {
+			int t = i;
+			i = j;
+			j = t;
+		}
+		return (values != null) ? values[i][j - i] : floatValues[i][j - i];
+	}
+
+	public void set(int i, int j, double value) {
+		if (i > j) {
+			int t = i;
+			i = j;
+			j = t;
+		}
+		if (values != null) {
+			values[i][j - i] = value;
+		} else {
+			floatValues[i][j - i] = (float) value;
+		}
+	}
+
+	public void add(int i, int j, double value) {
+		if (i > j) {
+			int t = i;
+			i = j;
+			j = t;
+		}
+		if (values != null) {
+			values[i][j - i] += value;
+		} else {
+			floatValues[i][j - i] = (float) (floatValues[i][j - i] + value);
+		}
+	}
+
+	public KernelMatrixRow getRow(int i) {
+		return new KernelMatrixRow(this, i);
+	}
+
+	public double[][] toArray() {
+		double[][] kernel = new double[size][size];
+		for (int i = 0; i < size; i++) {
+			for (int j = i; j < size; j++) {
+				kernel[i][j] = get(i, j);
+				kernel[j][i] = kernel[i][j];
+			}
+		}
+		return kernel;
+	}
+}
@@ -1,7 +1,11 @@
 package org.data2semantics.mustard.rdf;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 import org.data2semantics.mustard.utils.Pair;
@@ -17,6 +21,10 @@ public class DataSetUtils {
 	 * 
 	 * NOTE - This method can be dangerous when the labels are primitives like boolean or int, since there might be a lot more
 	 * relations that you don't want to remove.
+	 * 
+	 * If the dataset batches its lookups (see {@link RDFDataSet#batchesSubjectLookups()}), the statements of all the instances and labels are retrieved together 
+	 * with {@link RDFDataSet#getStatementsForSubjects(java.util.Collection, boolean)}, otherwise the statements are looked up per instance with getStatements(instance, null, label). 
+	 * Note that an {@link RDFSparqlDataSet} only looks up subjects in its name spaces, so in the batched case statements with only the object in the name spaces are not found.
 	 *
 	 * @param dataset
 	 * @param instances
@@ -24,12 +32,30 @@ public class DataSetUtils {
 	 * @return
 	 */
 	public static List<Statement> createBlacklist(RDFDataSet dataset, List<Resource> instances, List<Value> labels) {
+		if (!dataset.batchesSubjectLookups()) {
+			List<Statement> newBL = new ArrayList<Statement>();
+			for (int i = 0; i < instances.size(); i++) {
+				newBL.addAll(dataset.getStatements(instances.get(i), null, labels.get(i), true));
+				if (labels.get(i) instanceof Resource) {
+					newBL.addAll(dataset.getStatements((Resource) labels.get(i), null, instances.get(i), true));
+				}
+			}
+			return newBL;
+		}
+
+		Set<Resource> subjects = new LinkedHashSet<Resource>(instances);
+		for (Value label : labels) {
+			if (label instanceof Resource) {
+				subjects.add((Resource) label);
+			}
+		}
+		Map<Resource, List<Statement>> stmtMap = getStatementsBySubject(dataset, subjects);
 		List<Statement> newBL = new ArrayList<Statement>();
 
 		for (int i = 0; i < instances.size(); i++) {
-			newBL.addAll(dataset.getStatements(instances.get(i), null, labels.get(i), true));
+			addStatements(newBL, stmtMap, instances.get(i), labels.get(i));
 			if (labels.get(i) instanceof Resource) {
-				newBL.addAll(dataset.getStatements((Resource) labels.get(i), null, instances.get(i), true));
+				addStatements(newBL, stmtMap, (Resource) labels.get(i), instances.get(i));
 			}
 		}
 		return newBL;
@@ -42,19 +68,66 @@ public class DataSetUtils {
 	 * 
 	 * NOTE - This method can be dangerous when the labels are primitives like boolean or int, since there might be a lot more
 	 * relations that you don't want to remove.  
+	 * 
+	 * The statements are looked up like in {@link #createBlacklist(RDFDataSet, List, List)}.
 	 *
 	 * @param dataset
 	 * @param instances
 	 * @return
 	 */
 	public static List<Statement> createBlacklist(RDFDataSet dataset, List<Pair<Resource, Resource>> instances) {
+		if (!dataset.batchesSubjectLookups()) {
+			List<Statement> newBL = new ArrayList<Statement>();
+			for (int i = 0; i < instances.size(); i++) {
+				newBL.addAll(dataset.getStatements(instances.get(i).getFirst(), null, instances.get(i).getSecond(), true));
+				newBL.addAll(dataset.getStatements(instances.get(i).getSecond(), null, instances.get(i).getFirst(), true));
+			}
+			return newBL;
+		}
+
+		Set<Resource> subjects = new LinkedHashSet<Resource>();
+		for (Pair<Resource, Resource> pair : instances) {
+			subjects.add(pair.getFirst());
+			subjects.add(pair.getSecond());
+		}
+		Map<Resource, List<Statement>> stmtMap = getStatementsBySubject(dataset, subjects);
 		List<Statement> newBL = new ArrayList<Statement>();
 
 		for (int i = 0; i < instances.size(); i++) {
-			newBL.addAll(dataset.getStatements(instances.get(i).getFirst(), null, instances.get(i).getSecond(), true));
-			newBL.addAll(dataset.getStatements(instances.get(i).getSecond(), null, instances.get(i).getFirst(), true));		
+			addStatements(newBL, stmtMap, instances.get(i).getFirst(), instances.get(i).getSecond());
+			addStatements(newBL, stmtMap, instances.get(i).getSecond(), instances.get(i).getFirst());		
 		}
 		return newBL;
 	}
+
+	/**
+	 * Get the statements (with inference) for all subjects at once, grouped by subject 
+	 */
+	private static Map<Resource, List<Statement>> getStatementsBySubject(RDFDataSet dataset, Set<Resource> subjects) {
+		Map<Resource, List<Statement>> stmtMap = new HashMap<Resource, List<Statement>>();
+		for (Statement stmt : dataset.getStatementsForSubjects(new ArrayList<Resource>(subjects), true)) {
+			List<Statement> stmts = stmtMap.get(stmt.getSubject());
+			if (stmts == null) {
+				stmts = new ArrayList<Statement>();
+				stmtMap.put(stmt.getSubject(), stmts);
+			}
+			stmts.add(stmt);
+		}
+		return stmtMap;
+	}
+
+	/**
+	 * Add the statements <subject, _, object> to newBL
+	 */
+	private static void addStatements(List<Statement> newBL, Map<Resource, List<Statement>> stmtMap, Resource subject, Value object) {
+		List<Statement> stmts = stmtMap.get(subject);
+		if (stmts != null) {
+			for (Statement stmt : stmts) {
+				if (stmt.getObject().equals(object)) {
+					newBL.add(stmt);
+				}
+			}
+		}
+	}
 	
 }
@@ -0,0 +1,180 @@
+package org.data2semantics.mustard.rdf;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * Splits literals into words for the split literal options of {@link RDFUtils#statements2Graph(Set, int, List, boolean)} (REGULAR_SPLIT_LITERALS and REPEAT_SPLIT_LITERALS).
+ *
+ * <p>
+ * Each word is interned into a dictionary, where the word is represented by the label of its node, i.e. the toString() of a literal with the word as label
+ * and the datatype/language tag of the original literal. A literal is tokenized only once, into the ids of its words, which are cached.
+ * With {@link #tokenize(Collection)} all the distinct literals in a collection of statements are tokenized up front, in chunks that are split in parallel
+ * if the tokenizer has an executor. The word ids are assigned in the order of the first occurrence of the literals, so they do not depend on the executor.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class LiteralTokenizer {
+	private static final int[] NO_WORDS = new int[0];
+	private static final int CHUNK_SIZE = 256; // number of literals split by one task in tokenize()
+
+	private Map<String, Integer> wordIds;
+	private List<String> words;
+	private Map<Literal, int[]> tokenCache;
+	private ExecutorService executor;
+
+	public LiteralTokenizer() {
+		this(null);
+	}
+
+	/**
+	 * Create a tokenizer that splits the literals in tokenize() with the tasks of executor. The executor is not shut down, so it can be shared.
+	 * 
+	 * @param executor, if null everything is done in the current thread
+	 */
+	public LiteralTokenizer(ExecutorService executor) {
+		this.executor = executor;
+		wordIds = new HashMap<String, Integer>();
+		words = new ArrayList<String>();
+		tokenCache = new HashMap<Literal, int[]>();
+	}
+
+	/**
+	 * Tokenize all the (distinct) literal objects in stmts and add them to the cache.
+	 *
+	 * @param stmts
+	 */
+	public void tokenize(Collection<Statement> stmts) {
+		Set<Literal> litSet = new LinkedHashSet<Literal>();
+		for (Statement stmt : stmts) {
+			if (stmt.getObject() instanceof Literal && !tokenCache.containsKey(stmt.getObject())) {
+				litSet.add((Literal) stmt.getObject());
+			}
+		}
+		final List<Literal> lits = new ArrayList<Literal>(litSet);
+		List<String[]> labels = new ArrayList<String[]>(lits.size());
+
+		if (executor == null || lits.size() <= CHUNK_SIZE) {
+			labels.addAll(split(lits, 0, lits.size()));
+		} else {
+			List<Future<List<String[]>>> futures = new ArrayList<Future<List<String[]>>>();
+			try {
+				for (int i = 0; i < lits.size(); i += CHUNK_SIZE) {
+					final int start = i;
+					final int end = Math.min(i + CHUNK_SIZE, lits.size());
+					futures.add(executor.submit(new Callable<List<String[]>>() {
+						public List<String[]> call() {
+							return split(lits, start, end);
+						}
+					}));
+				}
+				for (Future<List<String[]>> future : futures) {
+					labels.addAll(future.get());
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			} finally {
+				for (Future<List<String[]>> future : futures) { // the executor can be shared, so only the tasks of this call are cancelled
+					future.cancel(true);
+				}
+			}
+		}
+
+		// Interning is done in the current thread, in the order of the literals
+		for (int i = 0; i < lits.size(); i++) {
+			tokenCache.put(lits.get(i), intern(labels.get(i)));
+		}
+	}
+
+	/**
+	 * @param lit
+	 * @return the ids of the words in lit, in order of occurrence
+	 */
+	public int[] getTokens(Literal lit) {
+		int[] tokens = tokenCache.get(lit);
+		if (tokens == null) {
+			tokens = intern(split(lit, BreakIterator.getWordInstance()));
+			tokenCache.put(lit, tokens);
+		}
+		return tokens;
+	}
+
+	/**
+	 * @param id
+	 * @return the node label of the word with this id
+	 */
+	public String getWord(int id) {
+		return words.get(id);
+	}
+
+	public int numWords() {
+		return words.size();
+	}
+
+	private int[] intern(String[] labels) {
+		if (labels.length == 0) {
+			return NO_WORDS;
+		}
+		int[] ids = new int[labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			Integer id = wordIds.get(labels[i]);
+			if (id == null) {
+				id = words.size();
+				wordIds.put(labels[i], id);
+				words.add(labels[i]);
+			}
+			ids[i] = id;
+		}
+		return ids;
+	}
+
+	private static List<String[]> split(List<Literal> lits, int start, int end) {
+		BreakIterator wordIt = BreakIterator.getWordInstance(); // reused for all the literals in this thread
+		List<String[]> res = new ArrayList<String[]>(end - start);
+		for (int i = start; i < end; i++) {
+			res.add(split(lits.get(i), wordIt));
+		}
+		return res;
+	}
+
+	/**
+	 * The words keep the original datatype/language tag of lit, which is the part after the quoted (empty) label in the toString() of a literal
+	 */
+	private static String[] split(Literal lit, BreakIterator wordIt) {
+		ValueFactory factory = ValueFactoryImpl.getInstance();
+		Literal empty;
+		if (lit.getDatatype() != null) {
+			empty = factory.createLiteral("", lit.getDatatype());
+		} else if (lit.getLanguage() != null) {
+			empty = factory.createLiteral("", lit.getLanguage());
+		} else {
+			empty = factory.createLiteral("");
+		}
+		String suffix = empty.toString().substring(2);
+		List<String> res = new ArrayList<String>();
+		RDFUtils.WordIterator wi = new RDFUtils.WordIterator(lit.getLabel(), wordIt);
+		while (wi.hasNext()) {
+			res.add("\"" + wi.next() + "\"" + suffix);
+		}
+		return res.toArray(new String[res.size()]);
+	}
+}
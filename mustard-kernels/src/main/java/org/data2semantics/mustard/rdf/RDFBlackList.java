@@ -0,0 +1,110 @@
+package org.data2semantics.mustard.rdf;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+/**
+ * Set of statements that should be ignored when a graph is extracted from an RDFDataSet, see {@link RDFUtils#getStatements4Depth(RDFDataSet, java.util.List, int, boolean, RDFBlackList)}.
+ * Typically these are the statements that contain the labels for the learning task.
+ *
+ * <p>
+ * The blackList is built once from the list of statements (e.g. from {@link DataSetUtils#createBlacklist(RDFDataSet, java.util.List, java.util.List)}),
+ * so that checking a statement is a hash lookup, instead of a scan over the list as with List.removeAll().
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class RDFBlackList {
+	private Set<Statement> stmts;
+	private String digest;
+
+	public RDFBlackList(Collection<Statement> stmts) {
+		this.stmts = new HashSet<Statement>(stmts);
+	}
+
+	public boolean contains(Statement stmt) {
+		return stmts.contains(stmt);
+	}
+
+	public int size() {
+		return stmts.size();
+	}
+
+	public boolean isEmpty() {
+		return stmts.isEmpty();
+	}
+
+	/**
+	 * A SHA-1 digest (in hex) over the sorted N-Triples lines of the statements, so it does not depend on the order of the statements that the blackList was created from.
+	 * Unlike the hashCode, this identifies the blackList, e.g. in a file.
+	 *
+	 * @return
+	 */
+	public synchronized String getDigest() {
+		if (digest == null) {
+			List<String> lines = new ArrayList<String>(stmts.size());
+			for (Statement stmt : stmts) {
+				lines.add(toNTriples(stmt.getSubject()) + " " + toNTriples(stmt.getPredicate()) + " " + toNTriples(stmt.getObject()) + " .");
+			}
+			Collections.sort(lines);
+			try {
+				MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+				Charset utf8 = Charset.forName("UTF-8");
+				for (String line : lines) {
+					sha1.update(line.getBytes(utf8));
+					sha1.update((byte) '\n');
+				}
+				StringBuilder sb = new StringBuilder();
+				for (byte b : sha1.digest()) {
+					sb.append(String.format("%02x", b));
+				}
+				digest = sb.toString();
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return digest;
+	}
+
+	private static String toNTriples(Value value) {
+		if (value instanceof URI) {
+			return "<" + value.toString() + ">";
+		}
+		if (value instanceof BNode) {
+			return "_:" + ((BNode) value).getID();
+		}
+		return value.toString(); // Literal, which is already quoted, with its language or datatype
+	}
+
+	/**
+	 * The hashCode does not depend on the order of the statements that the blackList was created from.
+	 */
+	@Override
+	public int hashCode() {
+		return stmts.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof RDFBlackList)) {
+			return false;
+		}
+		return stmts.equals(((RDFBlackList) obj).stmts);
+	}
+}
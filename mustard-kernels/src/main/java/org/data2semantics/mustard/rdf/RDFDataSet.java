@@ -1,9 +1,12 @@
 package org.data2semantics.mustard.rdf;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.List;
 
@@ -23,6 +26,7 @@ import org.openrdf.model.Value;
 public abstract class RDFDataSet implements Serializable {
 	private static final long serialVersionUID = -1478501093710185561L;
 	private String label;
+	private transient List<Statement> serializedGraph; // the graph read by readObject(), which is added in readResolve()
 
 	public RDFDataSet() {
 		this.label = "RDF dataset";
@@ -118,6 +122,32 @@ public abstract class RDFDataSet implements Serializable {
 	 */
 	public abstract List<Statement> getStatements(Resource subject, URI predicate, Value object, boolean allowInference);
 
+	/**
+	 * Get all the statements that have one of the provided subjects, i.e. getStatements(subject, null, null, allowInference) for a batch of subjects.
+	 * By default getStatements is called for each subject, subclasses override this to do the lookups for the batch together.
+	 * 
+	 * @param subjects
+	 * @param allowInference
+	 * @return
+	 */
+	public List<Statement> getStatementsForSubjects(Collection<? extends Resource> subjects, boolean allowInference) {
+		List<Statement> resGraph = new ArrayList<Statement>();
+		for (Resource subject : subjects) {
+			resGraph.addAll(getStatements(subject, null, null, allowInference));
+		}
+		return resGraph;
+	}
+
+	/**
+	 * Whether {@link #getStatementsForSubjects(Collection, boolean)} does the lookups of a batch together. If not (the default), 
+	 * a targeted getStatements() per subject is cheaper than getting all the statements of the subjects.
+	 * 
+	 * @return
+	 */
+	public boolean batchesSubjectLookups() {
+		return false;
+	}
+
 	/**
 	 * Use strings for the subject, predicate and objects, null values are wildcards.
 	 * 
@@ -135,6 +165,34 @@ public abstract class RDFDataSet implements Serializable {
 	public abstract void removeStatements(Resource subject, URI predicate, Value object); 
 	
 	public abstract void removeStatementsFromStrings(String subject, String predicate, String object);	
+
+	/**
+	 * Should be called by the subclasses after each change of the statements (adding/removing statements, adding files), 
+	 * so that graphs that were extracted from this dataset before the change are not used anymore, see {@link RDFGraphCache#invalidate(RDFDataSet)}.
+	 */
+	protected void dataChanged() {
+		RDFGraphCache.invalidate(this);
+	}
+
+	/**
+	 * Save the explicit statements to a compact binary snapshot, which is much faster to load than parsing the RDF again or Java deserialization.
+	 * The entailments are not saved, they are computed again by the dataset that loads the snapshot.
+	 * 
+	 * @param file
+	 */
+	public void saveSnapshot(File file) {
+		RDFSnapshot.write(getStatements(null, null, null, false), file);
+	}
+
+	/**
+	 * Add the statements from a snapshot created with saveSnapshot() to the dataset.
+	 * Note that a dataset with an RDFS inferencer materializes the entailments while loading, see {@link RDFSingleDataSet#openSnapshot(File, String)} to avoid that.
+	 * 
+	 * @param file
+	 */
+	public void loadSnapshot(File file) {
+		RDFSnapshot.read(file, this);
+	}
 			
 	private void writeObject(ObjectOutputStream oos) throws IOException {
 		oos.writeObject(getFullGraph());
@@ -142,9 +200,17 @@ public abstract class RDFDataSet implements Serializable {
 		oos.defaultWriteObject();
 	}
 	private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-		List<Statement> fullgraph = (List<Statement>)ois.readObject();
+		serializedGraph = (List<Statement>)ois.readObject();
 		ois.defaultReadObject();
+	}
+
+	/**
+	 * The store is created after the fields of the subclasses are read, so that initialize() can use them (e.g. whether there is an inferencer).
+	 */
+	protected Object readResolve() throws ObjectStreamException {
 		initialize();
-		addStatements(fullgraph);
+		addStatements(serializedGraph);
+		serializedGraph = null;
+		return this;
 	}
 }
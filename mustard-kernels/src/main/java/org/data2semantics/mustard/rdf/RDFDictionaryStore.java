@@ -0,0 +1,429 @@
+package org.data2semantics.mustard.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.data.SingleCSRGraph;
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.data2semantics.mustard.simplegraph.CSRGraph;
+import org.nodes.DTGraph;
+import org.nodes.DTNode;
+import org.nodes.LightDTGraph;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * In memory store of RDF triples, which are dictionary encoded as three ints, as an alternative to {@link RDFFileDataSet} for large datasets when only the graph is needed.
+ * Files are streamed through a Rio parser, so there is no Sesame repository, no object per triple and no RDFS inferencing.
+ *
+ * <p>
+ * The graphs are extracted directly from the store with {@link #getGraph(List, List, int, int, boolean)} (or {@link #getCSRGraph(List, List, int, int, boolean)}),
+ * these are the same graphs as created by {@link RDFUtils#statements2Graph(Set, int, List, boolean)} on the statements from {@link RDFUtils#getStatements4Depth(RDFDataSet, List, int, boolean)} (without inference)
+ * minus the blackList, up to the numbering of the nodes and links.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class RDFDictionaryStore {
+	private Map<String,Integer> termIds;
+	private List<String> terms; // the toString() of the Value's, which are also the labels in the graph
+	private int[] literalLabelLengths; // length of the label for literals, -1 for resources
+
+	private int[] subjects;
+	private int[] predicates;
+	private int[] objects;
+	private int numTriples;
+
+	// Index of the unique triples by subject, the (predicate, object) pairs of subject s are in [subjectStarts[s], subjectStarts[s+1]), as (predicate << 32 | object)
+	private int[] subjectStarts;
+	private long[] predicateObjects;
+
+	public RDFDictionaryStore() {
+		termIds = new HashMap<String,Integer>();
+		terms = new ArrayList<String>();
+		literalLabelLengths = new int[1024];
+		subjects = new int[1024];
+		predicates = new int[1024];
+		objects = new int[1024];
+	}
+
+	/**
+	 * Create a store from a file or a directory of files
+	 *
+	 * @param file
+	 * @param fileFormat, the format used for storing the RDF (e.g. nTriples, RDFXML, turtle)
+	 */
+	public RDFDictionaryStore(File file, RDFFormat fileFormat) {
+		this();
+		if (file.isDirectory()) {
+			addDir(file, fileFormat);
+		} else {
+			addFile(file, fileFormat);
+		}
+	}
+
+	public void addFile(File file, RDFFormat fileFormat) {
+		try {
+			InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+			try {
+				RDFParser parser = Rio.createParser(fileFormat);
+				parser.setRDFHandler(new DictionaryHandler());
+				parser.parse(in, file.toURI().toString());
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void addFile(String filename, RDFFormat fileFormat) {
+		addFile(new File(filename), fileFormat);
+	}
+
+	public void addDir(File dir, final RDFFormat fileFormat) {
+		FileFilter filter = new FileFilter() {
+			public boolean accept(File file) {
+				for (String ext : fileFormat.getFileExtensions()) {
+					if (file.getName().endsWith(ext)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+		for (File file : dir.listFiles(filter)) {
+			addFile(file, fileFormat);
+		}
+	}
+
+	public void addDir(String dirString, RDFFormat fileFormat) {
+		addDir(new File(dirString), fileFormat);
+	}
+
+	public synchronized void addStatement(Resource subject, Value predicate, Value object) {
+		if (numTriples == subjects.length) {
+			subjects = Arrays.copyOf(subjects, numTriples * 2);
+			predicates = Arrays.copyOf(predicates, numTriples * 2);
+			objects = Arrays.copyOf(objects, numTriples * 2);
+		}
+		subjects[numTriples] = termId(subject);
+		predicates[numTriples] = termId(predicate);
+		objects[numTriples] = termId(object);
+		numTriples++;
+		subjectStarts = null; // the index has to be rebuilt
+	}
+
+	public void addStatements(Iterable<Statement> stmts) {
+		for (Statement stmt : stmts) {
+			addStatement(stmt.getSubject(), stmt.getPredicate(), stmt.getObject());
+		}
+	}
+
+	/**
+	 * @return the number of different IRIs, blank nodes and literals
+	 */
+	public int numTerms() {
+		return terms.size();
+	}
+
+	/**
+	 * @return the number of triples added, including duplicates
+	 */
+	public int numTriples() {
+		return numTriples;
+	}
+
+	private int termId(Value value) {
+		String term = value.toString();
+		Integer id = termIds.get(term);
+		if (id == null) {
+			id = terms.size();
+			termIds.put(term, id);
+			terms.add(term);
+			if (id == literalLabelLengths.length) {
+				literalLabelLengths = Arrays.copyOf(literalLabelLengths, id * 2);
+			}
+			literalLabelLengths[id] = (value instanceof Literal) ? ((Literal) value).getLabel().length() : -1;
+		}
+		return id;
+	}
+
+	/**
+	 * Sort the triples on subject and remove duplicates
+	 */
+	private synchronized void buildIndex() {
+		if (subjectStarts != null) {
+			return;
+		}
+		int[] starts = new int[terms.size() + 1];
+		for (int t = 0; t < numTriples; t++) {
+			starts[subjects[t] + 1]++;
+		}
+		for (int s = 0; s < terms.size(); s++) {
+			starts[s + 1] += starts[s];
+		}
+		long[] pos = new long[numTriples];
+		int[] fill = new int[terms.size()];
+		for (int t = 0; t < numTriples; t++) {
+			pos[starts[subjects[t]] + fill[subjects[t]]++] = (((long) predicates[t]) << 32) | objects[t];
+		}
+
+		// sort per subject and remove the duplicates
+		int[] uniqueStarts = new int[terms.size() + 1];
+		int k = 0;
+		for (int s = 0; s < terms.size(); s++) {
+			Arrays.sort(pos, starts[s], starts[s + 1]);
+			for (int i = starts[s]; i < starts[s + 1]; i++) {
+				if (i == starts[s] || pos[i] != pos[i - 1]) {
+					pos[k++] = pos[i];
+				}
+			}
+			uniqueStarts[s + 1] = k;
+		}
+		predicateObjects = Arrays.copyOf(pos, k);
+		subjectStarts = uniqueStarts;
+	}
+
+	/**
+	 * Extract the graph for the instances up to depth, without the triples in the blackList.
+	 *
+	 * @param instances
+	 * @param blackList
+	 * @param depth
+	 * @param literalOption, one of the literal options in {@link RDFUtils}
+	 * @param simplifyInstanceNodes, if true the instance nodes get the same label
+	 * @return
+	 */
+	public SingleDTGraph getGraph(List<Resource> instances, List<Statement> blackList, int depth, int literalOption, boolean simplifyInstanceNodes) {
+		GraphBuilder gb = extract(instances, blackList, depth, literalOption, simplifyInstanceNodes);
+
+		DTGraph<String,String> graph = new LightDTGraph<String,String>();
+		for (String label : gb.nodeLabels) {
+			graph.add(label);
+		}
+		for (int e = 0; e < gb.numLinks; e++) {
+			graph.get(gb.linkFrom[e]).connect(graph.get(gb.linkTo[e]), gb.linkTags.get(e));
+		}
+		List<DTNode<String,String>> instanceNodes = new ArrayList<DTNode<String,String>>();
+		for (int i = 0; i < instances.size(); i++) {
+			instanceNodes.add(graph.get(i));
+		}
+		return new SingleDTGraph(graph, instanceNodes);
+	}
+
+	/**
+	 * Extract the graph for the instances up to depth as a {@link SingleCSRGraph}, without creating a DTGraph first, see {@link #getGraph(List, List, int, int, boolean)}.
+	 *
+	 * @param instances
+	 * @param blackList
+	 * @param depth
+	 * @param literalOption
+	 * @param simplifyInstanceNodes
+	 * @return
+	 */
+	public SingleCSRGraph getCSRGraph(List<Resource> instances, List<Statement> blackList, int depth, int literalOption, boolean simplifyInstanceNodes) {
+		GraphBuilder gb = extract(instances, blackList, depth, literalOption, simplifyInstanceNodes);
+
+		Map<String,Integer> labelDict = new HashMap<String,Integer>();
+		List<String> labels = new ArrayList<String>();
+		int[] nodeLabels = new int[gb.nodeLabels.size()];
+		for (int v = 0; v < nodeLabels.length; v++) {
+			nodeLabels[v] = labelId(gb.nodeLabels.get(v), labelDict, labels);
+		}
+
+		// Number the links by their from node, as in CSRGraph.fromDTGraph()
+		int[] starts = new int[nodeLabels.length + 1];
+		for (int e = 0; e < gb.numLinks; e++) {
+			starts[gb.linkFrom[e] + 1]++;
+		}
+		for (int v = 0; v < nodeLabels.length; v++) {
+			starts[v + 1] += starts[v];
+		}
+		int[] linkFrom = new int[gb.numLinks];
+		int[] linkTo = new int[gb.numLinks];
+		int[] linkLabels = new int[gb.numLinks];
+		for (int e = 0; e < gb.numLinks; e++) {
+			int k = starts[gb.linkFrom[e]]++;
+			linkFrom[k] = gb.linkFrom[e];
+			linkTo[k] = gb.linkTo[e];
+			linkLabels[k] = labelId(gb.linkTags.get(e), labelDict, labels);
+		}
+
+		int[] instanceNodes = new int[instances.size()];
+		for (int i = 0; i < instanceNodes.length; i++) {
+			instanceNodes[i] = i;
+		}
+		return new SingleCSRGraph(new CSRGraph(labels.toArray(new String[labels.size()]), nodeLabels, linkFrom, linkTo, linkLabels), instanceNodes);
+	}
+
+	private static int labelId(String label, Map<String,Integer> labelDict, List<String> labels) {
+		Integer id = labelDict.get(label);
+		if (id == null) {
+			id = labels.size();
+			labelDict.put(label, id);
+			labels.add(label);
+		}
+		return id;
+	}
+
+	/**
+	 * Breadth first search from the instances, the triples of a subject are added in the same way as RDFUtils.addStatement does.
+	 * The instance nodes are the first nodes in the graph.
+	 */
+	private GraphBuilder extract(List<Resource> instances, List<Statement> blackList, int depth, int literalOption, boolean simplifyInstanceNodes) {
+		buildIndex();
+		GraphBuilder gb = new GraphBuilder();
+
+		for (Resource instance : instances) {
+			gb.nodeMap.put(instance.toString(), gb.addNode(simplifyInstanceNodes ? KernelUtils.ROOTID : instance.toString()));
+		}
+
+		// The blackList as (subject, predicate << 32 | object) pairs, statements with a term that is not in the store cannot be in the graph
+		Map<Integer,Set<Long>> blackMap = new HashMap<Integer,Set<Long>>();
+		for (Statement stmt : blackList) {
+			Integer s = termIds.get(stmt.getSubject().toString());
+			Integer p = termIds.get(stmt.getPredicate().toString());
+			Integer o = termIds.get(stmt.getObject().toString());
+			if (s != null && p != null && o != null) {
+				if (!blackMap.containsKey(s)) {
+					blackMap.put(s, new HashSet<Long>());
+				}
+				blackMap.get(s).add((((long) p) << 32) | o);
+			}
+		}
+
+		Set<Integer> visited = new HashSet<Integer>();
+		List<Integer> searchFront = new ArrayList<Integer>();
+		for (Resource instance : instances) {
+			Integer id = termIds.get(instance.toString());
+			if (id != null && visited.add(id)) {
+				searchFront.add(id);
+			}
+		}
+
+		for (int i = 0; i < depth && !searchFront.isEmpty(); i++) {
+			List<Integer> newSearchFront = new ArrayList<Integer>();
+			for (int s : searchFront) {
+				Set<Long> black = blackMap.get(s);
+				for (int k = subjectStarts[s]; k < subjectStarts[s + 1]; k++) {
+					int p = (int) (predicateObjects[k] >>> 32);
+					int o = (int) predicateObjects[k];
+					boolean isLiteral = literalLabelLengths[o] >= 0;
+
+					// Blacklisted triples are not in the graph, but the search does go through them (as in getStatements4Depth)
+					if (!isLiteral && i < depth - 1 && visited.add(o)) {
+						newSearchFront.add(o);
+					}
+					if (black != null && black.contains(predicateObjects[k])) {
+						continue;
+					}
+					if (isLiteral) {
+						addLiteralTriple(gb, s, p, o, literalOption);
+					} else {
+						gb.addLink(gb.node(terms.get(s)), gb.node(terms.get(o)), terms.get(p));
+					}
+				}
+			}
+			searchFront = newSearchFront;
+		}
+		return gb;
+	}
+
+	private void addLiteralTriple(GraphBuilder gb, int s, int p, int o, int literalOption) {
+		if (literalOption == RDFUtils.NO_LITERALS) {
+			return;
+		}
+		boolean newObject = literalOption == RDFUtils.REPEAT_LITERALS || literalOption == RDFUtils.REPEAT_SPLIT_LITERALS;
+		int from = gb.node(terms.get(s));
+		String lit = terms.get(o);
+
+		if (literalOption == RDFUtils.REGULAR_SPLIT_LITERALS || literalOption == RDFUtils.REPEAT_SPLIT_LITERALS) {
+			// The word literals keep the datatype/language tag, which is the part after the quoted label
+			int labelLength = literalLabelLengths[o];
+			String suffix = lit.substring(labelLength + 2);
+			RDFUtils.WordIterator wi = new RDFUtils.WordIterator(lit.substring(1, labelLength + 1));
+			while (wi.hasNext()) {
+				String word = "\"" + wi.next() + "\"" + suffix;
+				Integer to = gb.nodeMap.get(word);
+				if (to == null || newObject) {
+					to = gb.addNode(word);
+					gb.nodeMap.put(word, to);
+				}
+				gb.addLink(from, to, terms.get(p));
+			}
+		} else {
+			Integer to = gb.nodeMap.get(lit);
+			if (to == null) {
+				to = gb.addNode(lit);
+				if (!newObject) {
+					gb.nodeMap.put(lit, to);
+				}
+			}
+			gb.addLink(from, to, terms.get(p));
+		}
+	}
+
+	/**
+	 * Nodes and links of the graph that is extracted, nodes are identified by their label, like in RDFUtils.statements2Graph()
+	 */
+	private static class GraphBuilder {
+		private Map<String,Integer> nodeMap = new HashMap<String,Integer>();
+		private List<String> nodeLabels = new ArrayList<String>();
+		private int[] linkFrom = new int[1024];
+		private int[] linkTo = new int[1024];
+		private List<String> linkTags = new ArrayList<String>();
+		private int numLinks;
+
+		int addNode(String label) {
+			nodeLabels.add(label);
+			return nodeLabels.size() - 1;
+		}
+
+		int node(String label) {
+			Integer node = nodeMap.get(label);
+			if (node == null) {
+				node = addNode(label);
+				nodeMap.put(label, node);
+			}
+			return node;
+		}
+
+		void addLink(int from, int to, String tag) {
+			if (numLinks == linkFrom.length) {
+				linkFrom = Arrays.copyOf(linkFrom, numLinks * 2);
+				linkTo = Arrays.copyOf(linkTo, numLinks * 2);
+			}
+			linkFrom[numLinks] = from;
+			linkTo[numLinks] = to;
+			linkTags.add(tag);
+			numLinks++;
+		}
+	}
+
+	private class DictionaryHandler extends RDFHandlerBase {
+		@Override
+		public void handleStatement(Statement stmt) throws RDFHandlerException {
+			addStatement(stmt.getSubject(), stmt.getPredicate(), stmt.getObject());
+		}
+	}
+}
@@ -1,9 +1,25 @@
 package org.data2semantics.mustard.rdf;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
 
+import org.openrdf.model.Statement;
+import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
 
 /**
  * Create an RDFDataSet from file or directory.
@@ -13,6 +29,10 @@ import org.openrdf.rio.RDFFormat;
  */
 public class RDFFileDataSet extends RDFSingleDataSet {	
 	private static final long serialVersionUID = 8578119583094453090L;
+	private static final String GZIP_EXTENSION = ".gz";
+	private static final int BATCH_SIZE = 10000; // number of statements passed from a parser thread to the loading thread at once
+	private static final int QUEUE_SIZE = 4; // number of batches a parser thread can be ahead of the loading thread, per file
+	private static final List<Statement> END_OF_FILE = new ArrayList<Statement>(); // put on the queue of a file after its last batch, compared by reference
 
 	/**
 	 * 
@@ -31,22 +51,58 @@ public class RDFFileDataSet extends RDFSingleDataSet {
 			addFile(file, fileFormat);
 		}
 	}
+
+	/**
+	 * 
+	 * @param filename, the path to the file or directory of RDF.
+	 * @param fileFormat, the format used for storing the RDF (e.g. nTriples, RDFXML, turtle)
+	 * @param inferencer, if false the RDFS closure is not materialized, see {@link RDFSingleDataSet#RDFSingleDataSet(String, boolean)}
+	 */
+	public RDFFileDataSet(String filename, RDFFormat fileFormat, boolean inferencer) {
+		this(new File(filename), fileFormat, inferencer);
+	}
+
+	public RDFFileDataSet(File file, RDFFormat fileFormat, boolean inferencer) {
+		super(file.toString(), inferencer);
+		if (file.isDirectory()) {
+			addDir(file, fileFormat);
+		} else {
+			addFile(file, fileFormat);
+		}
+	}
 	
 	
 	public void addFile(String filename, RDFFormat fileFormat) {
-		try {
-			this.rdfRep.getConnection().add(new File(filename), null, fileFormat);
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		addFile(new File(filename), fileFormat);
 	}
 	
+	/**
+	 * Add a file, gzipped files (ending with .gz) are also supported.
+	 * 
+	 * @param file
+	 * @param fileFormat
+	 */
 	public void addFile(File file, RDFFormat fileFormat) {
 		try {
-			this.rdfRep.getConnection().add(file, null, fileFormat);
+			RepositoryConnection repCon = rdfRep.getConnection();
+			try {
+				if (file.getName().endsWith(GZIP_EXTENSION)) {
+					InputStream in = new GZIPInputStream(new FileInputStream(file), 1 << 16);
+					try {
+						repCon.add(in, file.toURI().toString(), fileFormat);
+					} finally {
+						in.close();
+					}
+				} else {
+					repCon.add(file, null, fileFormat);
+				}
+			} finally {
+				repCon.close();
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		dataChanged();
 	}
 	
 	public void addDir(File dir, RDFFormat fileFormat) {
@@ -60,6 +116,159 @@ public class RDFFileDataSet extends RDFSingleDataSet {
 	public void addDir(String dirString, RDFFormat fileFormat) {
 		addDir(new File(dirString), fileFormat);
 	}
+
+	/**
+	 * Bulk load all the files in a directory (gzipped files are also supported). The files are parsed in parallel by parallelism threads, 
+	 * the statements are added in batches through one connection. The files are added in order, each in its own transaction, 
+	 * so a file with a parse error is rolled back and none of its statements end up in the dataset.
+	 * Progress and throughput are printed after each file.
+	 * 
+	 * @param dir
+	 * @param fileFormat
+	 * @param parallelism, the number of parser threads
+	 * @return the files that could not be loaded
+	 */
+	public List<File> addDirBulk(File dir, final RDFFormat fileFormat, int parallelism) {
+		File[] files = dir.listFiles(new RDFFileFilter(fileFormat));
+		List<FileLoad> loads = new ArrayList<FileLoad>();
+		List<File> failed = new ArrayList<File>();
+
+		// The tasks start in order, so the file that is being added is always parsed, the others parse ahead until their queue is full
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		for (File file : files) {
+			final FileLoad load = new FileLoad(file);
+			loads.add(load);
+			executor.submit(new Runnable() {
+				public void run() {
+					parseFile(load, fileFormat);
+				}
+			});
+		}
+		executor.shutdown();
+
+		long tic = System.currentTimeMillis();
+		long numStatements = 0;
+		int f = 0;
+		try {
+			RepositoryConnection repCon = rdfRep.getConnection();
+			try {
+				for (; f < loads.size(); f++) {
+					FileLoad load = loads.get(f);
+					long fileStatements = 0;
+					repCon.begin();
+					try {
+						List<Statement> batch;
+						while ((batch = load.queue.take()) != END_OF_FILE) {
+							repCon.add(batch);
+							fileStatements += batch.size();
+						}
+					} catch (Exception e) {
+						repCon.rollback();
+						throw e;
+					}
+					if (load.error == null) {
+						repCon.commit();
+						numStatements += fileStatements;
+					} else {
+						repCon.rollback();
+						failed.add(load.file);
+						System.out.println("Error parsing: " + load.file + ", the file is not added");
+						load.error.printStackTrace();
+					}
+					long time = Math.max(1, System.currentTimeMillis() - tic);
+					System.out.println("Loaded " + (f + 1) + "/" + files.length + " files, added " + numStatements + " statements, " + (numStatements * 1000 / time) + " statements/s");
+				}
+			} finally {
+				repCon.close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			executor.shutdownNow();
+			for (; f < loads.size(); f++) { // this file and the ones after it are not (completely) added
+				failed.add(loads.get(f).file);
+			}
+		}
+		dataChanged();
+		return failed;
+	}
+
+	public List<File> addDirBulk(String dirString, RDFFormat fileFormat, int parallelism) {
+		return addDirBulk(new File(dirString), fileFormat, parallelism);
+	}
+
+	/**
+	 * Parse the file and put the statements in batches of BATCH_SIZE on its queue, followed by END_OF_FILE, also when parsing fails.
+	 * If the loading is aborted (the thread is interrupted), then nobody reads the queue anymore, so END_OF_FILE is only added if there is room.
+	 */
+	private static void parseFile(final FileLoad load, RDFFormat fileFormat) {
+		try {
+			InputStream in = new FileInputStream(load.file);
+			if (load.file.getName().endsWith(GZIP_EXTENSION)) {
+				in = new GZIPInputStream(in, 1 << 16);
+			} else {
+				in = new BufferedInputStream(in, 1 << 16);
+			}
+			try {
+				RDFParser parser = Rio.createParser(fileFormat);
+				parser.setRDFHandler(new RDFHandlerBase() {
+					private List<Statement> batch = new ArrayList<Statement>(BATCH_SIZE);
+
+					@Override
+					public void handleStatement(Statement stmt) throws RDFHandlerException {
+						batch.add(stmt);
+						if (batch.size() == BATCH_SIZE) {
+							putBatch();
+						}
+					}
+
+					@Override
+					public void endRDF() throws RDFHandlerException {
+						if (!batch.isEmpty()) {
+							putBatch();
+						}
+					}
+
+					private void putBatch() throws RDFHandlerException {
+						try {
+							load.queue.put(batch);
+						} catch (InterruptedException e) { // the loading was aborted, keep the interrupt so END_OF_FILE is not waited for below
+							Thread.currentThread().interrupt();
+							throw new RDFHandlerException(e);
+						}
+						batch = new ArrayList<Statement>(BATCH_SIZE);
+					}
+				});
+				parser.parse(in, load.file.toURI().toString());
+			} finally {
+				in.close();
+			}
+		} catch (Throwable e) {
+			load.error = e;
+		} finally {
+			if (Thread.currentThread().isInterrupted()) {
+				load.queue.offer(END_OF_FILE);
+			} else {
+				try {
+					load.queue.put(END_OF_FILE);
+				} catch (InterruptedException e) { // only when the loading itself failed
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A file in addDirBulk(), with the queue of statement batches from its parser and the parse error, if any
+	 */
+	private static class FileLoad {
+		private File file;
+		private BlockingQueue<List<Statement>> queue = new ArrayBlockingQueue<List<Statement>>(QUEUE_SIZE);
+		private volatile Throwable error;
+
+		FileLoad(File file) {
+			this.file = file;
+		}
+	}
 	
 	class RDFFileFilter implements FileFilter {
 		private RDFFormat fileFormat;
@@ -70,7 +279,7 @@ public class RDFFileDataSet extends RDFSingleDataSet {
 		
 		public boolean accept(File file) {
 			for (String ext : fileFormat.getFileExtensions()) {
-				if (file.getName().endsWith(ext)) {
+				if (file.getName().endsWith(ext) || file.getName().endsWith(ext + GZIP_EXTENSION)) {
 					return true;
 				}
 			}
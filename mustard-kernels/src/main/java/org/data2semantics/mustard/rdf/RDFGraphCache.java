@@ -0,0 +1,399 @@
+package org.data2semantics.mustard.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.nodes.DTGraph;
+import org.nodes.DTLink;
+import org.nodes.DTNode;
+import org.nodes.LightDTGraph;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+
+/**
+ * Cache for the {@link SingleDTGraph}'s extracted from an {@link RDFDataSet}, so that kernels with different parameters on the same data
+ * (e.g. in a parameter sweep) do not have to extract the same graph again. This cache is used by the kernels in
+ * {@link org.data2semantics.mustard.kernels.graphkernels.rdfdata}.
+ *
+ * <p>
+ * A graph is identified by the dataset, the instances, the blackList, the depth, inference, the literal option and simplifyInstanceNodes.
+ * In memory, graphs are cached per RDFDataSet object, using soft references, so they are removed by the garbage collector if memory runs out.
+ * Note that the cached graphs are shared, so they should not be modified.
+ * </p>
+ *
+ * <p>
+ * Optionally, with {@link #setCacheDir(File)}, the graphs are also stored on disk in a compact binary format, so that later runs can skip the extraction entirely.
+ * On disk, the dataset is identified by its label (see {@link RDFDataSet#getLabel()}), so datasets with different contents should have different labels.
+ * The blackList is identified by a SHA-1 digest of its statements (see {@link RDFBlackList#getDigest()}), the complete key is stored in the file and checked when it is read.
+ * </p>
+ *
+ * <p>
+ * When the statements of a dataset change after graphs were extracted from it (see {@link RDFDataSet#dataChanged()}), its graphs are removed from the cache,
+ * and the disk cache is not used anymore for that dataset object, since the files for its label describe the old contents.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class RDFGraphCache {
+	private static final int MAGIC = 0x52444743; // "RDGC"
+	private static final int VERSION = 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final Map<RDFDataSet, Map<Key, SoftReference<SingleDTGraph>>> cache = new WeakHashMap<RDFDataSet, Map<Key, SoftReference<SingleDTGraph>>>();
+	private static final Map<RDFDataSet, Boolean> changed = new WeakHashMap<RDFDataSet, Boolean>(); // datasets that changed after they were used, these are not cached on disk
+	private static boolean enabled = true;
+	private static File cacheDir = null;
+
+	/**
+	 * Get the graph for the instances up to depth, i.e.
+	 * RDFUtils.statements2Graph(RDFUtils.getStatements4Depth(dataset, instances, depth, inference) minus the blackList, literalOption, instances, simplifyInstanceNodes),
+	 * from the cache, if it is not in the cache it is extracted and added to it.
+	 *
+	 * @param dataset
+	 * @param instances
+	 * @param blackList
+	 * @param depth
+	 * @param inference
+	 * @param literalOption
+	 * @param simplifyInstanceNodes
+	 * @return
+	 */
+	public static SingleDTGraph getGraph(RDFDataSet dataset, List<Resource> instances, List<Statement> blackList, int depth, boolean inference, int literalOption, boolean simplifyInstanceNodes) {
+		return getGraph(dataset, instances, new RDFBlackList(blackList), depth, inference, literalOption, simplifyInstanceNodes);
+	}
+
+	/**
+	 * See {@link #getGraph(RDFDataSet, List, List, int, boolean, int, boolean)}, with a blackList that is already built.
+	 */
+	public static SingleDTGraph getGraph(RDFDataSet dataset, List<Resource> instances, RDFBlackList blackList, int depth, boolean inference, int literalOption, boolean simplifyInstanceNodes) {
+		return getGraph(dataset, instances, blackList, depth, inference, literalOption, simplifyInstanceNodes, null);
+	}
+
+	/**
+	 * See {@link #getGraph(RDFDataSet, List, RDFBlackList, int, boolean, int, boolean)}, if the graph is extracted, the statements are looked up and the literals are split with the tasks of executor
+	 * (see {@link RDFUtils#getStatements4Depth(RDFDataSet, List, int, boolean, RDFBlackList, ExecutorService)} and {@link RDFUtils#statements2Graph(Set, int, List, boolean, ExecutorService)}).
+	 * The kernels extract their graphs in the current thread, so to extract in parallel, call this first with the same arguments, the kernels then get the graph from the cache.
+	 *
+	 * @param executor, can be null
+	 */
+	public static SingleDTGraph getGraph(RDFDataSet dataset, List<Resource> instances, RDFBlackList blackList, int depth, boolean inference, int literalOption, boolean simplifyInstanceNodes, ExecutorService executor) {
+		if (!enabled) {
+			return extractGraph(dataset, instances, blackList, depth, inference, literalOption, simplifyInstanceNodes, executor);
+		}
+		Key key = new Key(dataset.getLabel(), instances, blackList, depth, inference, literalOption, simplifyInstanceNodes);
+
+		SingleDTGraph graph = get(dataset, key);
+		if (graph != null) {
+			return graph;
+		}
+		File file = (cacheDir == null || isChanged(dataset)) ? null : new File(cacheDir, key.fileName());
+		if (file != null && file.exists()) {
+			graph = readGraph(file, key);
+		}
+		if (graph == null) {
+			graph = extractGraph(dataset, instances, blackList, depth, inference, literalOption, simplifyInstanceNodes, executor);
+			if (file != null) {
+				writeGraph(file, key, graph);
+			}
+		}
+		put(dataset, key, graph);
+		return graph;
+	}
+
+	/**
+	 * Turn the cache on/off, the default is on. If off, the graph is extracted every time.
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		RDFGraphCache.enabled = enabled;
+	}
+
+	/**
+	 * Set the directory to store the graphs on disk, with null (the default) the graphs are only cached in memory.
+	 *
+	 * @param dir
+	 */
+	public static void setCacheDir(File dir) {
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		cacheDir = dir;
+	}
+
+	public static File getCacheDir() {
+		return cacheDir;
+	}
+
+	/**
+	 * Remove all graphs from the in memory cache (the files on disk are kept).
+	 */
+	public static synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Remove the graphs of dataset from the in memory cache, because its statements changed. If graphs were already extracted from the dataset,
+	 * then the disk cache is not used for it anymore. Changes before the first extraction (i.e. loading the data) do not affect the disk cache.
+	 *
+	 * @param dataset
+	 */
+	public static synchronized void invalidate(RDFDataSet dataset) {
+		if (cache.containsKey(dataset)) {
+			cache.get(dataset).clear();
+			changed.put(dataset, Boolean.TRUE);
+		}
+	}
+
+	private static synchronized boolean isChanged(RDFDataSet dataset) {
+		return changed.containsKey(dataset);
+	}
+
+	private static SingleDTGraph extractGraph(RDFDataSet dataset, List<Resource> instances, RDFBlackList blackList, int depth, boolean inference, int literalOption, boolean simplifyInstanceNodes, ExecutorService executor) {
+		Set<Statement> stmts = RDFUtils.getStatements4Depth(dataset, instances, depth, inference, blackList, executor);
+		return RDFUtils.statements2Graph(stmts, literalOption, instances, simplifyInstanceNodes, executor);
+	}
+
+	private static synchronized SingleDTGraph get(RDFDataSet dataset, Key key) {
+		Map<Key, SoftReference<SingleDTGraph>> graphs = cache.get(dataset);
+		if (graphs == null) {
+			return null;
+		}
+		SoftReference<SingleDTGraph> ref = graphs.get(key);
+		if (ref == null) {
+			return null;
+		}
+		if (ref.get() == null) { // garbage collected
+			graphs.remove(key);
+		}
+		return ref.get();
+	}
+
+	private static synchronized void put(RDFDataSet dataset, Key key, SingleDTGraph graph) {
+		Map<Key, SoftReference<SingleDTGraph>> graphs = cache.get(dataset);
+		if (graphs == null) {
+			graphs = new HashMap<Key, SoftReference<SingleDTGraph>>();
+			cache.put(dataset, graphs);
+		}
+		graphs.put(key, new SoftReference<SingleDTGraph>(graph));
+	}
+
+
+	/**
+	 * Write the graph to file, first to a temporary file which is renamed, so that other processes never read a partially written graph.
+	 *
+	 * The format is: header, key, label dictionary, node labels, links as (from, to, tag) and the instance nodes.
+	 */
+	private static void writeGraph(File file, Key key, SingleDTGraph data) {
+		File tempFile = new File(file.getPath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writeString(out, key.toString());
+
+				DTGraph<String,String> graph = data.getGraph();
+				Map<String,Integer> labelDict = new HashMap<String,Integer>();
+				List<String> labels = new ArrayList<String>();
+				int[] nodeLabels = new int[graph.size()];
+				for (DTNode<String,String> node : graph.nodes()) {
+					nodeLabels[node.index()] = labelId(node.label(), labelDict, labels);
+				}
+				List<int[]> links = new ArrayList<int[]>();
+				for (DTNode<String,String> node : graph.nodes()) {
+					for (DTLink<String,String> link : node.linksOut()) {
+						links.add(new int[]{node.index(), link.to().index(), labelId(link.tag(), labelDict, labels)});
+					}
+				}
+
+				out.writeInt(labels.size());
+				for (String label : labels) {
+					writeString(out, label);
+				}
+				out.writeInt(nodeLabels.length);
+				for (int label : nodeLabels) {
+					out.writeInt(label);
+				}
+				out.writeInt(links.size());
+				for (int[] link : links) {
+					out.writeInt(link[0]);
+					out.writeInt(link[1]);
+					out.writeInt(link[2]);
+				}
+				out.writeInt(data.numInstances());
+				for (DTNode<String,String> instance : data.getInstances()) {
+					out.writeInt(instance.index());
+				}
+			} finally {
+				out.close();
+			}
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				tempFile.delete();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Read the graph from file, returns null if the file is not a graph for key.
+	 */
+	private static SingleDTGraph readGraph(File file, Key key) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.toString().equals(readString(in))) {
+					return null;
+				}
+				String[] labels = new String[in.readInt()];
+				for (int i = 0; i < labels.length; i++) {
+					labels[i] = readString(in);
+				}
+
+				DTGraph<String,String> graph = new LightDTGraph<String,String>();
+				int numNodes = in.readInt();
+				for (int i = 0; i < numNodes; i++) {
+					graph.add(labels[in.readInt()]);
+				}
+				int numLinks = in.readInt();
+				for (int i = 0; i < numLinks; i++) {
+					DTNode<String,String> from = graph.get(in.readInt());
+					DTNode<String,String> to = graph.get(in.readInt());
+					from.connect(to, labels[in.readInt()]);
+				}
+				int numInstances = in.readInt();
+				List<DTNode<String,String>> instances = new ArrayList<DTNode<String,String>>(numInstances);
+				for (int i = 0; i < numInstances; i++) {
+					instances.add(graph.get(in.readInt()));
+				}
+				return new SingleDTGraph(graph, instances);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static int labelId(String label, Map<String,Integer> labelDict, List<String> labels) {
+		Integer id = labelDict.get(label);
+		if (id == null) {
+			id = labels.size();
+			labelDict.put(label, id);
+			labels.add(label);
+		}
+		return id;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+
+	/**
+	 * Identifies a graph in the cache. In memory the blackList itself is compared, on disk (in toString()) it is represented by its SHA-1 digest.
+	 */
+	private static class Key {
+		private String dataset;
+		private List<String> instances;
+		private RDFBlackList blackList;
+		private int depth;
+		private boolean inference;
+		private int literalOption;
+		private boolean simplifyInstanceNodes;
+		private String string;
+
+		public Key(String dataset, List<Resource> instances, RDFBlackList blackList, int depth, boolean inference, int literalOption, boolean simplifyInstanceNodes) {
+			this.dataset = dataset;
+			this.instances = new ArrayList<String>(instances.size());
+			for (Resource instance : instances) {
+				this.instances.add(instance.toString());
+			}
+			this.blackList = blackList;
+			this.depth = depth;
+			this.inference = inference;
+			this.literalOption = literalOption;
+			this.simplifyInstanceNodes = simplifyInstanceNodes;
+		}
+
+		/**
+		 * @return a file name based on a 64 bit hash of the key
+		 */
+		public String fileName() {
+			long hash = 1125899906842597L;
+			String s = toString();
+			for (int i = 0; i < s.length(); i++) {
+				hash = 31 * hash + s.charAt(i);
+			}
+			return "graph_" + Long.toHexString(hash) + ".bin";
+		}
+
+		@Override
+		public String toString() {
+			if (string == null) {
+				StringBuilder sb = new StringBuilder();
+				sb.append(dataset).append("|").append(blackList.getDigest()).append("|").append(depth).append("|").append(inference);
+				sb.append("|").append(literalOption).append("|").append(simplifyInstanceNodes);
+				for (String instance : instances) {
+					sb.append("|").append(instance);
+				}
+				string = sb.toString();
+			}
+			return string;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = dataset.hashCode();
+			result = 31 * result + instances.hashCode();
+			result = 31 * result + blackList.hashCode();
+			result = 31 * result + depth;
+			result = 31 * result + (inference ? 1 : 0);
+			result = 31 * result + literalOption;
+			result = 31 * result + (simplifyInstanceNodes ? 1 : 0);
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return dataset.equals(other.dataset) && instances.equals(other.instances) && blackList.equals(other.blackList) && depth == other.depth
+					&& inference == other.inference && literalOption == other.literalOption && simplifyInstanceNodes == other.simplifyInstanceNodes;
+		}
+	}
+}
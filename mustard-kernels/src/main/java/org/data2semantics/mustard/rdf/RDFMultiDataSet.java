@@ -2,7 +2,17 @@ package org.data2semantics.mustard.rdf;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
@@ -10,9 +20,26 @@ import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 
+/**
+ * RDFDataSet that combines several RDFDataSets, statements are retrieved from all of them. 
+ * Identical statements from different datasets are returned only once.
+ * 
+ * <p>
+ * By default, the datasets are queried in parallel, using an executor that is shared by all the lookups on this dataset. 
+ * With {@link #setTimeout(long)} a lookup fails with a RuntimeException when a dataset does not answer in time, 
+ * so an incomplete result is never returned (and never ends up in the {@link RDFGraphCache}).
+ * Adding and removing statements is done on the first dataset.
+ * </p>
+ * 
+ * @author Gerben
+ *
+ */
 public class RDFMultiDataSet extends RDFDataSet {
 	private static final long serialVersionUID = 5959426528335298053L;
 	private List<RDFDataSet> datasets;
+	private boolean sequential; // query the datasets one after the other, instead of in parallel
+	private long timeout; // max. time in ms to wait for the result of a dataset, 0 is no timeout
+	private transient ExecutorService executor;
 	
 	public RDFMultiDataSet() {
 		this("Multi Repository Dataset");
@@ -27,6 +54,26 @@ public class RDFMultiDataSet extends RDFDataSet {
 		datasets.add(dataset);
 	}	
 
+	/**
+	 * Query the datasets in parallel (the default) or one after the other.
+	 * 
+	 * @param parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.sequential = !parallel;
+	}
+
+	/**
+	 * Set the max. time (in ms) to wait for the results of each dataset, 0 (the default) is no timeout. 
+	 * If a dataset does not answer in time, the lookup throws a RuntimeException (with the TimeoutException as its cause).
+	 * Only used when the datasets are queried in parallel.
+	 * 
+	 * @param timeout
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
 	@Override
 	public Statement createStatement(URI subject, URI predicate, URI object) {
 		return datasets.get(0).createStatement(subject, predicate, object);
@@ -45,6 +92,7 @@ public class RDFMultiDataSet extends RDFDataSet {
 	@Override
 	public void addStatements(Collection<Statement> stmts) {
 		datasets.get(0).addStatements(stmts);
+		dataChanged();
 	}
 
 	@Override
@@ -54,18 +102,108 @@ public class RDFMultiDataSet extends RDFDataSet {
 	}
 
 	@Override
-	public List<Statement> getStatements(Resource subject, URI predicate,
-			Value object, boolean allowInference) {
+	public List<Statement> getStatements(final Resource subject, final URI predicate,
+			final Value object, final boolean allowInference) {
 		
-		List<Statement> resGraph = new ArrayList<Statement>();
+		return query(new DataSetQuery() {
+			public List<Statement> query(RDFDataSet dataset) {
+				return dataset.getStatements(subject, predicate, object, allowInference);
+			}
+		});
+	}
 
+	@Override
+	public List<Statement> getStatementsForSubjects(final Collection<? extends Resource> subjects, final boolean allowInference) {
+		return query(new DataSetQuery() {
+			public List<Statement> query(RDFDataSet dataset) {
+				return dataset.getStatementsForSubjects(subjects, allowInference);
+			}
+		});
+	}
+
+	/**
+	 * True if one of the datasets batches its lookups
+	 */
+	@Override
+	public boolean batchesSubjectLookups() {
 		for (RDFDataSet dataset : datasets) {
-			List<Statement> res = dataset.getStatements(subject, predicate, object, allowInference);
-			if (res != null) {
-				resGraph.addAll(res);
+			if (dataset.batchesSubjectLookups()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Perform the query on all datasets, and merge the results in the order of the datasets, without duplicates.
+	 */
+	private List<Statement> query(final DataSetQuery query) {
+		Set<Statement> resGraph = new LinkedHashSet<Statement>();
+
+		if (sequential || datasets.size() == 1) {
+			for (RDFDataSet dataset : datasets) {
+				addAll(resGraph, query.query(dataset));
+			}	
+			return new ArrayList<Statement>(resGraph);
+		}
+
+		List<Future<List<Statement>>> results = new ArrayList<Future<List<Statement>>>(datasets.size());
+		for (final RDFDataSet dataset : datasets) {
+			results.add(getExecutor().submit(new Callable<List<Statement>>() {
+				public List<Statement> call() {
+					return query.query(dataset);
+				}
+			}));
+		}
+
+		long deadline = System.currentTimeMillis() + timeout; // the datasets are queried at the same time, so they all have the same deadline
+		int i = 0;
+		try {
+			for (; i < results.size(); i++) {
+				if (timeout > 0) {
+					addAll(resGraph, results.get(i).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+				} else {
+					addAll(resGraph, results.get(i).get());
+				}
+			}
+		} catch (TimeoutException e) {
+			throw new RuntimeException("Timeout for dataset: " + datasets.get(i).getLabel(), e);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (Future<List<Statement>> result : results) { // after a failure, the other lookups are not needed anymore
+				result.cancel(true);
 			}
-		}	
-		return resGraph;		
+		}
+		return new ArrayList<Statement>(resGraph);		
+	}
+
+	private static void addAll(Set<Statement> resGraph, List<Statement> res) {
+		if (res != null) {
+			resGraph.addAll(res);
+		}
+	}
+
+	/**
+	 * The executor is created on first use, its threads are daemon threads, so that it does not have to be shut down.
+	 */
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "RDFMultiDataSet-" + getLabel());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	private interface DataSetQuery {
+		public List<Statement> query(RDFDataSet dataset);
 	}
 
 	@Override
@@ -99,11 +237,13 @@ public class RDFMultiDataSet extends RDFDataSet {
 	public void removeStatementsFromStrings(String subject, String predicate,
 			String object) {
 		datasets.get(0).removeStatementsFromStrings(subject, predicate, object);
+		dataChanged();
 	}
 
 	@Override
 	public void removeStatements(Resource subject, URI predicate, Value object) {
 		datasets.get(0).removeStatements(subject, predicate, object);
+		dataChanged();
 	}
 
 	@Override
@@ -0,0 +1,171 @@
+package org.data2semantics.mustard.rdf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+
+/**
+ * Index of the class and property hierarchy (rdfs:subClassOf, rdfs:subPropertyOf and rdfs:domain) of an RDFDataSet,
+ * used to compute RDFS entailments for a set of statements on demand, instead of materializing them for the whole dataset.
+ *
+ * <p>
+ * Given explicit statements, {@link #expand(Collection, ValueFactory)} adds the statements entailed by the rules rdfs2 (domain), rdfs5 (subPropertyOf transitivity),
+ * rdfs7 (subPropertyOf), rdfs9 (subClassOf) and rdfs11 (subClassOf transitivity), with the same subject.
+ * Range entailments (rdfs3) are not included, since these have the object as subject, and neither are the axiomatic triples (e.g. every resource is an rdfs:Resource).
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class RDFSHierarchy {
+	private Map<Value, Set<Value>> superClasses;
+	private Map<Value, Set<Value>> superProperties;
+	private Map<Value, Set<Value>> domains; // including the domains of the superProperties
+
+	/**
+	 * Build the index from the explicit hierarchy statements in the dataset
+	 *
+	 * @param dataset
+	 */
+	public RDFSHierarchy(RDFDataSet dataset) {
+		superClasses = transitiveClosure(dataset.getStatements(null, RDFS.SUBCLASSOF, null, false));
+		superProperties = transitiveClosure(dataset.getStatements(null, RDFS.SUBPROPERTYOF, null, false));
+
+		Map<Value, Set<Value>> directDomains = new HashMap<Value, Set<Value>>();
+		for (Statement stmt : dataset.getStatements(null, RDFS.DOMAIN, null, false)) {
+			add(directDomains, stmt.getSubject(), stmt.getObject());
+		}
+		domains = new HashMap<Value, Set<Value>>();
+		Set<Value> properties = new HashSet<Value>(directDomains.keySet());
+		properties.addAll(superProperties.keySet());
+		for (Value property : properties) {
+			Set<Value> doms = new HashSet<Value>();
+			addAll(doms, directDomains.get(property));
+			for (Value superProperty : get(superProperties, property)) {
+				addAll(doms, directDomains.get(superProperty));
+			}
+			if (!doms.isEmpty()) {
+				domains.put(property, doms);
+			}
+		}
+	}
+
+	/**
+	 * Add the entailed statements to stmts, see the class description for the rules used.
+	 *
+	 * @param stmts, the explicit statements
+	 * @param factory, to create the entailed statements
+	 * @return the explicit and entailed statements, without duplicates
+	 */
+	public List<Statement> expand(Collection<Statement> stmts, ValueFactory factory) {
+		Set<Statement> res = new LinkedHashSet<Statement>(stmts);
+
+		for (Statement stmt : stmts) {
+			Resource subject = stmt.getSubject();
+			URI predicate = stmt.getPredicate();
+			Value object = stmt.getObject();
+
+			for (Value superProperty : get(superProperties, predicate)) { // rdfs7
+				if (superProperty instanceof URI) {
+					res.add(factory.createStatement(subject, (URI) superProperty, object));
+				}
+			}
+			for (Value domain : get(domains, predicate)) { // rdfs2, and rdfs9 for the domain
+				res.add(factory.createStatement(subject, RDF.TYPE, domain));
+				for (Value superClass : get(superClasses, domain)) {
+					res.add(factory.createStatement(subject, RDF.TYPE, superClass));
+				}
+			}
+			if (predicate.equals(RDF.TYPE)) { // rdfs9
+				for (Value superClass : get(superClasses, object)) {
+					res.add(factory.createStatement(subject, RDF.TYPE, superClass));
+				}
+			} else if (predicate.equals(RDFS.SUBCLASSOF)) { // rdfs11
+				for (Value superClass : get(superClasses, object)) {
+					res.add(factory.createStatement(subject, RDFS.SUBCLASSOF, superClass));
+				}
+			} else if (predicate.equals(RDFS.SUBPROPERTYOF)) { // rdfs5
+				for (Value superProperty : get(superProperties, object)) {
+					res.add(factory.createStatement(subject, RDFS.SUBPROPERTYOF, superProperty));
+				}
+			}
+		}
+		return new ArrayList<Statement>(res);
+	}
+
+	/**
+	 * @param cls
+	 * @return all the (direct and indirect) superclasses of cls
+	 */
+	public Set<Value> getSuperClasses(Value cls) {
+		return get(superClasses, cls);
+	}
+
+	/**
+	 * @param property
+	 * @return all the (direct and indirect) superproperties of property
+	 */
+	public Set<Value> getSuperProperties(Value property) {
+		return get(superProperties, property);
+	}
+
+	private static Map<Value, Set<Value>> transitiveClosure(List<Statement> stmts) {
+		Map<Value, Set<Value>> direct = new HashMap<Value, Set<Value>>();
+		for (Statement stmt : stmts) {
+			add(direct, stmt.getSubject(), stmt.getObject());
+		}
+		Map<Value, Set<Value>> closure = new HashMap<Value, Set<Value>>();
+		for (Value start : direct.keySet()) {
+			Set<Value> reached = new HashSet<Value>();
+			List<Value> front = new ArrayList<Value>(direct.get(start));
+			while (!front.isEmpty()) {
+				List<Value> newFront = new ArrayList<Value>();
+				for (Value v : front) {
+					if (reached.add(v)) {
+						addAll(newFront, direct.get(v));
+					}
+				}
+				front = newFront;
+			}
+			closure.put(start, reached);
+		}
+		return closure;
+	}
+
+	private static Set<Value> get(Map<Value, Set<Value>> map, Value key) {
+		Set<Value> set = map.get(key);
+		if (set == null) {
+			return Collections.emptySet();
+		}
+		return set;
+	}
+
+	private static void add(Map<Value, Set<Value>> map, Value key, Value value) {
+		Set<Value> set = map.get(key);
+		if (set == null) {
+			set = new HashSet<Value>();
+			map.put(key, set);
+		}
+		set.add(value);
+	}
+
+	private static void addAll(Collection<Value> col, Collection<Value> values) {
+		if (values != null) {
+			col.addAll(values);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.data2semantics.mustard.rdf;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -9,6 +10,7 @@ import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.query.GraphQuery;
 import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.repository.Repository;
@@ -22,6 +24,8 @@ public class RDFSingleDataSet extends RDFDataSet {
 	private static final long serialVersionUID = -6870742687474259735L;
 	protected transient Repository rdfRep;
 	private String label;
+	private boolean noInferencer; // if true, the repository has no RDFS inferencer and entailments are computed on demand
+	private transient RDFSHierarchy hierarchy;
 
 	public RDFSingleDataSet() {
 		initialize();
@@ -30,7 +34,11 @@ public class RDFSingleDataSet extends RDFDataSet {
 	@Override
 	protected void initialize(){
 		try {
-			rdfRep = new SailRepository(new ForwardChainingRDFSInferencer(new MemoryStore()));
+			if (noInferencer) {
+				rdfRep = new SailRepository(new MemoryStore());
+			} else {
+				rdfRep = new SailRepository(new ForwardChainingRDFSInferencer(new MemoryStore()));
+			}
 			rdfRep.initialize();
 			
 		} catch (Exception e) {
@@ -42,7 +50,34 @@ public class RDFSingleDataSet extends RDFDataSet {
 		this();
 		this.label = label;
 	}
+
+	/**
+	 * Create a dataset with or without an RDFS inferencer. Without the inferencer the RDFS closure is not materialized, which saves time and memory when loading.
+	 * In that case, statements requested with allowInference=true are expanded on demand with the entailments for their subject, see {@link RDFSHierarchy}.
+	 * 
+	 * @param label
+	 * @param inferencer
+	 */
+	public RDFSingleDataSet(String label, boolean inferencer) {
+		this.label = label;
+		this.noInferencer = !inferencer;
+		initialize();
+	}
 	
+	/**
+	 * Open a snapshot created with {@link RDFDataSet#saveSnapshot(File)} as a dataset without an inferencer, so that loading does not materialize the RDFS closure.
+	 * Entailments are computed on demand, see {@link #RDFSingleDataSet(String, boolean)}.
+	 * 
+	 * @param file
+	 * @param label
+	 * @return
+	 */
+	public static RDFSingleDataSet openSnapshot(File file, String label) {
+		RDFSingleDataSet dataset = new RDFSingleDataSet(label, false);
+		dataset.loadSnapshot(file);
+		return dataset;
+	}
+
 	public RDFSingleDataSet(Repository rdfRep, String label) {
 		this.rdfRep = rdfRep;
 		this.label = label;
@@ -91,37 +126,64 @@ public class RDFSingleDataSet extends RDFDataSet {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		dataChanged();
 	}
 	
 
+	/**
+	 * Returns the full graph with the entailments materialized by the inferencer, without an inferencer only the explicit statements are returned.
+	 */
 	@Override
 	public List<Statement> getFullGraph() 
 	{	
-		return getStatements(null, null, null, true);
+		return getStatements(null, null, null, !noInferencer);
+	}
+
+	/**
+	 * @return true if the repository materializes the RDFS entailments
+	 */
+	public boolean hasInferencer() {
+		return !noInferencer;
 	}
 	
 	public List<Statement> sparqlQuery(String sparqlQuery) {
+		try {
+			return evaluateGraphQuery(sparqlQuery);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return new ArrayList<Statement>();
+	}
+
+	/**
+	 * Like sparqlQuery(), but failures are thrown instead of resulting in an empty graph.
+	 */
+	protected List<Statement> evaluateGraphQuery(String sparqlQuery) throws Exception {
+		return evaluateGraphQuery(sparqlQuery, true);
+	}
+
+	/**
+	 * See {@link #evaluateGraphQuery(String)}, with includeInferred set on the query, i.e. whether inferred statements are part of the answer.
+	 */
+	protected List<Statement> evaluateGraphQuery(String sparqlQuery, boolean includeInferred) throws Exception {
 		List<Statement> graph = new ArrayList<Statement>();
 
+		RepositoryConnection repCon = rdfRep.getConnection();
 		try {
-			RepositoryConnection repCon = rdfRep.getConnection();
-			try {
-				GraphQueryResult graphResult = repCon.prepareGraphQuery(QueryLanguage.SPARQL, sparqlQuery).evaluate();
+			GraphQuery query = repCon.prepareGraphQuery(QueryLanguage.SPARQL, sparqlQuery);
+			query.setIncludeInferred(includeInferred);
+			GraphQueryResult graphResult = query.evaluate();
 
-				try {
-					while (graphResult.hasNext()) {
-						graph.add(graphResult.next());
-					}					
-				} finally {
-					graphResult.close();
-				}							
+			try {
+				while (graphResult.hasNext()) {
+					graph.add(graphResult.next());
+				}					
 			} finally {
-				repCon.close();
-			}			
-
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+				graphResult.close();
+			}							
+		} finally {
+			repCon.close();
+		}			
 
 		return graph;
 	}
@@ -140,6 +202,9 @@ public class RDFSingleDataSet extends RDFDataSet {
 	 */	
 	@Override
 	public List<Statement> getStatements(Resource subject, URI predicate, Value object, boolean allowInference) {
+		if (allowInference && noInferencer) {
+			return getStatementsOnDemandInference(subject, predicate, object);
+		}
 		List<Statement> resGraph = new ArrayList<Statement>();
 
 		try {
@@ -169,7 +234,87 @@ public class RDFSingleDataSet extends RDFDataSet {
 		return resGraph;		
 	}
 
+	@Override
+	public boolean batchesSubjectLookups() {
+		return true;
+	}
 
+	/**
+	 * Looks up all the subjects using one repository connection.
+	 */
+	@Override
+	public List<Statement> getStatementsForSubjects(Collection<? extends Resource> subjects, boolean allowInference) {
+		List<Statement> resGraph = new ArrayList<Statement>();
+
+		try {
+			RepositoryConnection repCon = rdfRep.getConnection();
+
+			try {
+				for (Resource subject : subjects) {
+					RepositoryResult<Statement> statements = repCon.getStatements(subject, null, null, allowInference && !noInferencer);
+
+					try {
+						while (statements.hasNext()) {
+							resGraph.add(statements.next());
+						}
+					}
+					finally {
+						statements.close();
+					}
+				}
+			} finally {
+				repCon.close();
+			}
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		if (allowInference && noInferencer) {
+			return getHierarchy().expand(resGraph, rdfRep.getValueFactory());
+		}
+		return resGraph;		
+	}
+
+	/**
+	 * The entailments are derived from the statements of the subject, so all statements of the subject are retrieved first. 
+	 * Note that this means a scan over all statements if subject is null.
+	 */
+	private List<Statement> getStatementsOnDemandInference(Resource subject, URI predicate, Value object) {
+		List<Statement> resGraph = new ArrayList<Statement>();
+		for (Statement stmt : getHierarchy().expand(getStatements(subject, null, null, false), rdfRep.getValueFactory())) {
+			if ((predicate == null || predicate.equals(stmt.getPredicate())) && (object == null || object.equals(stmt.getObject()))) {
+				resGraph.add(stmt);
+			}
+		}
+		return resGraph;
+	}
+
+	/**
+	 * The class/property hierarchy index is built on first use, and rebuilt after the dataset is changed.
+	 */
+	private synchronized RDFSHierarchy getHierarchy() {
+		if (hierarchy == null) {
+			hierarchy = new RDFSHierarchy(this);
+		}
+		return hierarchy;
+	}
+
+	/**
+	 * Drop the class/property hierarchy index, so that it is rebuilt on the next on demand inference. 
+	 */
+	protected synchronized void invalidateHierarchy() {
+		hierarchy = null;
+	}
+
+	/**
+	 * All the write paths (also the file loading in the subclasses) end with dataChanged(), so the hierarchy is invalidated here as well.
+	 */
+	@Override
+	protected void dataChanged() {
+		invalidateHierarchy();
+		super.dataChanged();
+	}
 
 
 	/* (non-Javadoc)
@@ -248,9 +393,6 @@ public class RDFSingleDataSet extends RDFDataSet {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}	
+		dataChanged();
 	}
-			
-
-
-			
 }
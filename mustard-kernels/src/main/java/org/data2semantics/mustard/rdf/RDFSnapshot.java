@@ -0,0 +1,303 @@
+package org.data2semantics.mustard.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * Compact binary snapshot of the statements of an {@link RDFDataSet}, as a faster and smaller alternative to Java serialization.
+ * Use {@link RDFDataSet#saveSnapshot(File)} and {@link RDFDataSet#loadSnapshot(File)}.
+ *
+ * <p>
+ * The snapshot consists of a header, an optional metadata string, the triples as int arrays (subject, predicate, object) and a dictionary of terms (URIs, blank nodes and literals).
+ * The offset of the triples is known from the header, so that they are read via a memory map of the file.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class RDFSnapshot {
+	private static final int MAGIC = 0x52444653; // "RDFS"
+	private static final int VERSION = 2; // version 1 files have no metadata, they are read as version 2 files with empty metadata
+	private static final int HEADER_SIZE = 32;
+	private static final int TRIPLE_SIZE = 12;
+	private static final long MAX_BLOCK_SIZE = 1L << 30; // 1GB per mapped block
+	private static final int ADD_BATCH_SIZE = 100000; // number of statements added to the dataset at once
+
+	private static final byte TYPE_URI = 0;
+	private static final byte TYPE_BNODE = 1;
+	private static final byte TYPE_LITERAL = 2;
+	private static final byte TYPE_LANG_LITERAL = 3;
+	private static final byte TYPE_TYPED_LITERAL = 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Write the statements to file, for a dataset these should be the explicit statements only (as in {@link RDFDataSet#saveSnapshot(File)}),
+	 * inferred statements would become explicit ones when the snapshot is loaded.
+	 *
+	 * @param stmts
+	 * @param file
+	 */
+	public static void write(List<Statement> stmts, File file) {
+		write(stmts, file, "");
+	}
+
+	/**
+	 * Write the statements to file, with a metadata string that describes them (e.g. the query that produced them), see {@link #readMetadata(File)}
+	 *
+	 * @param stmts
+	 * @param file
+	 * @param metadata
+	 */
+	public static void write(List<Statement> stmts, File file, String metadata) {
+		byte[] metadataBytes = metadata.getBytes(UTF8);
+		Map<Value,Integer> termIds = new HashMap<Value,Integer>();
+		List<Value> terms = new ArrayList<Value>();
+		int[] triples = new int[stmts.size() * 3];
+		int i = 0;
+		for (Statement stmt : stmts) {
+			triples[i++] = termId(stmt.getSubject(), termIds, terms);
+			triples[i++] = termId(stmt.getPredicate(), termIds, terms);
+			triples[i++] = termId(stmt.getObject(), termIds, terms);
+		}
+
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC);
+				header.putInt(VERSION);
+				header.putInt(stmts.size());
+				header.putInt(terms.size());
+				header.putInt(metadataBytes.length);
+				out.write(header.array());
+				out.write(metadataBytes);
+
+				for (int t : triples) {
+					out.writeInt(t);
+				}
+				for (Value term : terms) {
+					writeTerm(out, term, termIds);
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read the statements from a file written with {@link #write(List, File)} and add them to the dataset
+	 *
+	 * @param file
+	 * @param dataset
+	 */
+	public static void read(File file, RDFDataSet dataset) {
+		read(file, dataset, null);
+	}
+
+	/**
+	 * Read the statements from a file written with {@link #write(List, File)}
+	 *
+	 * @param file
+	 * @return
+	 */
+	public static List<Statement> read(File file) {
+		List<Statement> res = new ArrayList<Statement>();
+		read(file, null, res);
+		return res;
+	}
+
+	/**
+	 * Read only the metadata from a file written with {@link #write(List, File, String)}, this is cheap, since it is right after the header.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public static String readMetadata(File file) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				byte[] header = new byte[HEADER_SIZE];
+				in.readFully(header);
+				ByteBuffer buffer = ByteBuffer.wrap(header);
+				checkHeader(buffer, file);
+				buffer.position(16);
+				byte[] metadata = new byte[buffer.getInt()];
+				in.readFully(metadata);
+				return new String(metadata, UTF8);
+			} finally {
+				in.close();
+			}
+		} catch (EOFException e) {
+			throw new RuntimeException("Truncated RDF snapshot file: " + file, e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void checkHeader(ByteBuffer header, File file) {
+		int magic = header.getInt();
+		int version = header.getInt();
+		if (magic != MAGIC || version < 1 || version > VERSION) {
+			throw new RuntimeException("Not an RDF snapshot file: " + file);
+		}
+	}
+
+	/**
+	 * The statements are added to the dataset in batches, or to res if dataset is null
+	 */
+	private static void read(File file, RDFDataSet dataset, List<Statement> res) {
+		ValueFactory factory = ValueFactoryImpl.getInstance();
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				channel.read(header, 0);
+				header.flip();
+				checkHeader(header, file);
+				int numTriples = header.getInt();
+				int numTerms = header.getInt();
+				long triplesStart = HEADER_SIZE + (long) header.getInt(); // after the metadata
+
+				long termsStart = triplesStart + ((long) numTriples) * TRIPLE_SIZE;
+				if (numTriples < 0 || numTerms < 0 || triplesStart < HEADER_SIZE || channel.size() < termsStart) {
+					throw new RuntimeException("Truncated RDF snapshot file: " + file);
+				}
+
+				// The terms are after the triples, the stream is not closed, since that would close the channel (which is closed with raf)
+				Value[] terms = new Value[numTerms];
+				channel.position(termsStart);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+				try {
+					for (int t = 0; t < numTerms; t++) {
+						terms[t] = readTerm(in, terms, factory);
+					}
+				} catch (EOFException e) {
+					throw new RuntimeException("Truncated RDF snapshot file: " + file, e);
+				}
+
+				// The triples are read via memory mapped blocks
+				int triplesPerBlock = (int) (MAX_BLOCK_SIZE / TRIPLE_SIZE);
+				int[] triple = new int[3];
+				List<Statement> stmts = (dataset == null) ? res : new ArrayList<Statement>(Math.min(numTriples, ADD_BATCH_SIZE));
+				for (int start = 0; start < numTriples; start += triplesPerBlock) {
+					int size = Math.min(triplesPerBlock, numTriples - start);
+					IntBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, triplesStart + ((long) start) * TRIPLE_SIZE, ((long) size) * TRIPLE_SIZE).asIntBuffer();
+					for (int t = 0; t < size; t++) {
+						block.get(triple);
+						stmts.add(factory.createStatement((Resource) terms[triple[0]], (URI) terms[triple[1]], terms[triple[2]]));
+						if (dataset != null && stmts.size() == ADD_BATCH_SIZE) {
+							dataset.addStatements(stmts);
+							stmts = new ArrayList<Statement>(ADD_BATCH_SIZE);
+						}
+					}
+				}
+				if (dataset != null && !stmts.isEmpty()) {
+					dataset.addStatements(stmts);
+				}
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static int termId(Value term, Map<Value,Integer> termIds, List<Value> terms) {
+		Integer id = termIds.get(term);
+		if (id == null) {
+			if (term instanceof Literal && ((Literal) term).getDatatype() != null) { // the datatype is written as a term id, so it should come first
+				termId(((Literal) term).getDatatype(), termIds, terms);
+			}
+			id = terms.size();
+			termIds.put(term, id);
+			terms.add(term);
+		}
+		return id;
+	}
+
+	private static void writeTerm(DataOutputStream out, Value term, Map<Value,Integer> termIds) throws IOException {
+		if (term instanceof Literal) {
+			Literal lit = (Literal) term;
+			if (lit.getDatatype() != null) {
+				out.writeByte(TYPE_TYPED_LITERAL);
+				writeString(out, lit.getLabel());
+				out.writeInt(termIds.get(lit.getDatatype()));
+			} else if (lit.getLanguage() != null) {
+				out.writeByte(TYPE_LANG_LITERAL);
+				writeString(out, lit.getLabel());
+				writeString(out, lit.getLanguage());
+			} else {
+				out.writeByte(TYPE_LITERAL);
+				writeString(out, lit.getLabel());
+			}
+		} else if (term instanceof BNode) {
+			out.writeByte(TYPE_BNODE);
+			writeString(out, ((BNode) term).getID());
+		} else {
+			out.writeByte(TYPE_URI);
+			writeString(out, term.stringValue());
+		}
+	}
+
+	private static Value readTerm(DataInputStream in, Value[] terms, ValueFactory factory) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+		case TYPE_URI:
+			return factory.createURI(readString(in));
+		case TYPE_BNODE:
+			return factory.createBNode(readString(in));
+		case TYPE_LITERAL:
+			return factory.createLiteral(readString(in));
+		case TYPE_LANG_LITERAL:
+			String label = readString(in);
+			return factory.createLiteral(label, readString(in));
+		case TYPE_TYPED_LITERAL:
+			String typedLabel = readString(in);
+			return factory.createLiteral(typedLabel, (URI) terms[in.readInt()]);
+		default:
+			throw new IOException("Unknown term type: " + type);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+}
@@ -3,19 +3,51 @@ package org.data2semantics.mustard.rdf;
 import java.io.File;
 import java.io.FileWriter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.repository.Repository;
 import org.openrdf.repository.sparql.SPARQLRepository;
+import org.openrdf.rio.ntriples.NTriplesUtil;
 
+/**
+ * RDFDataSet for a (remote) SPARQL endpoint. Only resources in one of the nameSpaces are looked up.
+ * 
+ * <p>
+ * For extraction, {@link #getStatementsForSubjects(Collection, boolean)} fetches batches of subjects with one CONSTRUCT ... VALUES query per batch.
+ * Only the subjects are matched against the nameSpaces, where getStatements() also queries the endpoint when only the object is in one of them.
+ * With {@link #setParallelRequests(int)} several of these queries are in flight at the same time, and with {@link #setCacheDir(File)} 
+ * the responses are stored on disk (in the {@link RDFSnapshot} format), keyed by endpoint, inference and query, so that repeated experiments do not query the endpoint again.
+ * A query that fails throws a RuntimeException, so that an unavailable endpoint does not silently result in an incomplete graph.
+ * </p>
+ * 
+ * <p>
+ * Note that the batches are per level: {@link RDFUtils#getStatements4Depth(RDFDataSet, java.util.List, int, boolean)} looks up the subjects of one depth
+ * in a round, so an extraction up to depth d takes (at least) d rounds of queries, each only containing the resources that were not looked up before.
+ * </p>
+ * 
+ * @author Gerben
+ *
+ */
 public class RDFSparqlDataSet extends RDFSingleDataSet {
 	private static final long serialVersionUID = -4044064372906037138L;
+	private static final int VALUES_BATCH_SIZE = 50; // max. number of subjects in one VALUES query, to keep the request size reasonable
 	private List<String> nameSpaces;
 	private File logFile;
 	private boolean fake; // use this to test of things work, by writing the potential subjects to a logFile
+	private int parallelRequests; // max. number of queries in flight at the same time
+	private File cacheDir; // directory for the cached responses, null for no caching
+	private transient ExecutorService executor; // executes the queries when parallelRequests > 1, shared by all calls of getStatementsForSubjects()
 
 
 	public RDFSparqlDataSet(String url) {
@@ -27,6 +59,7 @@ public class RDFSparqlDataSet extends RDFSingleDataSet {
 		this.rdfRep = new SPARQLRepository(url);
 		this.nameSpaces = nameSpaces;
 		this.fake = false;
+		this.parallelRequests = 1;
 
 		try {
 			this.rdfRep.initialize();
@@ -35,6 +68,54 @@ public class RDFSparqlDataSet extends RDFSingleDataSet {
 		}
 	}
 
+	/**
+	 * Use an (initialized) repository instead of a SPARQL endpoint, e.g. a SailRepository with a MemoryStore as a local stand-in for an endpoint in tests. 
+	 * The queries are the same as for an endpoint.
+	 * 
+	 * @param rdfRep
+	 * @param label, identifies the data in the response cache
+	 * @param nameSpaces
+	 */
+	public RDFSparqlDataSet(Repository rdfRep, String label, List<String> nameSpaces) {
+		super(rdfRep, label);
+		this.nameSpaces = nameSpaces;
+		this.fake = false;
+		this.parallelRequests = 1;
+	}
+
+	/**
+	 * Set the max. number of queries that getStatementsForSubjects() has in flight at the same time, the default is 1.
+	 * 
+	 * @param parallelRequests
+	 */
+	public synchronized void setParallelRequests(int parallelRequests) {
+		this.parallelRequests = Math.max(1, parallelRequests);
+		if (executor != null) { // the queries that are running finish, new ones go to an executor with the new number of threads
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	public int getParallelRequests() {
+		return parallelRequests;
+	}
+
+	/**
+	 * Set the directory to cache the responses to the queries of getStatementsForSubjects() on disk, with null (the default) nothing is cached.
+	 * 
+	 * @param dir
+	 */
+	public void setCacheDir(File dir) {
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		cacheDir = dir;
+	}
+
+	public File getCacheDir() {
+		return cacheDir;
+	}
+
 	@Override
 	public List<Statement> getStatements(Resource subject, URI predicate,
 			Value object, boolean allowInference) {
@@ -46,18 +127,7 @@ public class RDFSparqlDataSet extends RDFSingleDataSet {
 					//System.out.println("Querying external dataset " + super.getLabel() + ", got: " + res.size() + " statements.");
 					return res;
 				} else {
-					try {
-						FileWriter out = new FileWriter(logFile, true);
-						if (subject != null) {
-							out.write(subject.toString());
-							out.write("\n");
-						}
-						out.close();
-						
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
-					
+					log(subject);
 					return new ArrayList<Statement>();
 				}
 			}
@@ -65,6 +135,155 @@ public class RDFSparqlDataSet extends RDFSingleDataSet {
 		return new ArrayList<Statement>();
 	}
 
+	/**
+	 * The subjects (URIs) in one of the nameSpaces are fetched with CONSTRUCT queries with a VALUES clause, i.e. one query per VALUES_BATCH_SIZE subjects.
+	 * The queries are executed by parallelRequests threads, and the results are returned in the order of the batches.
+	 * With allowInference the endpoint is asked to include inferred statements (as with getStatements()).
+	 */
+	@Override
+	public List<Statement> getStatementsForSubjects(Collection<? extends Resource> subjects, final boolean allowInference) {
+		List<Statement> resGraph = new ArrayList<Statement>();
+		List<String> queries = new ArrayList<String>();
+		List<URI> batch = new ArrayList<URI>();
+
+		for (Resource subject : subjects) {
+			if (!(subject instanceof URI)) { // blank nodes cannot be put in a query
+				resGraph.addAll(getStatements(subject, null, null, allowInference));
+				continue;
+			}
+			if (inNameSpaces(subject)) {
+				if (fake) {
+					log(subject);
+				} else {
+					batch.add((URI) subject);
+					if (batch.size() == VALUES_BATCH_SIZE) {
+						queries.add(createValuesQuery(batch));
+						batch.clear();
+					}
+				}
+			}
+		}
+		if (!batch.isEmpty()) {
+			queries.add(createValuesQuery(batch));
+		}
+
+		if (parallelRequests == 1 || queries.size() <= 1) {
+			for (String query : queries) {
+				resGraph.addAll(cachedQuery(query, allowInference));
+			}
+			return resGraph;
+		}
+
+		ExecutorService executor = getExecutor();
+		List<Future<List<Statement>>> results = new ArrayList<Future<List<Statement>>>();
+		try {
+			for (final String query : queries) {
+				results.add(executor.submit(new Callable<List<Statement>>() {
+					public List<Statement> call() {
+						return cachedQuery(query, allowInference);
+					}
+				}));
+			}
+			for (Future<List<Statement>> result : results) {
+				resGraph.addAll(result.get());
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (Future<List<Statement>> result : results) { // the executor is shared, so only the queries of this call are cancelled
+				result.cancel(true);
+			}
+		}
+		return resGraph;
+	}
+
+	/**
+	 * The executor is created on first use, with parallelRequests threads, which are daemon threads, so that it does not have to be shut down.
+	 */
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(parallelRequests, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "RDFSparqlDataSet-" + getLabel());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Execute the (CONSTRUCT) query, or read the response from the cacheDir, if it is there. 
+	 * The cache file is identified by a 64 bit hash of the label and the query, and it is written to a temporary file first, which is renamed.
+	 * The label, inference and query are stored as the metadata of the file, and checked when it is read, so a hash collision results in a new query.
+	 * A failed query throws a RuntimeException, nothing is cached then.
+	 */
+	private List<Statement> cachedQuery(String query, boolean allowInference) {
+		if (cacheDir == null) {
+			return graphQuery(query, allowInference);
+		}
+		String key = getLabel() + "\ninference=" + allowInference + "\n" + query;
+		long hash = 1125899906842597L;
+		for (int i = 0; i < key.length(); i++) {
+			hash = 31 * hash + key.charAt(i);
+		}
+		File file = new File(cacheDir, "sparql_" + Long.toHexString(hash) + ".bin");
+		if (file.exists() && key.equals(RDFSnapshot.readMetadata(file))) {
+			return RDFSnapshot.read(file);
+		}
+		List<Statement> res = graphQuery(query, allowInference);
+		File tempFile = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+		RDFSnapshot.write(res, tempFile, key);
+		if (!tempFile.renameTo(file)) {
+			tempFile.delete();
+		}
+		return res;
+	}
+
+	private List<Statement> graphQuery(String query, boolean allowInference) {
+		try {
+			return evaluateGraphQuery(query, allowInference);
+		} catch (Exception e) {
+			throw new RuntimeException("Query failed on " + getLabel(), e);
+		}
+	}
+
+	private boolean inNameSpaces(Resource subject) {
+		for (String nameSpace : nameSpaces) {
+			if (subject.toString().startsWith(nameSpace)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String createValuesQuery(List<URI> subjects) {
+		StringBuilder sb = new StringBuilder("CONSTRUCT { ?s ?p ?o } WHERE { VALUES ?s {");
+		for (URI subject : subjects) {
+			sb.append(" ");
+			sb.append(NTriplesUtil.toNTriplesString(subject));
+		}
+		sb.append(" } ?s ?p ?o }");
+		return sb.toString();
+	}
+
+	private synchronized void log(Resource subject) {
+		try {
+			FileWriter out = new FileWriter(logFile, true);
+			if (subject != null) {
+				out.write(subject.toString());
+				out.write("\n");
+			}
+			out.close();
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
 	public void setLogFile(String filename) {
 		logFile = new File(filename);
 		fake = true;
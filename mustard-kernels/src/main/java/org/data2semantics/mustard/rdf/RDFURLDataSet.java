@@ -23,6 +23,7 @@ public class RDFURLDataSet extends RDFSingleDataSet {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		dataChanged();
 	}
 	
 	
@@ -2,16 +2,24 @@ package org.data2semantics.mustard.rdf;
 
 import java.text.BreakIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.data2semantics.mustard.kernels.KernelUtils;
 import org.data2semantics.mustard.kernels.data.GraphList;
+import org.data2semantics.mustard.kernels.data.SingleCSRGraph;
 import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.data2semantics.mustard.simplegraph.CSRGraph;
 import org.data2semantics.mustard.weisfeilerlehman.ApproxStringLabel;
 import org.nodes.DTGraph;
 import org.nodes.DTLink;
@@ -22,8 +30,6 @@ import org.nodes.util.Pair;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
-import org.openrdf.model.ValueFactory;
-import org.openrdf.model.impl.ValueFactoryImpl;
 
 
 /**
@@ -40,6 +46,8 @@ public class RDFUtils {
 	public static final int REPEAT_SPLIT_LITERALS = 4;
 	public static final int REGULAR_SPLIT_LITERALS = 5;
 
+	public static final int EXTRACTION_BATCH_SIZE = 256; // number of resources that are looked up together in getStatements4Depth
+
 
 	public static GraphList<DTGraph<ApproxStringLabel,ApproxStringLabel>> getSubGraphsApproxStringLabel(DTGraph<String,String> graph, List<DTNode<String,String>> instances, int depth) {
 		List<DTGraph<ApproxStringLabel,ApproxStringLabel>> subGraphs = new ArrayList<DTGraph<ApproxStringLabel,ApproxStringLabel>>();
@@ -246,6 +254,21 @@ public class RDFUtils {
 	 * @return SingleDTGraph
 	 */
 	public static SingleDTGraph statements2Graph(Set<Statement> stmts, int literalOption, List<Resource> instances, boolean simplifyInstanceNodes) {
+		return statements2Graph(stmts, literalOption, instances, simplifyInstanceNodes, null);
+	}
+
+	/**
+	 * See {@link #statements2Graph(Set, int, List, boolean)}, with the literals split into words by the tasks of executor (see {@link LiteralTokenizer#LiteralTokenizer(ExecutorService)}),
+	 * for REGULAR_SPLIT_LITERALS and REPEAT_SPLIT_LITERALS. The graph does not depend on the executor.
+	 * 
+	 * @param stmts
+	 * @param literalOption
+	 * @param instances
+	 * @param simplifyInstanceNodes
+	 * @param executor, can be null
+	 * @return SingleDTGraph
+	 */
+	public static SingleDTGraph statements2Graph(Set<Statement> stmts, int literalOption, List<Resource> instances, boolean simplifyInstanceNodes, ExecutorService executor) {
 		List<DTNode<String,String>> instanceNodes = new ArrayList<DTNode<String,String>>();
 		DTGraph<String,String> graph = new LightDTGraph<String,String>();	
 		Map<String, DTNode<String,String>> nodeMap = new HashMap<String, DTNode<String,String>>();
@@ -259,28 +282,36 @@ public class RDFUtils {
 			instanceNodes.add(nodeMap.get(instance.toString()));
 		}	
 
+		WordNodes wordNodes = null;
+		if (literalOption == REGULAR_SPLIT_LITERALS || literalOption == REPEAT_SPLIT_LITERALS) {
+			wordNodes = new WordNodes(stmts, executor);
+		}
+
 		for (Statement s : stmts) {
 			if (s.getObject() instanceof Literal && literalOption != NO_LITERALS) {
 				if (literalOption == REGULAR_LITERALS) {
-					addStatement(graph, s, false, false, nodeMap);
+					addStatement(graph, s, false, null, nodeMap);
 				}
 				if (literalOption == REGULAR_SPLIT_LITERALS) {
-					addStatement(graph, s, false, true, nodeMap);
+					addStatement(graph, s, false, wordNodes, nodeMap);
 				}
 				if (literalOption == REPEAT_LITERALS) {
-					addStatement(graph, s, true, false, nodeMap);
+					addStatement(graph, s, true, null, nodeMap);
 				}
 				if (literalOption == REPEAT_SPLIT_LITERALS) {
-					addStatement(graph, s, true, true, nodeMap);
+					addStatement(graph, s, true, wordNodes, nodeMap);
 				}
 			} else if (!(s.getObject() instanceof Literal)){
-				addStatement(graph, s, false, false, nodeMap);
+				addStatement(graph, s, false, null, nodeMap);
 			}
 		}	
 		return new SingleDTGraph(graph, instanceNodes);
 	}
 
-	private static void addStatement(DTGraph<String,String> graph, Statement stmt, boolean newObject, boolean splitLiteral, Map<String, DTNode<String,String>> nodeMap) {
+	/**
+	 * Add stmt to the graph, if wordNodes is not null, literals are split into words
+	 */
+	private static void addStatement(DTGraph<String,String> graph, Statement stmt, boolean newObject, WordNodes wordNodes, Map<String, DTNode<String,String>> nodeMap) {
 
 		DTNode<String,String> n1 = nodeMap.get(stmt.getSubject().toString());
 		if (n1 == null) {
@@ -300,29 +331,14 @@ public class RDFUtils {
 			nodeList.add(n2);
 
 		} else { // Literal
-			if (splitLiteral) {
-				ValueFactory factory = ValueFactoryImpl.getInstance();
-				Literal orgLit = (Literal)stmt.getObject();
-				WordIterator wi = new WordIterator(orgLit.getLabel());
-
-				while (wi.hasNext()) {
-					String word = wi.next();
-					Literal lit;
-
-					// Retain the original datatype/language tag
-					if (orgLit.getDatatype() != null) {
-						lit = factory.createLiteral(word, orgLit.getDatatype());
-					} else if (orgLit.getLanguage() != null) {
-						lit = factory.createLiteral(word, orgLit.getLanguage());
-					} else {
-						lit = factory.createLiteral(word);
-					}
-
-					n2 = nodeMap.get(lit.toString());
+			if (wordNodes != null) {
+				// The words of a literal are never equal to the label of a resource node, so they are looked up by id, instead of in the nodeMap 
+				for (int word : wordNodes.tokenizer.getTokens((Literal) stmt.getObject())) {
+					n2 = wordNodes.nodes[word];
 
 					if (n2 == null || newObject) {
-						n2 = graph.add(lit.toString());
-						nodeMap.put(lit.toString(), n2);
+						n2 = graph.add(wordNodes.tokenizer.getWord(word));
+						wordNodes.nodes[word] = n2;
 					}
 					nodeList.add(n2);
 				}
@@ -344,20 +360,42 @@ public class RDFUtils {
 	}
 
 
+	/**
+	 * The words of the literals in a set of statements (see {@link LiteralTokenizer}), with the node for each word (id) in the graph
+	 */
+	private static class WordNodes {
+		private LiteralTokenizer tokenizer;
+		private DTNode<String,String>[] nodes;
+
+		@SuppressWarnings("unchecked")
+		public WordNodes(Set<Statement> stmts, ExecutorService executor) {
+			tokenizer = new LiteralTokenizer(executor);
+			tokenizer.tokenize(stmts);
+			nodes = new DTNode[tokenizer.numWords()];
+		}
+	}
+
 	/*
 	 * TODO replace this iterator with a more fancy text processing library, to at least do
 	 * - Stop word removal
 	 * - Stemming
 	 * - Better treatment of case, currently we change everything to lower case
 	 */
-	private static class WordIterator implements Iterator<String> {
+	static class WordIterator implements Iterator<String> {
 		private String text;
 		private BreakIterator wordIt;
 		private int start, end;
 
 		public WordIterator(String text) {
+			this(text, BreakIterator.getWordInstance());
+		}
+
+		/**
+		 * Reuse wordIt, which is cheaper than creating a new one for each text.
+		 */
+		public WordIterator(String text, BreakIterator wordIt) {
 			this.text = text;
-			this.wordIt = BreakIterator.getWordInstance();
+			this.wordIt = wordIt;
 			this.wordIt.setText(text);
 			this.start = wordIt.first();
 			this.end = wordIt.next();		    
@@ -392,6 +430,153 @@ public class RDFUtils {
 
 
 
+	/**
+	 * Convert a set of RDF statements into a SingleCSRGraph dataset object, i.e. the compact version of {@link #statements2Graph(Set, int, List, boolean)}.
+	 * The CSR arrays are built directly from the statements, no DTGraph is created. The nodes are numbered in the same order as in statements2Graph.
+	 *  
+	 * @param stmts
+	 * @param literalOption
+	 * @param instances
+	 * @return SingleCSRGraph
+	 */
+	public static SingleCSRGraph statements2CSRGraph(Set<Statement> stmts, int literalOption, List<Resource> instances, boolean simplifyInstanceNodes) {
+		return statements2CSRGraph(stmts, literalOption, instances, simplifyInstanceNodes, null);
+	}
+
+	/**
+	 * See {@link #statements2CSRGraph(Set, int, List, boolean)} and {@link #statements2Graph(Set, int, List, boolean, ExecutorService)}.
+	 * 
+	 * @param stmts
+	 * @param literalOption
+	 * @param instances
+	 * @param simplifyInstanceNodes
+	 * @param executor, can be null
+	 * @return SingleCSRGraph
+	 */
+	public static SingleCSRGraph statements2CSRGraph(Set<Statement> stmts, int literalOption, List<Resource> instances, boolean simplifyInstanceNodes, ExecutorService executor) {
+		CSRGraphBuilder builder = new CSRGraphBuilder(stmts.size());
+		int[] instanceNodes = new int[instances.size()];
+
+		for (int i = 0; i < instanceNodes.length; i++) {
+			String instance = instances.get(i).toString();
+			instanceNodes[i] = builder.addNode(simplifyInstanceNodes ? KernelUtils.ROOTID : instance);
+			builder.nodeMap.put(instance, instanceNodes[i]);
+		}
+
+		if (literalOption == REGULAR_SPLIT_LITERALS || literalOption == REPEAT_SPLIT_LITERALS) {
+			builder.tokenize(stmts, executor);
+		}
+
+		for (Statement s : stmts) {
+			if (s.getObject() instanceof Literal && literalOption != NO_LITERALS) {
+				builder.addStatement(s, literalOption == REPEAT_LITERALS || literalOption == REPEAT_SPLIT_LITERALS);
+			} else if (!(s.getObject() instanceof Literal)){
+				builder.addStatement(s, false);
+			}
+		}
+		return new SingleCSRGraph(builder.build(), instanceNodes);
+	}
+
+	/**
+	 * Builds the arrays of a {@link CSRGraph} from statements, in the same way as {@link RDFUtils#addStatement(DTGraph, Statement, boolean, WordNodes, Map)} builds a DTGraph.
+	 */
+	private static class CSRGraphBuilder {
+		private Map<String,Integer> labelDict = new HashMap<String,Integer>();
+		private Map<String,Integer> nodeMap = new HashMap<String,Integer>();
+		private LiteralTokenizer tokenizer;
+		private int[] wordNodes;
+
+		private int numNodes, numLinks;
+		private int[] nodeLabels;
+		private int[] linkFrom, linkTo, linkLabels;
+
+		public CSRGraphBuilder(int capacity) {
+			capacity = Math.max(16, capacity);
+			nodeLabels = new int[capacity];
+			linkFrom = new int[capacity];
+			linkTo = new int[capacity];
+			linkLabels = new int[capacity];
+		}
+
+		public void tokenize(Set<Statement> stmts, ExecutorService executor) {
+			tokenizer = new LiteralTokenizer(executor);
+			tokenizer.tokenize(stmts);
+			wordNodes = new int[tokenizer.numWords()];
+			Arrays.fill(wordNodes, -1);
+		}
+
+		public int addNode(String label) {
+			if (numNodes == nodeLabels.length) {
+				nodeLabels = Arrays.copyOf(nodeLabels, numNodes * 2);
+			}
+			nodeLabels[numNodes] = labelId(label);
+			return numNodes++;
+		}
+
+		private int node(String label) {
+			Integer node = nodeMap.get(label);
+			if (node == null) {
+				node = addNode(label);
+				nodeMap.put(label, node);
+			}
+			return node;
+		}
+
+		private void addLink(int from, int to, int label) {
+			if (numLinks == linkFrom.length) {
+				linkFrom = Arrays.copyOf(linkFrom, numLinks * 2);
+				linkTo = Arrays.copyOf(linkTo, numLinks * 2);
+				linkLabels = Arrays.copyOf(linkLabels, numLinks * 2);
+			}
+			linkFrom[numLinks] = from;
+			linkTo[numLinks] = to;
+			linkLabels[numLinks] = label;
+			numLinks++;
+		}
+
+		private int labelId(String label) {
+			Integer id = labelDict.get(label);
+			if (id == null) {
+				id = labelDict.size();
+				labelDict.put(label, id);
+			}
+			return id;
+		}
+
+		public void addStatement(Statement stmt, boolean newObject) {
+			int n1 = node(stmt.getSubject().toString());
+			int predicate = labelId(stmt.getPredicate().toString());
+
+			if (stmt.getObject() instanceof Resource) {
+				addLink(n1, node(stmt.getObject().toString()), predicate);
+			} else if (tokenizer != null) {
+				for (int word : tokenizer.getTokens((Literal) stmt.getObject())) {
+					if (wordNodes[word] == -1 || newObject) {
+						wordNodes[word] = addNode(tokenizer.getWord(word));
+					}
+					addLink(n1, wordNodes[word], predicate);
+				}
+			} else {
+				Integer n2 = nodeMap.get(stmt.getObject().toString());
+				if (n2 == null) {
+					n2 = addNode(stmt.getObject().toString());
+					if (!newObject) {
+						nodeMap.put(stmt.getObject().toString(), n2);
+					}
+				}
+				addLink(n1, n2, predicate);
+			}
+		}
+
+		public CSRGraph build() {
+			String[] labels = new String[labelDict.size()];
+			for (Map.Entry<String,Integer> entry : labelDict.entrySet()) {
+				labels[entry.getValue()] = entry.getKey();
+			}
+			return new CSRGraph(labels, Arrays.copyOf(nodeLabels, numNodes), Arrays.copyOf(linkFrom, numLinks), Arrays.copyOf(linkTo, numLinks), Arrays.copyOf(linkLabels, numLinks));
+		}
+	}
+
 	/**
 	 * Convert a set of RDF statements into a DTGraph. 
 	 * There are three possible ways to treat literals, as regular nodes (REGULAR_LITERALS), as unique nodes (i.e. one for each literal even if they are equal) (REPEAT_LITERALS),
@@ -402,25 +587,42 @@ public class RDFUtils {
 	 * @return
 	 */
 	public static DTGraph<String,String> statements2Graph(Set<Statement> stmts, int literalOption) {
+		return statements2Graph(stmts, literalOption, (ExecutorService) null);
+	}
+
+	/**
+	 * See {@link #statements2Graph(Set, int)} and {@link #statements2Graph(Set, int, List, boolean, ExecutorService)}.
+	 * 
+	 * @param stmts
+	 * @param literalOption
+	 * @param executor, can be null
+	 * @return
+	 */
+	public static DTGraph<String,String> statements2Graph(Set<Statement> stmts, int literalOption, ExecutorService executor) {
 		DTGraph<String,String> graph = new LightDTGraph<String,String>();	
 		Map<String, DTNode<String,String>> nodeMap = new HashMap<String, DTNode<String,String>>();
 		
+		WordNodes wordNodes = null;
+		if (literalOption == REGULAR_SPLIT_LITERALS || literalOption == REPEAT_SPLIT_LITERALS) {
+			wordNodes = new WordNodes(stmts, executor);
+		}
+
 		for (Statement s : stmts) {
 			if (s.getObject() instanceof Literal && literalOption != NO_LITERALS) {
 				if (literalOption == REGULAR_LITERALS) {
-					addStatement(graph, s, false, false, nodeMap);
+					addStatement(graph, s, false, null, nodeMap);
 				}
 				if (literalOption == REGULAR_SPLIT_LITERALS) {
-					addStatement(graph, s, false, true, nodeMap);
+					addStatement(graph, s, false, wordNodes, nodeMap);
 				}
 				if (literalOption == REPEAT_LITERALS) {
-					addStatement(graph, s, true, false, nodeMap);
+					addStatement(graph, s, true, null, nodeMap);
 				}
 				if (literalOption == REPEAT_SPLIT_LITERALS) {
-					addStatement(graph, s, true, true, nodeMap);
+					addStatement(graph, s, true, wordNodes, nodeMap);
 				}
 			} else if (!(s.getObject() instanceof Literal)){
-				addStatement(graph, s, false, false, nodeMap);
+				addStatement(graph, s, false, null, nodeMap);
 			}
 		}	
 		return graph;
@@ -429,6 +631,13 @@ public class RDFUtils {
 	/**
 	 * Create a set of statements for a list of instances nodes. For each instance node, the statements upto the specified depth are extracted and put into one set of statements
 	 * 
+	 * <p>
+	 * The neighborhoods are extracted for all the instances together, in a breadth first search over the dataset. Each resource is looked up only once, 
+	 * also when it is reachable from multiple instances or at multiple depths. The resources in a round are looked up in batches of {@link #EXTRACTION_BATCH_SIZE}, 
+	 * with {@link RDFDataSet#getStatementsForSubjects(Collection, boolean)}, in the current thread. 
+	 * To look up the batches in parallel, use {@link #getStatements4Depth(RDFDataSet, List, int, boolean, ExecutorService)}.
+	 * </p>
+	 * 
 	 * @param ts
 	 * @param instances
 	 * @param depth
@@ -436,22 +645,111 @@ public class RDFUtils {
 	 * @return
 	 */
 	public static Set<Statement> getStatements4Depth(RDFDataSet ts, List<Resource> instances, int depth, boolean inference) {
+		return getStatements4Depth(ts, instances, depth, inference, null, null);
+	}
+
+	/**
+	 * See {@link #getStatements4Depth(RDFDataSet, List, int, boolean)}, without the statements in the blackList, which are checked during the extraction, so they are never added to the result.
+	 * Note that the objects of blacklisted statements are still searched, so the result is the same as removing the blackList afterwards.
+	 * 
+	 * @param ts
+	 * @param instances
+	 * @param depth
+	 * @param inference
+	 * @param blackList, can be null
+	 * @return
+	 */
+	public static Set<Statement> getStatements4Depth(RDFDataSet ts, List<Resource> instances, int depth, boolean inference, RDFBlackList blackList) {
+		return getStatements4Depth(ts, instances, depth, inference, blackList, null);
+	}
+
+	/**
+	 * See {@link #getStatements4Depth(RDFDataSet, List, int, boolean)}, with the batches looked up by the tasks of executor. The result does not depend on the executor.
+	 * The executor is not shut down, so it can be shared by multiple extractions. Note that the RDFDataSet should support concurrent lookups.
+	 * 
+	 * @param ts
+	 * @param instances
+	 * @param depth
+	 * @param inference
+	 * @param executor, if null all lookups are done in the current thread
+	 * @return
+	 */
+	public static Set<Statement> getStatements4Depth(RDFDataSet ts, List<Resource> instances, int depth, boolean inference, ExecutorService executor) {
+		return getStatements4Depth(ts, instances, depth, inference, null, executor);
+	}
+
+	/**
+	 * See {@link #getStatements4Depth(RDFDataSet, List, int, boolean, RDFBlackList)} and {@link #getStatements4Depth(RDFDataSet, List, int, boolean, ExecutorService)}.
+	 * 
+	 * @param ts
+	 * @param instances
+	 * @param depth
+	 * @param inference
+	 * @param blackList, can be null
+	 * @param executor, can be null
+	 * @return
+	 */
+	public static Set<Statement> getStatements4Depth(final RDFDataSet ts, List<Resource> instances, int depth, final boolean inference, RDFBlackList blackList, ExecutorService executor) {
 		Set<Statement> stmts = new HashSet<Statement>();
-		List<Resource> searchFront = new ArrayList<Resource>(instances);
+		Set<Resource> visited = new HashSet<Resource>();
+		List<Resource> searchFront = new ArrayList<Resource>();
 		List<Resource> newSearchFront;
 
-		for (int i = 0; i < depth; i++) {
-			newSearchFront = new ArrayList<Resource>();
-			for (Resource r : searchFront) {
-				List<Statement> res = ts.getStatements(r, null, null, inference);
-				stmts.addAll(res);
-				for (Statement stmt : res) {
-					if (stmt.getObject() instanceof Resource) {
-						newSearchFront.add((Resource) stmt.getObject()); 
+		for (Resource r : instances) {
+			if (visited.add(r)) {
+				searchFront.add(r);
+			}
+		}
+
+		try {
+			for (int i = 0; i < depth && !searchFront.isEmpty(); i++) {
+				List<List<Statement>> results = new ArrayList<List<Statement>>();
+
+				if (executor == null || searchFront.size() <= EXTRACTION_BATCH_SIZE) {
+					for (int b = 0; b < searchFront.size(); b += EXTRACTION_BATCH_SIZE) {
+						results.add(ts.getStatementsForSubjects(searchFront.subList(b, Math.min(b + EXTRACTION_BATCH_SIZE, searchFront.size())), inference));
+					}
+				} else {
+					List<Future<List<Statement>>> futures = new ArrayList<Future<List<Statement>>>();
+					for (int b = 0; b < searchFront.size(); b += EXTRACTION_BATCH_SIZE) {
+						final List<Resource> batch = searchFront.subList(b, Math.min(b + EXTRACTION_BATCH_SIZE, searchFront.size()));
+						futures.add(executor.submit(new Callable<List<Statement>>() {
+							public List<Statement> call() {
+								return ts.getStatementsForSubjects(batch, inference);
+							}
+						}));
+					}
+					for (Future<List<Statement>> future : futures) {
+						results.add(future.get());
+					}
+				}
+
+				// The new front only contains resources that were not looked up before
+				newSearchFront = new ArrayList<Resource>();
+				for (List<Statement> res : results) {
+					if (blackList == null || blackList.isEmpty()) {
+						stmts.addAll(res);
+					} else {
+						for (Statement stmt : res) {
+							if (!blackList.contains(stmt)) {
+								stmts.add(stmt);
+							}
+						}
+					}
+					if (i < depth - 1) {
+						for (Statement stmt : res) {
+							if (stmt.getObject() instanceof Resource && visited.add((Resource) stmt.getObject())) {
+								newSearchFront.add((Resource) stmt.getObject()); 
+							}
+						}
 					}
 				}
+				searchFront = newSearchFront;
 			}
-			searchFront = newSearchFront;
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
 		}
 		return stmts;
 	}
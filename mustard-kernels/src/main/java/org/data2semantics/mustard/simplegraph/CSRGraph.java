@@ -0,0 +1,191 @@
+package org.data2semantics.mustard.simplegraph;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nodes.DTGraph;
+import org.nodes.DTLink;
+import org.nodes.DTNode;
+
+/**
+ * Compact, immutable, directed multigraph in compressed sparse row (CSR) format, as an alternative to the object-per-node/link graphs of the nodes library (like {@link SimpleGraph}).
+ * Nodes and links are identified by int ids (0..numNodes()-1 and 0..numLinks()-1). Node and link labels are int ids into one shared String label dictionary.
+ *
+ * <p>
+ * The out links of node v are outLink(k) for k in [outStart(v), outEnd(v)), similarly for the in links.
+ * A typical loop over the out links of v is:
+ * <pre>
+ * for (int k = graph.outStart(v); k &lt; graph.outEnd(v); k++) {
+ *     int link = graph.outLink(k);
+ *     int to = graph.to(link);
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public class CSRGraph {
+	private String[] labels;
+
+	private int[] nodeLabels;
+	private int[] linkLabels;
+	private int[] linkFrom;
+	private int[] linkTo;
+
+	private int[] outStarts;
+	private int[] outLinks;
+	private int[] inStarts;
+	private int[] inLinks;
+
+	/**
+	 * Create a CSRGraph from arrays, the links can be in any order, the out/in links of a node are in increasing link id order.
+	 *
+	 * @param labels, the label dictionary
+	 * @param nodeLabels, label id for each node
+	 * @param linkFrom, from node for each link
+	 * @param linkTo, to node for each link
+	 * @param linkLabels, label id for each link
+	 */
+	public CSRGraph(String[] labels, int[] nodeLabels, int[] linkFrom, int[] linkTo, int[] linkLabels) {
+		this.labels = labels;
+		this.nodeLabels = nodeLabels;
+		this.linkFrom = linkFrom;
+		this.linkTo = linkTo;
+		this.linkLabels = linkLabels;
+
+		int numNodes = nodeLabels.length;
+		int numLinks = linkFrom.length;
+
+		outStarts = new int[numNodes + 1];
+		inStarts = new int[numNodes + 1];
+		for (int e = 0; e < numLinks; e++) {
+			outStarts[linkFrom[e] + 1]++;
+			inStarts[linkTo[e] + 1]++;
+		}
+		for (int v = 0; v < numNodes; v++) {
+			outStarts[v + 1] += outStarts[v];
+			inStarts[v + 1] += inStarts[v];
+		}
+
+		outLinks = new int[numLinks];
+		inLinks = new int[numLinks];
+		int[] outFill = new int[numNodes];
+		int[] inFill = new int[numNodes];
+		for (int e = 0; e < numLinks; e++) {
+			outLinks[outStarts[linkFrom[e]] + outFill[linkFrom[e]]++] = e;
+			inLinks[inStarts[linkTo[e]] + inFill[linkTo[e]]++] = e;
+		}
+	}
+
+	/**
+	 * Convert a DTGraph into a CSRGraph. Node v of the CSRGraph is the node with index() v in the DTGraph.
+	 * The links are numbered by their from node, in the order of linksOut().
+	 *
+	 * @param graph
+	 * @return
+	 */
+	public static CSRGraph fromDTGraph(DTGraph<String,String> graph) {
+		Map<String,Integer> labelDict = new HashMap<String,Integer>();
+		List<? extends DTNode<String,String>> nodes = graph.nodes();
+
+		int[] nodeLabels = new int[nodes.size()];
+		int numLinks = 0;
+		for (DTNode<String,String> node : nodes) {
+			nodeLabels[node.index()] = getLabelId(labelDict, node.label());
+			numLinks += node.linksOut().size();
+		}
+
+		int[] linkFrom = new int[numLinks];
+		int[] linkTo = new int[numLinks];
+		int[] linkLabels = new int[numLinks];
+		int e = 0;
+		for (DTNode<String,String> node : nodes) {
+			for (DTLink<String,String> link : node.linksOut()) {
+				linkFrom[e] = link.from().index();
+				linkTo[e] = link.to().index();
+				linkLabels[e] = getLabelId(labelDict, link.tag());
+				e++;
+			}
+		}
+
+		String[] labels = new String[labelDict.size()];
+		for (String label : labelDict.keySet()) {
+			labels[labelDict.get(label)] = label;
+		}
+		return new CSRGraph(labels, nodeLabels, linkFrom, linkTo, linkLabels);
+	}
+
+	private static int getLabelId(Map<String,Integer> labelDict, String label) {
+		Integer id = labelDict.get(label);
+		if (id == null) {
+			id = labelDict.size();
+			labelDict.put(label, id);
+		}
+		return id;
+	}
+
+	public int numNodes() {
+		return nodeLabels.length;
+	}
+
+	public int numLinks() {
+		return linkFrom.length;
+	}
+
+	/**
+	 * @return the number of different labels (for nodes and links together)
+	 */
+	public int numLabels() {
+		return labels.length;
+	}
+
+	/**
+	 * @param id
+	 * @return the String label with the given label id
+	 */
+	public String label(int id) {
+		return labels[id];
+	}
+
+	public int nodeLabel(int node) {
+		return nodeLabels[node];
+	}
+
+	public int linkLabel(int link) {
+		return linkLabels[link];
+	}
+
+	public int from(int link) {
+		return linkFrom[link];
+	}
+
+	public int to(int link) {
+		return linkTo[link];
+	}
+
+	public int outStart(int node) {
+		return outStarts[node];
+	}
+
+	public int outEnd(int node) {
+		return outStarts[node + 1];
+	}
+
+	public int outLink(int k) {
+		return outLinks[k];
+	}
+
+	public int inStart(int node) {
+		return inStarts[node];
+	}
+
+	public int inEnd(int node) {
+		return inStarts[node + 1];
+	}
+
+	public int inLink(int k) {
+		return inLinks[k];
+	}
+}
@@ -0,0 +1,281 @@
+package org.data2semantics.mustard.weisfeilerlehman;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary for the integer variant of the Weisfeiler-Lehman algorithm. It stores two types of compressed signatures:
+ * <ul>
+ * <li>neighborhoods, i.e. sorted multisets of neighbor labels, which are mapped to a neighborhood id. The empty multiset always has id {@link #EMPTY_NBH}.</li>
+ * <li>labels, i.e. pairs of (own label, neighborhood id), which are mapped to a new label.</li>
+ * </ul>
+ * Both are open addressing hash tables on primitive arrays, so no Strings or boxed objects are created during the WL iterations.
+ *
+ * @author Gerben
+ *
+ */
+public class IntLabelDictionary {
+	public static final int EMPTY_NBH = 0;
+
+	private static final int EMPTY = -1;
+
+	// Neighborhood multisets, stored consecutively in one pool
+	private int[] pool;
+	private int poolSize;
+	private int[] nbhStarts;
+	private int[] nbhHashes;
+	private int numNbhs;
+	private int[] nbhTable;
+
+	// (label, neighborhood) pairs
+	private long[] pairKeys;
+	private int[] pairValues;
+	private int numPairs;
+
+	public IntLabelDictionary() {
+		pool = new int[1024];
+		nbhStarts = new int[257];
+		nbhHashes = new int[256];
+		nbhTable = new int[512];
+		Arrays.fill(nbhTable, EMPTY);
+
+		pairKeys = new long[512];
+		pairValues = new int[512];
+		Arrays.fill(pairValues, EMPTY);
+
+		// The empty neighborhood
+		nbhStarts[0] = 0;
+		nbhStarts[1] = 0;
+		nbhHashes[0] = hash(pool, 0, 0);
+		numNbhs = 1;
+	}
+
+	/**
+	 * Get the id for the multiset of labels stored in labels[from] to labels[to] (exclusive), which is assumed to be sorted.
+	 * If it is not present it is added.
+	 *
+	 * @param labels
+	 * @param from
+	 * @param to
+	 * @return the neighborhood id
+	 */
+	public int getNeighborhood(int[] labels, int from, int to) {
+		if (from == to) {
+			return EMPTY_NBH;
+		}
+		int h = hash(labels, from, to);
+		int mask = nbhTable.length - 1;
+		int pos = h & mask;
+
+		while (nbhTable[pos] != EMPTY) {
+			int id = nbhTable[pos];
+			if (nbhHashes[id] == h && equalsRange(id, labels, from, to)) {
+				return id;
+			}
+			pos = (pos + 1) & mask;
+		}
+
+		// Add the new neighborhood
+		int id = numNbhs++;
+		int len = to - from;
+		if (poolSize + len > pool.length) {
+			pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + len));
+		}
+		System.arraycopy(labels, from, pool, poolSize, len);
+		poolSize += len;
+
+		if (numNbhs > nbhHashes.length) {
+			nbhStarts = Arrays.copyOf(nbhStarts, nbhHashes.length * 2 + 1);
+			nbhHashes = Arrays.copyOf(nbhHashes, nbhHashes.length * 2);
+		}
+		nbhStarts[id + 1] = poolSize;
+		nbhHashes[id] = h;
+		nbhTable[pos] = id;
+
+		if (numNbhs * 2 > nbhTable.length) {
+			rehashNeighborhoods();
+		}
+		return id;
+	}
+
+	/**
+	 * Find the id for the sorted multiset of labels stored in labels[from] to labels[to] (exclusive), without adding it.
+	 *
+	 * @param labels
+	 * @param from
+	 * @param to
+	 * @return the neighborhood id, or -1 if it is not present
+	 */
+	public int findNeighborhood(int[] labels, int from, int to) {
+		if (from == to) {
+			return EMPTY_NBH;
+		}
+		int h = hash(labels, from, to);
+		int mask = nbhTable.length - 1;
+		int pos = h & mask;
+
+		while (nbhTable[pos] != EMPTY) {
+			int id = nbhTable[pos];
+			if (nbhHashes[id] == h && equalsRange(id, labels, from, to)) {
+				return id;
+			}
+			pos = (pos + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the label for the pair (label, neighborhood), returns -1 if this pair is not present.
+	 *
+	 * @param label
+	 * @param nbh
+	 * @return
+	 */
+	public int getLabel(int label, int nbh) {
+		long key = pairKey(label, nbh);
+		int mask = pairKeys.length - 1;
+		int pos = hash(key) & mask;
+
+		while (pairValues[pos] != EMPTY) {
+			if (pairKeys[pos] == key) {
+				return pairValues[pos];
+			}
+			pos = (pos + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Add the pair (label, neighborhood) with the given new label to the dictionary
+	 *
+	 * @param label
+	 * @param nbh
+	 * @param newLabel
+	 */
+	public void putLabel(int label, int nbh, int newLabel) {
+		long key = pairKey(label, nbh);
+		int mask = pairKeys.length - 1;
+		int pos = hash(key) & mask;
+
+		while (pairValues[pos] != EMPTY) {
+			if (pairKeys[pos] == key) {
+				pairValues[pos] = newLabel;
+				return;
+			}
+			pos = (pos + 1) & mask;
+		}
+		pairKeys[pos] = key;
+		pairValues[pos] = newLabel;
+		numPairs++;
+
+		if (numPairs * 2 > pairKeys.length) {
+			rehashPairs();
+		}
+	}
+
+	/**
+	 * @return number of (label, neighborhood) pairs in the dictionary
+	 */
+	public int size() {
+		return numPairs;
+	}
+
+	/**
+	 * Get the sorted neighbor labels for neighborhood nbh
+	 *
+	 * @param nbh
+	 * @return
+	 */
+	public int[] getNeighborhoodLabels(int nbh) {
+		return Arrays.copyOfRange(pool, nbhStarts[nbh], nbhStarts[nbh + 1]);
+	}
+
+	/**
+	 * Append the String representation of each (label, neighborhood) pair, in the "label_nb1_nb2" format used by the String based WL implementations,
+	 * to the array labels, at the index of the label that the pair is mapped to.
+	 *
+	 * @param labels
+	 */
+	public void fillStringLabels(String[] labels) {
+		for (int i = 0; i < pairKeys.length; i++) {
+			if (pairValues[i] != EMPTY) {
+				StringBuilder sb = new StringBuilder();
+				sb.append((int) (pairKeys[i] >>> 32));
+				int nbh = (int) pairKeys[i];
+				for (int j = nbhStarts[nbh]; j < nbhStarts[nbh + 1]; j++) {
+					sb.append("_");
+					sb.append(pool[j]);
+				}
+				labels[pairValues[i]] = sb.toString();
+			}
+		}
+	}
+
+	private boolean equalsRange(int id, int[] labels, int from, int to) {
+		int start = nbhStarts[id];
+		if (nbhStarts[id + 1] - start != to - from) {
+			return false;
+		}
+		for (int i = from; i < to; i++) {
+			if (pool[start + i - from] != labels[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehashNeighborhoods() {
+		nbhTable = new int[nbhTable.length * 2];
+		Arrays.fill(nbhTable, EMPTY);
+		int mask = nbhTable.length - 1;
+		for (int id = 1; id < numNbhs; id++) {
+			int pos = nbhHashes[id] & mask;
+			while (nbhTable[pos] != EMPTY) {
+				pos = (pos + 1) & mask;
+			}
+			nbhTable[pos] = id;
+		}
+	}
+
+	private void rehashPairs() {
+		long[] oldKeys = pairKeys;
+		int[] oldValues = pairValues;
+		pairKeys = new long[oldKeys.length * 2];
+		pairValues = new int[oldValues.length * 2];
+		Arrays.fill(pairValues, EMPTY);
+		int mask = pairKeys.length - 1;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != EMPTY) {
+				int pos = hash(oldKeys[i]) & mask;
+				while (pairValues[pos] != EMPTY) {
+					pos = (pos + 1) & mask;
+				}
+				pairKeys[pos] = oldKeys[i];
+				pairValues[pos] = oldValues[i];
+			}
+		}
+	}
+
+	private static long pairKey(int label, int nbh) {
+		return (((long) label) << 32) | (nbh & 0xFFFFFFFFL);
+	}
+
+	private static int hash(int[] labels, int from, int to) {
+		int h = 1;
+		for (int i = from; i < to; i++) {
+			h = 31 * h + labels[i];
+		}
+		return mix(h);
+	}
+
+	private static int hash(long key) {
+		return mix((int) (key ^ (key >>> 32)) * 0x9E3779B9);
+	}
+
+	static int mix(int h) {
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		h ^= (h >>> 13);
+		return h;
+	}
+}
@@ -0,0 +1,119 @@
+package org.data2semantics.mustard.weisfeilerlehman;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Integer variant of {@link MapLabel}, used by {@link WeisfeilerLehmanDTGraphIntMapLabelIterator}.
+ * Before initialization the label stores the original String label for each index, after initialization only primitive int labels are used.
+ *
+ * The keySet is a HashSet (like in MapLabel), so that the keys are iterated in the same order as for MapLabel, which results in the same feature ids.
+ *
+ * @author Gerben
+ *
+ */
+public class IntMapLabel {
+	private String[] initLabels;
+	private int[] map;
+	private int[] prevNBH;
+	private boolean[] sameAsPrev;
+	private int[] slots;
+	private Set<Integer> keySet;
+
+
+	public IntMapLabel(int mapSize) {
+		initLabels = new String[mapSize];
+		map = new int[mapSize];
+		prevNBH = new int[mapSize];
+		sameAsPrev = new boolean[mapSize];
+		slots = new int[mapSize];
+		keySet = new HashSet<Integer>(mapSize);
+	}
+
+	public IntMapLabel() {
+		this(4);
+	}
+
+	public Set<Integer> keySet() {
+		return keySet;
+	}
+
+	/**
+	 * Put the original (String) label for the given key, this label is converted into an int label by the WL iterator during initialization.
+	 *
+	 * @param key
+	 * @param label
+	 */
+	public void put(Integer key, String label) {
+		if (key >= map.length) {
+			int size = key + 1;
+			initLabels = Arrays.copyOf(initLabels, size);
+			map = Arrays.copyOf(map, size);
+			prevNBH = Arrays.copyOf(prevNBH, size);
+			sameAsPrev = Arrays.copyOf(sameAsPrev, size);
+			slots = Arrays.copyOf(slots, size);
+		}
+		keySet.add(key);
+		initLabels[key] = label;
+	}
+
+	public String getInitialLabel(Integer key) {
+		return initLabels[key];
+	}
+
+	public int get(Integer key) {
+		return map[key];
+	}
+
+	public void set(Integer key, int label) {
+		map[key] = label;
+		initLabels[key] = null; // not needed anymore
+	}
+
+	public boolean containsKey(Integer key) {
+		return key < map.length && keySet.contains(key);
+	}
+
+	public void putPrevNBH(Integer key, int value) {
+		prevNBH[key] = value;
+	}
+
+	public int getPrevNBH(Integer key) {
+		return prevNBH[key];
+	}
+
+	public void putSameAsPrev(Integer key, boolean value) {
+		sameAsPrev[key] = value;
+	}
+
+	public boolean getSameAsPrev(Integer key) {
+		return sameAsPrev[key];
+	}
+
+	int getSlot(Integer key) {
+		return slots[key];
+	}
+
+	void setSlot(Integer key, int slot) {
+		slots[key] = slot;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < map.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			if (!keySet.contains(i)) {
+				sb.append("null");
+			} else if (initLabels[i] != null) {
+				sb.append(initLabels[i]);
+			} else {
+				sb.append(map[i]);
+			}
+		}
+		return sb.append("]").toString();
+	}
+}
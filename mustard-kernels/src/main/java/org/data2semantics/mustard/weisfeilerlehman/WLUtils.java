@@ -1,9 +1,46 @@
 package org.data2semantics.mustard.weisfeilerlehman;
 
+import java.util.Arrays;
 import java.util.Map;
 
 public class WLUtils {
 	
+	/**
+	 * Stable LSD radix sort (16 bits per pass) of the first n keys, which should be in the range [0, maxKey).
+	 * The keys array itself is not changed.
+	 * 
+	 * @param keys
+	 * @param n
+	 * @param maxKey
+	 * @return the permutation of 0 to n-1 that sorts the keys
+	 */
+	public static int[] radixSort(int[] keys, int n, int maxKey) {
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		int[] temp = new int[n];
+		int[] counts = new int[(1 << 16) + 1];
+
+		for (int shift = 0; shift < 32 && (maxKey - 1) >>> shift > 0; shift += 16) {
+			int range = Math.min(1 << 16, ((maxKey - 1) >>> shift) + 1);
+			Arrays.fill(counts, 0, range + 1, 0);
+
+			for (int i = 0; i < n; i++) {
+				counts[((keys[order[i]] >>> shift) & 0xFFFF) + 1]++;
+			}
+			for (int i = 0; i < range; i++) {
+				counts[i + 1] += counts[i];
+			}
+			for (int i = 0; i < n; i++) {
+				temp[counts[(keys[order[i]] >>> shift) & 0xFFFF]++] = order[i];
+			}
+			int[] swap = order;
+			order = temp;
+			temp = swap;
+		}
+		return order;
+	}
 	
 	
 	/**
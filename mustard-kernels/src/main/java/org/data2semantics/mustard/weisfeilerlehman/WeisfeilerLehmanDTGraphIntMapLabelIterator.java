@@ -0,0 +1,344 @@
+package org.data2semantics.mustard.weisfeilerlehman;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nodes.DTGraph;
+import org.nodes.DTLink;
+import org.nodes.DTNode;
+
+/**
+ * Integer label variant of {@link WeisfeilerLehmanDTGraphMapLabelIterator}. Instead of concatenating Strings, the new label of each vertex/edge is
+ * determined by the pair (old label, neighborhood id), where the neighborhood id is a compressed representation of the sorted multiset of neighbor labels, see {@link IntLabelDictionary}.
+ * The multisets are sorted with a radix sort on the int labels.
+ *
+ * The labels are given out in the same order as {@link WeisfeilerLehmanDTGraphMapLabelIterator}, so both iterators generate the same feature ids.
+ *
+ * After {@link #freeze()} the dictionary is not extended anymore, so that new (test) graphs can be labeled with the labels of the graphs seen before.
+ *
+ * @author Gerben
+ *
+ */
+public class WeisfeilerLehmanDTGraphIntMapLabelIterator extends WeisfeilerLehmanIterator<DTGraph<IntMapLabel,IntMapLabel>> {
+	private boolean reverse;
+	private boolean trackPrevNBH;
+
+	private Map<String,Integer> initDict;
+	private IntLabelDictionary dict;
+	private int numLabels;
+
+	// the (vertex/edge, index) pairs, in the order in which they are relabeled
+	private IntMapLabel[] slotLabels;
+	private int[] slotIndices;
+	private int numSlots;
+
+	// neighbor labels for each slot, reused between iterations
+	private int[] nbTargets;
+	private int[] nbLabels;
+	private int numNbs;
+
+	// frozen state, labels that are not in the dictionary (unseen labels) get a temporary label >= frozenSize
+	private boolean frozen;
+	private int frozenSize;
+	private Map<String,Integer> unseenInitDict;
+	private IntLabelDictionary unseenDict;
+	private int[] unseenHashes;
+
+	public WeisfeilerLehmanDTGraphIntMapLabelIterator(boolean reverse) {
+		this(reverse, false);
+	}
+
+	public WeisfeilerLehmanDTGraphIntMapLabelIterator(boolean reverse, boolean trackPrevNBH) {
+		super();
+		this.reverse = reverse;
+		this.trackPrevNBH = trackPrevNBH;
+		this.initDict = new HashMap<String,Integer>();
+		this.dict = new IntLabelDictionary();
+		this.numLabels = 0;
+		this.nbTargets = new int[1024];
+		this.nbLabels = new int[1024];
+	}
+
+	/**
+	 * The String version of the label dictionary is only constructed on request, in the same format as {@link WeisfeilerLehmanDTGraphMapLabelIterator#getLabelDict()}.
+	 */
+	@Override
+	public Map<String, String> getLabelDict() {
+		String[] labels = new String[numLabels];
+		for (String key : initDict.keySet()) {
+			labels[initDict.get(key)] = key;
+		}
+		dict.fillStringLabels(labels);
+
+		Map<String,String> labelDict = new HashMap<String,String>();
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i] != null) {
+				labelDict.put(labels[i], Integer.toString(i));
+			}
+		}
+		return labelDict;
+	}
+
+	@Override
+	public int getLabelDictSize() {
+		return numLabels;
+	}
+
+	/**
+	 * Freeze the label dictionary. After this, the dictionary is not changed by {@link #wlInitialize(List)} and {@link #wlIterate(List)}.
+	 * Labels that are not in the dictionary get a temporary label >= {@link #getFrozenSize()}, which is only valid until the next call to wlInitialize.
+	 * Equal unseen subtrees get the same temporary label. For each unseen label a hash is available via {@link #getUnseenLabelHash(int)}, 
+	 * which only depends on the subtree that the label represents, so it is the same over different calls.
+	 */
+	public void freeze() {
+		frozen = true;
+		frozenSize = numLabels;
+	}
+
+	/**
+	 * Unfreeze the label dictionary, so that new labels are added to it again, with new ids after the existing ones.
+	 * Existing subtrees keep their label. The temporary labels of unseen subtrees are discarded, so the new ids directly follow the ids of the dictionary.
+	 */
+	public void unfreeze() {
+		if (frozen) {
+			forgetUnseenLabels();
+		}
+		frozen = false;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * @return the number of labels in the dictionary at the time it was frozen
+	 */
+	public int getFrozenSize() {
+		return frozenSize;
+	}
+
+	/**
+	 * Get the hash of an unseen label, i.e. a label >= {@link #getFrozenSize()}.
+	 *
+	 * @param label
+	 * @return
+	 */
+	public int getUnseenLabelHash(int label) {
+		return unseenHashes[label - frozenSize];
+	}
+
+	@Override
+	public void wlInitialize(List<DTGraph<IntMapLabel, IntMapLabel>> graphs) {
+		if (frozen) { // forget the unseen labels of the previous graphs
+			forgetUnseenLabels();
+		}
+
+		for (DTGraph<IntMapLabel, IntMapLabel> graph : graphs) {
+			for (DTNode<IntMapLabel,IntMapLabel> node : graph.nodes()) {
+				initLabel(node.label());
+			}
+			for (DTLink<IntMapLabel,IntMapLabel> link : graph.links()) {
+				initLabel(link.tag());
+			}
+		}
+
+		// Enumerate the slots in the order used during relabeling
+		numSlots = 0;
+		slotLabels = new IntMapLabel[1024];
+		slotIndices = new int[1024];
+		for (DTGraph<IntMapLabel, IntMapLabel> graph : graphs) {
+			for (DTLink<IntMapLabel,IntMapLabel> link : graph.links()) {
+				addSlots(link.tag());
+			}
+			for (DTNode<IntMapLabel,IntMapLabel> node : graph.nodes()) {
+				addSlots(node.label());
+			}
+		}
+	}
+
+	@Override
+	public void wlIterate(List<DTGraph<IntMapLabel, IntMapLabel>> graphs) {
+		numNbs = 0;
+
+		// 1. Collect the neighbor labels for each slot
+		for (DTGraph<IntMapLabel,IntMapLabel> graph : graphs) {
+			if (reverse) { // Labels "travel" to the root node
+				for (DTLink<IntMapLabel,IntMapLabel> edge : graph.links()) {
+					IntMapLabel from = edge.from().label();
+					for (int index : edge.tag().keySet()) {
+						if (from.containsKey(index + 1)) {
+							addNeighbor(from.getSlot(index + 1), edge.tag().get(index));
+						}
+					}
+				}
+				for (DTNode<IntMapLabel,IntMapLabel> vertex : graph.nodes()) {
+					for (int index : vertex.label().keySet()) {
+						for (DTLink<IntMapLabel,IntMapLabel> e2 : vertex.linksIn()) {
+							if (e2.tag().containsKey(index)) {
+								addNeighbor(e2.tag().getSlot(index), vertex.label().get(index));
+							}
+						}
+					}
+				}
+			} else { // Labels "travel" to the fringe nodes
+				for (DTLink<IntMapLabel,IntMapLabel> edge : graph.links()) {
+					IntMapLabel to = edge.to().label();
+					for (int index : edge.tag().keySet()) {
+						if (to.containsKey(index)) {
+							addNeighbor(to.getSlot(index), edge.tag().get(index));
+						}
+					}
+				}
+				for (DTNode<IntMapLabel,IntMapLabel> vertex : graph.nodes()) {
+					for (int index : vertex.label().keySet()) {
+						if (index > 0) { // If index is 0 then we treat it as a fringe node, thus the label will not be propagated to the edges
+							for (DTLink<IntMapLabel,IntMapLabel> e2 : vertex.linksOut()) {
+								if (e2.tag().containsKey(index - 1)) {
+									addNeighbor(e2.tag().getSlot(index - 1), vertex.label().get(index));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// 2. Sort the neighbor labels on (slot, label), which gives a sorted multiset of labels per slot
+		int[] order = WLUtils.radixSort(nbLabels, numNbs, numLabels);
+		int[] starts = new int[numSlots + 1];
+		for (int i = 0; i < numNbs; i++) {
+			starts[nbTargets[i] + 1]++;
+		}
+		for (int i = 0; i < numSlots; i++) {
+			starts[i + 1] += starts[i];
+		}
+		int[] sorted = new int[numNbs];
+		int[] fill = Arrays.copyOf(starts, numSlots);
+		for (int i = 0; i < numNbs; i++) { // order is stable for equal slots, so the labels stay sorted
+			int j = order[i];
+			sorted[fill[nbTargets[j]]++] = nbLabels[j];
+		}
+
+		// 3. Relabel
+		for (int s = 0; s < numSlots; s++) {
+			IntMapLabel label = slotLabels[s];
+			int index = slotIndices[s];
+			int nbh;
+			if (frozen) {
+				nbh = dict.findNeighborhood(sorted, starts[s], starts[s + 1]);
+				if (nbh == -1) { // unseen neighborhoods get negative ids, so that they do not collide with the ids in the dictionary
+					nbh = -2 - unseenDict.getNeighborhood(sorted, starts[s], starts[s + 1]);
+				}
+			} else {
+				nbh = dict.getNeighborhood(sorted, starts[s], starts[s + 1]);
+			}
+
+			if (trackPrevNBH) {
+				if (nbh == label.getPrevNBH(index)) {
+					label.putSameAsPrev(index, true);
+				}
+				label.putPrevNBH(index, nbh);
+			}
+
+			if (!label.getSameAsPrev(index)) { // else retain old label
+				int newLabel = dict.getLabel(label.get(index), nbh);
+				if (newLabel == -1) {
+					if (frozen) {
+						newLabel = unseenDict.getLabel(label.get(index), nbh);
+						if (newLabel == -1) {
+							newLabel = newUnseenLabel(unseenHash(label.get(index), sorted, starts[s], starts[s + 1]));
+							unseenDict.putLabel(label.get(index), nbh, newLabel);
+						}
+					} else {
+						newLabel = numLabels++;
+						dict.putLabel(label.get(index), nbh, newLabel);
+					}
+				}
+				label.set(index, newLabel);
+			}
+		}
+	}
+
+	private void initLabel(IntMapLabel label) {
+		for (Integer k : label.keySet()) {
+			String oldLab = label.getInitialLabel(k);
+			Integer lab = initDict.get(oldLab);
+
+			if (lab == null) {
+				if (frozen) {
+					lab = unseenInitDict.get(oldLab);
+					if (lab == null) {
+						lab = newUnseenLabel(IntLabelDictionary.mix(oldLab.hashCode()));
+						unseenInitDict.put(oldLab, lab);
+					}
+				} else {
+					lab = numLabels++;
+					initDict.put(oldLab, lab);
+				}
+			}
+			label.set(k, lab);
+
+			if (trackPrevNBH) {
+				label.putPrevNBH(k, IntLabelDictionary.EMPTY_NBH);
+				label.putSameAsPrev(k, false);
+			}
+		}
+	}
+
+	private void forgetUnseenLabels() {
+		numLabels = frozenSize;
+		unseenInitDict = new HashMap<String,Integer>();
+		unseenDict = new IntLabelDictionary();
+		unseenHashes = new int[64];
+	}
+
+	private int newUnseenLabel(int hash) {
+		int i = numLabels - frozenSize;
+		if (i == unseenHashes.length) {
+			unseenHashes = Arrays.copyOf(unseenHashes, i * 2);
+		}
+		unseenHashes[i] = hash;
+		return numLabels++;
+	}
+
+	/**
+	 * The hash of an unseen label is computed from the hashes of the old label and the neighbor labels, where the hash of a label from the dictionary is the label itself.
+	 * The neighbor hashes are combined by summing, since the order of unseen labels in the multiset is arbitrary.
+	 */
+	private int unseenHash(int label, int[] nbs, int from, int to) {
+		int h = 0;
+		for (int i = from; i < to; i++) {
+			h += IntLabelDictionary.mix(stableHash(nbs[i]));
+		}
+		return IntLabelDictionary.mix(31 * stableHash(label) + h);
+	}
+
+	private int stableHash(int label) {
+		return (label < frozenSize) ? label : unseenHashes[label - frozenSize];
+	}
+
+	private void addSlots(IntMapLabel label) {
+		for (Integer k : label.keySet()) {
+			if (numSlots == slotLabels.length) {
+				slotLabels = Arrays.copyOf(slotLabels, numSlots * 2);
+				slotIndices = Arrays.copyOf(slotIndices, numSlots * 2);
+			}
+			label.setSlot(k, numSlots);
+			slotLabels[numSlots] = label;
+			slotIndices[numSlots] = k;
+			numSlots++;
+		}
+	}
+
+	private void addNeighbor(int slot, int label) {
+		if (numNbs == nbTargets.length) {
+			nbTargets = Arrays.copyOf(nbTargets, numNbs * 2);
+			nbLabels = Arrays.copyOf(nbLabels, numNbs * 2);
+		}
+		nbTargets[numNbs] = slot;
+		nbLabels[numNbs] = label;
+		numNbs++;
+	}
+}
@@ -22,6 +22,15 @@ public abstract class WeisfeilerLehmanIterator<G> {
 		return labelDict;
 	}
 	
+	/**
+	 * The number of labels in the label dictionary, i.e. the next new label.
+	 * 
+	 * @return
+	 */
+	public int getLabelDictSize() {
+		return labelDict.size();
+	}
+	
 	/**
 	 * Set labels from 0 to n
 	 * 
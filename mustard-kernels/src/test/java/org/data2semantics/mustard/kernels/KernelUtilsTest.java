@@ -0,0 +1,84 @@
+package org.data2semantics.mustard.kernels;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWLSubTreeKernel;
+import org.junit.Test;
+
+public class KernelUtilsTest {
+
+	@Test
+	public void testCreateLabel() {
+		DTGraphWLSubTreeKernel kernel = new DTGraphWLSubTreeKernel(4, 2, true);
+		String label = kernel.getLabel();
+		assertTrue(label.startsWith("DTGraphWLSubTreeKernel_"));
+		assertTrue(label.contains("_iterations=4"));
+		assertTrue(label.contains("_depth=2"));
+		assertFalse(label.contains("cpuTime"));
+		assertFalse(label.contains("parallelism"));
+		assertFalse(label.contains("hashBuckets"));
+		assertFalse(label.contains("incremental"));
+
+		// Settings that do not change the kernel do not change the label
+		kernel.setParallelism(4);
+		kernel.setHashBuckets(1000);
+		kernel.setIncremental(true);
+		assertEquals(label, kernel.getLabel());
+	}
+
+	@Test
+	public void testParallelKernelMatrix() {
+		Random rand = new Random(1);
+		SparseVector[] fvs = new SparseVector[300];
+		for (int i = 0; i < fvs.length; i++) {
+			fvs[i] = new SparseVector();
+			for (int j = 0; j < 50; j++) {
+				fvs[i].addValue(rand.nextInt(200), rand.nextDouble());
+			}
+		}
+		double[][] sequential = KernelUtils.computeKernelMatrix(fvs, KernelUtils.initMatrix(fvs.length, fvs.length));
+		for (int parallelism : new int[] {2, 4}) {
+			double[][] parallel = KernelUtils.computeKernelMatrix(fvs, KernelUtils.initMatrix(fvs.length, fvs.length), parallelism);
+			for (int i = 0; i < fvs.length; i++) {
+				assertArrayEquals(sequential[i], parallel[i], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testPostingsKernelMatrix() {
+		// Very sparse vectors, plus one feature (0) that is shared by half of the instances
+		Random rand = new Random(2);
+		SparseVector[] fvs = new SparseVector[300];
+		for (int i = 0; i < fvs.length; i++) {
+			fvs[i] = new SparseVector();
+			for (int j = 0; j < 5; j++) {
+				fvs[i].addValue(1 + rand.nextInt(5000), rand.nextDouble());
+			}
+			if (i % 2 == 0) {
+				fvs[i].addValue(0, rand.nextDouble());
+			}
+		}
+		double[][] expected = new double[fvs.length][fvs.length];
+		for (int i = 0; i < fvs.length; i++) {
+			for (int j = 0; j < fvs.length; j++) {
+				expected[i][j] = fvs[i].dot(fvs[j]);
+			}
+		}
+
+		for (int parallelism : new int[] {1, 4}) {
+			// Without hubs the result is identical to the dot products
+			double[][] postings = KernelUtils.computeKernelMatrixPostings(fvs, KernelUtils.initMatrix(fvs.length, fvs.length), Integer.MAX_VALUE, parallelism);
+			double[][] auto = KernelUtils.computeKernelMatrix(fvs, KernelUtils.initMatrix(fvs.length, fvs.length), parallelism);
+			// Feature 0 is treated as a hub, which changes the order of summation
+			double[][] hubs = KernelUtils.computeKernelMatrixPostings(fvs, KernelUtils.initMatrix(fvs.length, fvs.length), 100, parallelism);
+			for (int i = 0; i < fvs.length; i++) {
+				assertArrayEquals(expected[i], postings[i], 0.0);
+				assertArrayEquals(expected[i], auto[i], 0.0);
+				assertArrayEquals(expected[i], hubs[i], 1e-12);
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package org.data2semantics.mustard.kernels;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SparseVectorTest {
+
+	@Test
+	public void testReadsDoNotFreeze() {
+		SparseVector v1 = randomVector(new Random(1));
+		SparseVector v2 = randomVector(new Random(2));
+
+		double dot = v1.dot(v2);
+		SparseVector copy = new SparseVector(v1);
+		int prev = -1;
+		for (SparseVector.IndexIterator it = v1.getIndices(); it.hasNext();) {
+			int index = it.next();
+			assertTrue(index > prev);
+			assertEquals(v1.getValue(index), it.value(), 0.0);
+			prev = index;
+		}
+		assertFalse(v1.isFrozen());
+		assertFalse(v2.isFrozen());
+		assertTrue(copy.isFrozen());
+
+		// Same results after freezing
+		v1.freeze();
+		v2.freeze();
+		assertEquals(dot, v1.dot(v2), 0.0);
+		assertEquals(dot, copy.dot(v2), 0.0);
+	}
+
+	@Test
+	public void testSetValueViaIterator() {
+		SparseVector v = randomVector(new Random(3));
+		for (SparseVector.IndexIterator it = v.getIndices(); it.hasNext();) {
+			it.next();
+			it.setValue(it.value() * 2);
+		}
+		assertFalse(v.isFrozen());
+		SparseVector expected = randomVector(new Random(3));
+		expected.multiplyScalar(2);
+		assertEquals(expected.dot(expected), v.dot(v), 0.0);
+	}
+
+	private SparseVector randomVector(Random rand) {
+		SparseVector v = new SparseVector();
+		for (int i = 0; i < 100; i++) {
+			v.addValue(rand.nextInt(1000), rand.nextDouble());
+		}
+		return v;
+	}
+}
@@ -0,0 +1,55 @@
+package org.data2semantics.mustard.kernels.graphkernels.csrgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.data2semantics.mustard.kernels.data.SingleCSRGraph;
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWLSubTreeKernel;
+import org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWalkCountKernel;
+import org.junit.Test;
+import org.nodes.DTGraph;
+import org.nodes.DTNode;
+import org.nodes.LightDTGraph;
+
+public class CSRGraphKernelTest {
+
+	@Test
+	public void testWLSubTree() {
+		for (int depth = 1; depth <= 3; depth++) {
+			SingleDTGraph data = randomData(new Random(depth), 300, 900, 40);
+			assertKernelEquals(new DTGraphWLSubTreeKernel(3, depth, false).compute(data), new CSRGraphWLSubTreeKernel(3, depth, false).compute(new SingleCSRGraph(data)));
+		}
+	}
+
+	@Test
+	public void testWalkCount() {
+		for (int depth = 1; depth <= 3; depth++) {
+			// the instances are in each others neighborhoods, so some of them do not get the root label
+			SingleDTGraph data = randomData(new Random(depth), 300, 900, 40);
+			assertKernelEquals(new DTGraphWalkCountKernel(depth + 1, depth, false).compute(data), new CSRGraphWalkCountKernel(depth + 1, depth, false).compute(new SingleCSRGraph(data)));
+		}
+	}
+
+	private static SingleDTGraph randomData(Random rand, int numNodes, int numLinks, int numInstances) {
+		DTGraph<String,String> graph = new LightDTGraph<String,String>();
+		for (int i = 0; i < numNodes; i++) {
+			graph.add("n" + rand.nextInt(10));
+		}
+		for (int i = 0; i < numLinks; i++) {
+			graph.get(rand.nextInt(numNodes)).connect(graph.get(rand.nextInt(numNodes)), "e" + rand.nextInt(3));
+		}
+		List<DTNode<String,String>> instances = new ArrayList<DTNode<String,String>>(graph.nodes()).subList(0, numInstances);
+		return new SingleDTGraph(graph, instances);
+	}
+
+	private static void assertKernelEquals(double[][] expected, double[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], 1e-9);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.junit.Test;
+import org.nodes.DTGraph;
+import org.nodes.DTLink;
+import org.nodes.DTNode;
+
+public class DTGraphNeighborhoodsTest {
+
+	/**
+	 * The neighborhoods of the multi-source search are the same as those of a breadth first search per instance,
+	 * with more than 64 instances (i.e. multiple blocks) and a hub that is shared by all instances.
+	 */
+	@Test
+	public void testPerInstanceSearch() {
+		DTGraph<String,String> graph = DTGraphTestUtils.randomGraph(new Random(1), 400, 1000);
+		List<DTNode<String,String>> instances = new ArrayList<DTNode<String,String>>(graph.nodes()).subList(0, 150);
+		DTNode<String,String> hub = graph.add("hub");
+		for (DTNode<String,String> instance : instances) {
+			instance.connect(hub, "hub");
+		}
+		hub.connect(graph.get(200), "e0");
+
+		for (int depth = 0; depth <= 4; depth++) {
+			for (boolean lowestDepth : new boolean[] {false, true}) {
+				DTGraphNeighborhoods nbhs = new DTGraphNeighborhoods(instances, depth, lowestDepth);
+				assertEquals(instances.size(), nbhs.numInstances());
+
+				for (int i = 0; i < instances.size(); i++) {
+					Map<DTNode<String,String>, Integer> vertexDepths = new HashMap<DTNode<String,String>, Integer>();
+					Map<DTLink<String,String>, Integer> linkDepths = new HashMap<DTLink<String,String>, Integer>();
+					search(instances.get(i), depth, lowestDepth, vertexDepths, linkDepths);
+
+					assertEquals(instances.get(i), nbhs.vertex(nbhs.instanceRoot(i)));
+					assertEquals(vertexDepths.size(), nbhs.instanceVertexEnd(i) - nbhs.instanceVertexStart(i));
+					for (int k = nbhs.instanceVertexStart(i); k < nbhs.instanceVertexEnd(i); k++) {
+						DTNode<String,String> vertex = nbhs.vertex(nbhs.instanceVertex(k));
+						assertEquals(vertexDepths.get(vertex), new Integer(nbhs.instanceVertexDepth(k)));
+						assertTrue((nbhs.vertexDepths(nbhs.instanceVertex(k)) & (1 << nbhs.instanceVertexDepth(k))) != 0);
+						assertTrue(nbhs.firstInstance(nbhs.instanceVertex(k)) <= i);
+					}
+					assertEquals(linkDepths.size(), nbhs.instanceLinkEnd(i) - nbhs.instanceLinkStart(i));
+					for (int k = nbhs.instanceLinkStart(i); k < nbhs.instanceLinkEnd(i); k++) {
+						int e = nbhs.instanceLink(k);
+						assertEquals(linkDepths.get(nbhs.link(e)), new Integer(nbhs.instanceLinkDepth(k)));
+						assertEquals(nbhs.link(e).from(), nbhs.vertex(nbhs.linkFrom(e)));
+						assertEquals(nbhs.link(e).to(), nbhs.vertex(nbhs.linkTo(e)));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A kernel value computed with all the instances together is the same as when it is computed with only the two instances involved,
+	 * with instances from different blocks of the search.
+	 */
+	@Test
+	public void testKernelValues() {
+		DTGraph<String,String> graph = DTGraphTestUtils.randomGraph(new Random(2), 300, 700);
+		List<DTNode<String,String>> instances = new ArrayList<DTNode<String,String>>(graph.nodes()).subList(0, 100);
+
+		double[][] kernel = new DTGraphWLSubTreeKernel(3, 3, false).compute(new SingleDTGraph(graph, instances));
+		double[][] rootKernel = new DTGraphRootWLSubTreeKernel(3, false).compute(new SingleDTGraph(graph, instances));
+
+		int[] pairs = {0, 1, 5, 70, 63, 64, 99, 2};
+		for (int p = 0; p < pairs.length; p += 2) {
+			List<DTNode<String,String>> pair = Arrays.asList(instances.get(pairs[p]), instances.get(pairs[p + 1]));
+			double[][] pairKernel = new DTGraphWLSubTreeKernel(3, 3, false).compute(new SingleDTGraph(graph, pair));
+			double[][] pairRootKernel = new DTGraphRootWLSubTreeKernel(3, false).compute(new SingleDTGraph(graph, pair));
+			for (int a = 0; a < 2; a++) {
+				for (int b = 0; b < 2; b++) {
+					assertEquals(kernel[pairs[p + a]][pairs[p + b]], pairKernel[a][b], 1e-9);
+					assertEquals(rootKernel[pairs[p + a]][pairs[p + b]], pairRootKernel[a][b], 1e-9);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Breadth first search from root, like the original init() of the kernels: a vertex/link gets the depth of its first encounter, or of its last if lowestDepth.
+	 */
+	private static void search(DTNode<String,String> root, int depth, boolean lowestDepth, Map<DTNode<String,String>, Integer> vertexDepths, Map<DTLink<String,String>, Integer> linkDepths) {
+		vertexDepths.put(root, depth);
+		Set<DTNode<String,String>> front = new LinkedHashSet<DTNode<String,String>>();
+		front.add(root);
+
+		for (int j = depth - 1; j >= 0; j--) {
+			Set<DTNode<String,String>> newFront = new LinkedHashSet<DTNode<String,String>>();
+			for (DTNode<String,String> q : front) {
+				for (DTLink<String,String> link : q.linksOut()) {
+					if (lowestDepth || !vertexDepths.containsKey(link.to())) {
+						vertexDepths.put(link.to(), j);
+					}
+					if (lowestDepth || !linkDepths.containsKey(link)) {
+						linkDepths.put(link, j);
+					}
+					newFront.add(link.to());
+				}
+			}
+			front = newFront;
+		}
+	}
+}
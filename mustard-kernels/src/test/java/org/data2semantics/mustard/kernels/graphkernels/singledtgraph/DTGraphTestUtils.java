@@ -0,0 +1,34 @@
+package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
+
+import java.util.Random;
+
+import org.nodes.DTGraph;
+import org.nodes.LightDTGraph;
+
+/**
+ * Random graphs for the tests of the DTGraph kernels.
+ * 
+ * @author Gerben
+ *
+ */
+class DTGraphTestUtils {
+
+	/**
+	 * Graph with numNodes nodes with 10 different labels and numLinks random links with 3 different labels.
+	 * 
+	 * @param rand
+	 * @param numNodes
+	 * @param numLinks
+	 * @return
+	 */
+	static DTGraph<String,String> randomGraph(Random rand, int numNodes, int numLinks) {
+		DTGraph<String,String> graph = new LightDTGraph<String,String>();
+		for (int i = 0; i < numNodes; i++) {
+			graph.add("n" + rand.nextInt(10));
+		}
+		for (int i = 0; i < numLinks; i++) {
+			graph.get(rand.nextInt(numNodes)).connect(graph.get(rand.nextInt(numNodes)), "e" + rand.nextInt(3));
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,96 @@
+package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.data2semantics.mustard.kernels.graphkernels.TrainTestFeatureVectorKernel;
+import org.data2semantics.mustard.kernels.graphkernels.TrainTestGraphKernel;
+import org.data2semantics.mustard.utils.Pair;
+import org.junit.Test;
+import org.nodes.DTGraph;
+import org.nodes.DTNode;
+
+public class DTGraphTrainTestKernelTest {
+
+	@Test
+	public void testWLSubTreeTrainTest() {
+		testTrainTest(new DTGraphWLSubTreeKernel(3, 2, false), new DTGraphWLSubTreeKernel(3, 2, false));
+		
+		DTGraphWLSubTreeKernel hashed = new DTGraphWLSubTreeKernel(3, 2, false);
+		hashed.setHashBuckets(10);
+		testTrainTest(hashed, new DTGraphWLSubTreeKernel(3, 2, false));
+	}
+
+	@Test
+	public void testWalkCountTrainTest() {
+		testTrainTest(new DTGraphWalkCountKernel(2, 2, false), new DTGraphWalkCountKernel(2, 2, false));
+
+		DTGraphWalkCountKernel hashed = new DTGraphWalkCountKernel(2, 2, false);
+		hashed.setHashBuckets(10);
+		testTrainTest(hashed, new DTGraphWalkCountKernel(2, 2, false));
+	}
+
+	private <K extends TrainTestFeatureVectorKernel<SingleDTGraph> & TrainTestGraphKernel<SingleDTGraph>> void testTrainTest(K kernel, K reference) {
+		DTGraph<String,String> graph = DTGraphTestUtils.randomGraph(new Random(1), 300, 900);
+		List<DTNode<String,String>> trainInstances = new ArrayList<DTNode<String,String>>(graph.nodes()).subList(0, 40);
+
+		// a second graph, with labels that do not occur in the train graph
+		DTGraph<String,String> testGraph = DTGraphTestUtils.randomGraph(new Random(2), 100, 300);
+		testGraph.add("unseen").connect(testGraph.get(0), "unseen");
+		List<DTNode<String,String>> testInstances = new ArrayList<DTNode<String,String>>(testGraph.nodes()).subList(0, 20);
+
+		SingleDTGraph trainData = new SingleDTGraph(graph, trainInstances);
+		SingleDTGraph testData = new SingleDTGraph(testGraph, testInstances);
+
+		// The train part is the same as computing the feature vectors for the train data only
+		Pair<SparseVector[], SparseVector[]> fvs = kernel.computeFeatureVectors(trainData, testData);
+		SparseVector[] trainFVs = reference.computeFeatureVectors(trainData);
+		for (int i = 0; i < trainFVs.length; i++) {
+			assertVectorEquals(trainFVs[i], fvs.getFirst()[i]);
+		}
+
+		// Test instances are mapped into the train feature space, plus the hash buckets
+		int lastIndex = fvs.getSecond()[0].getLastIndex();
+		for (SparseVector fv : fvs.getFirst()) {
+			lastIndex = Math.max(lastIndex, fv.getLastIndex());
+		}
+		for (SparseVector fv : fvs.getSecond()) {
+			assertEquals(lastIndex, fv.getLastIndex());
+			for (SparseVector.IndexIterator it = fv.getIndices(); it.hasNext();) {
+				assertTrue(it.next() <= lastIndex);
+			}
+		}
+
+		// The train instances as test data get the same feature vectors, since they have no unseen features
+		SparseVector[] selfFVs = kernel.computeTestFeatureVectors(trainData);
+		for (int i = 0; i < trainFVs.length; i++) {
+			assertVectorEquals(trainFVs[i], selfFVs[i]);
+		}
+
+		// The test kernel consists of the dot products of the test and train feature vectors
+		Pair<double[][], double[][]> kernels = kernel.compute(trainData, testData);
+		fvs = kernel.computeFeatureVectors(trainData, testData);
+		assertEquals(trainInstances.size(), kernels.getFirst().length);
+		assertEquals(testInstances.size(), kernels.getSecond().length);
+		for (int i = 0; i < testInstances.size(); i++) {
+			assertEquals(trainInstances.size(), kernels.getSecond()[i].length);
+			for (int j = 0; j < trainInstances.size(); j++) {
+				assertEquals(fvs.getSecond()[i].dot(fvs.getFirst()[j]), kernels.getSecond()[i][j], 0.0);
+			}
+		}
+	}
+
+	private static void assertVectorEquals(SparseVector expected, SparseVector actual) {
+		assertEquals(expected.size(), actual.size());
+		SparseVector.IndexIterator it2 = actual.getIndices();
+		for (SparseVector.IndexIterator it = expected.getIndices(); it.hasNext();) {
+			assertEquals(it.next(), it2.next());
+			assertEquals(it.value(), it2.value(), 0.0);
+		}
+	}
+}
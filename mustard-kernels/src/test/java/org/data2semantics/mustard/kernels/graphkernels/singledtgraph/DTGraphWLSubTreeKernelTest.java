@@ -0,0 +1,59 @@
+package org.data2semantics.mustard.kernels.graphkernels.singledtgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.junit.Test;
+import org.nodes.DTGraph;
+import org.nodes.DTLink;
+import org.nodes.DTNode;
+
+public class DTGraphWLSubTreeKernelTest {
+
+	/**
+	 * Featurizing test data in between incremental updates should not change the feature ids of the updates
+	 */
+	@Test
+	public void testIncrementalAfterTestFeatureVectors() {
+		SparseVector[] expected = null;
+		for (boolean withTest : new boolean[] {false, true}) {
+			Random rand = new Random(1);
+			DTGraph<String,String> graph = DTGraphTestUtils.randomGraph(rand, 200, 600);
+			List<DTNode<String,String>> instances = new ArrayList<DTNode<String,String>>(graph.nodes()).subList(0, 30);
+
+			DTGraphWLSubTreeKernel kernel = new DTGraphWLSubTreeKernel(3, 2, false);
+			kernel.setIncremental(true);
+			kernel.computeFeatureVectors(new SingleDTGraph(graph, instances));
+
+			if (withTest) { // test data with unseen labels
+				DTGraph<String,String> testGraph = DTGraphTestUtils.randomGraph(new Random(2), 50, 150);
+				testGraph.add("unseen").connect(testGraph.get(0), "unseen");
+				kernel.computeTestFeatureVectors(new SingleDTGraph(testGraph, new ArrayList<DTNode<String,String>>(testGraph.nodes()).subList(0, 10)));
+			}
+
+			// new links with new labels
+			List<DTLink<String,String>> links = new ArrayList<DTLink<String,String>>();
+			for (int i = 0; i < 20; i++) {
+				DTNode<String,String> node = graph.add("new" + rand.nextInt(3));
+				links.add(graph.get(rand.nextInt(200)).connect(node, "enew"));
+			}
+			kernel.addStatements(links);
+
+			SparseVector[] fvs = kernel.getFeatureVectors();
+			if (expected == null) {
+				expected = fvs;
+			} else {
+				for (int i = 0; i < fvs.length; i++) {
+					assertEquals(expected[i].getLastIndex(), fvs[i].getLastIndex());
+					assertEquals(expected[i].dot(expected[i]), fvs[i].dot(expected[i]), 0.0);
+					assertEquals(expected[i].size(), fvs[i].size());
+				}
+			}
+		}
+	}
+}
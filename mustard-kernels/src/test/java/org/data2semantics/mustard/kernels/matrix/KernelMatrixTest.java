@@ -0,0 +1,239 @@
+package org.data2semantics.mustard.kernels.matrix;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.util.Random;
+
+import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.SparseVector;
+import org.junit.Test;
+
+public class KernelMatrixTest {
+
+	@Test
+	public void testPackedKernelMatrix() {
+		SparseVector[] fvs = randomVectors(new Random(1), 150);
+		double[][] array = KernelUtils.computeKernelMatrix(fvs, KernelUtils.initMatrix(fvs.length, fvs.length));
+
+		for (int parallelism : new int[] {1, 4}) {
+			PackedKernelMatrix packed = new PackedKernelMatrix(fvs.length);
+			KernelUtils.computeKernelMatrix(fvs, packed, parallelism);
+			double[][] copy = packed.toArray();
+			double[] row = new double[fvs.length];
+			for (int i = 0; i < fvs.length; i++) {
+				assertArrayEquals(array[i], copy[i], 0.0);
+				assertArrayEquals(array[i], packed.getRow(i).copyTo(row), 0.0);
+				for (int j = 0; j < fvs.length; j++) {
+					assertEquals(packed.get(i, j), packed.get(j, i), 0.0);
+				}
+			}
+
+			// Values are rounded to float precision, but still computed in double precision
+			PackedKernelMatrix single = new PackedKernelMatrix(fvs.length, true);
+			assertTrue(single.isSinglePrecision());
+			KernelUtils.computeKernelMatrix(fvs, single, parallelism);
+			for (int i = 0; i < fvs.length; i++) {
+				for (int j = 0; j < fvs.length; j++) {
+					assertEquals((float) array[i][j], single.get(i, j), 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNormalizeAndSum() {
+		SparseVector[] fvs = randomVectors(new Random(2), 100);
+		double[][] array = KernelUtils.computeKernelMatrix(fvs, KernelUtils.initMatrix(fvs.length, fvs.length));
+		KernelMatrix packed = new PackedKernelMatrix(array, false);
+		KernelMatrix wrapped = new ArrayKernelMatrix(KernelUtils.computeKernelMatrix(fvs, KernelUtils.initMatrix(fvs.length, fvs.length)), true);
+
+		double[][] sum = KernelUtils.sum(array, array);
+		KernelUtils.sum(packed, wrapped);
+		for (int i = 0; i < fvs.length; i++) {
+			for (int j = i; j < fvs.length; j++) {
+				assertEquals(sum[i][j], packed.get(i, j), 0.0);
+			}
+		}
+
+		KernelUtils.normalize(array);
+		KernelUtils.normalize(wrapped);
+		double[][] copy = wrapped.toArray();
+		for (int i = 0; i < fvs.length; i++) {
+			assertArrayEquals(array[i], copy[i], 0.0);
+			assertEquals(1.0, wrapped.get(i, i), 1e-12);
+		}
+
+		// toArray() gives a new array
+		copy[0][1] = 42.0;
+		assertEquals(array[0][1], wrapped.get(0, 1), 0.0);
+	}
+
+	@Test
+	public void testMappedKernelMatrix() throws IOException {
+		SparseVector[] fvs = randomVectors(new Random(3), 120);
+		double[][] array = KernelUtils.computeKernelMatrix(fvs, KernelUtils.initMatrix(fvs.length, fvs.length));
+		byte[] id = {1, 2, 3, 4};
+
+		File file = File.createTempFile("kernel", ".kmat");
+		file.deleteOnExit();
+		MappedKernelMatrix matrix = new MappedKernelMatrix(file, fvs.length, fvs.length, true, false, id);
+		matrix.writeRows(0, array);
+		matrix.close();
+
+		// Only the upper triangle is stored
+		long n = fvs.length;
+		assertTrue(file.length() < 64 + n * n * 8);
+
+		matrix = new MappedKernelMatrix(file);
+		assertArrayEquals(id, matrix.getID());
+		assertTrue(matrix.isSymmetric());
+		double[][] copy = matrix.toArray();
+		double[] row = new double[fvs.length];
+		for (int i = 0; i < fvs.length; i++) {
+			assertArrayEquals(array[i], copy[i], 0.0);
+			assertArrayEquals(array[i], matrix.readRow(i, row), 0.0);
+			for (int j = 0; j < fvs.length; j++) {
+				assertEquals(array[i][j], matrix.get(i, j), 0.0);
+			}
+		}
+		matrix.set(5, 2, 42.0);
+		assertEquals(42.0, matrix.get(2, 5), 0.0);
+		matrix.close();
+
+		// A read only matrix can be read, but not changed
+		matrix = new MappedKernelMatrix(file, true);
+		assertTrue(matrix.isReadOnly());
+		assertEquals(42.0, matrix.get(5, 2), 0.0);
+		assertArrayEquals(array[7], matrix.readRow(7, row), 0.0);
+		try {
+			matrix.set(0, 0, 1.0);
+			fail("Set on a read only matrix");
+		} catch (ReadOnlyBufferException e) {
+			// expected
+		}
+		matrix.close();
+
+		// Asymmetric matrices store all the values
+		MappedKernelMatrix test = new MappedKernelMatrix(file, 3, fvs.length, false, true);
+		test.writeRows(0, new double[][] {array[0], array[1], array[2]});
+		for (int j = 0; j < fvs.length; j++) {
+			assertEquals((float) array[2][j], test.get(2, j), 0.0);
+		}
+		assertEquals(0, test.getID().length);
+		test.close();
+		file.delete();
+	}
+
+	/**
+	 * An IndexedKernelMatrix reads the same values as a copy of the indexed rows and columns, also for a view on a view (e.g. a fold of a shuffled matrix),
+	 * for the rows and for the rectangular test part of a cross-validation fold
+	 */
+	@Test
+	public void testIndexedKernelMatrix() throws IOException {
+		SparseVector[] fvs = randomVectors(new Random(4), 103);
+		double[][] array = KernelUtils.computeKernelMatrix(fvs, KernelUtils.initMatrix(fvs.length, fvs.length));
+
+		File file = File.createTempFile("kernel", ".kmat");
+		file.deleteOnExit();
+		MappedKernelMatrix mapped = new MappedKernelMatrix(file, fvs.length, fvs.length, true, false);
+		mapped.writeRows(0, array);
+
+		try {
+			for (KernelMatrix base : new KernelMatrix[] {new ArrayKernelMatrix(array, true), new PackedKernelMatrix(array, false), mapped}) {
+				int[] permutation = randomPermutation(new Random(5), fvs.length);
+				IndexedKernelMatrix shuffled = new IndexedKernelMatrix(base, permutation);
+				assertTrue(shuffled.isSymmetric());
+				assertEquals(base.isInMemory(), shuffled.isInMemory());
+				double[][] shuffledArray = select(array, permutation, permutation);
+				assertMatrixEquals(shuffledArray, shuffled);
+
+				for (int numberOfFolds : new int[] {2, 5, 10}) {
+					for (int fold = 0; fold < numberOfFolds; fold++) {
+						int foldStart = Math.round((fvs.length / ((float) numberOfFolds)) * fold);
+						int foldEnd = Math.round((fvs.length / ((float) numberOfFolds)) * (fold + 1));
+						int[] train = new int[fvs.length - (foldEnd - foldStart)];
+						int[] test = new int[foldEnd - foldStart];
+						for (int i = 0; i < fvs.length; i++) {
+							if (i < foldStart || i >= foldEnd) {
+								train[i < foldStart ? i : i - test.length] = i;
+							} else {
+								test[i - foldStart] = i;
+							}
+						}
+
+						IndexedKernelMatrix trainFold = new IndexedKernelMatrix(shuffled, train);
+						assertTrue(trainFold.isSymmetric());
+						assertMatrixEquals(select(shuffledArray, train, train), trainFold);
+
+						IndexedKernelMatrix testFold = new IndexedKernelMatrix(shuffled, test, train);
+						assertFalse(testFold.isSymmetric());
+						assertEquals(test.length, testFold.numRows());
+						assertEquals(train.length, testFold.numColumns());
+						assertMatrixEquals(select(shuffledArray, test, train), testFold);
+					}
+				}
+
+				try {
+					shuffled.set(0, 1, 1.0);
+					fail("No exception for a write to a view");
+				} catch (UnsupportedOperationException e) {
+					// expected
+				}
+			}
+		} finally {
+			mapped.close();
+			file.delete();
+		}
+	}
+
+	private static void assertMatrixEquals(double[][] expected, KernelMatrix actual) {
+		assertEquals(expected.length, actual.numRows());
+		double[][] copy = actual.toArray();
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].length, actual.numColumns());
+			assertArrayEquals(expected[i], copy[i], 0.0);
+			assertArrayEquals(expected[i], actual.getRow(i).copyTo(new double[expected[i].length]), 0.0);
+			for (int j = 0; j < expected[i].length; j++) {
+				assertEquals(expected[i][j], actual.get(i, j), 0.0);
+			}
+		}
+	}
+
+	private static double[][] select(double[][] array, int[] rows, int[] columns) {
+		double[][] selection = new double[rows.length][columns.length];
+		for (int i = 0; i < rows.length; i++) {
+			for (int j = 0; j < columns.length; j++) {
+				selection[i][j] = array[rows[i]][columns[j]];
+			}
+		}
+		return selection;
+	}
+
+	private static int[] randomPermutation(Random rand, int size) {
+		int[] permutation = new int[size];
+		for (int i = 0; i < size; i++) {
+			permutation[i] = i;
+		}
+		for (int i = size - 1; i > 0; i--) {
+			int j = rand.nextInt(i + 1);
+			int temp = permutation[i];
+			permutation[i] = permutation[j];
+			permutation[j] = temp;
+		}
+		return permutation;
+	}
+
+	private SparseVector[] randomVectors(Random rand, int size) {
+		SparseVector[] fvs = new SparseVector[size];
+		for (int i = 0; i < fvs.length; i++) {
+			fvs[i] = new SparseVector();
+			for (int j = 0; j < 30; j++) {
+				fvs[i].addValue(rand.nextInt(100), rand.nextDouble());
+			}
+		}
+		return fvs;
+	}
+}
@@ -0,0 +1,169 @@
+package org.data2semantics.mustard.rdf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * Simple in memory {@link RDFDataSet} for tests, which counts the number of subjects that are looked up. Inference is not supported.
+ *
+ * @author Gerben
+ *
+ */
+class ListDataSet extends RDFDataSet {
+	private static final long serialVersionUID = 1L;
+
+	private transient ValueFactory factory;
+	private transient List<Statement> statements;
+	private transient Map<Resource, List<Statement>> subjectIndex;
+	private transient int lookups;
+	private boolean batching;
+
+	public ListDataSet(String label) {
+		super(label);
+		initialize();
+	}
+
+	@Override
+	protected void initialize() {
+		factory = ValueFactoryImpl.getInstance();
+		statements = new ArrayList<Statement>();
+		subjectIndex = new HashMap<Resource, List<Statement>>();
+	}
+
+	@Override
+	public Statement createStatement(URI subject, URI predicate, URI object) {
+		return factory.createStatement(subject, predicate, object);
+	}
+
+	@Override
+	public URI createURI(String uri) {
+		return factory.createURI(uri);
+	}
+
+	@Override
+	public Literal createLiteral(String lit) {
+		return factory.createLiteral(lit);
+	}
+
+	@Override
+	public void addStatements(Collection<Statement> stmts) {
+		for (Statement stmt : stmts) {
+			statements.add(stmt);
+			List<Statement> list = subjectIndex.get(stmt.getSubject());
+			if (list == null) {
+				list = new ArrayList<Statement>();
+				subjectIndex.put(stmt.getSubject(), list);
+			}
+			list.add(stmt);
+		}
+		dataChanged();
+	}
+
+	@Override
+	public synchronized List<Statement> getStatements(Resource subject, URI predicate, Value object, boolean allowInference) {
+		List<Statement> candidates = statements;
+		if (subject != null) {
+			lookups++;
+			candidates = subjectIndex.containsKey(subject) ? subjectIndex.get(subject) : new ArrayList<Statement>();
+		}
+		List<Statement> res = new ArrayList<Statement>();
+		for (Statement stmt : candidates) {
+			if ((predicate == null || predicate.equals(stmt.getPredicate())) && (object == null || object.equals(stmt.getObject()))) {
+				res.add(stmt);
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public List<Statement> getStatementsFromStrings(String subject, String predicate, String object, boolean allowInference) {
+		return getStatements(subject == null ? null : createURI(subject), predicate == null ? null : createURI(predicate), object == null ? null : createURI(object), allowInference);
+	}
+
+	@Override
+	public void removeStatements(Resource subject, URI predicate, Value object) {
+		List<Statement> removed = getStatements(subject, predicate, object, false);
+		statements.removeAll(removed);
+		for (Statement stmt : removed) {
+			subjectIndex.get(stmt.getSubject()).remove(stmt);
+		}
+		dataChanged();
+	}
+
+	@Override
+	public void removeStatementsFromStrings(String subject, String predicate, String object) {
+		removeStatements(subject == null ? null : createURI(subject), predicate == null ? null : createURI(predicate), object == null ? null : createURI(object));
+	}
+
+	/**
+	 * Dataset with numStatements random statements (without duplicates) on numResources resources http://example.org/r0, r1, ..., 
+	 * with numPredicates predicates http://example.org/p0, p1, ....
+	 * With literals, a third of the objects is a literal instead of a resource, half of these are two words, the other half one word with a language tag.
+	 * 
+	 * @param rand
+	 * @param numResources
+	 * @param numStatements
+	 * @param numPredicates
+	 * @param literals
+	 * @return
+	 */
+	public static ListDataSet randomDataSet(Random rand, int numResources, int numStatements, int numPredicates, boolean literals) {
+		ListDataSet dataset = new ListDataSet("random");
+		Set<Statement> stmts = new HashSet<Statement>();
+		for (int i = 0; i < numStatements; i++) {
+			URI subject = dataset.createURI("http://example.org/r" + rand.nextInt(numResources));
+			URI predicate = dataset.createURI("http://example.org/p" + rand.nextInt(numPredicates));
+			Value object;
+			switch (literals ? rand.nextInt(6) : 2) {
+			case 0:
+				object = dataset.factory.createLiteral("word" + rand.nextInt(10) + " word" + rand.nextInt(10));
+				break;
+			case 1:
+				object = dataset.factory.createLiteral("word" + rand.nextInt(10), "en");
+				break;
+			default:
+				object = dataset.createURI("http://example.org/r" + rand.nextInt(numResources));
+			}
+			stmts.add(dataset.factory.createStatement(subject, predicate, object));
+		}
+		dataset.addStatements(stmts);
+		return dataset;
+	}
+
+	/**
+	 * Let {@link #batchesSubjectLookups()} return batching, the lookups are always done per subject
+	 * 
+	 * @param batching
+	 */
+	public void setBatching(boolean batching) {
+		this.batching = batching;
+	}
+
+	@Override
+	public boolean batchesSubjectLookups() {
+		return batching;
+	}
+
+	/**
+	 * @return the number of subjects looked up since the last call
+	 */
+	public synchronized int resetLookups() {
+		int res = lookups;
+		lookups = 0;
+		return res;
+	}
+}
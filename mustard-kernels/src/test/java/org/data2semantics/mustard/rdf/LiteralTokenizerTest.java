@@ -0,0 +1,208 @@
+package org.data2semantics.mustard.rdf;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.data2semantics.mustard.kernels.KernelUtils;
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.junit.Test;
+import org.nodes.DTGraph;
+import org.nodes.DTLink;
+import org.nodes.DTNode;
+import org.nodes.LightDTGraph;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class LiteralTokenizerTest {
+	private static final String[] WORDS = {"the", "Quick", "brown", "fox,", "jumps", "over", "(the)", "lazy", "dog.", "42", "3.14", "caf\u00e9", "-", "\"quoted\""};
+
+	/**
+	 * The tokenized split literals give exactly the same graph (same node and link order) as the original splitting of each literal in addStatement,
+	 * with and without an executor.
+	 */
+	@Test
+	public void testSplitLiterals() {
+		Set<Statement> stmts = randomStatements(new Random(6), 100, 600);
+		List<Resource> instances = new ArrayList<Resource>();
+		for (int i = 0; i < 20; i++) {
+			instances.add(ValueFactoryImpl.getInstance().createURI("http://example.org/r" + i));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(3);
+		try {
+			for (ExecutorService executor : new ExecutorService[] {null, pool}) {
+				for (int literalOption : new int[] {RDFUtils.REGULAR_SPLIT_LITERALS, RDFUtils.REPEAT_SPLIT_LITERALS}) {
+					boolean newObject = literalOption == RDFUtils.REPEAT_SPLIT_LITERALS;
+					assertGraphEquals(oldStatements2Graph(stmts, newObject, null, false).getGraph(), RDFUtils.statements2Graph(stmts, literalOption, executor));
+
+					for (boolean simplifyInstanceNodes : new boolean[] {false, true}) {
+						SingleDTGraph expected = oldStatements2Graph(stmts, newObject, instances, simplifyInstanceNodes);
+						SingleDTGraph actual = RDFUtils.statements2Graph(stmts, literalOption, instances, simplifyInstanceNodes, executor);
+						assertGraphEquals(expected.getGraph(), actual.getGraph());
+						for (int i = 0; i < instances.size(); i++) {
+							assertEquals(expected.getInstances().get(i).index(), actual.getInstances().get(i).index());
+						}
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The tokens of a literal are its words from WordIterator, with the datatype/language tag of the literal
+	 */
+	@Test
+	public void testTokens() {
+		Set<Statement> stmts = randomStatements(new Random(7), 50, 1000); // more literals than are split in one task
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		LiteralTokenizer tokenizer = new LiteralTokenizer(pool);
+		try {
+			tokenizer.tokenize(stmts);
+		} finally {
+			pool.shutdown();
+		}
+
+		for (Statement stmt : stmts) {
+			if (stmt.getObject() instanceof Literal) {
+				List<String> expected = new ArrayList<String>();
+				for (Literal lit : oldSplit((Literal) stmt.getObject())) {
+					expected.add(lit.toString());
+				}
+				List<String> actual = new ArrayList<String>();
+				for (int word : tokenizer.getTokens((Literal) stmt.getObject())) {
+					actual.add(tokenizer.getWord(word));
+				}
+				assertEquals(expected, actual);
+			}
+		}
+	}
+
+	private static void assertGraphEquals(DTGraph<String,String> expected, DTGraph<String,String> actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.numLinks(), actual.numLinks());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).label(), actual.get(i).label());
+		}
+		for (int i = 0; i < expected.numLinks(); i++) {
+			DTLink<String,String> e = expected.links().get(i);
+			DTLink<String,String> a = actual.links().get(i);
+			assertEquals(e.from().index(), a.from().index());
+			assertEquals(e.to().index(), a.to().index());
+			assertEquals(e.tag(), a.tag());
+		}
+	}
+
+	/**
+	 * statements2Graph() with the split literals as it was before the LiteralTokenizer: a new WordIterator per literal and a Literal per word, looked up by toString() in the nodeMap
+	 */
+	private static SingleDTGraph oldStatements2Graph(Set<Statement> stmts, boolean newObject, List<Resource> instances, boolean simplifyInstanceNodes) {
+		List<DTNode<String,String>> instanceNodes = new ArrayList<DTNode<String,String>>();
+		DTGraph<String,String> graph = new LightDTGraph<String,String>();
+		Map<String, DTNode<String,String>> nodeMap = new HashMap<String, DTNode<String,String>>();
+
+		if (instances != null) {
+			for (Resource instance : instances) {
+				nodeMap.put(instance.toString(), graph.add(simplifyInstanceNodes ? KernelUtils.ROOTID : instance.toString()));
+				instanceNodes.add(nodeMap.get(instance.toString()));
+			}
+		}
+
+		for (Statement stmt : stmts) {
+			DTNode<String,String> n1 = nodeMap.get(stmt.getSubject().toString());
+			if (n1 == null) {
+				n1 = graph.add(stmt.getSubject().toString());
+				nodeMap.put(stmt.getSubject().toString(), n1);
+			}
+			if (stmt.getObject() instanceof Resource) {
+				DTNode<String,String> n2 = nodeMap.get(stmt.getObject().toString());
+				if (n2 == null) {
+					n2 = graph.add(stmt.getObject().toString());
+					nodeMap.put(stmt.getObject().toString(), n2);
+				}
+				n1.connect(n2, stmt.getPredicate().toString());
+			} else {
+				List<DTNode<String,String>> nodeList = new ArrayList<DTNode<String,String>>();
+				for (Literal lit : oldSplit((Literal) stmt.getObject())) {
+					DTNode<String,String> n2 = nodeMap.get(lit.toString());
+					if (n2 == null || newObject) {
+						n2 = graph.add(lit.toString());
+						nodeMap.put(lit.toString(), n2);
+					}
+					nodeList.add(n2);
+				}
+				for (DTNode<String,String> n : nodeList) {
+					n1.connect(n, stmt.getPredicate().toString());
+				}
+			}
+		}
+		return new SingleDTGraph(graph, instanceNodes);
+	}
+
+	private static List<Literal> oldSplit(Literal orgLit) {
+		ValueFactory factory = ValueFactoryImpl.getInstance();
+		List<Literal> words = new ArrayList<Literal>();
+		RDFUtils.WordIterator wi = new RDFUtils.WordIterator(orgLit.getLabel());
+		while (wi.hasNext()) {
+			String word = wi.next();
+			if (orgLit.getDatatype() != null) {
+				words.add(factory.createLiteral(word, orgLit.getDatatype()));
+			} else if (orgLit.getLanguage() != null) {
+				words.add(factory.createLiteral(word, orgLit.getLanguage()));
+			} else {
+				words.add(factory.createLiteral(word));
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Statements with URIs and plain, language and typed literals of up to 6 words, including empty literals and the same literal with different tags
+	 */
+	private static Set<Statement> randomStatements(Random rand, int numResources, int numStatements) {
+		ValueFactory factory = ValueFactoryImpl.getInstance();
+		URI type = factory.createURI("http://www.w3.org/2001/XMLSchema#string");
+		Set<Statement> stmts = new LinkedHashSet<Statement>();
+		for (int i = 0; i < numStatements; i++) {
+			URI subject = factory.createURI("http://example.org/r" + rand.nextInt(numResources));
+			URI predicate = factory.createURI("http://example.org/p" + rand.nextInt(3));
+			Value object;
+			if (rand.nextInt(3) == 0) {
+				object = factory.createURI("http://example.org/r" + rand.nextInt(numResources));
+			} else {
+				StringBuilder sb = new StringBuilder();
+				int numWords = rand.nextInt(7);
+				for (int w = 0; w < numWords; w++) {
+					sb.append(w == 0 ? "" : " ").append(WORDS[rand.nextInt(WORDS.length)]);
+				}
+				switch (rand.nextInt(3)) {
+				case 0:
+					object = factory.createLiteral(sb.toString());
+					break;
+				case 1:
+					object = factory.createLiteral(sb.toString(), "en");
+					break;
+				default:
+					object = factory.createLiteral(sb.toString(), type);
+				}
+			}
+			stmts.add(factory.createStatement(subject, predicate, object));
+		}
+		return stmts;
+	}
+}
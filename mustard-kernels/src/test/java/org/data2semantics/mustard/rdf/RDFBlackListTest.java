@@ -0,0 +1,102 @@
+package org.data2semantics.mustard.rdf;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.data2semantics.mustard.utils.Pair;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+public class RDFBlackListTest {
+
+	/**
+	 * Filtering the blackList during the extraction gives the same statements as removing it afterwards (the old List.removeAll()),
+	 * also when the objects of blacklisted statements lead to other statements, and when the blackList has statements that are not in the dataset.
+	 */
+	@Test
+	public void testExtraction() {
+		ListDataSet dataset = ListDataSet.randomDataSet(new Random(4), 200, 1000, 3, false);
+		List<Resource> instances = instances(dataset, 40);
+		List<Value> labels = labels(dataset, instances);
+
+		List<Statement> blackList = DataSetUtils.createBlacklist(dataset, instances, labels);
+		assertFalse(blackList.isEmpty());
+		blackList.addAll(dataset.getStatements(instances.get(2), null, null, false)); // all the links of an instance, so its neighbors can only be reached through blacklisted statements
+		blackList.add(dataset.createStatement(dataset.createURI("http://example.org/unknown"), dataset.createURI("http://example.org/p0"), (URI) instances.get(0)));
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (int depth = 0; depth <= 4; depth++) {
+				Set<Statement> after = RDFUtils.getStatements4Depth(dataset, instances, depth, false);
+				after.removeAll(blackList);
+
+				for (ExecutorService executor : new ExecutorService[] {null, pool}) {
+					assertEquals(after, RDFUtils.getStatements4Depth(dataset, instances, depth, false, new RDFBlackList(blackList), executor));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The batched createBlacklist gives the same statements, in the same order, as the original two getStatements calls per instance,
+	 * which are still used for datasets that do not batch their lookups
+	 */
+	@Test
+	public void testCreateBlacklist() {
+		ListDataSet dataset = ListDataSet.randomDataSet(new Random(5), 200, 1000, 3, false);
+		List<Resource> instances = instances(dataset, 40);
+		List<Value> labels = labels(dataset, instances);
+
+		List<Statement> expected = new ArrayList<Statement>();
+		List<Pair<Resource, Resource>> pairs = new ArrayList<Pair<Resource, Resource>>();
+		for (int i = 0; i < instances.size(); i++) {
+			expected.addAll(dataset.getStatements(instances.get(i), null, labels.get(i), true));
+			if (labels.get(i) instanceof Resource) {
+				expected.addAll(dataset.getStatements((Resource) labels.get(i), null, instances.get(i), true));
+				pairs.add(new Pair<Resource, Resource>(instances.get(i), (Resource) labels.get(i)));
+			}
+		}
+		List<Statement> expectedPairs = new ArrayList<Statement>();
+		for (Pair<Resource, Resource> pair : pairs) {
+			expectedPairs.addAll(dataset.getStatements(pair.getFirst(), null, pair.getSecond(), true));
+			expectedPairs.addAll(dataset.getStatements(pair.getSecond(), null, pair.getFirst(), true));
+		}
+
+		for (boolean batching : new boolean[] {false, true}) {
+			dataset.setBatching(batching);
+			assertEquals(expected, DataSetUtils.createBlacklist(dataset, instances, labels));
+			assertEquals(expectedPairs, DataSetUtils.createBlacklist(dataset, pairs));
+		}
+	}
+
+	private static List<Resource> instances(RDFDataSet dataset, int numInstances) {
+		List<Resource> instances = new ArrayList<Resource>();
+		for (int i = 0; i < numInstances; i++) {
+			instances.add(dataset.createURI("http://example.org/r" + i));
+		}
+		return instances;
+	}
+
+	/**
+	 * The label of an instance is the object of one of its statements, or a literal that is not in the dataset if it has none
+	 */
+	private static List<Value> labels(RDFDataSet dataset, List<Resource> instances) {
+		List<Value> labels = new ArrayList<Value>();
+		for (Resource instance : instances) {
+			List<Statement> stmts = dataset.getStatements(instance, null, null, false);
+			labels.add(stmts.isEmpty() ? dataset.createLiteral("no label") : stmts.get(0).getObject());
+		}
+		return labels;
+	}
+}
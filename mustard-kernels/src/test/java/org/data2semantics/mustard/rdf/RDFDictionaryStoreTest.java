@@ -0,0 +1,90 @@
+package org.data2semantics.mustard.rdf;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.data2semantics.mustard.kernels.graphkernels.csrgraph.CSRGraphWLSubTreeKernel;
+import org.data2semantics.mustard.kernels.graphkernels.singledtgraph.DTGraphWLSubTreeKernel;
+import org.junit.Test;
+import org.nodes.DTGraph;
+import org.nodes.DTLink;
+import org.nodes.DTNode;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+
+public class RDFDictionaryStoreTest {
+
+	/**
+	 * The store gives the same graphs as statements2Graph on the statements from getStatements4Depth minus the blackList,
+	 * up to the numbering of the nodes and links, for all the literal options.
+	 */
+	@Test
+	public void testGraphs() {
+		ListDataSet dataset = ListDataSet.randomDataSet(new Random(3), 200, 1000, 5, true);
+		RDFDictionaryStore store = new RDFDictionaryStore();
+		store.addStatements(dataset.getStatements(null, null, null, false));
+		store.addStatements(dataset.getStatements(null, null, null, false).subList(0, 100)); // duplicates are ignored
+
+		List<Resource> instances = new ArrayList<Resource>();
+		for (int i = 0; i < 30; i++) {
+			instances.add(dataset.createURI("http://example.org/r" + i));
+		}
+		List<Statement> blackList = dataset.getStatements(instances.get(1), null, null, false);
+
+		int[] literalOptions = {RDFUtils.NO_LITERALS, RDFUtils.REPEAT_LITERALS, RDFUtils.REGULAR_LITERALS, RDFUtils.REPEAT_SPLIT_LITERALS, RDFUtils.REGULAR_SPLIT_LITERALS};
+		for (int depth = 1; depth <= 3; depth++) {
+			Set<Statement> stmts = RDFUtils.getStatements4Depth(dataset, instances, depth, false);
+			stmts.removeAll(blackList);
+
+			for (int literalOption : literalOptions) {
+				for (boolean simplifyInstanceNodes : new boolean[] {false, true}) {
+					SingleDTGraph expected = RDFUtils.statements2Graph(stmts, literalOption, instances, simplifyInstanceNodes);
+					SingleDTGraph actual = store.getGraph(instances, blackList, depth, literalOption, simplifyInstanceNodes);
+
+					assertEquals(expected.getGraph().size(), actual.getGraph().size());
+					assertEquals(expected.getGraph().numLinks(), actual.getGraph().numLinks());
+					assertEquals(nodeLabels(expected.getGraph()), nodeLabels(actual.getGraph()));
+					assertEquals(linkLabels(expected.getGraph()), linkLabels(actual.getGraph()));
+					for (int i = 0; i < instances.size(); i++) {
+						assertEquals(expected.getInstances().get(i).label(), actual.getInstances().get(i).label());
+					}
+
+					double[][] kernel = new DTGraphWLSubTreeKernel(3, depth, false).compute(expected);
+					assertKernelEquals(kernel, new DTGraphWLSubTreeKernel(3, depth, false).compute(actual));
+					assertKernelEquals(kernel, new CSRGraphWLSubTreeKernel(3, depth, false).compute(store.getCSRGraph(instances, blackList, depth, literalOption, simplifyInstanceNodes)));
+				}
+			}
+		}
+	}
+
+	private static List<String> nodeLabels(DTGraph<String,String> graph) {
+		List<String> labels = new ArrayList<String>();
+		for (DTNode<String,String> node : graph.nodes()) {
+			labels.add(node.label());
+		}
+		Collections.sort(labels);
+		return labels;
+	}
+
+	private static List<String> linkLabels(DTGraph<String,String> graph) {
+		List<String> labels = new ArrayList<String>();
+		for (DTLink<String,String> link : graph.links()) {
+			labels.add(link.from().label() + " " + link.tag() + " " + link.to().label());
+		}
+		Collections.sort(labels);
+		return labels;
+	}
+
+	private static void assertKernelEquals(double[][] expected, double[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], 1e-9);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package org.data2semantics.mustard.rdf;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+
+public class RDFGraphCacheTest {
+
+	@Test
+	public void testBlackList() {
+		ListDataSet dataset = createDataSet("blacklist");
+		List<Resource> instances = instances(dataset);
+		List<Statement> blackList = dataset.getStatements(instances.get(0), null, null, false);
+		List<Statement> reversed = new ArrayList<Statement>(blackList);
+		Collections.reverse(reversed);
+
+		// Equal blackLists, in a different order, give the same graph, a different blackList gives a different graph
+		SingleDTGraph graph = RDFGraphCache.getGraph(dataset, instances, blackList, 2, false, RDFUtils.REGULAR_LITERALS, true);
+		assertSame(graph, RDFGraphCache.getGraph(dataset, instances, reversed, 2, false, RDFUtils.REGULAR_LITERALS, true));
+		assertNotSame(graph, RDFGraphCache.getGraph(dataset, instances, new ArrayList<Statement>(), 2, false, RDFUtils.REGULAR_LITERALS, true));
+
+		assertEquals(new RDFBlackList(blackList).getDigest(), new RDFBlackList(reversed).getDigest());
+		assertFalse(new RDFBlackList(blackList).getDigest().equals(new RDFBlackList(blackList.subList(1, blackList.size())).getDigest()));
+	}
+
+	@Test
+	public void testInvalidate() {
+		ListDataSet dataset = createDataSet("invalidate");
+		List<Resource> instances = instances(dataset);
+		List<Statement> blackList = new ArrayList<Statement>();
+
+		SingleDTGraph graph = RDFGraphCache.getGraph(dataset, instances, blackList, 2, false, RDFUtils.REGULAR_LITERALS, true);
+		assertSame(graph, RDFGraphCache.getGraph(dataset, instances, blackList, 2, false, RDFUtils.REGULAR_LITERALS, true));
+
+		URI p = dataset.createURI("http://example.org/p");
+		dataset.addStatements(Arrays.asList(dataset.createStatement((URI) instances.get(0), p, dataset.createURI("http://example.org/new"))));
+		SingleDTGraph newGraph = RDFGraphCache.getGraph(dataset, instances, blackList, 2, false, RDFUtils.REGULAR_LITERALS, true);
+		assertEquals(graph.getGraph().size() + 1, newGraph.getGraph().size());
+
+		dataset.removeStatements(null, null, dataset.createURI("http://example.org/new"));
+		assertEquals(graph.getGraph().size(), RDFGraphCache.getGraph(dataset, instances, blackList, 2, false, RDFUtils.REGULAR_LITERALS, true).getGraph().size());
+	}
+
+	@Test
+	public void testDiskCache() {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "mustard-graphcache-test-" + System.nanoTime());
+		RDFGraphCache.setCacheDir(dir);
+		try {
+			ListDataSet dataset = createDataSet("disk");
+			List<Resource> instances = instances(dataset);
+			List<Statement> blackList = dataset.getStatements(instances.get(0), null, null, false);
+
+			SingleDTGraph graph = RDFGraphCache.getGraph(dataset, instances, blackList, 2, false, RDFUtils.REGULAR_LITERALS, true);
+			assertEquals(1, dir.listFiles().length);
+
+			// A new dataset object with the same label and contents reads the graph from disk
+			ListDataSet sameDataset = createDataSet("disk");
+			SingleDTGraph readGraph = RDFGraphCache.getGraph(sameDataset, instances, blackList, 2, false, RDFUtils.REGULAR_LITERALS, true);
+			assertEquals(0, sameDataset.resetLookups());
+			assertEquals(graph.getGraph().size(), readGraph.getGraph().size());
+			assertEquals(graph.getGraph().numLinks(), readGraph.getGraph().numLinks());
+
+			// After a change, the dataset object does not use the disk cache anymore
+			URI p = dataset.createURI("http://example.org/p");
+			sameDataset.addStatements(Arrays.asList(sameDataset.createStatement((URI) instances.get(0), p, sameDataset.createURI("http://example.org/new"))));
+			assertEquals(graph.getGraph().size() + 1, RDFGraphCache.getGraph(sameDataset, instances, blackList, 2, false, RDFUtils.REGULAR_LITERALS, true).getGraph().size());
+			assertTrue(sameDataset.resetLookups() > 0);
+		} finally {
+			RDFGraphCache.setCacheDir(null);
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	private static ListDataSet createDataSet(String label) {
+		ListDataSet dataset = new ListDataSet(label);
+		List<Statement> stmts = new ArrayList<Statement>();
+		for (int i = 0; i < 30; i++) {
+			URI subject = dataset.createURI("http://example.org/r" + i);
+			stmts.add(dataset.createStatement(subject, dataset.createURI("http://example.org/p" + (i % 3)), dataset.createURI("http://example.org/r" + ((i * 7 + 1) % 30))));
+			stmts.add(dataset.createStatement(subject, dataset.createURI("http://example.org/q"), dataset.createURI("http://example.org/r" + ((i * 3 + 2) % 30))));
+		}
+		dataset.addStatements(stmts);
+		return dataset;
+	}
+
+	private static List<Resource> instances(RDFDataSet dataset) {
+		List<Resource> instances = new ArrayList<Resource>();
+		for (int i = 0; i < 5; i++) {
+			instances.add(dataset.createURI("http://example.org/r" + i));
+		}
+		return instances;
+	}
+}
@@ -0,0 +1,78 @@
+package org.data2semantics.mustard.rdf;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+
+public class RDFMultiDataSetTest {
+
+	/**
+	 * A dataset that does not answer in time makes the lookup fail, and the incomplete graph is not cached.
+	 */
+	@Test
+	public void testTimeout() {
+		ListDataSet fast = new ListDataSet("fast");
+		SlowDataSet slow = new SlowDataSet("slow");
+		URI p = fast.createURI("http://example.org/p");
+		List<Resource> instances = new ArrayList<Resource>();
+		for (int i = 0; i < 10; i++) {
+			URI r = fast.createURI("http://example.org/r" + i);
+			instances.add(r);
+			fast.addStatements(Arrays.asList(fast.createStatement(r, p, fast.createURI("http://example.org/fast" + i))));
+			slow.addStatements(Arrays.asList(slow.createStatement(r, p, slow.createURI("http://example.org/slow" + i))));
+		}
+
+		RDFMultiDataSet multi = new RDFMultiDataSet("multi");
+		multi.addRDFDataSet(fast);
+		multi.addRDFDataSet(slow);
+		multi.setTimeout(50);
+
+		slow.delay = 1000;
+		try {
+			multi.getStatementsForSubjects(instances, false);
+			fail("No exception for a timeout");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		try {
+			RDFGraphCache.getGraph(multi, instances, new ArrayList<Statement>(), 1, false, RDFUtils.REGULAR_LITERALS, true);
+			fail("No exception for a timeout");
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		slow.delay = 0;
+		assertEquals(20, multi.getStatementsForSubjects(instances, false).size());
+		SingleDTGraph graph = RDFGraphCache.getGraph(multi, instances, new ArrayList<Statement>(), 1, false, RDFUtils.REGULAR_LITERALS, true);
+		assertEquals(20, graph.getGraph().numLinks());
+	}
+
+	private static class SlowDataSet extends ListDataSet {
+		private static final long serialVersionUID = 1L;
+		private volatile long delay;
+
+		public SlowDataSet(String label) {
+			super(label);
+		}
+
+		@Override
+		public List<Statement> getStatementsForSubjects(Collection<? extends Resource> subjects, boolean allowInference) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.getStatementsForSubjects(subjects, allowInference);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package org.data2semantics.mustard.rdf;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class RDFSnapshotTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		ListDataSet dataset = createDataSet();
+		File file = File.createTempFile("mustard-snapshot-test", ".bin");
+		try {
+			dataset.saveSnapshot(file);
+
+			ListDataSet loaded = new ListDataSet("loaded");
+			loaded.loadSnapshot(file);
+			assertEquals(new HashSet<Statement>(dataset.getStatements(null, null, null, false)), new HashSet<Statement>(loaded.getStatements(null, null, null, false)));
+			assertEquals(new HashSet<Statement>(dataset.getStatements(null, null, null, false)), new HashSet<Statement>(RDFSnapshot.read(file)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testMetadata() throws IOException {
+		ListDataSet dataset = createDataSet();
+		File file = File.createTempFile("mustard-snapshot-test", ".bin");
+		try {
+			dataset.saveSnapshot(file);
+			assertEquals("", RDFSnapshot.readMetadata(file));
+
+			String metadata = "label\nCONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o } \u00e9";
+			RDFSnapshot.write(dataset.getStatements(null, null, null, false), file, metadata);
+			assertEquals(metadata, RDFSnapshot.readMetadata(file));
+			assertEquals(new HashSet<Statement>(dataset.getStatements(null, null, null, false)), new HashSet<Statement>(RDFSnapshot.read(file)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * A truncated snapshot gives an exception, in the triples as well as in the terms
+	 */
+	@Test
+	public void testTruncated() throws IOException {
+		ListDataSet dataset = createDataSet();
+		File file = File.createTempFile("mustard-snapshot-test", ".bin");
+		try {
+			dataset.saveSnapshot(file);
+			long length = file.length();
+
+			for (long newLength : new long[] {length - 1, length / 2, 40}) {
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				raf.setLength(newLength);
+				raf.close();
+				try {
+					RDFSnapshot.read(file);
+					fail("No exception for a snapshot of " + newLength + " bytes");
+				} catch (RuntimeException e) {
+					// expected
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static ListDataSet createDataSet() {
+		ValueFactory factory = ValueFactoryImpl.getInstance();
+		ListDataSet dataset = new ListDataSet("snapshot");
+		List<Statement> stmts = new ArrayList<Statement>();
+		URI type = factory.createURI("http://www.w3.org/2001/XMLSchema#int");
+		for (int i = 0; i < 100; i++) {
+			URI subject = factory.createURI("http://example.org/r" + i);
+			URI predicate = factory.createURI("http://example.org/p" + (i % 4));
+			stmts.add(factory.createStatement(subject, predicate, factory.createURI("http://example.org/r" + ((i * 7) % 100))));
+			stmts.add(factory.createStatement(subject, predicate, factory.createLiteral("literal " + i)));
+			stmts.add(factory.createStatement(subject, predicate, factory.createLiteral("woord \u00e9\u00e9n " + (i % 5), "nl")));
+			stmts.add(factory.createStatement(subject, predicate, factory.createLiteral("" + i, type)));
+		}
+		dataset.addStatements(stmts);
+		return dataset;
+	}
+}
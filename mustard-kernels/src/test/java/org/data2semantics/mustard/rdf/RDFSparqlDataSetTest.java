@@ -0,0 +1,126 @@
+package org.data2semantics.mustard.rdf;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+/**
+ * Tests for {@link RDFSparqlDataSet} with a SailRepository with a MemoryStore as a local stand-in for a SPARQL endpoint.
+ */
+public class RDFSparqlDataSetTest {
+	private static final String NS = "http://example.org/";
+	private static final int NUM_SUBJECTS = 120; // more than VALUES_BATCH_SIZE, so there are multiple queries
+
+	@Test
+	public void testStatementsForSubjects() throws Exception {
+		Repository rep = createRepository();
+		List<Resource> subjects = subjects(rep);
+		Set<Statement> expected = expected(rep, subjects);
+
+		for (int parallelRequests : new int[] {1, 4}) {
+			RDFSparqlDataSet dataset = new RDFSparqlDataSet(rep, "test", Arrays.asList(NS));
+			dataset.setParallelRequests(parallelRequests);
+			assertEquals(expected, new HashSet<Statement>(dataset.getStatementsForSubjects(subjects, false)));
+			assertEquals(expected, new HashSet<Statement>(dataset.getStatementsForSubjects(subjects, false))); // the executor is reused
+		}
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		Repository rep = createRepository();
+		List<Resource> subjects = subjects(rep);
+		Set<Statement> expected = expected(rep, subjects);
+
+		File dir = new File(System.getProperty("java.io.tmpdir"), "mustard-sparql-test-" + System.nanoTime());
+		try {
+			RDFSparqlDataSet dataset = new RDFSparqlDataSet(rep, "test", Arrays.asList(NS));
+			dataset.setParallelRequests(4);
+			dataset.setCacheDir(dir);
+			assertEquals(expected, new HashSet<Statement>(dataset.getStatementsForSubjects(subjects, false)));
+			assertEquals(3, dir.listFiles().length);
+			for (File file : dir.listFiles()) {
+				assertTrue(RDFSnapshot.readMetadata(file).startsWith("test\ninference=false\nCONSTRUCT"));
+			}
+
+			// The responses come from the cache, so the repository is not needed
+			RepositoryConnection repCon = rep.getConnection();
+			repCon.clear();
+			repCon.close();
+			assertEquals(expected, new HashSet<Statement>(dataset.getStatementsForSubjects(subjects, false)));
+
+			// A file with the name of a query, but for another query (i.e. a hash collision) is not used
+			for (File file : dir.listFiles()) {
+				RDFSnapshot.write(new ArrayList<Statement>(expected), file, "other");
+			}
+			assertTrue(dataset.getStatementsForSubjects(subjects, false).isEmpty());
+		} finally {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	private static Repository createRepository() throws Exception {
+		Repository rep = new SailRepository(new MemoryStore());
+		rep.initialize();
+		ValueFactory factory = rep.getValueFactory();
+		List<Statement> stmts = new ArrayList<Statement>();
+		for (int i = 0; i < NUM_SUBJECTS; i++) {
+			URI subject = factory.createURI(NS + "r" + i);
+			stmts.add(factory.createStatement(subject, factory.createURI(NS + "p"), factory.createURI(NS + "r" + ((i * 7 + 1) % NUM_SUBJECTS))));
+			stmts.add(factory.createStatement(subject, factory.createURI(NS + "q"), factory.createLiteral("literal " + i)));
+			stmts.add(factory.createStatement(factory.createURI("http://other.org/r" + i), factory.createURI(NS + "p"), subject));
+		}
+		RepositoryConnection repCon = rep.getConnection();
+		try {
+			repCon.add(stmts);
+		} finally {
+			repCon.close();
+		}
+		return rep;
+	}
+
+	/**
+	 * All the subjects, also some that are not in the name space
+	 */
+	private static List<Resource> subjects(Repository rep) {
+		List<Resource> subjects = new ArrayList<Resource>();
+		for (int i = 0; i < NUM_SUBJECTS; i++) {
+			subjects.add(rep.getValueFactory().createURI(NS + "r" + i));
+			if (i % 10 == 0) {
+				subjects.add(rep.getValueFactory().createURI("http://other.org/r" + i));
+			}
+		}
+		return subjects;
+	}
+
+	/**
+	 * The statements of the subjects in the name space, directly from the repository
+	 */
+	private static Set<Statement> expected(Repository rep, List<Resource> subjects) {
+		RDFSingleDataSet direct = new RDFSingleDataSet(rep, "direct");
+		Set<Statement> expected = new HashSet<Statement>();
+		for (Resource subject : subjects) {
+			if (subject.toString().startsWith(NS)) {
+				expected.addAll(direct.getStatements(subject, null, null, false));
+			}
+		}
+		return expected;
+	}
+}
@@ -1,11 +1,28 @@
 package org.data2semantics.mustard.rdf;
 
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.data2semantics.mustard.kernels.data.SingleCSRGraph;
+import org.data2semantics.mustard.kernels.data.SingleDTGraph;
+import org.data2semantics.mustard.simplegraph.CSRGraph;
 import org.junit.Test;
 import org.nodes.DTGraph;
+import org.nodes.DTLink;
 import org.nodes.DTNode;
+import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.rio.RDFFormat;
 
 public class RDFUtilsTest {
@@ -25,4 +42,111 @@ public class RDFUtilsTest {
 		}
 	}
 
+	@Test
+	public void testStatements4Depth() {
+		ListDataSet dataset = ListDataSet.randomDataSet(new Random(2), 300, 1500, 5, true);
+		List<Resource> instances = new ArrayList<Resource>();
+		for (int i = 0; i < 50; i++) {
+			instances.add(dataset.createURI("http://example.org/r" + i));
+		}
+		instances.add(instances.get(0)); // a duplicate instance
+		List<Statement> blackList = dataset.getStatements(instances.get(1), null, null, false);
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (int depth = 0; depth <= 4; depth++) {
+				Set<Statement> naive = naiveStatements4Depth(dataset, instances, depth);
+				int naiveLookups = dataset.resetLookups();
+				Set<Statement> naiveFiltered = new HashSet<Statement>(naive);
+				naiveFiltered.removeAll(blackList);
+
+				for (ExecutorService executor : new ExecutorService[] {null, pool}) {
+					assertEquals(naive, RDFUtils.getStatements4Depth(dataset, instances, depth, false, executor));
+					int lookups = dataset.resetLookups();
+					assertTrue(lookups <= naiveLookups);
+					assertTrue(lookups <= 300);
+
+					assertEquals(naiveFiltered, RDFUtils.getStatements4Depth(dataset, instances, depth, false, new RDFBlackList(blackList), executor));
+					dataset.resetLookups();
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The original extraction, without deduplication: every resource in the front is looked up, for each time it is reached.
+	 */
+	private static Set<Statement> naiveStatements4Depth(RDFDataSet ts, List<Resource> instances, int depth) {
+		Set<Statement> stmts = new HashSet<Statement>();
+		List<Resource> searchFront = new ArrayList<Resource>(instances);
+		for (int i = 0; i < depth; i++) {
+			List<Resource> newSearchFront = new ArrayList<Resource>();
+			for (Resource r : searchFront) {
+				List<Statement> res = ts.getStatements(r, null, null, false);
+				stmts.addAll(res);
+				for (Statement stmt : res) {
+					if (stmt.getObject() instanceof Resource) {
+						newSearchFront.add((Resource) stmt.getObject());
+					}
+				}
+			}
+			searchFront = newSearchFront;
+		}
+		return stmts;
+	}
+
+
+	@Test
+	public void testStatements2CSRGraph() {
+		ValueFactory factory = ValueFactoryImpl.getInstance();
+		Random rand = new Random(1);
+		Set<Statement> stmts = new HashSet<Statement>();
+		for (int i = 0; i < 500; i++) {
+			URI subject = factory.createURI("http://example.org/r" + rand.nextInt(100));
+			URI predicate = factory.createURI("http://example.org/p" + rand.nextInt(5));
+			if (rand.nextInt(3) == 0) {
+				stmts.add(factory.createStatement(subject, predicate, factory.createLiteral("word" + rand.nextInt(10) + " and word" + rand.nextInt(10))));
+			} else {
+				stmts.add(factory.createStatement(subject, predicate, factory.createURI("http://example.org/r" + rand.nextInt(100))));
+			}
+		}
+		List<Resource> instances = new ArrayList<Resource>();
+		for (int i = 0; i < 20; i++) {
+			instances.add(factory.createURI("http://example.org/r" + i));
+		}
+
+		int[] literalOptions = {RDFUtils.NO_LITERALS, RDFUtils.REGULAR_LITERALS, RDFUtils.REPEAT_LITERALS, RDFUtils.REGULAR_SPLIT_LITERALS, RDFUtils.REPEAT_SPLIT_LITERALS};
+		for (int literalOption : literalOptions) {
+			for (boolean simplify : new boolean[] {false, true}) {
+				SingleDTGraph expected = RDFUtils.statements2Graph(stmts, literalOption, instances, simplify);
+				SingleCSRGraph actual = RDFUtils.statements2CSRGraph(stmts, literalOption, instances, simplify);
+				CSRGraph graph = actual.getGraph();
+
+				// The nodes are numbered in the same order, the links can be numbered differently
+				assertEquals(expected.getGraph().size(), graph.numNodes());
+				List<String> expectedLinks = new ArrayList<String>();
+				for (DTNode<String,String> node : expected.getGraph().nodes()) {
+					assertEquals(node.label(), graph.label(graph.nodeLabel(node.index())));
+					for (DTLink<String,String> link : node.linksOut()) {
+						expectedLinks.add(node.index() + " " + link.tag() + " " + link.to().index());
+					}
+				}
+				List<String> actualLinks = new ArrayList<String>();
+				for (int e = 0; e < graph.numLinks(); e++) {
+					actualLinks.add(graph.from(e) + " " + graph.label(graph.linkLabel(e)) + " " + graph.to(e));
+				}
+				String[] expectedArray = expectedLinks.toArray(new String[0]);
+				String[] actualArray = actualLinks.toArray(new String[0]);
+				Arrays.sort(expectedArray);
+				Arrays.sort(actualArray);
+				assertArrayEquals(expectedArray, actualArray);
+
+				for (int i = 0; i < instances.size(); i++) {
+					assertEquals(expected.getInstances().get(i).index(), actual.getInstances()[i]);
+				}
+			}
+		}
+	}
 }
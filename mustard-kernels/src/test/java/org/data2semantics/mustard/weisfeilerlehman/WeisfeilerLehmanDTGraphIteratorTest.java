@@ -1,10 +1,13 @@
 package org.data2semantics.mustard.weisfeilerlehman;
 
+import static org.junit.Assert.*;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
@@ -111,6 +114,85 @@ public class WeisfeilerLehmanDTGraphIteratorTest {
 		System.out.println(wla.getLabelDict());
 	}
 	
+	/**
+	 * The int label iterator should give exactly the same labels as the MapLabel iterator, on a graph that is large enough to have more than 512 different neighborhoods.
+	 * Like in the kernels, vertices have the indices 0 to depth and edges 0 to depth-1, and every vertex has an incoming and outgoing edge.
+	 */
+	@Test
+	public void testIntMapLabelIterator() {
+		for (boolean reverse : new boolean[] {true, false}) {
+			for (boolean trackPrevNBH : new boolean[] {true, false}) {
+				compareIterators(reverse, trackPrevNBH);
+			}
+		}
+	}
+
+	private void compareIterators(boolean reverse, boolean trackPrevNBH) {
+		Random rand = new Random(42);
+		int numNodes = 1000;
+		int depth = 3;
+
+		DTGraph<MapLabel,MapLabel> graph = new LightDTGraph<MapLabel,MapLabel>();
+		DTGraph<IntMapLabel,IntMapLabel> intGraph = new LightDTGraph<IntMapLabel,IntMapLabel>();
+		for (int i = 0; i < numNodes; i++) {
+			String lab = "n" + rand.nextInt(20);
+			MapLabel label = new MapLabel();
+			IntMapLabel intLabel = new IntMapLabel();
+			for (int d = 0; d <= depth; d++) {
+				label.put(d, new StringBuilder(lab));
+				intLabel.put(d, lab);
+			}
+			graph.add(label);
+			intGraph.add(intLabel);
+		}
+		for (int i = 0; i < numNodes * 3; i++) {
+			int from = (i < numNodes) ? i : rand.nextInt(numNodes);
+			int to = (i < numNodes) ? (i + 1) % numNodes : rand.nextInt(numNodes);
+			String lab = "e" + rand.nextInt(4);
+			MapLabel label = new MapLabel();
+			IntMapLabel intLabel = new IntMapLabel();
+			for (int d = 0; d < depth; d++) {
+				label.put(d, new StringBuilder(lab));
+				intLabel.put(d, lab);
+			}
+			graph.get(from).connect(graph.get(to), label);
+			intGraph.get(from).connect(intGraph.get(to), intLabel);
+		}
+
+		List<DTGraph<MapLabel,MapLabel>> gl = new ArrayList<DTGraph<MapLabel,MapLabel>>();
+		gl.add(graph);
+		List<DTGraph<IntMapLabel,IntMapLabel>> intGl = new ArrayList<DTGraph<IntMapLabel,IntMapLabel>>();
+		intGl.add(intGraph);
+
+		WeisfeilerLehmanDTGraphMapLabelIterator wl = new WeisfeilerLehmanDTGraphMapLabelIterator(reverse, trackPrevNBH);
+		WeisfeilerLehmanDTGraphIntMapLabelIterator intWl = new WeisfeilerLehmanDTGraphIntMapLabelIterator(reverse, trackPrevNBH);
+
+		wl.wlInitialize(gl);
+		intWl.wlInitialize(intGl);
+		assertSameLabels(graph, intGraph, depth);
+
+		for (int i = 0; i < 4; i++) {
+			wl.wlIterate(gl);
+			intWl.wlIterate(intGl);
+			assertSameLabels(graph, intGraph, depth);
+		}
+		assertEquals(wl.getLabelDict().size(), intWl.getLabelDictSize());
+		assertTrue(intWl.getLabelDictSize() > 2 * 512); // enough different neighborhoods to grow the dictionary arrays
+	}
+
+	private void assertSameLabels(DTGraph<MapLabel,MapLabel> graph, DTGraph<IntMapLabel,IntMapLabel> intGraph, int depth) {
+		for (int i = 0; i < graph.nodes().size(); i++) {
+			for (int d = 0; d <= depth; d++) {
+				assertEquals(graph.get(i).label().get(d).toString(), Integer.toString(intGraph.get(i).label().get(d)));
+			}
+		}
+		for (int i = 0; i < graph.links().size(); i++) {
+			for (int d = 0; d < depth; d++) {
+				assertEquals(graph.links().get(i).tag().get(d).toString(), Integer.toString(intGraph.links().get(i).tag().get(d)));
+			}
+		}
+	}
+
 	private Map<String, Integer> labelFreqs(List<DTGraph<ApproxStringLabel,ApproxStringLabel>> gs) {
 		Map<String, Integer> m = new HashMap<String, Integer>();
 		
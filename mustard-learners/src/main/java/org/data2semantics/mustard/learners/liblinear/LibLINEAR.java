@@ -9,14 +9,16 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.data2semantics.mustard.kernels.Kernel;
+import org.data2semantics.mustard.kernels.KernelUtils;
 import org.data2semantics.mustard.kernels.SparseVector;
 import org.data2semantics.mustard.learners.Prediction;
 import org.data2semantics.mustard.learners.libsvm.LibSVM;
 import org.data2semantics.mustard.learners.utils.CVUtils;
+import org.data2semantics.mustard.learners.utils.CrossValidator;
 import org.data2semantics.mustard.learners.utils.ParameterIterator;
+import org.data2semantics.mustard.learners.utils.ParameterScores;
 import org.data2semantics.mustard.learners.utils.Stratifier;
 
 import de.bwaldvogel.liblinear.Feature;
@@ -57,17 +59,11 @@ public class LibLINEAR {
 		return trainLinearModel(dummy, params);
 	}
 
-	private static LibLINEARModel trainLinearModel(Map<Kernel, Problem> probs, LibLINEARParameters params) {
+	private static LibLINEARModel trainLinearModel(final Map<Kernel, Problem> probs, final LibLINEARParameters params) {
 		if (params.getVerbosity() != LibLINEARParameters.VERBOSITY_FULL) {
 			Linear.disableDebugOutput();
 		}
 
-		Prediction[] prediction;
-
-		double[] target = null;
-		Problem trainProb = null;
-		Problem testProb = null;
-
 		Parameter linearParams = params.getParamsCopy();
 
 		double score = 0, bestScore = 0, bestC = 0, bestP = 0;
@@ -81,46 +77,66 @@ public class LibLINEAR {
 			}
 		});
 
-		for (Kernel setting : settings) {
-			if (bestSetting == null) { // Initialize best setting
-				bestSetting = setting;
+		final Map<Kernel, Problem> trainProbs = new HashMap<Kernel, Problem>();
+		final Map<Kernel, Problem> testProbs = new HashMap<Kernel, Problem>();
+		if (!params.isDoCrossValidation()) {
+			for (Kernel setting : settings) {
+				trainProbs.put(setting, createProblemTrainSplit(probs.get(setting), params.getSplitFraction()));
+				testProbs.put(setting, createProblemTestSplit(probs.get(setting), params.getSplitFraction()));
 			}
+		}
 
-			if (params.isDoCrossValidation()) {
-				target = probs.get(setting).y;
-			} else {
-				trainProb = createProblemTrainSplit(probs.get(setting), params.getSplitFraction());
-				testProb  = createProblemTestSplit(probs.get(setting), params.getSplitFraction());
-				target = testProb.y;
+		// The grid is evaluated sequentially, since LibLINEAR uses one static random number generator, and the results are only reproducible when the calls to it come in a fixed order
+		ParameterScores scores = new ParameterScores(1) {
+			protected double computeScore(Kernel setting, double p, double c) {
+				Parameter scoreParams = params.getParamsCopy();
+				scoreParams.setP(p);
+				scoreParams.setC(c);
+
+				Prediction[] prediction;
+				double[] target;
+				if (params.isDoCrossValidation()) {
+					prediction = crossValidate(probs.get(setting), scoreParams, params.getNumFolds());
+					target = probs.get(setting).y;
+				} else {
+					prediction = testLinearModel(new LibLINEARModel(Linear.train(trainProbs.get(setting), scoreParams)), testProbs.get(setting).x);
+					target = testProbs.get(setting).y;
+				}
+				return params.getEvalFunction().computeScore(target, prediction);
 			}
+		};
+		scores.submitGrid(settings, params.getPs(), params.getCs());
 
-			for (double p : params.getPs()) {
-				linearParams.setP(p);
+		try {
+			for (Kernel setting : settings) {
+				if (bestSetting == null) { // Initialize best setting
+					bestSetting = setting;
+				}
 
-				ParameterIterator pi = new ParameterIterator(params.getCs());
+				for (double p : params.getPs()) {
+					linearParams.setP(p);
 
-				while (pi.hasNext()) {
-					double c = pi.nextParm();
-					linearParams.setC(c);
+					ParameterIterator pi = new ParameterIterator(params.getCs());
 
-					if (params.isDoCrossValidation()) {
-						prediction = crossValidate(probs.get(setting), linearParams, params.getNumFolds());
+					while (pi.hasNext()) {
+						double c = pi.nextParm();
+						linearParams.setC(c);
 
-					} else {
-						prediction = testLinearModel(new LibLINEARModel(Linear.train(trainProb, linearParams)), testProb.x);
-					}
-					score = params.getEvalFunction().computeScore(target, prediction);
+						score = scores.get(setting, p, c);
 
-					pi.updateParm(bestC == 0 || params.getEvalFunction().isBetter(score, bestScore));
+						pi.updateParm(bestC == 0 || params.getEvalFunction().isBetter(score, bestScore));
 
-					if (bestC == 0 || params.getEvalFunction().isBetter(score, bestScore)) {
-						bestC = c;
-						bestP = p;
-						bestScore = score;
-						bestSetting = setting;
-					}	
+						if (bestC == 0 || params.getEvalFunction().isBetter(score, bestScore)) {
+							bestC = c;
+							bestP = p;
+							bestScore = score;
+							bestSetting = setting;
+						}	
+					}
 				}
 			}
+		} finally {
+			scores.shutdown();
 		}
 
 		linearParams.setC(bestC);	
@@ -190,49 +206,47 @@ public class LibLINEAR {
 		return pred;
 	}
 
-	public static Prediction[] crossValidateWithMultipleFeatureVectors(Map<Kernel,SparseVector[]> featureVectors, double[] target, LibLINEARParameters params, int numberOfFolds) {
-		Prediction[] pred = new Prediction[target.length];
-
+	public static Prediction[] crossValidateWithMultipleFeatureVectors(Map<Kernel,SparseVector[]> featureVectors, double[] target, final LibLINEARParameters params, final int numberOfFolds) {
 		List<Integer> indices = Stratifier.stratifyFolds(target, numberOfFolds);
-		double[] targetCopy = Stratifier.shuffle(target, indices);
+		final double[] targetCopy = Stratifier.shuffle(target, indices);
 
-		Map<Kernel, SparseVector[]> fvsCopy = new HashMap<Kernel,SparseVector[]>();		
+		final Map<Kernel, SparseVector[]> fvsCopy = new HashMap<Kernel,SparseVector[]>();		
 		for (Kernel k : featureVectors.keySet()) {
-			fvsCopy.put(k, Stratifier.shuffle(featureVectors.get(k), indices));
+			fvsCopy.put(k, KernelUtils.freeze(Stratifier.shuffle(featureVectors.get(k), indices))); // so that the folds read the sorted representation
 		}
 
 
-		for (int fold = 1; fold <= numberOfFolds; fold++) {
-			Map<Kernel, Problem> trainPs = new HashMap<Kernel, Problem>();
-			Map<Kernel, Feature[][]> testPs = new HashMap<Kernel, Feature[][]>();
-			for (Kernel k : fvsCopy.keySet()) {
-				Problem p = createLinearProblem(fvsCopy.get(k), targetCopy, params.getBias());
-				trainPs.put(k, createProblemTrainFold(p, numberOfFolds, fold));
-				testPs.put(k, createProblemTestFold(p, numberOfFolds, fold));
+		Prediction[] pred = new CrossValidator() {
+			protected Prediction[] predictFold(int fold) {
+				Map<Kernel, Problem> trainPs = new HashMap<Kernel, Problem>();
+				Map<Kernel, Feature[][]> testPs = new HashMap<Kernel, Feature[][]>();
+				for (Kernel k : fvsCopy.keySet()) {
+					Problem p = createLinearProblem(fvsCopy.get(k), targetCopy, params.getBias());
+					trainPs.put(k, createProblemTrainFold(p, numberOfFolds, fold));
+					testPs.put(k, createProblemTestFold(p, numberOfFolds, fold));
+				}
+				return testLinearModel(trainLinearModel(trainPs, params), testPs);
 			}
-			pred = CVUtils.addFold2Prediction(testLinearModel(trainLinearModel(trainPs, params), testPs), pred, numberOfFolds, fold);
-		}
+		}.run(target.length, numberOfFolds, 1); // sequential, for the same reason as the parameter search in trainLinearModel
 		pred = Stratifier.deshuffle(pred, indices);
 		return pred;
 	}
 
 
-	public static Prediction[] crossValidate(SparseVector[] featureVectors, double[] target, LibLINEARParameters params, int numberOfFolds) {
-		Prediction[] pred = new Prediction[target.length];
-
+	public static Prediction[] crossValidate(SparseVector[] featureVectors, double[] target, final LibLINEARParameters params, final int numberOfFolds) {
 		List<Integer> indices = Stratifier.stratifyFolds(target, numberOfFolds);
 		double[] targetCopy = Stratifier.shuffle(target, indices);
 		SparseVector[] fvCopy = Stratifier.shuffle(featureVectors, indices);
 
-		Problem trainP;
-		Feature[][] testP;
-		Problem prob = createLinearProblem(fvCopy, targetCopy, params.getBias());
+		final Problem prob = createLinearProblem(fvCopy, targetCopy, params.getBias());
 
-		for (int fold = 1; fold <= numberOfFolds; fold++) {
-			trainP = createProblemTrainFold(prob, numberOfFolds, fold);
-			testP  = createProblemTestFold(prob, numberOfFolds, fold);
-			pred = CVUtils.addFold2Prediction(testLinearModel(trainLinearModel(trainP, params), testP), pred, numberOfFolds, fold);
-		}
+		Prediction[] pred = new CrossValidator() {
+			protected Prediction[] predictFold(int fold) {
+				Problem trainP = createProblemTrainFold(prob, numberOfFolds, fold);
+				Feature[][] testP  = createProblemTestFold(prob, numberOfFolds, fold);
+				return testLinearModel(trainLinearModel(trainP, params), testP);
+			}
+		}.run(target.length, numberOfFolds, 1); // sequential, for the same reason as the parameter search in trainLinearModel
 		pred = Stratifier.deshuffle(pred, indices);
 		return pred;
 	}
@@ -302,10 +316,10 @@ public class LibLINEAR {
 				line.append(target[i]);
 				line.append(" ");
 
-				for (int index : featureVectors[i].getIndices()) {
-					line.append(index);
+				for (SparseVector.IndexIterator it = featureVectors[i].getIndices(); it.hasNext();) {
+					line.append(it.next());
 					line.append(":");
-					line.append(featureVectors[i].getValue(index));
+					line.append(it.value());
 					line.append(" ");
 				}
 				line.append("\n");
@@ -324,12 +338,12 @@ public class LibLINEAR {
 		Feature[][] nodes = new FeatureNode[featureVectors.length][];
 
 		for (int i = 0; i < featureVectors.length; i++) {
-			Set<Integer> indices = featureVectors[i].getIndices();
+			SparseVector.IndexIterator indices = featureVectors[i].getIndices();
 			nodes[i] = new FeatureNode[(bias >= 0) ? indices.size() + 1 : indices.size()];
 
 			int j = 0;
-			for (int index : indices) {
-				nodes[i][j] = new FeatureNode(index, featureVectors[i].getValue(index));
+			while (indices.hasNext()) {
+				nodes[i][j] = new FeatureNode(indices.next(), indices.value());
 				j++;
 			}
 			if (bias >= 0) {
@@ -348,11 +362,12 @@ public class LibLINEAR {
 
 		int maxIndex = 0;
 		for (int i = 0; i < featureVectors.length; i++) {
-			Set<Integer> indices = featureVectors[i].getIndices();
+			SparseVector.IndexIterator indices = featureVectors[i].getIndices();
 			prob.x[i] = new FeatureNode[(bias >= 0) ? indices.size() + 1 : indices.size()];
 			int j = 0;
-			for (int index : indices) {
-				prob.x[i][j] = new FeatureNode(index + 1, featureVectors[i].getValue(index));	// Sparse Vectors start at index 0, LibLINEAR needs 1	
+			while (indices.hasNext()) {
+				int index = indices.next();
+				prob.x[i][j] = new FeatureNode(index + 1, indices.value());	// Sparse Vectors start at index 0, LibLINEAR needs 1	
 				maxIndex = Math.max(maxIndex, index + 1);
 				j++;
 			}
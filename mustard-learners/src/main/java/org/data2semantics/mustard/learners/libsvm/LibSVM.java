@@ -7,14 +7,22 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.data2semantics.mustard.learners.Prediction;
 import org.data2semantics.mustard.learners.utils.CVUtils;
+import org.data2semantics.mustard.learners.utils.CrossValidator;
 import org.data2semantics.mustard.learners.utils.ParameterIterator;
+import org.data2semantics.mustard.learners.utils.ParameterScores;
 import org.data2semantics.mustard.learners.utils.Stratifier;
 import org.data2semantics.mustard.kernels.Kernel;
 import org.data2semantics.mustard.kernels.KernelUtils;
 import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.matrix.ArrayKernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.IndexedKernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.KernelMatrixRow;
 
 
 /**
@@ -26,6 +34,7 @@ import org.data2semantics.mustard.kernels.SparseVector;
  *
  */
 public class LibSVM {
+	private static final int PREDICT_BATCH_SIZE = 64; // number of test instances predicted per task, with a model parallelism above 1
 
 	/*
 	public static final int ACCURACY = 1;
@@ -110,10 +119,26 @@ public class LibSVM {
 
 	}
 
-	private static LibSVMModel trainSVMModel(Map<Kernel, svm_problem> svmProbs, double[] target, LibSVMParameters params) {	
+	/**
+	 * KernelMatrix version of {@link #trainSVMModel(double[][], double[], LibSVMParameters)}, the SVM problem is created directly from the rows of the matrix.
+	 * 
+	 * @param kernel, a symmetric kernel matrix
+	 * @param target
+	 * @param params
+	 * @return
+	 */
+	public static LibSVMModel trainSVMModel(KernelMatrix kernel, double[] target, LibSVMParameters params) {
+		svm_problem svmProb = createSVMProblem(kernel, target);
+		Map<Kernel, svm_problem> dummy = new HashMap<Kernel, svm_problem>();
+		dummy.put(null, svmProb);
+		return trainSVMModel(dummy, target, params);
+	}
+
+	private static LibSVMModel trainSVMModel(final Map<Kernel, svm_problem> svmProbs, final double[] target, final LibSVMParameters params) {	
 		if (params.getVerbosity() != LibSVMParameters.VERBOSITY_FULL) {
 			setNoOutput();
 		}
+		final svm_print_interface printFunc = svm.svm_get_print_string_function();
 
 		svm_parameter svmParams = params.getParamsCopy();
 
@@ -127,39 +152,60 @@ public class LibSVM {
 				return o1.getLabel().compareTo(o2.getLabel());
 			}
 		});
-		
-		// kernel/featurevectors selection
-		for (Kernel setting : settings) {
-			if (bestSetting == null) {
-				bestSetting = setting;
-			}
-
-			// Parameter selection
-			for (double p : params.getPs()) {
-				svmParams.p = p;
 
-				ParameterIterator pi = new ParameterIterator(params.getItParams());
-
-				while (pi.hasNext()) {
-					double c = pi.nextParm();
-					if (svmParams.svm_type == LibSVMParameters.C_SVC || svmParams.svm_type == LibSVMParameters.EPSILON_SVR) {
-						svmParams.C = c;
-					} else {
-						svmParams.nu = c;
-					}
-					Prediction[] prediction = crossValidate(svmProbs.get(setting), svmParams, params.getNumFolds());
-					score = params.getEvalFunction().computeScore(target, prediction);
-
-					pi.updateParm(bestC == 0 || params.getEvalFunction().isBetter(score, bestScore));
+		// The CV scores of the grid are computed concurrently, the selection below is done in the same order as a sequential search
+		final LibSVMParameters gridParams = params.divideParallelism(params.getParallelism());
+		ParameterScores scores = new ParameterScores(params.getParallelism()) {
+			protected double computeScore(Kernel setting, double p, double c) {
+				svm.svm_set_print_string_function(printFunc); // same output setting as the calling thread
+				svm_parameter scoreParams = gridParams.getParamsCopy();
+				scoreParams.p = p;
+				if (scoreParams.svm_type == LibSVMParameters.C_SVC || scoreParams.svm_type == LibSVMParameters.EPSILON_SVR) {
+					scoreParams.C = c;
+				} else {
+					scoreParams.nu = c;
+				}
+				Prediction[] prediction = crossValidate(svmProbs.get(setting), scoreParams, params.getNumFolds());
+				return params.getEvalFunction().computeScore(target, prediction);
+			}
+		};
+		scores.submitGrid(settings, params.getPs(), params.getItParams());
+		
+		try {
+			// kernel/featurevectors selection
+			for (Kernel setting : settings) {
+				if (bestSetting == null) {
+					bestSetting = setting;
+				}
 
-					if (bestC == 0 || params.getEvalFunction().isBetter(score, bestScore)) {
-						bestC = c;
-						bestP = p;
-						bestScore = score;
-						bestSetting = setting;
+				// Parameter selection
+				for (double p : params.getPs()) {
+					svmParams.p = p;
+
+					ParameterIterator pi = new ParameterIterator(params.getItParams());
+
+					while (pi.hasNext()) {
+						double c = pi.nextParm();
+						if (svmParams.svm_type == LibSVMParameters.C_SVC || svmParams.svm_type == LibSVMParameters.EPSILON_SVR) {
+							svmParams.C = c;
+						} else {
+							svmParams.nu = c;
+						}
+						score = scores.get(setting, p, c);
+
+						pi.updateParm(bestC == 0 || params.getEvalFunction().isBetter(score, bestScore));
+
+						if (bestC == 0 || params.getEvalFunction().isBetter(score, bestScore)) {
+							bestC = c;
+							bestP = p;
+							bestScore = score;
+							bestSetting = setting;
+						}
 					}
 				}
 			}
+		} finally {
+			scores.shutdown();
 		}
 
 		// Train the model for the best parameter setting
@@ -205,11 +251,7 @@ public class LibSVM {
 	 * @return
 	 */
 	public static Prediction[] testSVMModelWithMultipleKernels(LibSVMModel model, Map<Kernel,double[][]> kernels) {
-		Map<Kernel, svm_node[][]> probs = new HashMap<Kernel, svm_node[][]>();
-		for (Kernel k : kernels.keySet()) {
-			probs.put(k, createTestProblem(kernels.get(k)));
-		}	
-		return testSVMModel(model, probs);
+		return testSVMModel(model, kernels.get(model.getKernelSetting()));
 	}
 
 
@@ -235,33 +277,121 @@ public class LibSVM {
 	 * @return An array of LibSVMPrediction's 
 	 */
 	public static Prediction[] testSVMModel(LibSVMModel model, double[][] kernel) {
-		Map<Kernel, svm_node[][]> dummy = new HashMap<Kernel, svm_node[][]>();
-		dummy.put(null, createTestProblem(kernel));
-		return testSVMModel(model, dummy);
+		return testSVMModel(model, new ArrayKernelMatrix(kernel, false));
+	}
+
+
+	/**
+	 * KernelMatrix version of {@link #testSVMModel(LibSVMModel, double[][])}. 
+	 * The kernel values are read directly from the rows of the matrix, no svm_node's are created.
+	 * 
+	 * @param model
+	 * @param kernel, rows are the test instances and columns the train instances
+	 * @return
+	 */
+	public static Prediction[] testSVMModel(LibSVMModel model, KernelMatrix kernel) {
+		return predict(model, null, kernel, kernel.numRows());
 	}
 
 
 	private static Prediction[] testSVMModel(LibSVMModel model, Map<Kernel, svm_node[][]> testNodesMap) {
 		svm_node[][] testNodes = testNodesMap.get(model.getKernelSetting());
-		Prediction[] pred = new Prediction[testNodes.length];
+		return predict(model, testNodes, null, testNodes.length);
+	}
+
+	/**
+	 * Predict all the test instances, given by testNodes, or for a precomputed kernel by the rows of kernel (if testNodes is null).
+	 * If the model was trained with a model parallelism above 1, batches of test instances are predicted in parallel on a fork/join pool.
+	 */
+	private static Prediction[] predict(LibSVMModel model, svm_node[][] testNodes, KernelMatrix kernel, int numInstances) {
+		Prediction[] pred = new Prediction[numInstances];
+		int nrThread = model.getModel().param.nr_thread;
+
+		if (nrThread <= 1 || numInstances <= PREDICT_BATCH_SIZE) {
+			predict(model, testNodes, kernel, pred, 0, numInstances);
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(nrThread);
+			try {
+				pool.invoke(new PredictTask(model, testNodes, kernel, pred, 0, numInstances));
+			} finally {
+				pool.shutdown();
+			}
+		}
+		return pred;
+	}
+
+	private static void predict(LibSVMModel model, svm_node[][] testNodes, KernelMatrix kernel, Prediction[] pred, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (testNodes != null) {
+				pred[i] = predict(model, testNodes[i], null, i);
+			} else {
+				pred[i] = predict(model, null, kernel.getRow(i), i);
+			}
+		}
+	}
+
+	/**
+	 * Predicts the instances from start to end, which are split in halves until a batch is at most PREDICT_BATCH_SIZE instances
+	 */
+	private static class PredictTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private LibSVMModel model;
+		private svm_node[][] testNodes;
+		private KernelMatrix kernel;
+		private Prediction[] pred;
+		private int start;
+		private int end;
+
+		PredictTask(LibSVMModel model, svm_node[][] testNodes, KernelMatrix kernel, Prediction[] pred, int start, int end) {
+			this.model = model;
+			this.testNodes = testNodes;
+			this.kernel = kernel;
+			this.pred = pred;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= PREDICT_BATCH_SIZE) {
+				predict(model, testNodes, kernel, pred, start, end);
+			} else {
+				int mid = (start + end) >>> 1;
+				invokeAll(new PredictTask(model, testNodes, kernel, pred, start, mid), new PredictTask(model, testNodes, kernel, pred, mid, end));
+			}
+		}
+	}
+
+	/**
+	 * Predict instance i, given by testNode, or for a precomputed kernel by its row in the test kernel matrix (if testNode is null)
+	 */
+	private static Prediction predict(LibSVMModel model, svm_node[] testNode, KernelMatrixRow row, int i) {
+		Prediction pred;
 		double[] decVal = null;
 
-		for (int i = 0 ; i < testNodes.length; i++) {
-			if (!model.hasProbabilities()) {
-				decVal = new double[model.getModel().nr_class*(model.getModel().nr_class-1)/2];
-				pred[i] = new Prediction(svm.svm_predict_values(model.getModel(), testNodes[i], decVal), i);
-				pred[i].setPairWise(true);
-				pred[i].setProbabilities(false);
+		if (!model.hasProbabilities()) {
+			decVal = new double[model.getModel().nr_class*(model.getModel().nr_class-1)/2];
+			if (testNode != null) {
+				pred = new Prediction(svm.svm_predict_values(model.getModel(), testNode, decVal), i);
+			} else {
+				pred = new Prediction(svm.svm_predict_values(model.getModel(), row, decVal), i);
+			}
+			pred.setPairWise(true);
+			pred.setProbabilities(false);
+		} else {
+			decVal = new double[model.getModel().nr_class];
+			if (testNode != null) {
+				pred = new Prediction(svm.svm_predict_probability(model.getModel(), testNode, decVal), i);
 			} else {
-				decVal = new double[model.getModel().nr_class];
-				pred[i] = new Prediction(svm.svm_predict_probability(model.getModel(), testNodes[i], decVal), i);
-				pred[i].setPairWise(false);
-				pred[i].setProbabilities(true);
+				pred = new Prediction(svm.svm_predict_probability(model.getModel(), row, decVal), i);
 			}
-			pred[i].setDecisionValue(decVal);
-			pred[i].setClassLabels(model.getModel().label);
-			pred[i].setUsedKernel(model.getKernelSetting());		
+			pred.setPairWise(false);
+			pred.setProbabilities(true);
 		}
+		pred.setDecisionValue(decVal);
+		pred.setClassLabels(model.getModel().label);
+		pred.setUsedKernel(model.getKernelSetting());		
 		return pred;
 	}
 
@@ -274,28 +404,30 @@ public class LibSVM {
 	 * @param numberOfFolds
 	 * @return
 	 */
-	public static Prediction[] crossValidateWithMultipleFeatureVectors(Map<Kernel,SparseVector[]> fvs, double[] target, LibSVMParameters params,  int numberOfFolds) {
-		Prediction[] pred = new Prediction[target.length];
-
+	public static Prediction[] crossValidateWithMultipleFeatureVectors(Map<Kernel,SparseVector[]> fvs, double[] target, final LibSVMParameters params,  final int numberOfFolds) {
 		List<Integer> indices = Stratifier.stratifyFolds(target, numberOfFolds);
-		double[] targetCopy = Stratifier.shuffle(target, indices);
+		final double[] targetCopy = Stratifier.shuffle(target, indices);
 		
-		Map<Kernel, SparseVector[]> fvsCopy = new HashMap<Kernel,SparseVector[]>();		
+		final Map<Kernel, SparseVector[]> fvsCopy = new HashMap<Kernel,SparseVector[]>();		
 		for (Kernel k : fvs.keySet()) {
 			fvsCopy.put(k, Stratifier.shuffle(fvs.get(k), indices));
+			KernelUtils.freeze(fvsCopy.get(k)); // so that the folds read the sorted representation
 		}
 	
-		for (int fold = 1; fold <= numberOfFolds; fold++) {
-			Map<Kernel, SparseVector[]> trainFVs = new HashMap<Kernel,SparseVector[]>();
-			Map<Kernel, SparseVector[]> testFVs = new HashMap<Kernel,SparseVector[]>();
-			for (Kernel k : fvsCopy.keySet()) {
-				trainFVs.put(k,  CVUtils.createFeatureVectorsTrainFold(fvsCopy.get(k), numberOfFolds, fold));
-				testFVs.put(k, CVUtils.createFeatureVectorsTestFold(fvsCopy.get(k), numberOfFolds, fold));
-			}
-			double[] trainTarget = CVUtils.createTargetTrainFold(targetCopy, numberOfFolds, fold);
+		final LibSVMParameters foldParams = params.divideParallelism(CrossValidator.numThreads(params.getCVParallelism(), numberOfFolds));
+		Prediction[] pred = new CrossValidator() {
+			protected Prediction[] predictFold(int fold) {
+				Map<Kernel, SparseVector[]> trainFVs = new HashMap<Kernel,SparseVector[]>();
+				Map<Kernel, SparseVector[]> testFVs = new HashMap<Kernel,SparseVector[]>();
+				for (Kernel k : fvsCopy.keySet()) {
+					trainFVs.put(k,  CVUtils.createFeatureVectorsTrainFold(fvsCopy.get(k), numberOfFolds, fold));
+					testFVs.put(k, CVUtils.createFeatureVectorsTestFold(fvsCopy.get(k), numberOfFolds, fold));
+				}
+				double[] trainTarget = CVUtils.createTargetTrainFold(targetCopy, numberOfFolds, fold);
 
-			pred = CVUtils.addFold2Prediction(testSVMModelWithMultipleFeatureVectors(trainSVMModelWithMultipleFeatureVectors(trainFVs, trainTarget, params), testFVs), pred, numberOfFolds, fold);
-		}
+				return testSVMModelWithMultipleFeatureVectors(trainSVMModelWithMultipleFeatureVectors(trainFVs, trainTarget, foldParams), testFVs);
+			}
+		}.run(target.length, numberOfFolds, params.getCVParallelism());
 		pred = Stratifier.deshuffle(pred, indices);
 		return pred;
 	}
@@ -310,27 +442,63 @@ public class LibSVM {
 	 * @return
 	 */
 	public static Prediction[] crossValidateWithMultipleKernels(Map<Kernel,double[][]> kernels, double[] target, LibSVMParameters params,  int numberOfFolds) {
-		Prediction[] pred = new Prediction[target.length];
+		return crossValidateWithMultipleKernels(kernels, target, params, numberOfFolds, null);
+	}
+
+	/**
+	 * Cross-validation for Multiple kernels, where the instances are in the order given by permutation, 
+	 * this is the same as cross-validation with the rows and columns of the kernels shuffled by permutation.
+	 * The shuffled kernels and the folds are {@link IndexedKernelMatrix} views on the kernels, so the kernels are never copied.
+	 * 
+	 * @param kernels
+	 * @param target, the labels in permuted order, i.e. target[i] is the label of instance permutation[i] of the kernels
+	 * @param params
+	 * @param numberOfFolds
+	 * @param permutation, null for the original order
+	 * @return the predictions, in permuted order
+	 */
+	public static Prediction[] crossValidateWithMultipleKernels(Map<Kernel,double[][]> kernels, double[] target, LibSVMParameters params,  int numberOfFolds, int[] permutation) {
+		Map<Kernel, KernelMatrix> matrices = new HashMap<Kernel,KernelMatrix>();
+		for (Kernel k : kernels.keySet()) {
+			matrices.put(k, new ArrayKernelMatrix(kernels.get(k), true));
+		}
+		return crossValidateWithMultipleKernelMatrices(matrices, target, params, numberOfFolds, permutation);
+	}
 
+	/**
+	 * KernelMatrix version of {@link #crossValidateWithMultipleKernels(Map, double[], LibSVMParameters, int, int[])}, 
+	 * e.g. for kernels stored in a {@link org.data2semantics.mustard.kernels.matrix.MappedKernelMatrix}, which are then read directly from the file.
+	 * 
+	 * @param kernels, symmetric kernel matrices
+	 * @param target
+	 * @param params
+	 * @param numberOfFolds
+	 * @param permutation
+	 * @return
+	 */
+	public static Prediction[] crossValidateWithMultipleKernelMatrices(Map<Kernel,KernelMatrix> kernels, double[] target, final LibSVMParameters params,  final int numberOfFolds, int[] permutation) {
 		List<Integer> indices = Stratifier.stratifyFolds(target, numberOfFolds);
-		double[] targetCopy = Stratifier.shuffle(target, indices);
+		final double[] targetCopy = Stratifier.shuffle(target, indices);
+		List<Integer> kernelIndices = Stratifier.permute(indices, permutation);
 		
-		Map<Kernel, double[][]> kernelsCopy = new HashMap<Kernel,double[][]>();		
+		final Map<Kernel, KernelMatrix> kernelsCopy = new HashMap<Kernel,KernelMatrix>();		
 		for (Kernel k : kernels.keySet()) {
-			kernelsCopy.put(k, Stratifier.shuffle(kernels.get(k), indices));
+			kernelsCopy.put(k, Stratifier.shuffle(kernels.get(k), kernelIndices));
 		}
 		
-		for (int fold = 1; fold <= numberOfFolds; fold++) {
-			Map<Kernel, double[][]> trainKernels = new HashMap<Kernel,double[][]>();
-			Map<Kernel, double[][]> testKernels = new HashMap<Kernel,double[][]>();
-			for (Kernel k : kernelsCopy.keySet()) {
-				trainKernels.put(k, CVUtils.createTrainFold(kernelsCopy.get(k), numberOfFolds, fold));
-				testKernels.put(k, CVUtils.createTestFold(kernelsCopy.get(k), numberOfFolds, fold));
-			}
-			double[] trainTarget =  CVUtils.createTargetTrainFold(targetCopy, numberOfFolds, fold);
+		final LibSVMParameters foldParams = params.divideParallelism(CrossValidator.numThreads(params.getCVParallelism(), numberOfFolds));
+		Prediction[] pred = new CrossValidator() {
+			protected Prediction[] predictFold(int fold) {
+				double[] trainTarget =  CVUtils.createTargetTrainFold(targetCopy, numberOfFolds, fold);
+				Map<Kernel, svm_problem> probs = new HashMap<Kernel, svm_problem>();
+				for (Kernel k : kernelsCopy.keySet()) {
+					probs.put(k, createSVMProblem(CVUtils.createTrainFold(kernelsCopy.get(k), numberOfFolds, fold), trainTarget));
+				}
+				LibSVMModel model = trainSVMModel(probs, trainTarget, foldParams);
 
-			pred =  CVUtils.addFold2Prediction(testSVMModelWithMultipleKernels(trainSVMModelWithMultipleKernels(trainKernels, trainTarget, params), testKernels), pred, numberOfFolds, fold);
-		}
+				return testSVMModel(model, CVUtils.createTestFold(kernelsCopy.get(model.getKernelSetting()), numberOfFolds, fold));
+			}
+		}.run(target.length, numberOfFolds, params.getCVParallelism());
 		pred = Stratifier.deshuffle(pred, indices);
 		return pred;
 	}
@@ -345,27 +513,29 @@ public class LibSVM {
 	 * @param numberOfFolds
 	 * @return
 	 */
-	public static Prediction[] crossValidate(SparseVector[] featureVectors, double[] target, LibSVMParameters params,  int numberOfFolds) {
-		Prediction[] pred = new Prediction[target.length];
-
+	public static Prediction[] crossValidate(SparseVector[] featureVectors, double[] target, final LibSVMParameters params,  final int numberOfFolds) {
 		List<Integer> indices = Stratifier.stratifyFolds(target, numberOfFolds);
-		double[] targetCopy = Stratifier.shuffle(target, indices);
-		SparseVector[] fvCopy = Stratifier.shuffle(featureVectors, indices);
+		final double[] targetCopy = Stratifier.shuffle(target, indices);
+		final SparseVector[] fvCopy = Stratifier.shuffle(featureVectors, indices);
+		KernelUtils.freeze(fvCopy);
 		
-		for (int fold = 1; fold <= numberOfFolds; fold++) {
-			SparseVector[] trainFV =  CVUtils.createFeatureVectorsTrainFold(fvCopy, numberOfFolds, fold);
-			SparseVector[] testFV  =  CVUtils.createFeatureVectorsTestFold(fvCopy, numberOfFolds, fold);
-			double[] trainTarget  =  CVUtils.createTargetTrainFold(targetCopy, numberOfFolds, fold);
-
-			pred =  CVUtils.addFold2Prediction(testSVMModel(trainSVMModel(trainFV, trainTarget, params), testFV), pred, numberOfFolds, fold);
-		}	
+		final LibSVMParameters foldParams = params.divideParallelism(CrossValidator.numThreads(params.getCVParallelism(), numberOfFolds));
+		Prediction[] pred = new CrossValidator() {
+			protected Prediction[] predictFold(int fold) {
+				SparseVector[] trainFV =  CVUtils.createFeatureVectorsTrainFold(fvCopy, numberOfFolds, fold);
+				SparseVector[] testFV  =  CVUtils.createFeatureVectorsTestFold(fvCopy, numberOfFolds, fold);
+				double[] trainTarget  =  CVUtils.createTargetTrainFold(targetCopy, numberOfFolds, fold);
+
+				return testSVMModel(trainSVMModel(trainFV, trainTarget, foldParams), testFV);
+			}
+		}.run(target.length, numberOfFolds, params.getCVParallelism());
 		pred = Stratifier.deshuffle(pred, indices);
 		return pred;
 	}
 
 
 	/**
-	 * Convenience method to do a cross-validation experiment with a kernel
+	 * Convenience method to do a cross-validation experiment with a kernel, the kernel is not copied (see {@link #crossValidate(KernelMatrix, double[], LibSVMParameters, int)})
 	 * 
 	 * @param kernel, a symmetric kernel matrix
 	 * @param target, the labels, length of the height/width of the matrix
@@ -374,19 +544,35 @@ public class LibSVM {
 	 * @return An array of LibSVMPrediction's the length of the target
 	 */
 	public static Prediction[] crossValidate(double[][] kernel, double[] target, LibSVMParameters params,  int numberOfFolds) {
-		Prediction[] pred = new Prediction[target.length];
-		
+		return crossValidate(new ArrayKernelMatrix(kernel, true), target, params, numberOfFolds);
+	}
+
+
+	/**
+	 * KernelMatrix version of {@link #crossValidate(double[][], double[], LibSVMParameters, int)}.
+	 * The shuffled matrix and the folds are {@link IndexedKernelMatrix} views on kernel, so a cross-validation run only allocates index arrays and no matrices.
+	 * 
+	 * @param kernel, a symmetric kernel matrix
+	 * @param target
+	 * @param params
+	 * @param numberOfFolds
+	 * @return
+	 */
+	public static Prediction[] crossValidate(KernelMatrix kernel, double[] target, final LibSVMParameters params,  final int numberOfFolds) {
 		List<Integer> indices = Stratifier.stratifyFolds(target, numberOfFolds);
-		double[] targetCopy = Stratifier.shuffle(target, indices);
-		double[][] kernelCopy = Stratifier.shuffle(kernel, indices);
+		final double[] targetCopy = Stratifier.shuffle(target, indices);
+		final KernelMatrix kernelCopy = Stratifier.shuffle(kernel, indices);
 	
-		for (int fold = 1; fold <= numberOfFolds; fold++) {
-			double[][] trainKernel =  CVUtils.createTrainFold(kernelCopy, numberOfFolds, fold);
-			double[][] testKernel  =  CVUtils.createTestFold(kernelCopy, numberOfFolds, fold);
-			double[] trainTarget  =  CVUtils.createTargetTrainFold(targetCopy, numberOfFolds, fold);
-
-			pred =  CVUtils.addFold2Prediction(testSVMModel(trainSVMModel(trainKernel, trainTarget, params), testKernel), pred, numberOfFolds, fold);
-		}		
+		final LibSVMParameters foldParams = params.divideParallelism(CrossValidator.numThreads(params.getCVParallelism(), numberOfFolds));
+		Prediction[] pred = new CrossValidator() {
+			protected Prediction[] predictFold(int fold) {
+				KernelMatrix trainKernel =  CVUtils.createTrainFold(kernelCopy, numberOfFolds, fold);
+				KernelMatrix testKernel  =  CVUtils.createTestFold(kernelCopy, numberOfFolds, fold);
+				double[] trainTarget  =  CVUtils.createTargetTrainFold(targetCopy, numberOfFolds, fold);
+
+				return testSVMModel(trainSVMModel(trainKernel, trainTarget, foldParams), testKernel);
+			}
+		}.run(target.length, numberOfFolds, params.getCVParallelism());
 		pred = Stratifier.deshuffle(pred, indices);
 		return pred;
 	}
@@ -769,10 +955,10 @@ public class LibSVM {
 			nodes[i] = new svm_node[featureVectors[i].size()];
 
 			int j = 0;
-			for (int key : featureVectors[i].getIndices()) {
+			for (SparseVector.IndexIterator it = featureVectors[i].getIndices(); it.hasNext();) {
 				nodes[i][j] = new svm_node();
-				nodes[i][j].index = key;
-				nodes[i][j].value = featureVectors[i].getValue(key);
+				nodes[i][j].index = it.next();
+				nodes[i][j].value = it.value();
 				j++;
 			}
 		}		
@@ -781,23 +967,26 @@ public class LibSVM {
 
 
 	private static svm_problem createSVMProblem(double[][] kernel, double[] target) {
+		return createSVMProblem(new ArrayKernelMatrix(kernel, false), target);
+	}
+
+	/**
+	 * The kernel values are read directly from the matrix by svm.java (see svm_problem.kernel), so each row of the problem only contains the id node of the instance.
+	 */
+	private static svm_problem createSVMProblem(KernelMatrix kernel, double[] target) {
 		svm_problem prob = new svm_problem();
-		svm_node[][] nodes = new svm_node[target.length][target.length + 1];
+		svm_node[][] nodes = new svm_node[target.length][1];
 
 		prob.l = target.length;
 		prob.y = target;
 		prob.x = nodes;
+		prob.kernel = kernel;
+		prob.id_rows = true;
 
 		for (int i = 0; i < nodes.length; i++) {
 			nodes[i][0] = new svm_node();
 			nodes[i][0].index = 0;
 			nodes[i][0].value = i + 1;
-
-			for (int j = 1; j < nodes[i].length; j++) {
-				nodes[i][j] = new svm_node();
-				nodes[i][j].index = 0;
-				nodes[i][j].value = kernel[i][j-1];
-			}
 		}		
 		return prob;		
 	}
@@ -809,34 +998,16 @@ public class LibSVM {
 			nodes[i] = new svm_node[testVectors[i].size()];
 
 			int j = 0;
-			for (int key : testVectors[i].getIndices()) {
+			for (SparseVector.IndexIterator it = testVectors[i].getIndices(); it.hasNext();) {
 				nodes[i][j] = new svm_node();
-				nodes[i][j].index = key;
-				nodes[i][j].value = testVectors[i].getValue(key);
+				nodes[i][j].index = it.next();
+				nodes[i][j].value = it.value();
 				j++;
 			}
 		}
 		return nodes;
 	}
 
-	private static svm_node[][] createTestProblem(double[][] testKernel) {
-		svm_node[][] nodes = new svm_node[testKernel.length][];
-
-		for (int i = 0; i < testKernel.length; i++) {
-			nodes[i] = new svm_node[testKernel[i].length + 1];
-			nodes[i][0] = new svm_node();
-			nodes[i][0].index = 0;
-			nodes[i][0].value = i + 1;
-
-			for (int j = 1; j < nodes[i].length; j++) {
-				nodes[i][j] = new svm_node();
-				nodes[i][j].index = 0;
-				nodes[i][j].value = testKernel[i][j-1];
-			}			
-		}	
-		return nodes;		
-	}
-
 
 	@Deprecated
 	private static double[][] createTrainFold(double[][] kernel, int numberOfFolds, int fold) {
@@ -32,6 +32,8 @@ public class LibSVMParameters implements Serializable {
 	private double[] ps;
 	private int verbose;
 	private int numFolds;
+	private int parallelism;
+	private int cvParallelism;
 
 	private EvaluationFunction evalFunction;
 	
@@ -78,6 +80,34 @@ public class LibSVMParameters implements Serializable {
 		}
 
 		numFolds = 10;
+		parallelism = 1;
+		cvParallelism = 1;
+	}
+
+	/**
+	 * Get a copy of these parameters for one of tasks (e.g. folds or seeds) that run at the same time.
+	 * The parallelism, the CV parallelism and the model parallelism of the copy are divided by tasks (with a minimum of 1),
+	 * so that the nested thread pools of the tasks together stay within the numbers of threads set here.
+	 * 
+	 * @param tasks, the number of tasks that run at the same time
+	 * @return
+	 */
+	public LibSVMParameters divideParallelism(int tasks) {
+		LibSVMParameters copy = new LibSVMParameters(getAlgorithm());
+		copy.params = (svm_parameter) params.clone();
+		copy.itParams = itParams;
+		copy.ps = ps;
+		copy.verbose = verbose;
+		copy.numFolds = numFolds;
+		copy.evalFunction = evalFunction;
+		copy.parallelism = divide(parallelism, tasks);
+		copy.cvParallelism = divide(cvParallelism, tasks);
+		copy.params.nr_thread = divide(getModelParallelism(), tasks);
+		return copy;
+	}
+
+	private static int divide(int threads, int tasks) {
+		return Math.max(1, threads / Math.max(1, tasks));
 	}
 
 	svm_parameter getParams() {
@@ -102,6 +132,7 @@ public class LibSVMParameters implements Serializable {
 		p2.weight = params.weight;
 		p2.weight_label = params.weight_label;
 		p2.p = params.p;
+		p2.nr_thread = params.nr_thread;
 		
 		return p2;
 	}
@@ -193,4 +224,48 @@ public class LibSVMParameters implements Serializable {
 	public EvaluationFunction getEvalFunction() {
 		return evalFunction;
 	}
+
+	/**
+	 * Set the number of threads used to evaluate the parameter settings (kernel settings, C/nu and p) during training, default is 1.
+	 * The model parallelism is divided over these threads, see {@link #divideParallelism(int)}.
+	 * The trained model does not depend on this number.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Set the number of folds that are run at the same time in the cross-validation methods of {@link LibSVM}, default is 1.
+	 * The parallelism and the model parallelism are divided over the folds that run at the same time, see {@link #divideParallelism(int)}.
+	 * 
+	 * @param cvParallelism
+	 */
+	public void setCVParallelism(int cvParallelism) {
+		this.cvParallelism = Math.max(1, cvParallelism);
+	}
+
+	public int getCVParallelism() {
+		return cvParallelism;
+	}
+
+	/**
+	 * Set the number of threads used within one SVM, default is 1. 
+	 * This trains the one-vs-one classifiers for the pairs of classes in parallel (which is useful with many classes) and predicts batches of test instances in parallel.
+	 * The cache_size is divided over the threads during training.
+	 * 
+	 * @param parallelism
+	 */
+	public void setModelParallelism(int parallelism) {
+		params.nr_thread = Math.max(1, parallelism);
+	}
+
+	public int getModelParallelism() {
+		return Math.max(1, params.nr_thread);
+	}
 }
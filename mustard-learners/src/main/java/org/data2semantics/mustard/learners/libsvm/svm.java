@@ -39,8 +39,15 @@ import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.KernelMatrixRow;
 
 //
 // Kernel Cache
@@ -171,6 +178,7 @@ abstract class QMatrix {
 abstract class Kernel extends QMatrix {
 	private svm_node[][] x;
 	private final double[] x_square;
+	private final KernelMatrix kernel; // precomputed kernel matrix, only if the rows of x are id nodes, see svm_problem.id_rows
 
 	// svm_parameter
 	private final int kernel_type;
@@ -215,6 +223,8 @@ abstract class Kernel extends QMatrix {
 		case svm_parameter.SIGMOID:
 			return Math.tanh(gamma*dot(x[i],x[j])+coef0);
 		case svm_parameter.PRECOMPUTED:
+			if(kernel != null)
+				return kernel.get((int)(x[i][0].value)-1,(int)(x[j][0].value)-1);
 			return x[i][(int)(x[j][0].value)].value;
 		default:
 			return 0;	// java
@@ -223,6 +233,12 @@ abstract class Kernel extends QMatrix {
 
 	Kernel(int l, svm_node[][] x_, svm_parameter param)
 	{
+		this(l, x_, param, null);
+	}
+
+	Kernel(int l, svm_node[][] x_, svm_parameter param, KernelMatrix kernel)
+	{
+		this.kernel = (param.kernel_type == svm_parameter.PRECOMPUTED) ? kernel : null;
 		this.kernel_type = param.kernel_type;
 		this.degree = param.degree;
 		this.gamma = param.gamma;
@@ -239,6 +255,12 @@ abstract class Kernel extends QMatrix {
 		else x_square = null;
 	}
 
+	// the kernel values are read from a matrix in memory, so caching the Q rows is not needed
+	boolean is_resident()
+	{
+		return kernel != null && kernel.isInMemory();
+	}
+
 	static double dot(svm_node[] x, svm_node[] y)
 	{
 		double sum = 0;
@@ -261,6 +283,15 @@ abstract class Kernel extends QMatrix {
 		return sum;
 	}
 
+	// kernel is only given if x and y are id node rows of the problem that the matrix belongs to (svm_problem.id_rows), otherwise it is null
+	static double k_function(svm_node[] x, svm_node[] y,
+			svm_parameter param, KernelMatrix kernel)
+	{
+		if(param.kernel_type == svm_parameter.PRECOMPUTED && kernel != null)
+			return kernel.get((int)(x[0].value)-1,(int)(y[0].value)-1);
+		return k_function(x, y, param);
+	}
+
 	static double k_function(svm_node[] x, svm_node[] y,
 			svm_parameter param)
 	{
@@ -1192,12 +1223,20 @@ class SVC_Q extends Kernel
 	private final byte[] y;
 	private final Cache cache;
 	private final double[] QD;
+	private float[][] buffer;
+	private int next_buffer;
 
 	SVC_Q(svm_problem prob, svm_parameter param, byte[] y_)
 	{
-		super(prob.l, prob.x, param);
+		super(prob.l, prob.x, param, prob.id_rows ? prob.kernel : null);
 		y = y_.clone();
-		cache = new Cache(prob.l,(long)(param.cache_size*(1<<20)));
+		if(is_resident())
+		{
+			cache = null;
+			buffer = new float[2][prob.l];
+		}
+		else
+			cache = new Cache(prob.l,(long)(param.cache_size*(1<<20)));
 		QD = new double[prob.l];
 		for(int i=0;i<prob.l;i++)
 			QD[i] = kernel_function(i,i);
@@ -1206,6 +1245,15 @@ class SVC_Q extends Kernel
 	@Override
 	float[] get_Q(int i, int len)
 	{
+		if(cache == null)
+		{
+			// the solver uses at most two columns at the same time
+			float buf[] = buffer[next_buffer];
+			next_buffer = 1 - next_buffer;
+			for(int j=0;j<len;j++)
+				buf[j] = (float)(y[i]*y[j]*kernel_function(i,j));
+			return buf;
+		}
 		float[][] data = new float[1][];
 		int start, j;
 		if((start = cache.get_data(i,data,len)) < len)
@@ -1225,7 +1273,7 @@ class SVC_Q extends Kernel
 	@Override
 	void swap_index(int i, int j)
 	{
-		cache.swap_index(i,j);
+		if(cache != null) cache.swap_index(i,j);
 		super.swap_index(i,j);
 		do {byte _=y[i]; y[i]=y[j]; y[j]=_;} while(false);
 		do {double _=QD[i]; QD[i]=QD[j]; QD[j]=_;} while(false);
@@ -1236,11 +1284,19 @@ class ONE_CLASS_Q extends Kernel
 {
 	private final Cache cache;
 	private final double[] QD;
+	private float[][] buffer;
+	private int next_buffer;
 
 	ONE_CLASS_Q(svm_problem prob, svm_parameter param)
 	{
-		super(prob.l, prob.x, param);
-		cache = new Cache(prob.l,(long)(param.cache_size*(1<<20)));
+		super(prob.l, prob.x, param, prob.id_rows ? prob.kernel : null);
+		if(is_resident())
+		{
+			cache = null;
+			buffer = new float[2][prob.l];
+		}
+		else
+			cache = new Cache(prob.l,(long)(param.cache_size*(1<<20)));
 		QD = new double[prob.l];
 		for(int i=0;i<prob.l;i++)
 			QD[i] = kernel_function(i,i);
@@ -1249,6 +1305,14 @@ class ONE_CLASS_Q extends Kernel
 	@Override
 	float[] get_Q(int i, int len)
 	{
+		if(cache == null)
+		{
+			float buf[] = buffer[next_buffer];
+			next_buffer = 1 - next_buffer;
+			for(int j=0;j<len;j++)
+				buf[j] = (float)kernel_function(i,j);
+			return buf;
+		}
 		float[][] data = new float[1][];
 		int start, j;
 		if((start = cache.get_data(i,data,len)) < len)
@@ -1268,7 +1332,7 @@ class ONE_CLASS_Q extends Kernel
 	@Override
 	void swap_index(int i, int j)
 	{
-		cache.swap_index(i,j);
+		if(cache != null) cache.swap_index(i,j);
 		super.swap_index(i,j);
 		do {double _=QD[i]; QD[i]=QD[j]; QD[j]=_;} while(false);
 	}
@@ -1283,12 +1347,19 @@ class SVR_Q extends Kernel
 	private int next_buffer;
 	private float[][] buffer;
 	private final double[] QD;
+	private float[] row; // used instead of the cache
 
 	SVR_Q(svm_problem prob, svm_parameter param)
 	{
-		super(prob.l, prob.x, param);
+		super(prob.l, prob.x, param, prob.id_rows ? prob.kernel : null);
 		l = prob.l;
-		cache = new Cache(l,(long)(param.cache_size*(1<<20)));
+		if(is_resident())
+		{
+			cache = null;
+			row = new float[l];
+		}
+		else
+			cache = new Cache(l,(long)(param.cache_size*(1<<20)));
 		QD = new double[2*l];
 		sign = new byte[2*l];
 		index = new int[2*l];
@@ -1318,7 +1389,13 @@ class SVR_Q extends Kernel
 	{
 		float[][] data = new float[1][];
 		int j, real_i = index[i];
-		if(cache.get_data(real_i,data,l) < l)
+		if(cache == null)
+		{
+			data[0] = row;
+			for(j=0;j<l;j++)
+				data[0][j] = (float)kernel_function(real_i,j);
+		}
+		else if(cache.get_data(real_i,data,l) < l)
 		{
 			for(j=0;j<l;j++)
 				data[0][j] = (float)kernel_function(real_i,j);
@@ -1346,12 +1423,6 @@ class svm {
 	//
 	static final int LIBSVM_VERSION=312; 
 	
-	/*
-	 * Edit 08-01-2014, by GKD de Vries
-	 * Change to always use the same random number generator, to always get the same results. 
-	 */
-	static Random rand = new Random(1337);
-
 	static svm_print_interface svm_print_stdout = new svm_print_interface()
 	{
 		public void print(String s)
@@ -1361,11 +1432,20 @@ class svm {
 		}
 	};
 
-	static svm_print_interface svm_print_string = svm_print_stdout;
+	/*
+	 * The print function is set per thread, so that concurrent training (e.g. in the parameter search of LibSVM) can use different verbosity settings
+	 */
+	static final ThreadLocal<svm_print_interface> svm_print_string = new ThreadLocal<svm_print_interface>()
+	{
+		protected svm_print_interface initialValue()
+		{
+			return svm_print_stdout;
+		}
+	};
 
 	static void info(String s) 
 	{
-		svm_print_string.print(s);
+		svm_print_string.get().print(s);
 	}
 
 	private static void solve_c_svc(svm_problem prob, svm_parameter param,
@@ -1800,8 +1880,9 @@ class svm {
 		/*
 		 * Edit 08-01-2014, by GKD de Vries
 		 * Change to always use the same random number generator, to always get the same results. 
+		 * The generator is local to the call, so that concurrent calls give the same results as sequential ones.
 		 */
-		rand = new Random(1337);
+		Random rand = new Random(1337);
 		
 		int i;
 		int nr_fold = 5;
@@ -1821,6 +1902,8 @@ class svm {
 			int end = (i+1)*prob.l/nr_fold;
 			int j,k;
 			svm_problem subprob = new svm_problem();
+			subprob.kernel = prob.kernel;
+			subprob.id_rows = prob.id_rows;
 
 			subprob.l = prob.l-(end-begin);
 			subprob.x = new svm_node[subprob.l][];
@@ -1980,6 +2063,8 @@ class svm {
 	{
 		svm_model model = new svm_model();
 		model.param = param;
+		model.kernel = prob.id_rows ? prob.kernel : null;
+		model.id_rows = prob.id_rows;
 
 		if(param.svm_type == svm_parameter.ONE_CLASS ||
 				param.svm_type == svm_parameter.EPSILON_SVR ||
@@ -2076,46 +2161,38 @@ class svm {
 				probB=new double[nr_class*(nr_class-1)/2];
 			}
 
+			int nr_pair = nr_class*(nr_class-1)/2;
+			int[] pair_i = new int[nr_pair];
+			int[] pair_j = new int[nr_pair];
 			int p = 0;
 			for(i=0;i<nr_class;i++)
 				for(int j=i+1;j<nr_class;j++)
 				{
-					svm_problem sub_prob = new svm_problem();
-					int si = start[i], sj = start[j];
-					int ci = count[i], cj = count[j];
-					sub_prob.l = ci+cj;
-					sub_prob.x = new svm_node[sub_prob.l][];
-					sub_prob.y = new double[sub_prob.l];
-					int k;
-					for(k=0;k<ci;k++)
-					{
-						sub_prob.x[k] = x[si+k];
-						sub_prob.y[k] = +1;
-					}
-					for(k=0;k<cj;k++)
-					{
-						sub_prob.x[ci+k] = x[sj+k];
-						sub_prob.y[ci+k] = -1;
-					}
-
-					if(param.probability == 1)
-					{
-						double[] probAB=new double[2];
-						svm_binary_svc_probability(sub_prob,param,weighted_C[i],weighted_C[j],probAB);
-						probA[p]=probAB[0];
-						probB[p]=probAB[1];
-					}
-
-					f[p] = svm_train_one(sub_prob,param,weighted_C[i],weighted_C[j]);
-					for(k=0;k<ci;k++)
-						if(!nonzero[si+k] && Math.abs(f[p].alpha[k]) > 0)
-							nonzero[si+k] = true;
-					for(k=0;k<cj;k++)
-						if(!nonzero[sj+k] && Math.abs(f[p].alpha[ci+k]) > 0)
-							nonzero[sj+k] = true;
+					pair_i[p] = i;
+					pair_j[p] = j;
 					++p;
 				}
 
+			int nr_thread = Math.min(param.nr_thread, nr_pair);
+			if(nr_thread > 1)
+				svm_train_pairs_parallel(param,x,start,count,weighted_C,pair_i,pair_j,f,probA,probB,model.kernel,nr_thread);
+			else
+				for(p=0;p<nr_pair;p++)
+					svm_train_pair(param,x,start,count,weighted_C,pair_i[p],pair_j[p],p,f,probA,probB,model.kernel);
+
+			for(p=0;p<nr_pair;p++)
+			{
+				int si = start[pair_i[p]], sj = start[pair_j[p]];
+				int ci = count[pair_i[p]], cj = count[pair_j[p]];
+				int k;
+				for(k=0;k<ci;k++)
+					if(!nonzero[si+k] && Math.abs(f[p].alpha[k]) > 0)
+						nonzero[si+k] = true;
+				for(k=0;k<cj;k++)
+					if(!nonzero[sj+k] && Math.abs(f[p].alpha[ci+k]) > 0)
+						nonzero[sj+k] = true;
+			}
+
 			// build output
 
 			model.nr_class = nr_class;
@@ -2205,14 +2282,91 @@ class svm {
 		return model;
 	}
 
+	// Train the binary classifier p for the classes i and j
+	private static void svm_train_pair(svm_parameter param, svm_node[][] x, int[] start, int[] count, double[] weighted_C,
+			int i, int j, int p, decision_function[] f, double[] probA, double[] probB, KernelMatrix kernel)
+	{
+		svm_problem sub_prob = new svm_problem();
+		sub_prob.kernel = kernel; // only given for id rows
+		sub_prob.id_rows = kernel != null;
+		int si = start[i], sj = start[j];
+		int ci = count[i], cj = count[j];
+		sub_prob.l = ci+cj;
+		sub_prob.x = new svm_node[sub_prob.l][];
+		sub_prob.y = new double[sub_prob.l];
+		int k;
+		for(k=0;k<ci;k++)
+		{
+			sub_prob.x[k] = x[si+k];
+			sub_prob.y[k] = +1;
+		}
+		for(k=0;k<cj;k++)
+		{
+			sub_prob.x[ci+k] = x[sj+k];
+			sub_prob.y[ci+k] = -1;
+		}
+
+		if(param.probability == 1)
+		{
+			double[] probAB=new double[2];
+			svm_binary_svc_probability(sub_prob,param,weighted_C[i],weighted_C[j],probAB);
+			probA[p]=probAB[0];
+			probB[p]=probAB[1];
+		}
+
+		f[p] = svm_train_one(sub_prob,param,weighted_C[i],weighted_C[j]);
+	}
+
+	// Train the class pairs on a fork/join pool with nr_thread threads.
+	// Each pair gets its own kernel cache, these are sized so that together they stay within param.cache_size.
+	// The pairs are independent, so the resulting model is the same as with sequential training.
+	private static void svm_train_pairs_parallel(svm_parameter param, final svm_node[][] x, final int[] start, final int[] count, final double[] weighted_C,
+			final int[] pair_i, final int[] pair_j, final decision_function[] f, final double[] probA, final double[] probB, final KernelMatrix kernel, int nr_thread)
+	{
+		final svm_parameter pair_param = (svm_parameter)param.clone();
+		pair_param.cache_size = param.cache_size/nr_thread;
+		final svm_print_interface print_func = svm_print_string.get();
+
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(f.length);
+		for(int p=0;p<f.length;p++)
+		{
+			final int pair = p;
+			tasks.add(new RecursiveAction()
+			{
+				protected void compute()
+				{
+					svm_print_string.set(print_func);
+					svm_train_pair(pair_param,x,start,count,weighted_C,pair_i[pair],pair_j[pair],pair,f,probA,probB,kernel);
+				}
+			});
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(nr_thread);
+		try
+		{
+			pool.invoke(new RecursiveAction()
+			{
+				protected void compute()
+				{
+					invokeAll(tasks);
+				}
+			});
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
 	// Stratified cross validation
 	static void svm_cross_validation(svm_problem prob, svm_parameter param, int nr_fold, double[] target)
 	{
 		/*
 		 * Edit 08-01-2014, by GKD de Vries
 		 * Change to always use the same random number generator, to always get the same results. 
+		 * The generator is local to the call, so that concurrent calls give the same results as sequential ones.
 		 */
-		rand = new Random(1337);
+		Random rand = new Random(1337);
 		
 		int i;
 		int[] fold_start = new int[nr_fold+1];
@@ -2289,6 +2443,8 @@ class svm {
 			int end = fold_start[i+1];
 			int j,k;
 			svm_problem subprob = new svm_problem();
+			subprob.kernel = prob.kernel;
+			subprob.id_rows = prob.id_rows;
 
 			subprob.l = l-(end-begin);
 			subprob.x = new svm_node[subprob.l][];
@@ -2352,6 +2508,34 @@ class svm {
 	}
 
 	static double svm_predict_values(svm_model model, svm_node[] x, double[] dec_values)
+	{
+		return svm_predict_values(model, kernel_values(model, x), dec_values);
+	}
+
+	// for a precomputed kernel, row contains the kernel values of the test instance with the training instances, which are read directly, without svm_node's
+	static double svm_predict_values(svm_model model, KernelMatrixRow row, double[] dec_values)
+	{
+		return svm_predict_values(model, kernel_values(model, row), dec_values);
+	}
+
+	private static double[] kernel_values(svm_model model, svm_node[] x)
+	{
+		double[] kvalue = new double[model.l];
+		for(int i=0;i<model.l;i++)
+			kvalue[i] = Kernel.k_function(x,model.SV[i],model.param,model.id_rows ? model.kernel : null);
+		return kvalue;
+	}
+
+	private static double[] kernel_values(svm_model model, KernelMatrixRow row)
+	{
+		double[] kvalue = new double[model.l];
+		for(int i=0;i<model.l;i++)
+			kvalue[i] = row.get((int)(model.SV[i][0].value)-1);
+		return kvalue;
+	}
+
+	// kvalue[i] is the kernel value with support vector i
+	private static double svm_predict_values(svm_model model, double[] kvalue, double[] dec_values)
 	{
 		int i;
 		if(model.param.svm_type == svm_parameter.ONE_CLASS ||
@@ -2361,7 +2545,7 @@ class svm {
 			double[] sv_coef = model.sv_coef[0];
 			double sum = 0;
 			for(i=0;i<model.l;i++)
-				sum += sv_coef[i] * Kernel.k_function(x,model.SV[i],model.param);
+				sum += sv_coef[i] * kvalue[i];
 			sum -= model.rho[0];
 			dec_values[0] = sum;
 
@@ -2373,11 +2557,6 @@ class svm {
 		else
 		{
 			int nr_class = model.nr_class;
-			int l = model.l;
-
-			double[] kvalue = new double[l];
-			for(i=0;i<l;i++)
-				kvalue[i] = Kernel.k_function(x,model.SV[i],model.param);
 
 			int[] start = new int[nr_class];
 			start[0] = 0;
@@ -2425,6 +2604,11 @@ class svm {
 	}
 
 	static double svm_predict(svm_model model, svm_node[] x)
+	{
+		return svm_predict(model, kernel_values(model, x));
+	}
+
+	private static double svm_predict(svm_model model, double[] kvalue)
 	{
 		int nr_class = model.nr_class;
 		double[] dec_values;
@@ -2434,11 +2618,22 @@ class svm {
 			dec_values = new double[1];
 		else
 			dec_values = new double[nr_class*(nr_class-1)/2];
-		double pred_result = svm_predict_values(model, x, dec_values);
+		double pred_result = svm_predict_values(model, kvalue, dec_values);
 		return pred_result;
 	}
 
 	static double svm_predict_probability(svm_model model, svm_node[] x, double[] prob_estimates)
+	{
+		return svm_predict_probability(model, kernel_values(model, x), prob_estimates);
+	}
+
+	// see svm_predict_values(svm_model, KernelMatrixRow, double[])
+	static double svm_predict_probability(svm_model model, KernelMatrixRow row, double[] prob_estimates)
+	{
+		return svm_predict_probability(model, kernel_values(model, row), prob_estimates);
+	}
+
+	private static double svm_predict_probability(svm_model model, double[] kvalue, double[] prob_estimates)
 	{
 		if ((model.param.svm_type == svm_parameter.C_SVC || model.param.svm_type == svm_parameter.NU_SVC) &&
 				model.probA!=null && model.probB!=null)
@@ -2446,7 +2641,7 @@ class svm {
 			int i;
 			int nr_class = model.nr_class;
 			double[] dec_values = new double[nr_class*(nr_class-1)/2];
-			svm_predict_values(model, x, dec_values);
+			svm_predict_values(model, kvalue, dec_values);
 
 			double min_prob=1e-7;
 			double[][] pairwise_prob=new double[nr_class][nr_class];
@@ -2468,7 +2663,7 @@ class svm {
 			return model.label[prob_max_idx];
 		}
 		else 
-			return svm_predict(model, x);
+			return svm_predict(model, kvalue);
 	}
 
 	static final String svm_type_table[] =
@@ -2750,6 +2945,9 @@ class svm {
 		if(param.degree < 0)
 			return "degree of polynomial kernel < 0";
 
+		if(prob.id_rows && (kernel_type != svm_parameter.PRECOMPUTED || prob.kernel == null))
+			return "id rows need a precomputed kernel matrix";
+
 		// cache_size,eps,C,nu,p,shrinking
 
 		if(param.cache_size <= 0)
@@ -2856,8 +3054,13 @@ class svm {
 	static void svm_set_print_string_function(svm_print_interface print_func)
 	{
 		if (print_func == null)
-			svm_print_string = svm_print_stdout;
+			svm_print_string.set(svm_print_stdout);
 		else 
-			svm_print_string = print_func;
+			svm_print_string.set(print_func);
+	}
+
+	static svm_print_interface svm_get_print_string_function()
+	{
+		return svm_print_string.get();
 	}
 }
@@ -37,6 +37,8 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 //
 package org.data2semantics.mustard.learners.libsvm;
 
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
+
 class svm_model implements java.io.Serializable
 {
 	public svm_parameter param;	// parameter
@@ -47,6 +49,8 @@ class svm_model implements java.io.Serializable
 	public double[] rho;		// constants in decision functions (rho[k*(k-1)/2])
 	public double[] probA;         // pariwise probability information
 	public double[] probB;
+	public transient KernelMatrix kernel; // precomputed kernel matrix of the training problem, see svm_problem.kernel
+	public transient boolean id_rows; // the SVs (and the rows given to predict) are id nodes in kernel, see svm_problem.id_rows
 
 	// for classification only
 
@@ -68,6 +68,7 @@ class svm_parameter implements Cloneable,java.io.Serializable
 	public double p;	// for EPSILON_SVR
 	public int shrinking;	// use the shrinking heuristics
 	public int probability; // do probability estimates
+	public int nr_thread;	// train the one-vs-one class pairs and predict batches in parallel, <= 1 is sequential
 
 	@Override
 	public Object clone() 
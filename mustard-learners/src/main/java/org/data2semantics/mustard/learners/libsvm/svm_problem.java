@@ -33,9 +33,13 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.data2semantics.mustard.learners.libsvm;
 
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
+
 class svm_problem implements java.io.Serializable
 {
 	public int l;
 	public double[] y;
 	public svm_node[][] x;
+	public KernelMatrix kernel; // for a precomputed kernel with id_rows, the kernel values are read from this matrix
+	public boolean id_rows; // if true, each row of x only contains the id node of the instance (index 0, value i+1), which refers to row/column i of kernel
 }
@@ -1,6 +1,8 @@
 package org.data2semantics.mustard.learners.utils;
 
 import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.matrix.IndexedKernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
 import org.data2semantics.mustard.learners.Prediction;
 
 public class CVUtils {
@@ -69,6 +71,65 @@ public class CVUtils {
 		return testKernel;
 	}
 
+	/**
+	 * KernelMatrix version of {@link #createTrainFold(double[][], int, int)}, the fold is an {@link IndexedKernelMatrix} view on kernel, so no values are copied.
+	 * 
+	 * @param kernel
+	 * @param numberOfFolds
+	 * @param fold
+	 * @return
+	 */
+	public static KernelMatrix createTrainFold(KernelMatrix kernel, int numberOfFolds, int fold) {
+		return new IndexedKernelMatrix(kernel, trainFoldIndices(kernel.numRows(), numberOfFolds, fold));
+	}
+
+	/**
+	 * KernelMatrix version of {@link #createTestFold(double[][], int, int)}, the fold is an {@link IndexedKernelMatrix} view on kernel, so no values are copied.
+	 * 
+	 * @param kernel
+	 * @param numberOfFolds
+	 * @param fold
+	 * @return
+	 */
+	public static KernelMatrix createTestFold(KernelMatrix kernel, int numberOfFolds, int fold) {
+		return new IndexedKernelMatrix(kernel, testFoldIndices(kernel.numRows(), numberOfFolds, fold), trainFoldIndices(kernel.numColumns(), numberOfFolds, fold));
+	}
+
+	/**
+	 * @param length
+	 * @param numberOfFolds
+	 * @param fold
+	 * @return the indices of the instances that are not in fold, i.e. the train instances
+	 */
+	public static int[] trainFoldIndices(int length, int numberOfFolds, int fold) {
+		int foldStart = foldStart(length, numberOfFolds, fold);
+		int foldEnd   = foldEnd(length, numberOfFolds, fold);
+		int foldLength = (foldEnd-foldStart);
+
+		int[] indices = new int[length - foldLength];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = (i < foldStart) ? i : i + foldLength;
+		}
+		return indices;
+	}
+
+	/**
+	 * @param length
+	 * @param numberOfFolds
+	 * @param fold
+	 * @return the indices of the instances in fold, i.e. the test instances
+	 */
+	public static int[] testFoldIndices(int length, int numberOfFolds, int fold) {
+		int foldStart = foldStart(length, numberOfFolds, fold);
+		int foldEnd   = foldEnd(length, numberOfFolds, fold);
+
+		int[] indices = new int[foldEnd - foldStart];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i + foldStart;
+		}
+		return indices;
+	}
+
 	public static double[] createTargetTrainFold(double[] target, int numberOfFolds, int fold) {
 		int foldStart = foldStart(target.length, numberOfFolds, fold);
 		int foldEnd   = foldEnd(target.length, numberOfFolds, fold);
@@ -0,0 +1,82 @@
+package org.data2semantics.mustard.learners.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.data2semantics.mustard.learners.Prediction;
+
+/**
+ * Runs the folds of a cross-validation experiment, i.e. train on all the folds but one and predict the remaining one, on a bounded number of threads.
+ * The instances are assumed to be ordered such that the folds are consecutive (see {@link CVUtils} and {@link Stratifier}).
+ * The predictions are combined by fold number, so the result does not depend on the number of threads.
+ *
+ * @author Gerben
+ *
+ */
+public abstract class CrossValidator {
+
+	/**
+	 * Train on all folds except fold and predict the test instances of fold, this can be called from multiple threads at once.
+	 *
+	 * @param fold, 1 to numberOfFolds
+	 * @return the predictions for the test instances of fold
+	 */
+	protected abstract Prediction[] predictFold(int fold);
+
+	/**
+	 *
+	 * @param numInstances
+	 * @param numberOfFolds
+	 * @param parallelism, the number of folds that are run at the same time
+	 * @return the predictions for all the instances
+	 */
+	public Prediction[] run(int numInstances, int numberOfFolds, int parallelism) {
+		Prediction[] pred = new Prediction[numInstances];
+
+		if (numThreads(parallelism, numberOfFolds) <= 1) {
+			for (int fold = 1; fold <= numberOfFolds; fold++) {
+				pred = CVUtils.addFold2Prediction(predictFold(fold), pred, numberOfFolds, fold);
+			}
+			return pred;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads(parallelism, numberOfFolds));
+		try {
+			List<Future<Prediction[]>> foldPreds = new ArrayList<Future<Prediction[]>>();
+			for (int fold = 1; fold <= numberOfFolds; fold++) {
+				final int f = fold;
+				foldPreds.add(executor.submit(new Callable<Prediction[]>() {
+					public Prediction[] call() {
+						return predictFold(f);
+					}
+				}));
+			}
+			for (int fold = 1; fold <= numberOfFolds; fold++) {
+				pred = CVUtils.addFold2Prediction(foldPreds.get(fold - 1).get(), pred, numberOfFolds, fold);
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return pred;
+	}
+
+	/**
+	 * The number of folds that {@link #run(int, int, int)} runs at the same time, i.e. the number of tasks to divide the threads of the folds over.
+	 *
+	 * @param parallelism
+	 * @param numberOfFolds
+	 * @return
+	 */
+	public static int numThreads(int parallelism, int numberOfFolds) {
+		return Math.max(1, Math.min(parallelism, numberOfFolds));
+	}
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package org.data2semantics.mustard.learners.utils;
 
+import java.util.Arrays;
+
 public class ParameterIterator {
 	private double[] parms;
 	private int testedParms;
@@ -28,6 +30,16 @@ public class ParameterIterator {
 		}	
 	}
 
+	/**
+	 * The parameters that are always tested, i.e. the given parms (up to the maximum number of tested parms).
+	 * The adaptive extension beyond these depends on the scores during the iteration.
+	 * 
+	 * @return
+	 */
+	public double[] getGridParms() {
+		return Arrays.copyOf(parms, Math.min(parms.length, maxParms));
+	}
+
 	public double nextParm() {
 		if (normalIteration && currentIndex <= upperBoundary) { // Within the given parms
 			return parms[currentIndex];
@@ -0,0 +1,119 @@
+package org.data2semantics.mustard.learners.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.data2semantics.mustard.kernels.Kernel;
+
+/**
+ * Scores of the parameter combinations (kernel setting, p and C/nu) in the parameter search of LibSVM and LibLINEAR, computed on a bounded number of threads.
+ *
+ * <p>
+ * The regular grid of combinations is submitted up front with {@link #submitGrid(List, double[], double[])} and is computed concurrently.
+ * The parameter search itself still runs in the sequential order and gets the scores with {@link #get(Kernel, double, double)}.
+ * Combinations that were not submitted, i.e. the adaptive extension of the {@link ParameterIterator}, are computed when they are requested,
+ * so the outcome of the search does not depend on the number of threads.
+ * </p>
+ *
+ * @author Gerben
+ *
+ */
+public abstract class ParameterScores {
+	private ExecutorService executor;
+	private Map<List<Object>, Future<Double>> scores;
+
+	/**
+	 *
+	 * @param parallelism, the number of threads to use, with 1 every score is computed in the calling thread when it is requested
+	 */
+	public ParameterScores(int parallelism) {
+		if (parallelism > 1) {
+			executor = Executors.newFixedThreadPool(parallelism);
+		}
+		scores = new HashMap<List<Object>, Future<Double>>();
+	}
+
+	/**
+	 * Compute the score for a combination, this can be called from multiple threads at once.
+	 *
+	 * @param setting
+	 * @param p
+	 * @param c
+	 * @return
+	 */
+	protected abstract double computeScore(Kernel setting, double p, double c);
+
+	/**
+	 * Submit all the combinations of settings, ps and the grid parms of the ParameterIterator for cs, in the order of the parameter search.
+	 *
+	 * @param settings
+	 * @param ps
+	 * @param cs
+	 */
+	public void submitGrid(List<Kernel> settings, double[] ps, double[] cs) {
+		if (executor == null) {
+			return;
+		}
+		double[] gridCs = new ParameterIterator(cs).getGridParms();
+		for (Kernel setting : settings) {
+			for (double p : ps) {
+				for (double c : gridCs) {
+					submit(setting, p, c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the score for a combination, waiting for it if it was submitted, and computing it otherwise.
+	 *
+	 * @param setting
+	 * @param p
+	 * @param c
+	 * @return
+	 */
+	public double get(Kernel setting, double p, double c) {
+		Future<Double> score = scores.get(key(setting, p, c));
+		if (score == null) {
+			return computeScore(setting, p, c);
+		}
+		try {
+			return score.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Stop the threads, scores that are still running are cancelled.
+	 */
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private void submit(final Kernel setting, final double p, final double c) {
+		List<Object> key = key(setting, p, c);
+		if (!scores.containsKey(key)) {
+			scores.put(key, executor.submit(new Callable<Double>() {
+				public Double call() {
+					return computeScore(setting, p, c);
+				}
+			}));
+		}
+	}
+
+	private static List<Object> key(Kernel setting, double p, double c) {
+		return Arrays.<Object>asList(setting, p, c);
+	}
+}
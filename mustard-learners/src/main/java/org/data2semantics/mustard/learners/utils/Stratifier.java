@@ -13,6 +13,8 @@ import java.util.Random;
 import java.util.Set;
 
 import org.data2semantics.mustard.kernels.SparseVector;
+import org.data2semantics.mustard.kernels.matrix.IndexedKernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
 import org.data2semantics.mustard.learners.Prediction;
 
 
@@ -232,6 +234,25 @@ public class Stratifier {
 
 
 
+	/**
+	 * Compose indices with a permutation of the instances, i.e. element i of the result is permutation[indices.get(i)].
+	 * This is used when the indices are computed for the instances in permuted order (e.g. a permuted target), to shuffle data that is stored in the original order.
+	 * 
+	 * @param indices
+	 * @param permutation, if null, indices is returned
+	 * @return
+	 */
+	public static List<Integer> permute(List<Integer> indices, int[] permutation) {
+		if (permutation == null) {
+			return indices;
+		}
+		List<Integer> temp = new ArrayList<Integer>(indices.size());
+		for (int index : indices) {
+			temp.add(permutation[index]);
+		}
+		return temp;
+	}
+
 	public static double[] shuffle(double[] labels, List<Integer> indices) {
 		double[] temp = new double[labels.length];
 		for (int i = 0; i < temp.length; i++) {
@@ -257,6 +278,17 @@ public class Stratifier {
 		return temp;
 	}
 
+	/**
+	 * Shuffle the rows and columns of the kernel matrix, the result is an {@link IndexedKernelMatrix} view on kernel, so no values are copied.
+	 * 
+	 * @param kernel
+	 * @param indices
+	 * @return
+	 */
+	public static KernelMatrix shuffle(KernelMatrix kernel, List<Integer> indices) {
+		return new IndexedKernelMatrix(kernel, indices);
+	}
+
 	public static Prediction[] deshuffle(Prediction[] pred, List<Integer> indices) {
 		Prediction[] temp = new Prediction[pred.length];
 
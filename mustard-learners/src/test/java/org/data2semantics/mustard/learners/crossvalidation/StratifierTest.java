@@ -4,7 +4,11 @@ import static org.junit.Assert.*;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
+import org.data2semantics.mustard.kernels.matrix.ArrayKernelMatrix;
+import org.data2semantics.mustard.kernels.matrix.KernelMatrix;
+import org.data2semantics.mustard.learners.utils.CVUtils;
 import org.data2semantics.mustard.learners.utils.Stratifier;
 import org.junit.Test;
 
@@ -40,4 +44,41 @@ public class StratifierTest {
 		}
 	}
 
+	/**
+	 * The folds of a shuffled KernelMatrix (IndexedKernelMatrix views) have the same values as the folds of the shuffled array
+	 */
+	@Test
+	public void testKernelMatrixFolds() {
+		Random rand = new Random(9);
+		double[] labels = new double[97];
+		double[][] kernel = new double[labels.length][labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = rand.nextInt(3);
+			for (int j = 0; j <= i; j++) {
+				kernel[i][j] = rand.nextDouble();
+				kernel[j][i] = kernel[i][j];
+			}
+		}
+
+		for (int numberOfFolds : new int[] {2, 5, 10}) {
+			List<Integer> ind = Stratifier.stratifyFolds(labels, numberOfFolds);
+			double[][] shuffled = Stratifier.shuffle(kernel, ind);
+			KernelMatrix shuffledMatrix = Stratifier.shuffle(new ArrayKernelMatrix(kernel, true), ind);
+
+			for (int fold = 1; fold <= numberOfFolds; fold++) {
+				assertFoldEquals(CVUtils.createTrainFold(shuffled, numberOfFolds, fold), CVUtils.createTrainFold(shuffledMatrix, numberOfFolds, fold));
+				assertFoldEquals(CVUtils.createTestFold(shuffled, numberOfFolds, fold), CVUtils.createTestFold(shuffledMatrix, numberOfFolds, fold));
+			}
+		}
+	}
+
+	private static void assertFoldEquals(double[][] expected, KernelMatrix actual) {
+		assertEquals(expected.length, actual.numRows());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].length, actual.numColumns());
+			for (int j = 0; j < expected[i].length; j++) {
+				assertEquals(expected[i][j], actual.get(i, j), 0.0);
+			}
+		}
+	}
 }
@@ -0,0 +1,113 @@
+package org.data2semantics.mustard.learners.libsvm;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.data2semantics.mustard.kernels.matrix.ArrayKernelMatrix;
+import org.data2semantics.mustard.learners.Prediction;
+import org.junit.Test;
+
+public class LibSVMTest {
+	private static final int NUM_CLASSES = 5;
+	private static final int NUM_FEATURES = 4;
+
+	/**
+	 * Training the one-vs-one class pairs and predicting the batches in parallel gives exactly the same model and predictions as the sequential version,
+	 * with and without probability estimates, for C-SVC and nu-SVC.
+	 */
+	@Test
+	public void testModelParallelism() {
+		Random rand = new Random(8);
+		double[][] train = randomInstances(rand, 150);
+		double[][] test = randomInstances(rand, 200); // more than PREDICT_BATCH_SIZE, so the predictions are split in batches
+		double[] target = new double[train.length];
+		for (int i = 0; i < target.length; i++) {
+			target[i] = i % NUM_CLASSES;
+		}
+		double[][] trainKernel = linearKernel(train, train);
+		double[][] testKernel = linearKernel(test, train);
+
+		for (int algorithm : new int[] {LibSVMParameters.C_SVC, LibSVMParameters.NU_SVC}) {
+			for (boolean probEstimates : new boolean[] {false, true}) {
+				double[] itParams = (algorithm == LibSVMParameters.C_SVC) ? new double[] {0.1, 1, 10} : new double[] {0.1, 0.3};
+
+				LibSVMModel expected = LibSVM.trainSVMModel(trainKernel, target, createParameters(algorithm, itParams, probEstimates, 1));
+				Prediction[] expectedPred = LibSVM.testSVMModel(expected, testKernel);
+
+				for (int parallelism : new int[] {2, 4, 16}) {
+					LibSVMModel actual = LibSVM.trainSVMModel(new ArrayKernelMatrix(trainKernel, true), target, createParameters(algorithm, itParams, probEstimates, parallelism));
+					assertModelEquals(expected.getModel(), actual.getModel());
+					assertPredictionsEqual(expectedPred, LibSVM.testSVMModel(actual, new ArrayKernelMatrix(testKernel, false)));
+				}
+			}
+		}
+	}
+
+	private static LibSVMParameters createParameters(int algorithm, double[] itParams, boolean probEstimates, int parallelism) {
+		LibSVMParameters params = new LibSVMParameters(algorithm, itParams);
+		params.setVerbosity(LibSVMParameters.VERBOSITY_NONE);
+		params.setProbEstimates(probEstimates);
+		params.setModelParallelism(parallelism);
+		return params;
+	}
+
+	private static void assertModelEquals(svm_model expected, svm_model actual) {
+		assertEquals(expected.nr_class, actual.nr_class);
+		assertEquals(expected.l, actual.l);
+		assertArrayEquals(expected.label, actual.label);
+		assertArrayEquals(expected.nSV, actual.nSV);
+		assertArrayEquals(expected.rho, actual.rho, 0);
+		for (int k = 0; k < expected.sv_coef.length; k++) {
+			assertArrayEquals(expected.sv_coef[k], actual.sv_coef[k], 0);
+		}
+		for (int i = 0; i < expected.l; i++) {
+			assertEquals(expected.SV[i].length, actual.SV[i].length);
+			for (int j = 0; j < expected.SV[i].length; j++) {
+				assertEquals(expected.SV[i][j].index, actual.SV[i][j].index);
+				assertEquals(expected.SV[i][j].value, actual.SV[i][j].value, 0);
+			}
+		}
+		if (expected.probA == null) {
+			assertNull(actual.probA);
+			assertNull(actual.probB);
+		} else {
+			assertArrayEquals(expected.probA, actual.probA, 0);
+			assertArrayEquals(expected.probB, actual.probB, 0);
+		}
+	}
+
+	private static void assertPredictionsEqual(Prediction[] expected, Prediction[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].getIndex(), actual[i].getIndex());
+			assertEquals(expected[i].getLabel(), actual[i].getLabel(), 0);
+			assertArrayEquals(expected[i].getDecisionValue(), actual[i].getDecisionValue(), 0);
+		}
+	}
+
+	/**
+	 * Instances with features around a mean that depends on the class (i % NUM_CLASSES), so that the classes overlap partly
+	 */
+	private static double[][] randomInstances(Random rand, int numInstances) {
+		double[][] instances = new double[numInstances][NUM_FEATURES];
+		for (int i = 0; i < numInstances; i++) {
+			for (int f = 0; f < NUM_FEATURES; f++) {
+				instances[i][f] = ((i % NUM_CLASSES) >> (f % 3) & 1) + rand.nextGaussian() * 0.6;
+			}
+		}
+		return instances;
+	}
+
+	private static double[][] linearKernel(double[][] rows, double[][] columns) {
+		double[][] kernel = new double[rows.length][columns.length];
+		for (int i = 0; i < rows.length; i++) {
+			for (int j = 0; j < columns.length; j++) {
+				for (int f = 0; f < NUM_FEATURES; f++) {
+					kernel[i][j] += rows[i][f] * columns[j][f];
+				}
+			}
+		}
+		return kernel;
+	}
+}